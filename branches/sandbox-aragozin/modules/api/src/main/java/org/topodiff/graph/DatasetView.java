@@ -0,0 +1,33 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.graph;
+
+import java.util.Iterator;
+
+/**
+ * Read only interface to access RDF dataset as a set of named graphs.
+ * Default graph is named {@link Quad#DEFAULT_GRAPH}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface DatasetView {
+
+	public Iterator<Node> listGraphNames();
+	
+	/**
+	 * @return graph or <code>null</code> if there is no such graph in dataset
+	 */
+	public GraphView getGraph(Node graphName);
+	
+}
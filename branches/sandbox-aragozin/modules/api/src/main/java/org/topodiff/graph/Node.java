@@ -24,6 +24,9 @@ public class Node {
 	public final String lexicalForm;
 	public final Object scope; // required to distinguish b-nodes from different models
 
+	// lazily calculated, see NodeKeys
+	private volatile long prefixKey = -1;
+
 	public Node(NodeType nodeType, String lexicalForm) {
 		this(nodeType, lexicalForm, null);
 	}
@@ -61,6 +64,19 @@ public class Node {
 		return lexicalForm;
 	}
 
+	/**
+	 * @return cached order preserving key of lexical form
+	 * @see NodeKeys
+	 */
+	public long getPrefixKey() {
+		long key = prefixKey;
+		if (key < 0) {
+			key = NodeKeys.prefixKey(lexicalForm);
+			prefixKey = key;
+		}
+		return key;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -78,7 +94,8 @@ public class Node {
 			return true;
 		if (obj == null)
 			return false;
-		if (getClass() != obj.getClass())
+		// subclasses (e.g. interned nodes) are equal to plain nodes
+		if (!(obj instanceof Node))
 			return false;
 		Node other = (Node) obj;
 		if (lexicalForm == null) {
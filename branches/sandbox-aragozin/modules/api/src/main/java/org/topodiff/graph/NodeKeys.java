@@ -0,0 +1,119 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.graph;
+
+import java.util.Arrays;
+
+/**
+ * Calculates order preserving 64 bit keys for lexical forms of nodes.
+ * <br/>
+ * Key consists of namespace rank (position in frozen table of well-known prefixes) 
+ * followed by first chars after namespace. For any two strings <code>s1 &lt; s2</code> 
+ * it holds that <code>key(s1) &lt;= key(s2)</code>, so unequal keys decide comparison 
+ * and only equal keys require comparing strings.
+ * <br/>
+ * Table of prefixes is a part of key format and cannot be changed at runtime, 
+ * keys are cached in {@link Node} instances.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NodeKeys {
+
+	private static final String[] NAMESPACES = {
+		"http://",
+		"https://",
+		"urn:",
+		"http://www.w3.org/",
+		"http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+		"http://www.w3.org/2000/01/rdf-schema#",
+		"http://www.w3.org/2001/XMLSchema#",
+		"http://www.w3.org/2002/07/owl#",
+		"http://www.w3.org/2004/02/skos/core#",
+		"http://www.w3.org/TR/rdf-schema/#",
+		"http://purl.org/dc/elements/1.1/",
+		"http://purl.org/dc/terms/",
+		"http://xmlns.com/foaf/0.1/",
+	};
+	
+	private static final int CHAR_BITS = 16;
+	private static final int KEY_CHARS = 3;
+	
+	/** 
+	 * Sorted table of interval bounds. For each namespace both namespace itself and its upper bound
+	 * (namespace followed by {@link Character#MAX_VALUE}) are in the table, so interval between them holds
+	 * exactly strings starting with namespace. 
+	 */
+	private static final String[] BOUNDS;
+	/** Length of prefix shared by all strings in interval, indexed by rank */
+	private static final int[] SHARED_PREFIX;
+	
+	static {
+		BOUNDS = new String[2 * NAMESPACES.length];
+		for(int i = 0; i != NAMESPACES.length; ++i) {
+			BOUNDS[2 * i] = NAMESPACES[i];
+			BOUNDS[2 * i + 1] = NAMESPACES[i] + Character.MAX_VALUE;
+		}
+		Arrays.sort(BOUNDS);
+		
+		SHARED_PREFIX = new int[BOUNDS.length + 1];
+		for(int r = 1; r < BOUNDS.length; ++r) {
+			SHARED_PREFIX[r] = commonPrefix(BOUNDS[r - 1], BOUNDS[r]);
+		}
+	}
+	
+	/**
+	 * @return non negative order preserving key
+	 */
+	public static long prefixKey(String text) {
+		int rank = rank(text);
+		int shared = SHARED_PREFIX[rank];
+		long key = rank;
+		for(int i = 0; i != KEY_CHARS; ++i) {
+			int n = shared + i;
+			key <<= CHAR_BITS;
+			if (n < text.length()) {
+				key |= text.charAt(n);
+			}
+		}
+		return key;
+	}
+	
+	/**
+	 * @return number of bounds less or equal to text 
+	 */
+	private static int rank(String text) {
+		int lo = 0;
+		int hi = BOUNDS.length;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (BOUNDS[mid].compareTo(text) <= 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static int commonPrefix(String s1, String s2) {
+		int n = Math.min(s1.length(), s2.length());
+		for(int i = 0; i != n; ++i) {
+			if (s1.charAt(i) != s2.charAt(i)) {
+				return i;
+			}
+		}
+		return n;
+	}
+}
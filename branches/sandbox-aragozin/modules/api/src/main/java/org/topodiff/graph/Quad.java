@@ -0,0 +1,71 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.graph;
+
+/**
+ * Triple with graph name, element of RDF dataset.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class Quad {
+	
+	/**
+	 * Name used for default (unnamed) graph of dataset.
+	 */
+	public static final Node DEFAULT_GRAPH = new Node(NodeType.NAMED, "urn:x-topodiff:default-graph");
+
+	public final Node graph;
+	public final Triple triple;
+	
+	/**
+	 * @param graph graph name, <code>null</code> means default graph
+	 */
+	public Quad(Node graph, Triple triple) {
+		if (triple == null) {
+			throw new IllegalArgumentException("Null is not allowed");
+		}
+		this.graph = graph == null ? DEFAULT_GRAPH : graph;
+		this.triple = triple;
+	}
+
+	public Quad(Node graph, Node subject, Node predicate, Node object) {
+		this(graph, new Triple(subject, predicate, object));
+	}
+	
+	public boolean isDefaultGraph() {
+		return DEFAULT_GRAPH.equals(graph);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * graph.hashCode() + triple.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Quad other = (Quad) obj;
+		return graph.equals(other.graph) && triple.equals(other.triple);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + triple.subject + " " + triple.predicate + " " + triple.object + " " + graph + "]";
+	}
+}
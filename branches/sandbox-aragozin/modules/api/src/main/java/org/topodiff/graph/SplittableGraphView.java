@@ -0,0 +1,31 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.graph;
+
+import org.topodiff.util.SplittableSource;
+
+/**
+ * {@link GraphView} able to provide exactly sized, splittable statement sources
+ * for parallel bulk processing (statistics, filtering, cluster discovery).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface SplittableGraphView extends GraphView {
+
+	/**
+	 * Same selection as {@link #listStatements(Node, Node, Node)}, but as {@link SplittableSource}.
+	 */
+	public SplittableSource<Triple> splitStatements(Node res, Node prop, Node obj);
+	
+}
@@ -0,0 +1,29 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+
+/**
+ * Receiver of dataset delta, same as {@link ModelDeltaReceiver} but each match is qualified by graph name.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface DatasetDeltaReceiver {
+	
+	public void tripleMatch(Node graph, Triple tripleA, Triple tripleB);
+	
+	public void done();
+}
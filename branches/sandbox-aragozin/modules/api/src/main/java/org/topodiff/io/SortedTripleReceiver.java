@@ -0,0 +1,28 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io;
+
+/**
+ * Receiver of sorted triple stream, which records fingerprint of sort algorithm along with stream.
+ * <br/>
+ * Sort method may refine fingerprint with choices made for particular graph (e.g. selected cut predicates),
+ * it passes final fingerprint to receiver before first triple. Decorators should pass it to their delegates.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface SortedTripleReceiver extends TripleReceiver {
+
+	public void setFingerprint(String fingerprint);
+	
+}
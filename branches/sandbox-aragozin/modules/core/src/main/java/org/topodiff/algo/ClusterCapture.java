@@ -0,0 +1,36 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.Collection;
+
+import org.topodiff.graph.Triple;
+
+/**
+ * Receives b-clusters which were slow to canonicalise (see {@link ToposortGraphProcessor#setClusterCapture(ClusterCapture, long)}), 
+ * so they could be replayed in isolation.
+ * <br/>
+ * Implementation should be thread safe, it is called from canonicalisation tasks.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface ClusterCapture {
+
+	/**
+	 * @param cluster triples of b-cluster, should not be modified
+	 * @param elapsedNanos time spent on canonicalisation (including cluster store lookups and fallback)
+	 */
+	public void capture(Collection<Triple> cluster, long elapsedNanos);
+	
+}
@@ -0,0 +1,142 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.Filters;
+import org.topodiff.util.Match;
+
+/**
+ * Chooses cut predicates for oversized b-clusters (rule set #2 from ToposortOverview wiki page).
+ * <br/>
+ * Triple with b-node subject and object and cut predicate is not followed then clusters are collected,
+ * so cutting a predicate may split cluster to smaller ones. While there are clusters above size limit,
+ * most frequent followed b-node to b-node predicate within such clusters is added to cut set 
+ * (ties are resolved by higher fan-out, then by lexical form).
+ * <br/>
+ * Selection is deterministic, same graph and limit will always produce same cut set. Isomorphic graphs produce same
+ * cut set too, but different versions of graph may not, so cut set chosen for one version should be used for another
+ * if sorted streams are going to be compared.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ClusterCutSelector {
+
+	private final Match<Node> propFollowFilter;
+	private final int maxClusterSize;
+
+	/**
+	 * @param propFollowFilter predicates joining b-nodes into cluster, <code>null</code> - all predicates
+	 * @param maxClusterSize maximum number of triples in cluster
+	 */
+	public ClusterCutSelector(Match<Node> propFollowFilter, int maxClusterSize) {
+		if (maxClusterSize <= 0) {
+			throw new IllegalArgumentException("Cluster size limit should be positive: " + maxClusterSize);
+		}
+		this.propFollowFilter = propFollowFilter;
+		this.maxClusterSize = maxClusterSize;
+	}
+	
+	/**
+	 * @param cuts initial cut set, remains unchanged
+	 * @return initial cut set extended with predicates required to keep clusters under limit 
+	 * (some clusters may still exceed limit, if they cannot be split any further)
+	 */
+	public Set<Node> selectCuts(GraphView model, Collection<Node> cuts) {
+		Set<Node> result = new HashSet<Node>(cuts);
+		while(true) {
+			Match<Node> filter = createFilter(propFollowFilter, result);
+			StreamingClusterBuilder builder = new StreamingClusterBuilder(filter);
+			builder.addAll(model.listStatements(null, null, null));
+			
+			Node cut = chooseCut(builder.getClusters(), filter);
+			if (cut == null) {
+				return result;
+			}
+			result.add(cut);
+		}
+	}
+
+	/**
+	 * @return filter following predicates accepted by base filter, but not in cut set
+	 */
+	public static Match<Node> createFilter(Match<Node> propFollowFilter, Collection<Node> cuts) {
+		if (cuts.isEmpty()) {
+			return propFollowFilter;
+		}
+		Match<Node> notCut = Filters.not(Filters.inList(cuts));
+		return propFollowFilter == null ? notCut : Filters.and(propFollowFilter, notCut);
+	}
+	
+	private Node chooseCut(List<Set<Triple>> clusters, Match<Node> filter) {
+		// sorted by lexical form, so choice does not depend on hash order
+		Map<String, PredicateStats> stats = new TreeMap<String, PredicateStats>();
+		for(Set<Triple> cluster: clusters) {
+			if (cluster.size() <= maxClusterSize) {
+				continue;
+			}
+			for(Triple triple: cluster) {
+				if (triple.object.isAnon() && (filter == null || filter.match(triple.predicate))) {
+					String key = triple.predicate.getLexicalForm();
+					PredicateStats ps = stats.get(key);
+					if (ps == null) {
+						ps = new PredicateStats(triple.predicate);
+						stats.put(key, ps);
+					}
+					ps.add(triple);
+				}
+			}
+		}
+		
+		PredicateStats best = null;
+		for(PredicateStats ps: stats.values()) {
+			if (best == null || ps.count > best.count || (ps.count == best.count && ps.getFanOut() > best.getFanOut())) {
+				best = ps;
+			}
+		}
+		return best == null ? null : best.predicate;
+	}
+	
+	private static class PredicateStats {
+		
+		final Node predicate;
+		final Set<Node> subjects = new HashSet<Node>();
+		int count;
+		
+		public PredicateStats(Node predicate) {
+			this.predicate = predicate;
+		}
+
+		public void add(Triple triple) {
+			++count;
+			subjects.add(triple.subject);
+		}
+		
+		/**
+		 * @return average number of links per subject, scaled by 1000
+		 */
+		public long getFanOut() {
+			return 1000l * count / subjects.size();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+import java.util.Collection;
+import java.util.List;
+
+import org.topodiff.graph.Triple;
+
+/**
+ * Content addressed storage of canonical b-clusters.
+ * Allows {@link ToposortGraphProcessor} to reuse b-clusters canonicalised during processing of previous
+ * snapshots, instead of sorting them again.
+ * <br/>
+ * Canonical cluster is stored as topologically sorted list of triples, b-nodes are renamed to {@code b<N>}
+ * in order of appearance.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface ClusterStore {
+
+	/**
+	 * @param shapeKey order independent key, see {@link ToposortUtils#getShapeKey(Collection, java.security.MessageDigest)}
+	 * @return hashes of stored clusters having given shape key, may be empty
+	 */
+	public Collection<String> findByShape(String shapeKey);
+
+	/**
+	 * @return canonical cluster or <code>null</code> if hash is unknown
+	 */
+	public List<Triple> getCluster(String hash);
+
+	public boolean containsCluster(String hash);
+
+	public void putCluster(String shapeKey, String hash, List<Triple> canonicalTriples);
+
+}
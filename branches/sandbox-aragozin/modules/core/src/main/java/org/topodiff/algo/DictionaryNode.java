@@ -0,0 +1,81 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import org.topodiff.graph.Node;
+
+/**
+ * Node interned by {@link NodeDictionary}. ID of node reflects its position in {@link LexographicNodeComparator}
+ * order, so nodes of same dictionary could be compared by ID instead of lexical form.
+ * <br/>
+ * Dictionary node is equal to plain {@link Node} with same type and lexical form.
+ * <br/>
+ * Nodes interned by {@link NodeDictionaryBuilder} are unbound (compared lexically) until dictionary is built.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class DictionaryNode extends Node {
+
+	private NodeDictionary dictionary;
+	private int id;
+	
+	public DictionaryNode(Node node, NodeDictionary dictionary, int id) {
+		super(node.nodeType, node.lexicalForm, node.scope);
+		this.dictionary = dictionary;
+		this.id = id;
+	}
+
+	/**
+	 * Creates unbound node.
+	 */
+	DictionaryNode(Node node) {
+		this(node, null, -1);
+	}
+	
+	void bind(NodeDictionary dictionary, int id) {
+		if (this.dictionary != null) {
+			throw new IllegalStateException("Node " + this + " is already bound");
+		}
+		this.dictionary = dictionary;
+		this.id = id;
+	}
+
+	/**
+	 * @return dictionary of node or <code>null</code> if node is not bound yet
+	 */
+	public NodeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return ID of node or -1 if node is not bound yet
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return result of ID comparison or {@link Integer#MIN_VALUE} if nodes are not from same dictionary
+	 */
+	static int compareIds(Node o1, Node o2) {
+		if (o1 instanceof DictionaryNode && o2 instanceof DictionaryNode) {
+			DictionaryNode d1 = (DictionaryNode) o1;
+			DictionaryNode d2 = (DictionaryNode) o2;
+			if (d1.dictionary == d2.dictionary && d1.dictionary != null) {
+				return d1.id < d2.id ? -1 : d1.id > d2.id ? 1 : 0; 
+			}
+		}
+		return Integer.MIN_VALUE;
+	}
+}
@@ -12,7 +12,9 @@ See the License for the specific language governing permissions and
 limitations under the License.
 */
 package org.topodiff.algo;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -26,8 +28,13 @@ import org.topodiff.algo.TripleStreamParser.Mode;
 import org.topodiff.graph.Node;
 import org.topodiff.graph.Triple;
 import org.topodiff.io.ModelDeltaReceiver;
-import org.topodiff.util.Iterators;
-import org.topodiff.util.Pair;
+import org.topodiff.util.ObjectIntHashMap;
+import org.topodiff.util.ReadAheadIterator;
+import org.topodiff.util.SortedDeltaCursor;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.metrics.Metrics;
+import org.topodiff.util.metrics.NoopMetrics;
+import org.topodiff.util.text.Encodings;
 
 
 /**
@@ -40,6 +47,8 @@ public class DiffProcessor {
 
 	private final TripleStreamParser source1;
 	private final TripleStreamParser source2;
+	private final boolean identical;
+	private final List<ReadAheadIterator<Triple>> readers = new ArrayList<ReadAheadIterator<Triple>>();
 	
 	private final ModelDeltaReceiver handler;
 	
@@ -50,19 +59,103 @@ public class DiffProcessor {
 	
 	private final AnonDic anonDic = new AnonDic();	
 	private int groupCounter = 0;
+	private final MessageDigest shapeDigest = MessageDigesters.createSHA1();
+
+	private boolean omittedClustersIdentical = false;
+	private final Set<String> readGroups1 = new HashSet<String>();
+	private final Set<String> readGroups2 = new HashSet<String>();
+	
+	private Metrics metrics = NoopMetrics.INSTANCE;
 
 	public DiffProcessor(Iterator<Triple> reader1, Iterator<Triple> reader2, ModelDeltaReceiver handler) {
-		this.source1 = new TripleStreamParser(reader1);
-		this.source2 = new TripleStreamParser(reader2);
+		this(reader1, reader2, handler, false);
+	}
+
+	/**
+	 * @param readAhead if <code>true</code> each input is consumed by own background thread (see {@link ReadAheadIterator}),
+	 * so decoding of both inputs overlaps with diff calculation
+	 */
+	public DiffProcessor(Iterator<Triple> reader1, Iterator<Triple> reader2, ModelDeltaReceiver handler, boolean readAhead) {
+		this(reader1, null, reader2, null, handler, readAhead);
+	}
+
+	/**
+	 * If summaries of streams match, streams are not read at all and {@link #process()} reports nothing 
+	 * (number of retained triples is {@link GraphSummary#tripleCount}).
+	 * 
+	 * @param summary1 summary of first stream, may be <code>null</code>
+	 * @param summary2 summary of second stream, may be <code>null</code>
+	 * @throws IllegalArgumentException if summaries show that streams are sorted differently (see {@link GraphSummary#isComparable(GraphSummary)})
+	 */
+	public DiffProcessor(Iterator<Triple> reader1, GraphSummary summary1, Iterator<Triple> reader2, GraphSummary summary2, ModelDeltaReceiver handler, boolean readAhead) {
+		if (summary1 != null && summary2 != null && !summary1.isComparable(summary2)) {
+			throw new IllegalArgumentException("Streams are sorted differently and could not be compared\n" 
+					+ "Fingerprint of first stream:\n" + summary1.fingerprint + "\n"
+					+ "Fingerprint of second stream:\n" + summary2.fingerprint);
+		}
+		this.identical = summary1 != null && summary1.matches(summary2);
+		if (identical) {
+			this.source1 = null;
+			this.source2 = null;
+		}
+		else {
+			this.source1 = new TripleStreamParser(readAhead ? readAhead(reader1) : reader1);
+			this.source2 = new TripleStreamParser(readAhead ? readAhead(reader2) : reader2);
+		}
 		this.handler = handler;
-		
-		Object model1 = source1;
-		Object model2 = source2;
+	}
+
+	private Iterator<Triple> readAhead(Iterator<Triple> reader) {
+		ReadAheadIterator<Triple> it = new ReadAheadIterator<Triple>(reader);
+		readers.add(it);
+		return it;
+	}
 
-		anonDic.setSources(model1, model2);
+	/**
+	 * Declares that b-node clusters which triples are omitted from both streams are present and identical
+	 * in both of them (see {@link MerkleDiffProcessor}). References to nodes of such clusters are matched by label.
+	 */
+	public void assumeOmittedClustersIdentical() {
+		omittedClustersIdentical = true;
+	}
+	
+	/**
+	 * Reported metrics
+	 * <ul>
+	 * <li>{@code diff.isoGroup.size} - histogram of isomorphic group sizes (subgraphs from both streams)</li>
+	 * <li>{@code diff.isoGroup.unique} - groups with single subgraph at each side, bound immediately</li>
+	 * <li>{@code diff.scrap.bound} - subgraphs bound arbitrarily while scraping unresolved groups</li>
+	 * <li>{@code diff.scrap.triples} - triples of unresolved groups reported as difference</li>
+	 * <li>{@code diff.identical} - diff skipped due to matching summaries</li>
+	 * </ul>
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return <code>true</code> if streams are known to be identical by their summaries and diff is skipped 
+	 */
+	public boolean isIdentical() {
+		return identical;
 	}
 	
 	public void process() {
+		if (identical) {
+			metrics.increment("diff.identical", 1);
+			return;
+		}
+		try {
+			processStages();
+		}
+		finally {
+			for(ReadAheadIterator<Triple> reader: readers) {
+				reader.close();
+			}
+		}
+	}
+	
+	private void processStages() {
 		
 		// stage 1
 		source1.setMode(Mode.BLANKS);
@@ -104,14 +197,19 @@ public class DiffProcessor {
 					String hash = source1.getCurrectIsomorphicHash();
 					Map<String, List<Triple>> g1 = readHashGroup(source1);
 					Map<String, List<Triple>> g2 = readHashGroup(source2);
+					markRead(g1.keySet(), readGroups1);
+					markRead(g2.keySet(), readGroups2);
 					
-					List<IsoGroup> list = createGroups(g1);
-					mergeGroups(list, g2);
+					Map<String, List<IsoGroup>> shapeIndex = new HashMap<String, List<IsoGroup>>();
+					List<IsoGroup> list = createGroups(g1, shapeIndex);
+					mergeGroups(list, shapeIndex, g2);
 					
 					Iterator<IsoGroup> it = list.iterator();
 					while(it.hasNext()) {
 						IsoGroup group = it.next();
+						metrics.record("diff.isoGroup.size", group.sets1.size() + group.sets2.size());
 						if (group.sets1.size() == 1 && group.sets2.size() == 1) {
+							metrics.increment("diff.isoGroup.unique", 1);
 							// if both iso groups have only one subgraph, we can safely much subgraphs
 							bindGroups(group.sets1.values().iterator().next(), group.sets2.values().iterator().next());
 							it.remove();
@@ -129,12 +227,17 @@ public class DiffProcessor {
 					List<Triple> g1 = source1.readSubject();
 					List<Triple> g2 = source2.readSubject();
 					
+					bindIdentical(g1, 1);
+					bindIdentical(g2, 2);
 					match(g1, g2);
 				}
 			}
 			else if (cmpResult < 0 ) {
 				// res2 > res1
 				List<Triple> g  = source1.readSubject();
+				if (processIsoGroups) {
+					markRead(g, readGroups1);
+				}
 				for(Triple t: g) {
 					handler.tripleMatch(t, null);
 				}
@@ -142,6 +245,9 @@ public class DiffProcessor {
 			else {
 				// res1 > res2
 				List<Triple> g  = source2.readSubject();
+				if (processIsoGroups) {
+					markRead(g, readGroups2);
+				}
 				for(Triple t: g) {
 					handler.tripleMatch(null, t);
 				}
@@ -158,11 +264,45 @@ public class DiffProcessor {
 		}
 	}
 	
+	private void markRead(Collection<String> groups, Set<String> readGroups) {
+		if (omittedClustersIdentical) {
+			readGroups.addAll(groups);
+		}
+	}
+
+	private void markRead(List<Triple> triples, Set<String> readGroups) {
+		String group = DiffHelper.getIsomorphicsGroupID(triples.get(0).subject);
+		if (group != null) {
+			markRead(Collections.singleton(group), readGroups);
+		}
+	}
+
+	private void bindIdentical(List<Triple> triples, int source) {
+		if (!omittedClustersIdentical) {
+			return;
+		}
+		for(Triple triple: triples) {
+			bindIdentical(triple.subject, source);
+			bindIdentical(triple.object, source);
+		}
+	}
+
+	private void bindIdentical(Node node, int source) {
+		if (node.isAnon() && anonDic.isFree(node, source)) {
+			String group = DiffHelper.getIsomorphicsGroupID(node);
+			if (group != null && !readGroups1.contains(group) && !readGroups2.contains(group)) {
+				// cluster is omitted from both streams, same label in other stream denotes same node
+				anonDic.map(node, node);
+			}
+		}
+	}
+	
 	private void scrapGroup(IsoGroup group) {
 		while(!group.sets1.isEmpty() && !group.sets2.isEmpty()) {
 			Map.Entry<String, List<Triple>> e1 = group.sets1.entrySet().iterator().next();
 			Map.Entry<String, List<Triple>> e2 = group.sets2.entrySet().iterator().next();
 			
+			metrics.increment("diff.scrap.bound", 1);
 			bindGroups(e1.getKey(), e2.getKey());
 		}
 		
@@ -171,6 +311,7 @@ public class DiffProcessor {
 			group.sets1.remove(e1.getKey());
 			isoPool1.remove(e1.getKey());
 			
+			metrics.increment("diff.scrap.triples", e1.getValue().size());
 			reportDifferece(e1.getValue(), 1);
 		}
 
@@ -179,26 +320,37 @@ public class DiffProcessor {
 			group.sets2.remove(e2.getKey());
 			isoPool2.remove(e2.getKey());
 			
+			metrics.increment("diff.scrap.triples", e2.getValue().size());
 			reportDifferece(e2.getValue(), 2);
 		}
 	}
 
+	/**
+	 * Both lists are kept in match order (order of bound nodes refined by topohash of free nodes).
+	 * Binding never changes relative order of triples which do not refer newly bound nodes,
+	 * so after each pass only such triples are re-sorted and merged back.
+	 */
 	private void match(List<Triple> g1, List<Triple> g2) {
 		g1 = new ArrayList<Triple>(g1);
 		g2 = new ArrayList<Triple>(g2);
 
-		Comparator<Triple> cmp = new TripleComparator(anonDic, anonDic, anonDic);
+		Comparator<Triple> cmp1 = new TripleComparator(new MatchComparator(1, 1));
+		Comparator<Triple> cmp2 = new TripleComparator(new MatchComparator(2, 2));
+		
+		Collections.sort(g1, cmp1);
+		Collections.sort(g2, cmp2);
 		
 		while(g1.size() > 0 && g2.size() > 0) {
 			
-			Collections.sort(g1, cmp);
-			Collections.sort(g2, cmp);
-			
 			stripMatching(g1, g2);
 			
+			int mark = anonDic.size();
 			if (!matchBlanks(g1, g2)) {
 				break;
 			}
+			
+			reorder(g1, cmp1, 1, mark);
+			reorder(g2, cmp2, 2, mark);
 		}
 		
 		if (!g1.isEmpty()) {
@@ -209,8 +361,49 @@ public class DiffProcessor {
 		}
 	}
 	
+	/**
+	 * Restores order of sorted list after binding of nodes.
+	 * @param mark number of bound nodes before binding
+	 */
+	private void reorder(List<Triple> g, Comparator<Triple> cmp, int side, int mark) {
+		if (anonDic.size() == mark) {
+			return;
+		}
+		
+		List<Triple> kept = new ArrayList<Triple>(g.size());
+		List<Triple> moved = new ArrayList<Triple>();
+		for(Triple triple: g) {
+			if (anonDic.isBoundSince(triple.subject, side, mark) || anonDic.isBoundSince(triple.object, side, mark)) {
+				moved.add(triple);
+			}
+			else {
+				kept.add(triple);
+			}
+		}
+		if (moved.isEmpty()) {
+			return;
+		}
+		
+		Collections.sort(moved, cmp);
+		g.clear();
+		int n1 = 0;
+		int n2 = 0;
+		while(n1 < kept.size() || n2 < moved.size()) {
+			if (n2 == moved.size() || (n1 < kept.size() && cmp.compare(kept.get(n1), moved.get(n2)) <= 0)) {
+				g.add(kept.get(n1++));
+			}
+			else {
+				g.add(moved.get(n2++));
+			}
+		}
+	}
+	
+	/**
+	 * Lists should be in match order. For triples with all b-nodes bound match order is
+	 * same as order of bound nodes, so all matching defined triples are found.
+	 */
 	private void stripMatching(List<Triple> g1, List<Triple> g2) {
-		Comparator<Triple> cmp = new TripleComparator(anonDic, anonDic, anonDic);
+		Comparator<Triple> cmp = new TripleComparator(new MatchComparator(1, 2));
 
 		Set<Triple> matched1 = new HashSet<Triple>();
 		Set<Triple> matched2 = new HashSet<Triple>();
@@ -227,8 +420,8 @@ public class DiffProcessor {
 				++n1;
 				++n2;
 				
-				if (isDefined(t1)) {
-					if (!isDefined(t2)) {
+				if (isDefined(t1, 1)) {
+					if (!isDefined(t2, 2)) {
 						throw new RuntimeException("Something wrong, go to bug hunting!");
 					}
 					matched1.add(t1);
@@ -245,7 +438,7 @@ public class DiffProcessor {
 			}
 			else {
 				++n2;
-				if (!canBeMatchedFurther(t1, 1)){
+				if (!canBeMatchedFurther(t2, 2)){
 					matched2.add(t2);
 					reportDifferece(t2, 2);
 				}
@@ -272,44 +465,61 @@ public class DiffProcessor {
 		return false;
 	}
 	
+	/**
+	 * Binds all unambiguous triple pairs found in one pass.
+	 * If there are no such pairs, all triples without counterpart are reported as difference.
+	 * Lists should be in match order.
+	 */
 	private boolean tryMatchBlanks(List<Triple> g1, List<Triple> g2, boolean ambigousMatch) {
-		MatchComparator matchComparator = new MatchComparator();
-		TripleComparator tripleMatchComparator = new TripleComparator(matchComparator);
+		Comparator<Triple> cmp1 = new TripleComparator(new MatchComparator(1, 1));
+		Comparator<Triple> cmp2 = new TripleComparator(new MatchComparator(2, 2));
+		Comparator<Triple> cmp12 = new TripleComparator(new MatchComparator(1, 2));
 		
-		Collections.sort(g1, tripleMatchComparator);
-		Collections.sort(g2, tripleMatchComparator);
+		List<MatchCandidate> candidates = new ArrayList<MatchCandidate>();
+		List<Triple> unmatched1 = new ArrayList<Triple>();
+		List<Triple> unmatched2 = new ArrayList<Triple>();
 		
-		for(Pair<List<Triple>, List<Triple>> delta: Iterators.sortedDelta(g1, g2, tripleMatchComparator)) {
-			if (delta.a.size() == 1 && delta.b.size() == 1) {
-				Triple t1 = delta.a.get(0);
-				Triple t2 = delta.b.get(0);
-				
+		SortedDeltaCursor<Triple> delta = new SortedDeltaCursor<Triple>(cmp1, cmp2, cmp12);
+		delta.reset(g1, g2);
+		while(delta.next()) {
+			if (delta.size1() == 1 && delta.size2() == 1) {
 				// matching triples
-				bindTriples(t1, t2);
-				return true;
+				candidates.add(new MatchCandidate(g1.get(delta.from1()), g2.get(delta.from2())));
 			}
-			else if (ambigousMatch && !delta.a.isEmpty() && delta.b.isEmpty()) {
+			else if (ambigousMatch && delta.size1() > 0 && delta.size2() > 0) {
 				// try to match any thing
 				
-				Triple t1 = delta.a.get(0);
-				Triple t2 = delta.b.get(0);
+				Triple t1 = g1.get(delta.from1());
+				Triple t2 = g2.get(delta.from2());
 				
 				bindTriples(t1, t2);
 				return true;
 			}
-			
-			// removing unmatchable triples
-			if (delta.a.size() == 0) {
-				reportDifferece(delta.b, 2);
-				g2.removeAll(delta.b);
-				return true;
+			else if (delta.size1() == 0) {
+				unmatched2.addAll(g2.subList(delta.from2(), delta.to2()));
 			}
-
-			if (delta.b.size() == 0) {
-				reportDifferece(delta.a, 1);
-				g1.removeAll(delta.a);
-				return true;
+			else if (delta.size2() == 0) {
+				unmatched1.addAll(g1.subList(delta.from1(), delta.to1()));
+			}
+		}
+		
+		if (!candidates.isEmpty()) {
+			for(MatchCandidate candidate: candidates) {
+				// binding of previous pairs may have changed order, such pairs are left for next pass 
+				if (candidate.isValid()) {
+					bindTriples(candidate.t1, candidate.t2);
+				}
 			}
+			return true;
+		}
+		
+		// removing unmatchable triples
+		if (!unmatched1.isEmpty() || !unmatched2.isEmpty()) {
+			reportDifferece(unmatched1, 1);
+			reportDifferece(unmatched2, 2);
+			g1.removeAll(new HashSet<Triple>(unmatched1));
+			g2.removeAll(new HashSet<Triple>(unmatched2));
+			return true;
 		}
 		
 		return false;
@@ -349,11 +559,11 @@ public class DiffProcessor {
 	 * @return <code>true</code> if it is still possible to match this triple
 	 */
 	private boolean canBeMatchedFurther(Triple triple, int source) {
-		if (triple.subject.isAnon() && anonDic.isFree(triple.subject) 
+		if (triple.subject.isAnon() && anonDic.isFree(triple.subject, source) 
 				&& canBeMatchedFurther(triple.subject, source)) {
 			return true;
 		}
-		if (triple.object.isAnon() && anonDic.isFree(triple.object) 
+		if (triple.object.isAnon() && anonDic.isFree(triple.object, source) 
 				&& canBeMatchedFurther(triple.object, source)) {
 			return true;
 		}
@@ -367,6 +577,10 @@ public class DiffProcessor {
 		}
 		
 		IsoGroup is = (source == 1 ? isoPool1 : isoPool2).get(DiffHelper.getIsomorphicsGroupID(node));
+		if (is == null) {
+			// group has been already reported as difference
+			return false;
+		}
 		if (source == 1 && !is.sets2.isEmpty()) {
 			return true;
 		}
@@ -381,9 +595,9 @@ public class DiffProcessor {
 	/**
 	 * @return <code>true</code> if triple does not contain unidentified b-nodes 
 	 */
-	private boolean isDefined(Triple triple) {
-		return !(triple.subject.isAnon() && anonDic.isFree(triple.subject))
-		&& !(triple.object.isAnon() && anonDic.isFree(triple.object));
+	private boolean isDefined(Triple triple, int source) {
+		return !(triple.subject.isAnon() && anonDic.isFree(triple.subject, source))
+		&& !(triple.object.isAnon() && anonDic.isFree(triple.object, source));
 	}
 
 	private void reportMatch(Triple t1, Triple t2) {
@@ -423,27 +637,40 @@ public class DiffProcessor {
 		}
 	}
 
-	private List<IsoGroup> createGroups(Map<String, List<Triple>> g) {
+	private List<IsoGroup> createGroups(Map<String, List<Triple>> g, Map<String, List<IsoGroup>> shapeIndex) {
 		List<IsoGroup> groupList = new ArrayList<IsoGroup>();
 		
 		for(List<Triple> triples: g.values()) {
-			putToGroupList(groupList, triples, 1);
+			putToGroupList(groupList, shapeIndex, triples, 1);
 		}
 		
 		return groupList;
 	}
 	
-	private void mergeGroups(List<IsoGroup> groupList, Map<String, List<Triple>> g) {
+	private void mergeGroups(List<IsoGroup> groupList, Map<String, List<IsoGroup>> shapeIndex, Map<String, List<Triple>> g) {
 		for(List<Triple> triples: g.values()) {
-			putToGroupList(groupList, triples, 2);
+			putToGroupList(groupList, shapeIndex, triples, 2);
 		}
 	}
 
-	private void putToGroupList(List<IsoGroup> groupList, List<Triple> triples, int i) {
+	/**
+	 * Subgraphs are indexed by digest of their sorted form. Digest encoding is unambiguous
+	 * and b-nodes are numbered in order of appearance, so subgraphs with equal digests are almost always
+	 * isomorphic. Subgraph is still compared with group on digest match, so digest collision never
+	 * merges subgraphs which are not isomorphic. Usually there is single candidate, so comparison is linear.
+	 */
+	private void putToGroupList(List<IsoGroup> groupList, Map<String, List<IsoGroup>> shapeIndex, List<Triple> triples, int i) {
 		String groupId = DiffHelper.getIsomorphicsGroupID(triples.get(0).subject);
-		for(IsoGroup group: groupList) {
-			List<Triple> groupTriples = group.getGraph();
-			if (SortedTripleListComparator.INSTANCE.compare(groupTriples, triples) == 0) {				
+		String shapeKey = getShapeKey(triples);
+		
+		List<IsoGroup> candidates = shapeIndex.get(shapeKey);
+		if (candidates == null) {
+			candidates = new ArrayList<IsoGroup>(1);
+			shapeIndex.put(shapeKey, candidates);
+		}
+		
+		for(IsoGroup group: candidates) {
+			if (SortedTripleListComparator.INSTANCE.compare(group.getGraph(), triples) == 0) {
 				(i == 1 ? group.sets1 : group.sets2).put(groupId, triples);
 				return;
 			}
@@ -451,9 +678,45 @@ public class DiffProcessor {
 		
 		IsoGroup group = new IsoGroup(groupCounter++);
 		(i == 1 ? group.sets1 : group.sets2).put(groupId, triples);
+		candidates.add(group);
 		groupList.add(group);
 	}
 	
+	private String getShapeKey(List<Triple> triples) {
+		ObjectIntHashMap<Node> anonMap = new ObjectIntHashMap<Node>();
+		shapeDigest.reset();
+		for(Triple triple: triples) {
+			updateShapeDigest(anonMap, triple.subject);
+			updateShapeDigest(anonMap, triple.predicate);
+			updateShapeDigest(anonMap, triple.object);
+		}
+		return Encodings.bytesToHex(shapeDigest.digest());
+	}
+
+	private void updateShapeDigest(ObjectIntHashMap<Node> anonMap, Node node) {
+		shapeDigest.update((byte)node.nodeType.ordinal());
+		if (node.isAnon()) {
+			int id = anonMap.get(node);
+			if (id < 0) {
+				id = anonMap.size();
+				anonMap.put(node, id);
+			}
+			updateShapeDigest(id);
+		}
+		else {
+			byte[] text = node.getLexicalForm().getBytes(Encodings.UTF8);
+			updateShapeDigest(text.length);
+			shapeDigest.update(text);
+		}
+	}
+
+	private void updateShapeDigest(int n) {
+		shapeDigest.update((byte)(n >> 24));
+		shapeDigest.update((byte)(n >> 16));
+		shapeDigest.update((byte)(n >> 8));
+		shapeDigest.update((byte)n);
+	}
+	
 	private void addToPool(IsoGroup group) {
 		for(Map.Entry<String, List<Triple>> graph: group.sets1.entrySet()) {
 			isoPool1.put(graph.getKey(), group);
@@ -551,16 +814,59 @@ public class DiffProcessor {
 		}
 	}
 	
+	/**
+	 * Triple pair matched in current pass, remembers which b-nodes were free at the moment of matching
+	 */
+	private class MatchCandidate {
+		
+		final Triple t1;
+		final Triple t2;
+		
+		private final boolean subjectFree;
+		private final boolean objectFree;
+		
+		public MatchCandidate(Triple t1, Triple t2) {
+			this.t1 = t1;
+			this.t2 = t2;
+			this.subjectFree = t1.subject.isAnon() && anonDic.isFree1(t1.subject) && anonDic.isFree2(t2.subject);
+			this.objectFree = t1.object.isAnon() && anonDic.isFree1(t1.object) && anonDic.isFree2(t2.object);
+		}
+		
+		public boolean isValid() {
+			if (subjectFree && !(anonDic.isFree1(t1.subject) && anonDic.isFree2(t2.subject))) {
+				return false;
+			}
+			if (objectFree && !(anonDic.isFree1(t1.object) && anonDic.isFree2(t2.object))) {
+				return false;
+			}
+			return true;
+		}
+	}
+	
 	/**
 	 * compare b-nodes by topohash value 
 	 */
 	private class MatchComparator implements Comparator<Node> {
 		
+		private final int side1;
+		private final int side2;
+		private final Comparator<Node> anonComparator;
+		
+		/**
+		 * @param side1 stream of first argument
+		 * @param side2 stream of second argument
+		 */
+		public MatchComparator(int side1, int side2) {
+			this.side1 = side1;
+			this.side2 = side2;
+			this.anonComparator = anonDic.comparator(side1, side2);
+		}
+		
 		public int compare(Node o1, Node o2) {
 			
-			int result = anonDic.compare(o1, o2);
+			int result = anonComparator.compare(o1, o2);
 			
-			if (result == 0 && o1.isAnon() && anonDic.isFree(o1)) {
+			if (result == 0 && o1.isAnon() && anonDic.isFree(o1, side1)) {
 				return compareByHash(o1, o2);
 			}
 			
@@ -612,8 +918,8 @@ public class DiffProcessor {
 			String ig1 = DiffHelper.getIsomorphicsGroupID(o1);
 			String ig2 = DiffHelper.getIsomorphicsGroupID(o2);
 			
-			IsoGroup group1 = isoPool1.get(ig1);
-			IsoGroup group2 = isoPool2.get(ig2);
+			IsoGroup group1 = (side1 == 1 ? isoPool1 : isoPool2).get(ig1);
+			IsoGroup group2 = (side2 == 1 ? isoPool1 : isoPool2).get(ig2);
 			if (group1 == null || group2 == null) {
 				throw new IllegalArgumentException("Input format is incorrect! If node is unbinded it should have group!");
 			}
@@ -622,26 +928,18 @@ public class DiffProcessor {
 		}
 	}
 	
-	private static class AnonDic extends LexographicNodeComparator {
-		private final Map<Node, Integer> sortId1 = new HashMap<Node, Integer>();
-		private final Map<Node, Integer> sortId2 = new HashMap<Node, Integer>();
+	/**
+	 * Mapping between b-nodes of two streams. Nodes carry no stream identity,
+	 * so stream (1 or 2) of each node is always specified by caller.
+	 */
+	private static class AnonDic {
+		private final ObjectIntHashMap<Node> sortId1 = new ObjectIntHashMap<Node>();
+		private final ObjectIntHashMap<Node> sortId2 = new ObjectIntHashMap<Node>();
 		private final Map<Node, Node> map1to2 = new HashMap<Node, Node>();
 		private final Map<Node, Node> map2to1 = new HashMap<Node, Node>();
 		
-		private Object source1 = null;
-		private Object source2 = null;
-
-		public void setSources(Object source1, Object source2) {
-			this.source1 = source1;
-			this.source2 = source2;
-		}
-		
 		public void map(Node r1, Node r2) {
-			if (r1.scope != source1 || r2.scope != source2) {
-				throw new RuntimeException("Arguments missplaced!");
-			}
-			
-			Integer sortId = Integer.valueOf(map1to2.size());
+			int sortId = map1to2.size();
 			
 			if (map1to2.put(r1, r2) != null) {
 				throw new RuntimeException("Rebound " + r1);
@@ -655,58 +953,77 @@ public class DiffProcessor {
 			sortId2.put(r2, sortId);
 		}
 
-		public boolean isFree(Node r) {
-			return (source1 == r.scope && isFree1(r)) || (source2 == r.scope && isFree2(r));
+		public boolean isFree(Node r, int side) {
+			return side == 1 ? isFree1(r) : isFree2(r);
+		}
+		
+		/**
+		 * @return number of bound pairs
+		 */
+		public int size() {
+			return map1to2.size();
+		}
+		
+		/**
+		 * @return <code>true</code> if node has been bound after first <code>mark</code> pairs
+		 */
+		public boolean isBoundSince(Node r, int side, int mark) {
+			return r.isAnon() && getSortId(r, side) >= mark;
 		}
 
 		public boolean isFree1(Node r1) {
-			if (source1 != null && r1.scope != source1) {
-				throw new RuntimeException("Assertion failed!");
-			}
 			return !map1to2.containsKey(r1);
 		}
 
 		public boolean isFree2(Node r2) {
-			if (source2 != null && r2.scope != source2) {
-				throw new RuntimeException("Assertion failed!");
-			}
 			return !map2to1.containsKey(r2);
 		}
 		
 		public boolean areMatching(Node r1, Node r2) {
-			if (source1 != null && (r1.scope != source1 || r2.scope != source2)) {
-				throw new RuntimeException("Assertion failed!");
-			}
-
 			return r2.equals(map1to2.get(r1));
 		}
 		
-		private Integer getSortId(Node node) {
-			if (source1 == node.scope) {
-				return sortId1.get(node);
-			}
-			else if (source2 == node.scope) {
-				return sortId2.get(node);
-			}
-
-			return null; 
+		/**
+		 * @return sort ID or -1 for free node
+		 */
+		private int getSortId(Node node, int side) {
+			return side == 1 ? sortId1.get(node) : sortId2.get(node);
 		}
 
-		@Override
-		protected int compareAnon(Node o1, Node o2) {
-			Integer i1 = o1.isAnon() ? getSortId((Node) o1) : null;
-			Integer i2 = o2.isAnon() ? getSortId((Node) o2) : null;
-
-			// all unmatched nodes treated as equals and greater than any defined
-			if (i1 == null) {
-				i1 = Integer.valueOf(map1to2.size() + 1000); 
-			}
+		/**
+		 * @param side1 stream of first argument
+		 * @param side2 stream of second argument
+		 */
+		public Comparator<Node> comparator(int side1, int side2) {
+			return new SideComparator(side1, side2);
+		}
+		
+		private class SideComparator extends LexographicNodeComparator {
 			
-			if (i2 == null) {
-				i2 = Integer.valueOf(map1to2.size() + 1000);
-			}
+			private final int side1;
+			private final int side2;
 			
-			return i1.compareTo(i2);
+			public SideComparator(int side1, int side2) {
+				this.side1 = side1;
+				this.side2 = side2;
+			}
+
+			@Override
+			protected int compareAnon(Node o1, Node o2) {
+				int i1 = o1.isAnon() ? getSortId(o1, side1) : -1;
+				int i2 = o2.isAnon() ? getSortId(o2, side2) : -1;
+	
+				// all unmatched nodes treated as equals and greater than any defined
+				if (i1 < 0) {
+					i1 = map1to2.size() + 1000; 
+				}
+				
+				if (i2 < 0) {
+					i2 = map1to2.size() + 1000;
+				}
+				
+				return i1 < i2 ? -1 : i1 > i2 ? 1 : 0;
+			}
 		}
 	}
 }
@@ -0,0 +1,158 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Whole stream summary of sorted triple stream: counts, digest of stream and fingerprint of sort algorithm.
+ * <br/>
+ * Equal summaries mean identical sorted streams, so diff of such streams could be skipped.
+ * 
+ * @see GraphSummaryWriter
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class GraphSummary {
+
+	public final long tripleCount;
+	public final long subjectCount;
+	public final long clusterCount;
+	public final String digest;
+	/** may be <code>null</code> if unknown */
+	public final String fingerprint;
+	
+	public GraphSummary(long tripleCount, long subjectCount, long clusterCount, String digest, String fingerprint) {
+		this.tripleCount = tripleCount;
+		this.subjectCount = subjectCount;
+		this.clusterCount = clusterCount;
+		this.digest = digest;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Streams sorted differently (e.g. using different cut predicates) could not be compared. 
+	 * Fingerprints are compared only if known for both streams.
+	 */
+	public boolean isComparable(GraphSummary other) {
+		return fingerprint == null || other.fingerprint == null || fingerprint.equals(other.fingerprint);
+	}
+	
+	/**
+	 * Streams with matching summaries are identical. Fingerprints are compared only if known for both streams. 
+	 */
+	public boolean matches(GraphSummary other) {
+		if (other == null) {
+			return false;
+		}
+		if (!isComparable(other)) {
+			return false;
+		}
+		return tripleCount == other.tripleCount 
+				&& subjectCount == other.subjectCount 
+				&& clusterCount == other.clusterCount 
+				&& digest.equals(other.digest);
+	}
+	
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(tripleCount);
+		out.writeLong(subjectCount);
+		out.writeLong(clusterCount);
+		out.writeUTF(digest);
+		out.writeBoolean(fingerprint != null);
+		if (fingerprint != null) {
+			byte[] fp = fingerprint.getBytes(Encodings.UTF8);
+			out.writeInt(fp.length);
+			out.write(fp);
+		}
+	}
+
+	public static GraphSummary read(DataInput in) throws IOException {
+		long tripleCount = in.readLong();
+		long subjectCount = in.readLong();
+		long clusterCount = in.readLong();
+		String digest = in.readUTF();
+		String fingerprint = null;
+		if (in.readBoolean()) {
+			byte[] fp = new byte[in.readInt()];
+			in.readFully(fp);
+			fingerprint = new String(fp, Encodings.UTF8);
+		}
+		return new GraphSummary(tripleCount, subjectCount, clusterCount, digest, fingerprint);
+	}
+	
+	@Override
+	public String toString() {
+		return "triples=" + tripleCount + " subjects=" + subjectCount + " clusters=" + clusterCount + " digest=" + digest;
+	}
+
+	/**
+	 * Calculates summary of sorted stream triple by triple.
+	 * <br/>
+	 * Clusters are counted by changes of b-cluster label in cluster section of stream, where triples of a cluster 
+	 * are contiguous, so no per cluster state is kept. Cluster section ends with named subject or with lesser
+	 * b-node subject (start of third kind section), same way as {@link DiffProcessor} detects it, 
+	 * so stream without named subjects is counted correctly.
+	 */
+	public static class Builder {
+		
+		private final MessageDigest md = MessageDigesters.createSHA1();
+		
+		private long tripleCount;
+		private long subjectCount;
+		private long clusterCount;
+		private boolean clusterSectionDone;
+		private Node lastSubject;
+		private String lastGroup;
+		
+		public void add(Triple triple) {
+			if (lastSubject == null || !lastSubject.equals(triple.subject)) {
+				++subjectCount;
+				if (!triple.subject.isAnon() || (lastSubject != null && LexographicNodeComparator.INSTANCE.compare(lastSubject, triple.subject) > 0)) {
+					clusterSectionDone = true;
+				}
+				else if (!clusterSectionDone) {
+					String group = DiffHelper.getIsomorphicsGroupID(triple.subject);
+					if (group != null && !group.equals(lastGroup)) {
+						++clusterCount;
+						lastGroup = group;
+					}
+				}
+				lastSubject = triple.subject;
+			}
+			update(triple.subject);
+			update(triple.predicate);
+			update(triple.object);
+			++tripleCount;
+		}
+		
+		public GraphSummary build(String fingerprint) {
+			return new GraphSummary(tripleCount, subjectCount, clusterCount, Encodings.bytesToHex(md.digest()), fingerprint);
+		}
+
+		private void update(Node node) {
+			md.update((byte)node.nodeType.ordinal());
+			md.update(node.getLexicalForm().getBytes(Encodings.UTF8));
+			md.update((byte)0);
+		}
+	}
+}
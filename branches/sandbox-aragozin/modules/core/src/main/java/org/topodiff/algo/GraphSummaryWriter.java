@@ -0,0 +1,67 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.TripleReceiver;
+
+/**
+ * Decorator for sorted triple output, calculates {@link GraphSummary} while passing triples to delegate.
+ * Summary is available after {@link #done()}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class GraphSummaryWriter implements SortedTripleReceiver {
+
+	private final TripleReceiver delegate;
+	private String fingerprint;
+	private final GraphSummary.Builder builder = new GraphSummary.Builder();
+	private GraphSummary summary;
+	
+	/**
+	 * @param fingerprint fingerprint of sort algorithm, may be <code>null</code>
+	 */
+	public GraphSummaryWriter(TripleReceiver delegate, String fingerprint) {
+		this.delegate = delegate;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Replaces fingerprint passed to constructor, it is passed to delegate as well. 
+	 */
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+		if (delegate instanceof SortedTripleReceiver) {
+			((SortedTripleReceiver)delegate).setFingerprint(fingerprint);
+		}
+	}
+
+	public void receive(Triple triple) {
+		builder.add(triple);
+		delegate.receive(triple);
+	}
+
+	public void done() {
+		summary = builder.build(fingerprint);
+		delegate.done();
+	}
+
+	public GraphSummary getSummary() {
+		if (summary == null) {
+			throw new IllegalStateException("Stream is not complete");
+		}
+		return summary;
+	}
+}
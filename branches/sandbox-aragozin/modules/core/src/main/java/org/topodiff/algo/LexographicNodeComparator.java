@@ -65,21 +65,31 @@ public class LexographicNodeComparator implements Comparator<Node> {
 	}
 
 	protected int compareLiteral(Node o1, Node o2) {
-		String l1 = o1.getLexicalForm();
-		String l2 = o2.getLexicalForm();
-		return l1.compareTo(l2);
+		return compareLexicalForms(o1, o2);
 	}
 
 	protected int compareUri(Node o1, Node o2) {
-		String u1 = o1.getLexicalForm();
-		String u2 = o2.getLexicalForm();
-		return u1.compareTo(u2);
+		return compareLexicalForms(o1, o2);
 	}
 
 	protected int compareAnon(Node o1, Node o2) {
-		String i1 = o1.getLexicalForm();
-		String i2 = o2.getLexicalForm();
-		return i1.compareTo(i2);
+		return compareLexicalForms(o1, o2);
+	}
+	
+	/**
+	 * Compares lexical forms using dictionary IDs or prefix keys if possible.
+	 */
+	static int compareLexicalForms(Node o1, Node o2) {
+		int res = DictionaryNode.compareIds(o1, o2);
+		if (res != Integer.MIN_VALUE) {
+			return res;
+		}
+		long k1 = o1.getPrefixKey();
+		long k2 = o2.getPrefixKey();
+		if (k1 != k2) {
+			return k1 < k2 ? -1 : 1;
+		}
+		return o1.getLexicalForm().compareTo(o2.getLexicalForm());
 	}
 	
 	protected int getNodeClass(Node n) {
@@ -12,9 +12,8 @@ See the License for the specific language governing permissions and
 limitations under the License.
 */
 package org.topodiff.algo;
-import java.util.Map;
-
 import org.topodiff.graph.Node;
+import org.topodiff.util.ObjectIntHashMap;
 
 /**
  * Blank nodes a sorted according to their ID, if ID is not defined, Integer.MAX_VALUE is used (to push such nodes to the bottom of list). 
@@ -22,25 +21,28 @@ import org.topodiff.graph.Node;
  */
 class MappedComparator extends LexographicNodeComparator {
 
-	private final Map<Node, Integer> anonMapping1;
-	private final Map<Node, Integer> anonMapping2;
+	private final ObjectIntHashMap<Node> anonMapping1;
+	private final ObjectIntHashMap<Node> anonMapping2;
 	
-	public MappedComparator(Map<Node, Integer> anonMapping) {
+	/**
+	 * Mappings should return negative value for missing nodes.
+	 */
+	public MappedComparator(ObjectIntHashMap<Node> anonMapping) {
 		this.anonMapping1 = anonMapping;
 		this.anonMapping2 = anonMapping;
 	}
 
-	public MappedComparator(Map<Node, Integer> anonMapping1, Map<Node, Integer> anonMapping2) {
+	public MappedComparator(ObjectIntHashMap<Node> anonMapping1, ObjectIntHashMap<Node> anonMapping2) {
 		this.anonMapping1 = anonMapping1;
 		this.anonMapping2 = anonMapping2;
 	}
 
 	@Override
 	protected int compareAnon(Node o1, Node o2) {
-		Integer id1 = anonMapping1.get(o1);
-		Integer id2 = anonMapping2.get(o2);
-		int int1 = id1 == null ? Integer.MAX_VALUE : id1.intValue();
-		int int2 = id2 == null ? Integer.MAX_VALUE : id2.intValue();
+		int id1 = anonMapping1.get(o1);
+		int id2 = anonMapping2.get(o2);
+		int int1 = id1 < 0 ? Integer.MAX_VALUE : id1;
+		int int2 = id2 < 0 ? Integer.MAX_VALUE : id2;
 		// sure, (int1 - int2) will mostly work, but this way below will protect me fromg arithmetic overflow
 		return int1 > int2 ? 1 : int1 < int2 ? -1 : 0 ; 
 	}
@@ -0,0 +1,68 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.List;
+
+import org.topodiff.graph.Node;
+import org.topodiff.util.ObjectIntHashMap;
+
+/**
+ * Heap based {@link NodeDictionary}, interned nodes are shared.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MemoryNodeDictionary extends NodeDictionary {
+
+	private final DictionaryNode[] nodes;
+	private final ObjectIntHashMap<Node> index;
+
+	/**
+	 * @param sortedNodes unique nodes sorted by {@link LexographicNodeComparator}, 
+	 * unbound nodes created by {@link NodeDictionaryBuilder#intern(Node)} are bound to this dictionary
+	 */
+	public MemoryNodeDictionary(List<Node> sortedNodes) {
+		nodes = new DictionaryNode[sortedNodes.size()];
+		index = new ObjectIntHashMap<Node>(nodes.length, -1);
+		for(int i = 0; i != nodes.length; ++i) {
+			Node node = sortedNodes.get(i);
+			if (i > 0 && LexographicNodeComparator.INSTANCE.compare(sortedNodes.get(i - 1), node) >= 0) {
+				throw new IllegalArgumentException("Nodes are not sorted or not unique: " + sortedNodes.get(i - 1) + ", " + node);
+			}
+			if (node instanceof DictionaryNode && ((DictionaryNode)node).getDictionary() == null) {
+				nodes[i] = (DictionaryNode)node;
+				nodes[i].bind(this, i);
+			}
+			else {
+				nodes[i] = new DictionaryNode(node, this, i);
+			}
+			index.put(nodes[i], i);
+		}
+	}
+
+	@Override
+	public int size() {
+		return nodes.length;
+	}
+
+	@Override
+	public int getId(Node node) {
+		return index.get(node);
+	}
+
+	@Override
+	public DictionaryNode getNode(int id) {
+		return nodes[id];
+	}
+}
@@ -0,0 +1,274 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.topodiff.algo.MerkleSummary.Block;
+import org.topodiff.algo.MerkleSummary.Range;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.io.SeekableTripleSource;
+import org.topodiff.util.MultiMapHelper;
+
+/**
+ * Calculates delta between 2 sorted streams using their {@link MerkleSummary}.
+ * <br/>
+ * Range hashes are compared top down, range of one stream is skipped without reading if range with same hash
+ * is found in other stream. Only differing blocks are read from sources and passed to {@link DiffProcessor}.
+ * Identical content is always skipped in both streams, so clusters omitted from one stream are omitted
+ * from other stream too and references to them are matched by label.
+ * <br/>
+ * Unlike {@link DiffProcessor}, retained triples of skipped blocks are not reported to handler.
+ * Disposable.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MerkleDiffProcessor {
+
+	private final MerkleSummary summary1;
+	private final MerkleSummary summary2;
+	private final SeekableTripleSource source1;
+	private final SeekableTripleSource source2;
+	private final ModelDeltaReceiver handler;
+
+	private final BitSet diff1 = new BitSet();
+	private final BitSet diff2 = new BitSet();
+	
+	/** pairs of skipped ranges, first stream range followed by its counterpart */
+	private final List<Range> skipped = new ArrayList<Range>();
+	
+	private long readTriples;
+	
+	public MerkleDiffProcessor(MerkleSummary summary1, SeekableTripleSource source1, MerkleSummary summary2, SeekableTripleSource source2, ModelDeltaReceiver handler) {
+		this.summary1 = summary1;
+		this.summary2 = summary2;
+		this.source1 = source1;
+		this.source2 = source2;
+		this.handler = handler;
+	}
+
+	public void process() {
+		compareTree();
+		addSectionSeparators();
+		
+		DiffProcessor processor = new DiffProcessor(new BlockIterator(summary1, source1, diff1), new BlockIterator(summary2, source2, diff2), handler);
+		processor.assumeOmittedClustersIdentical();
+		processor.process();
+	}
+	
+	/**
+	 * @return number of triples (in both streams) which were read from sources
+	 */
+	public long getReadTripleCount() {
+		return readTriples;
+	}
+
+	/**
+	 * @return number of triples (in both streams) skipped as identical
+	 */
+	public long getSkippedTripleCount() {
+		return summary1.getTripleCount() + summary2.getTripleCount() - readTriples;
+	}
+
+	private void compareTree() {
+		int level = Math.min(summary1.getLevelCount(), summary2.getLevelCount());
+		List<Range> c1 = level == 0 ? blockRanges(summary1) : summary1.getLevel(level);
+		List<Range> c2 = level == 0 ? blockRanges(summary2) : summary2.getLevel(level);
+		
+		while(true) {
+			List<Range> next1 = new ArrayList<Range>();
+			List<Range> next2 = new ArrayList<Range>();
+
+			Map<Long, List<Range>> candidates = new HashMap<Long, List<Range>>();
+			for(Range r2: c2) {
+				if (r2.skippable) {
+					MultiMapHelper.addToList(candidates, r2.hash, r2);
+				}
+				else {
+					expand(summary2, r2, level, next2, diff2);
+				}
+			}
+			for(Range r1: c1) {
+				Range r2 = r1.skippable ? pickCounterpart(r1, candidates.get(r1.hash)) : null;
+				if (r2 != null) {
+					// identical range
+					skipped.add(r1);
+					skipped.add(r2);
+				}
+				else {
+					expand(summary1, r1, level, next1, diff1);
+				}
+			}
+			for(List<Range> unmatched: candidates.values()) {
+				for(Range r2: unmatched) {
+					expand(summary2, r2, level, next2, diff2);
+				}
+			}
+			
+			if (level == 0) {
+				break;
+			}
+			--level;
+			c1 = next1;
+			c2 = next2;
+		}
+	}
+
+	private Range pickCounterpart(Range r1, List<Range> list) {
+		if (list != null) {
+			int section = summary1.getBlock(r1.fromBlock).section;
+			for(int i = 0; i != list.size(); ++i) {
+				Range r2 = list.get(i);
+				if (summary2.getBlock(r2.fromBlock).section == section) {
+					list.remove(i);
+					return r2;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void expand(MerkleSummary summary, Range range, int level, List<Range> next, BitSet diff) {
+		if (level == 0) {
+			diff.set(range.fromBlock);
+		}
+		else if (level == 1) {
+			for(int i = range.fromBlock; i != range.toBlock; ++i) {
+				next.add(blockRange(summary, i));
+			}
+		}
+		else {
+			next.addAll(summary.getChildren(range, level - 1));
+		}
+	}
+
+	/**
+	 * {@link DiffProcessor} detects end of cluster section by named subject or lesser b-node subject following it, 
+	 * end of named section is detected by b-node subject.
+	 * If third kind blocks are read, last cluster block and first block after it are read in both streams
+	 * to keep cluster and third kind sections apart.
+	 */
+	private void addSectionSeparators() {
+		if (hasSection(summary1, diff1, MerkleSummary.SECTION_THIRD_KIND) || hasSection(summary2, diff2, MerkleSummary.SECTION_THIRD_KIND)) {
+			addSeparator(summary1, diff1, true);
+			addSeparator(summary2, diff2, false);
+		}
+	}
+
+	private void addSeparator(MerkleSummary summary, BitSet diff, boolean first) {
+		for(int i = 0; i != summary.getBlockCount(); ++i) {
+			if (summary.getBlock(i).section != MerkleSummary.SECTION_BLANKS) {
+				if (i > 0) {
+					read(i - 1, diff, first);
+				}
+				read(i, diff, first);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Marks block to be read. If block belongs to skipped range, its counterpart in other stream is read too.
+	 */
+	private void read(int block, BitSet diff, boolean first) {
+		if (diff.get(block)) {
+			return;
+		}
+		diff.set(block);
+		for(int i = 0; i < skipped.size(); i += 2) {
+			Range range = skipped.get(first ? i : i + 1);
+			if (range.fromBlock <= block && block < range.toBlock) {
+				// identical ranges consist of identical blocks
+				Range counterpart = skipped.get(first ? i + 1 : i);
+				(first ? diff2 : diff1).set(counterpart.fromBlock + block - range.fromBlock);
+				break;
+			}
+		}
+	}
+
+	private boolean hasSection(MerkleSummary summary, BitSet diff, int section) {
+		for(int i = diff.nextSetBit(0); i >= 0; i = diff.nextSetBit(i + 1)) {
+			if (summary.getBlock(i).section == section) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static List<Range> blockRanges(MerkleSummary summary) {
+		List<Range> ranges = new ArrayList<Range>(summary.getBlockCount());
+		for(int i = 0; i != summary.getBlockCount(); ++i) {
+			ranges.add(blockRange(summary, i));
+		}
+		return ranges;
+	}
+	
+	private static Range blockRange(MerkleSummary summary, int n) {
+		Block block = summary.getBlock(n);
+		return new Range(n, n + 1, block.hash, block.skippable);
+	}
+
+	/**
+	 * Reads selected blocks, adjacent blocks are read as single range.
+	 */
+	private class BlockIterator implements Iterator<Triple> {
+		
+		private final MerkleSummary summary;
+		private final SeekableTripleSource source;
+		private final BitSet blocks;
+		
+		private int nextBlock;
+		private Iterator<Triple> current;
+		
+		public BlockIterator(MerkleSummary summary, SeekableTripleSource source, BitSet blocks) {
+			this.summary = summary;
+			this.source = source;
+			this.blocks = blocks;
+			this.nextBlock = blocks.nextSetBit(0);
+		}
+
+		public boolean hasNext() {
+			while(current == null || !current.hasNext()) {
+				if (nextBlock < 0) {
+					return false;
+				}
+				int last = blocks.nextClearBit(nextBlock) - 1;
+				long from = summary.getBlock(nextBlock).firstTriple;
+				Block lastBlock = summary.getBlock(last);
+				long to = lastBlock.firstTriple + lastBlock.tripleCount;
+				current = source.read(from, to);
+				nextBlock = blocks.nextSetBit(last + 1);
+			}
+			return true;
+		}
+
+		public Triple next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			++readTriples;
+			return current.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hash tree over sorted triple stream.
+ * <br/>
+ * Bottom level of tree are blocks, runs of subject blocks (consecutive triples with same subject) cut by
+ * subject hash (content defined chunking), so insertion or removal of a subject affects only blocks around it.
+ * B-node cluster is never split between blocks. Summary keeps only boundaries and hashes of blocks, subjects
+ * are read from sorted stream if block has to be compared.
+ * <br/>
+ * Each upper level groups ranges of blocks, boundaries of ranges are chosen by block hash. Boundaries of
+ * level N are always boundaries of level N - 1 too, so each range is a union of ranges of previous level.
+ * <br/>
+ * Stream is divided into sections (b-node clusters, named subjects, b-nodes with third kind triples),
+ * blocks and ranges never cross section boundary.
+ * 
+ * @see MerkleSummaryWriter
+ * @see MerkleDiffProcessor
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MerkleSummary {
+
+	public static final int SECTION_BLANKS = 0;
+	public static final int SECTION_NAMED = 1;
+	public static final int SECTION_THIRD_KIND = 2;
+	
+	private static final int MAGIC = 0x54444D4B; // TDMK
+	private static final int VERSION = 2;
+	
+	static final int FANOUT_BITS = 4;
+	private static final int MAX_LEVELS = 12;
+
+	private final List<Block> blocks;
+	private final List<List<Range>> levels;
+
+	MerkleSummary(List<Block> blocks, List<List<Range>> levels) {
+		this.blocks = blocks;
+		this.levels = levels;
+	}
+
+	/**
+	 * Builds range levels on top of blocks.
+	 */
+	static MerkleSummary build(List<Block> blocks, MessageDigest digest) {
+		List<List<Range>> levels = new ArrayList<List<Range>>();
+		int bits = FANOUT_BITS;
+		int prevSize = blocks.size();
+		while(levels.size() < MAX_LEVELS && prevSize > 1) {
+			long mask = (1l << bits) - 1;
+			List<Range> ranges = new ArrayList<Range>();
+			int from = 0;
+			for(int i = 0; i != blocks.size(); ++i) {
+				Block block = blocks.get(i);
+				boolean last = i + 1 == blocks.size() || blocks.get(i + 1).section != block.section;
+				if (last || (block.hash & mask) == 0) {
+					ranges.add(createRange(blocks, from, i + 1, digest));
+					from = i + 1;
+				}
+			}
+			
+			if (ranges.size() == prevSize) {
+				// no more aggregation possible
+				break;
+			}
+			levels.add(ranges);
+			prevSize = ranges.size();
+			bits += FANOUT_BITS;
+		}
+		return new MerkleSummary(blocks, levels);
+	}
+
+	private static Range createRange(List<Block> blocks, int from, int to, MessageDigest digest) {
+		digest.reset();
+		boolean skippable = true;
+		for(int i = from; i != to; ++i) {
+			Block block = blocks.get(i);
+			update(digest, block.hash);
+			skippable &= block.skippable;
+		}
+		long hash = toLong(digest.digest());
+		return new Range(from, to, hash, skippable);
+	}
+
+	static void update(MessageDigest digest, long hash) {
+		for(int j = 0; j != 8; ++j) {
+			digest.update((byte)(hash >> (8 * j)));
+		}
+	}
+
+	static long toLong(byte[] digest) {
+		long hash = 0;
+		for(int i = 0; i != 8; ++i) {
+			hash = (hash << 8) | (digest[i] & 0xFF);
+		}
+		return hash;
+	}
+	
+	public int getBlockCount() {
+		return blocks.size();
+	}
+	
+	public Block getBlock(int n) {
+		return blocks.get(n);
+	}
+
+	/**
+	 * @return number of range levels above blocks
+	 */
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	/**
+	 * @param level range level, 1 based (level 0 are blocks)
+	 */
+	public List<Range> getLevel(int level) {
+		return Collections.unmodifiableList(levels.get(level - 1));
+	}
+	
+	public long getTripleCount() {
+		if (blocks.isEmpty()) {
+			return 0;
+		}
+		else {
+			Block last = blocks.get(blocks.size() - 1);
+			return last.firstTriple + last.tripleCount;
+		}
+	}
+	
+	/**
+	 * @return ranges of level covering exactly blocks of given range
+	 */
+	List<Range> getChildren(Range range, int level) {
+		List<Range> ranges = levels.get(level - 1);
+		int lo = 0;
+		int hi = ranges.size();
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ranges.get(mid).fromBlock < range.fromBlock) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		int n = lo;
+		while(n < ranges.size() && ranges.get(n).toBlock <= range.toBlock) {
+			++n;
+		}
+		if (lo == ranges.size() || ranges.get(lo).fromBlock != range.fromBlock || ranges.get(n - 1).toBlock != range.toBlock) {
+			throw new IllegalStateException("Range levels are not nested");
+		}
+		return ranges.subList(lo, n);
+	}
+	
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(blocks.size());
+		for(Block block: blocks) {
+			dos.writeByte(block.section);
+			dos.writeLong(block.hash);
+			dos.writeLong(block.firstTriple);
+			dos.writeInt(block.tripleCount);
+			dos.writeBoolean(block.skippable);
+		}
+		dos.writeInt(levels.size());
+		for(List<Range> level: levels) {
+			dos.writeInt(level.size());
+			for(Range range: level) {
+				dos.writeInt(range.fromBlock);
+				dos.writeInt(range.toBlock);
+				dos.writeLong(range.hash);
+				dos.writeBoolean(range.skippable);
+			}
+		}
+		dos.flush();
+	}
+	
+	public static MerkleSummary read(InputStream is) throws IOException {
+		DataInputStream dis = new DataInputStream(is);
+		if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+			throw new IOException("Unknown summary format");
+		}
+		int blockCount = dis.readInt();
+		List<Block> blocks = new ArrayList<Block>(blockCount);
+		for(int i = 0; i != blockCount; ++i) {
+			int section = dis.readByte();
+			long hash = dis.readLong();
+			long firstTriple = dis.readLong();
+			int tripleCount = dis.readInt();
+			boolean skippable = dis.readBoolean();
+			blocks.add(new Block(section, hash, firstTriple, tripleCount, skippable));
+		}
+		int levelCount = dis.readInt();
+		List<List<Range>> levels = new ArrayList<List<Range>>(levelCount);
+		for(int i = 0; i != levelCount; ++i) {
+			int rangeCount = dis.readInt();
+			List<Range> level = new ArrayList<Range>(rangeCount);
+			for(int j = 0; j != rangeCount; ++j) {
+				int from = dis.readInt();
+				int to = dis.readInt();
+				long hash = dis.readLong();
+				boolean skippable = dis.readBoolean();
+				level.add(new Range(from, to, hash, skippable));
+			}
+			levels.add(level);
+		}
+		return new MerkleSummary(blocks, levels);
+	}
+
+	/**
+	 * Run of subject blocks, hash is calculated over hashes of its subject blocks.
+	 */
+	public static class Block {
+		
+		public final int section;
+		public final long hash;
+		public final long firstTriple;
+		public final int tripleCount;
+		/** 
+		 * <code>false</code> if block refers b-nodes which labels are not stable between streams
+		 * (e.g. dangling nodes or clusters having isomorphic copies) 
+		 */
+		public final boolean skippable;
+		
+		public Block(int section, long hash, long firstTriple, int tripleCount, boolean skippable) {
+			this.section = section;
+			this.hash = hash;
+			this.firstTriple = firstTriple;
+			this.tripleCount = tripleCount;
+			this.skippable = skippable;
+		}
+		
+		@Override
+		public String toString() {
+			return section + ":[" + firstTriple + "+" + tripleCount + "]";
+		}
+	}
+	
+	/**
+	 * Range of blocks [fromBlock, toBlock).
+	 */
+	public static class Range {
+		
+		public final int fromBlock;
+		public final int toBlock;
+		public final long hash;
+		public final boolean skippable;
+
+		public Range(int fromBlock, int toBlock, long hash, boolean skippable) {
+			this.fromBlock = fromBlock;
+			this.toBlock = toBlock;
+			this.hash = hash;
+			this.skippable = skippable;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + fromBlock + ", " + toBlock + ")";
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.topodiff.algo.MerkleSummary.Block;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Decorator for sorted triple output, calculates {@link MerkleSummary} while passing triples to delegate.
+ * Summary is available after {@link #done()}.
+ * <br/>
+ * Sections are detected the same way {@link DiffProcessor} does, third kind section starts with b-node
+ * subject following named subject or lesser b-node subject.
+ * <br/>
+ * Labels of clusters with isomorphic copies are assigned in order of discovery, so blocks of such clusters
+ * and blocks referring them are not skippable. Hashes of such clusters are kept in memory while stream is written.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MerkleSummaryWriter implements TripleReceiver {
+
+	private final TripleReceiver delegate;
+	private final MessageDigest subjectDigest = MessageDigesters.createSHA1();
+	private final MessageDigest blockDigest = MessageDigesters.createSHA1();
+	
+	private final List<Block> blocks = new ArrayList<Block>();
+	private final Set<String> copiedClusters = new HashSet<String>();
+	private MerkleSummary summary;
+
+	private long tripleCount = 0;
+	private int section = MerkleSummary.SECTION_BLANKS;
+	
+	private Node subject;
+	private boolean cutPending;
+	
+	private boolean blockOpen;
+	private int blockSection;
+	private long blockStart;
+	private boolean blockSkippable;
+
+	private String clusterHash;
+	private int clusterHashFirstBlock;
+	
+	public MerkleSummaryWriter(TripleReceiver delegate) {
+		this.delegate = delegate;
+	}
+	
+	public void receive(Triple triple) {
+		if (subject == null || !subject.equals(triple.subject)) {
+			closeSubject();
+			openSubject(triple.subject);
+		}
+		
+		update(triple.subject);
+		update(triple.predicate);
+		update(triple.object);
+		blockSkippable &= isStable(triple.subject) && isStable(triple.object);
+		++tripleCount;
+		
+		delegate.receive(triple);
+	}
+
+	public void done() {
+		closeSubject();
+		closeBlock();
+		summary = MerkleSummary.build(blocks, blockDigest);
+		delegate.done();
+	}
+	
+	public MerkleSummary getSummary() {
+		if (summary == null) {
+			throw new IllegalStateException("Stream is not complete");
+		}
+		return summary;
+	}
+
+	private void openSubject(Node next) {
+		if (!next.isAnon()) {
+			section = MerkleSummary.SECTION_NAMED;
+		}
+		else if (section == MerkleSummary.SECTION_NAMED) {
+			section = MerkleSummary.SECTION_THIRD_KIND;
+		}
+		else if (section == MerkleSummary.SECTION_BLANKS && subject != null && LexographicNodeComparator.INSTANCE.compare(subject, next) > 0) {
+			section = MerkleSummary.SECTION_THIRD_KIND;
+		}
+
+		if (blockOpen && (blockSection != section || (cutPending && !isSameCluster(subject, next)))) {
+			closeBlock();
+		}
+		if (!blockOpen) {
+			blockOpen = true;
+			blockSection = section;
+			blockStart = tripleCount;
+			blockSkippable = true;
+			blockDigest.reset();
+		}
+		if (section == MerkleSummary.SECTION_BLANKS) {
+			trackCopies(next);
+		}
+		
+		subject = next;
+		subjectDigest.reset();
+	}
+
+	private void closeSubject() {
+		if (subject == null) {
+			return;
+		}
+		MerkleSummary.update(blockDigest, MerkleSummary.toLong(subjectDigest.digest()));
+		cutPending = (boundaryHash(subject) & ((1l << MerkleSummary.FANOUT_BITS) - 1)) == 0;
+	}
+
+	private void closeBlock() {
+		if (!blockOpen) {
+			return;
+		}
+		long hash = MerkleSummary.toLong(blockDigest.digest());
+		blocks.add(new Block(blockSection, hash, blockStart, (int)(tripleCount - blockStart), blockSkippable));
+		blockOpen = false;
+		cutPending = false;
+	}
+
+	/**
+	 * Copies of cluster are adjacent in cluster section, once second copy is seen, 
+	 * blocks holding previous copies are marked not skippable.
+	 */
+	private void trackCopies(Node next) {
+		String hash = DiffHelper.getIsomorphicsHash(next);
+		if (hash == null) {
+			return;
+		}
+		if (!hash.equals(clusterHash)) {
+			clusterHash = hash;
+			clusterHashFirstBlock = blocks.size();
+		}
+		else if (!copiedClusters.contains(hash) && !DiffHelper.getIsomorphicsGroupID(subject).equals(DiffHelper.getIsomorphicsGroupID(next))) {
+			copiedClusters.add(hash);
+			for(int i = clusterHashFirstBlock; i < blocks.size(); ++i) {
+				Block block = blocks.get(i);
+				blocks.set(i, new Block(block.section, block.hash, block.firstTriple, block.tripleCount, false));
+			}
+			blockSkippable = false;
+		}
+	}
+
+	private boolean isSameCluster(Node prev, Node next) {
+		if (section != MerkleSummary.SECTION_BLANKS) {
+			return false;
+		}
+		String group = DiffHelper.getIsomorphicsGroupID(next);
+		return group != null && group.equals(DiffHelper.getIsomorphicsGroupID(prev));
+	}
+	
+	private void update(Node node) {
+		subjectDigest.update((byte)node.nodeType.ordinal());
+		subjectDigest.update(node.getLexicalForm().getBytes(Encodings.UTF8));
+		subjectDigest.update((byte)0);
+	}
+
+	/**
+	 * Only labels of unique clusters are stable, dangling node labels depend on position in stream.
+	 */
+	private boolean isStable(Node node) {
+		if (!node.isAnon()) {
+			return true;
+		}
+		String hash = DiffHelper.getIsomorphicsHash(node);
+		return hash != null && DiffHelper.getIsomorphicsGroupID(node) != null && !copiedClusters.contains(hash);
+	}
+
+	private static long boundaryHash(Node subject) {
+		// murmur3 finalizer, String.hashCode() alone has poor low bits 
+		long h = subject.getLexicalForm().hashCode();
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdl;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53l;
+		h ^= h >>> 33;
+		return h;
+	}
+}
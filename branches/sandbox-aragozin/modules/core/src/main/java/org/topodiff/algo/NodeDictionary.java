@@ -0,0 +1,53 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+
+/**
+ * Immutable set of nodes with IDs assigned in {@link LexographicNodeComparator} order
+ * (node class, then lexical form). Comparators of this package compare interned nodes
+ * of same dictionary by ID.
+ * 
+ * @see NodeDictionaryBuilder
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public abstract class NodeDictionary {
+
+	public abstract int size();
+	
+	/**
+	 * @return ID of node or -1 if node is not in dictionary
+	 */
+	public abstract int getId(Node node);
+
+	public abstract DictionaryNode getNode(int id);
+
+	/**
+	 * @return dictionary node or node itself if it is not in dictionary
+	 */
+	public Node intern(Node node) {
+		if (node instanceof DictionaryNode && ((DictionaryNode)node).getDictionary() == this) {
+			return node;
+		}
+		int id = getId(node);
+		return id < 0 ? node : getNode(id);
+	}
+
+	public Triple intern(Triple triple) {
+		return new Triple(intern(triple.subject), intern(triple.predicate), intern(triple.object));
+	}
+}
@@ -0,0 +1,80 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+
+/**
+ * Collects nodes and builds {@link MemoryNodeDictionary}.
+ * For dictionaries exceeding memory see external sort builder in io module. 
+ * <br/>
+ * Nodes could be interned while they are collected (e.g. while graph is being parsed), 
+ * such nodes become nodes of built dictionary, so graph does not have to be copied.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NodeDictionaryBuilder {
+
+	private final Map<Node, DictionaryNode> nodes = new HashMap<Node, DictionaryNode>();
+	
+	public void add(Node node) {
+		intern(node);
+	}
+
+	public void add(Triple triple) {
+		intern(triple.subject);
+		intern(triple.predicate);
+		intern(triple.object);
+	}
+	
+	/**
+	 * Adds node and returns its shared instance. Instance is compared by lexical form until
+	 * {@link #build()} assigns its ID.
+	 */
+	public Node intern(Node node) {
+		DictionaryNode interned = nodes.get(node);
+		if (interned == null) {
+			interned = new DictionaryNode(node);
+			nodes.put(interned, interned);
+		}
+		return interned;
+	}
+
+	public Triple intern(Triple triple) {
+		return new Triple(intern(triple.subject), intern(triple.predicate), intern(triple.object));
+	}
+
+	public void addAll(Iterator<Triple> triples) {
+		while(triples.hasNext()) {
+			add(triples.next());
+		}
+	}
+	
+	/**
+	 * Should be called once, nodes returned by {@link #intern(Node)} are bound to built dictionary.
+	 */
+	public MemoryNodeDictionary build() {
+		List<Node> sorted = new ArrayList<Node>(nodes.values());
+		Collections.sort(sorted, LexographicNodeComparator.INSTANCE);
+		return new MemoryNodeDictionary(sorted);
+	}
+}
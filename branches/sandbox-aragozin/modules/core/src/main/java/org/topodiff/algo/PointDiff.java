@@ -0,0 +1,184 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IndexedTripleSource;
+import org.topodiff.io.ModelDeltaReceiver;
+
+/**
+ * Calculates delta for single subject (or range of subjects sharing URI prefix) between two indexed sorted streams.
+ * <br/>
+ * Only triples of requested subjects and b-node clusters referenced by them are read, 
+ * they are passed to {@link DiffProcessor} as two small sorted streams.
+ * All isomorphic copies of referenced b-node clusters are read, including copies referred by subjects outside of request,
+ * so change in number of copies is reported as added or removed cluster.
+ * Dangling b-node labels depend on position in full stream, so triples referring them could be reported as changed.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class PointDiff {
+
+	private final IndexedTripleSource source1;
+	private final IndexedTripleSource source2;
+	
+	private long readTripleCount;
+	
+	public PointDiff(IndexedTripleSource source1, IndexedTripleSource source2) {
+		this.source1 = source1;
+		this.source2 = source2;
+	}
+
+	public void diffSubject(Node subject, ModelDeltaReceiver handler) {
+		if (subject.isAnon()) {
+			throw new IllegalArgumentException("Subject should be named: " + subject);
+		}
+		diff(subject.getLexicalForm(), false, handler);
+	}
+
+	/**
+	 * Calculates delta for all named subjects starting with prefix.
+	 */
+	public void diffPrefix(String uriPrefix, ModelDeltaReceiver handler) {
+		diff(uriPrefix, true, handler);
+	}
+
+	/**
+	 * @return number of triples read from both sources so far
+	 */
+	public long getReadTripleCount() {
+		return readTripleCount;
+	}
+	
+	private void diff(String key, boolean prefix, ModelDeltaReceiver handler) {
+		Set<String> groups1 = new HashSet<String>();
+		Set<String> groups2 = new HashSet<String>();
+		List<Triple> triples1 = collect(source1, key, prefix, groups1);
+		List<Triple> triples2 = collect(source2, key, prefix, groups2);
+		new DiffProcessor(triples1.iterator(), triples2.iterator(), new ScopeFilter(groups1, groups2, handler)).process();
+	}
+	
+	/**
+	 * @param groups receives isomorphic group IDs referenced by requested subjects
+	 * @return triples of subjects and b-node clusters sharing hash with referenced ones in stream order 
+	 */
+	private List<Triple> collect(IndexedTripleSource source, String key, boolean prefix, Set<String> groups) {
+		List<Triple> named = scan(source, MerkleSummary.SECTION_NAMED, key, prefix);
+		
+		// hash bucket prefixes ordered as in stream, all isomorphic copies are collected
+		// since copy numbers are not stable between versions
+		Map<String, String> buckets = new TreeMap<String, String>();
+		for(Triple triple: named) {
+			String hash = DiffHelper.getIsomorphicsHash(triple.object);
+			if (hash != null) {
+				String labelPrefix = "b_" + hash + "x";
+				buckets.put(labelPrefix, labelPrefix);
+				groups.add(DiffHelper.getIsomorphicsGroupID(triple.object));
+			}
+		}
+
+		List<Triple> result = new ArrayList<Triple>();
+		for(String labelPrefix: buckets.keySet()) {
+			result.addAll(scan(source, MerkleSummary.SECTION_BLANKS, labelPrefix, true));
+		}
+		result.addAll(named);
+		for(String labelPrefix: buckets.keySet()) {
+			result.addAll(scan(source, MerkleSummary.SECTION_THIRD_KIND, labelPrefix, true));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads triples of section with subject equal to (or starting with) key.
+	 */
+	private List<Triple> scan(IndexedTripleSource source, int section, String key, boolean prefix) {
+		NodeType type = section == MerkleSummary.SECTION_NAMED ? NodeType.NAMED : NodeType.BLANK;
+		long position = source.seekSubject(section, new Node(type, key));
+		int current = source.getSection(position);
+		
+		List<Triple> result = new ArrayList<Triple>();
+		Iterator<Triple> it = source.read(position, source.size());
+		while(it.hasNext()) {
+			Triple triple = it.next();
+			++readTripleCount;
+			if (!triple.subject.isAnon()) {
+				current = MerkleSummary.SECTION_NAMED;
+			}
+			else if (current == MerkleSummary.SECTION_NAMED) {
+				current = MerkleSummary.SECTION_THIRD_KIND;
+			}
+			
+			if (current < section) {
+				continue;
+			}
+			else if (current > section) {
+				break;
+			}
+			
+			String label = triple.subject.getLexicalForm();
+			if (prefix ? label.startsWith(key) : label.equals(key)) {
+				result.add(triple);
+			}
+			else if (label.compareTo(key) > 0) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Passes only triples of requested subjects and clusters referenced by them.
+	 * Other copies of same clusters are needed to match isomorphic copies, but they belong to other subjects. 
+	 */
+	private static class ScopeFilter implements ModelDeltaReceiver {
+		
+		private final Set<String> groups1;
+		private final Set<String> groups2;
+		private final ModelDeltaReceiver delegate;
+		
+		public ScopeFilter(Set<String> groups1, Set<String> groups2, ModelDeltaReceiver delegate) {
+			this.groups1 = groups1;
+			this.groups2 = groups2;
+			this.delegate = delegate;
+		}
+
+		public void tripleMatch(Triple tripleA, Triple tripleB) {
+			if (inScope(tripleA, groups1) || inScope(tripleB, groups2)) {
+				delegate.tripleMatch(tripleA, tripleB);
+			}
+		}
+		
+		public void done() {
+			delegate.done();
+		}
+
+		private static boolean inScope(Triple triple, Set<String> groups) {
+			if (triple == null) {
+				return false;
+			}
+			String group = DiffHelper.getIsomorphicsGroupID(triple.subject);
+			return group == null || groups.contains(group);
+		}
+	}
+}
@@ -14,12 +14,11 @@ limitations under the License.
 package org.topodiff.algo;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.topodiff.graph.Node;
 import org.topodiff.graph.Triple;
 import org.topodiff.io.TripleReceiver;
+import org.topodiff.util.ObjectIntHashMap;
 
 /**
  * This writer will automatically number b-nodes.
@@ -28,7 +27,7 @@ import org.topodiff.io.TripleReceiver;
  */
 class SimpleNTripleWriter implements TripleReceiver {
 
-	private final Map<Node, Integer> anonMap = new HashMap<Node, Integer>();
+	private final ObjectIntHashMap<Node> anonMap = new ObjectIntHashMap<Node>();
 	private final Writer writer;
 	
 	public SimpleNTripleWriter(Writer writer) {
@@ -71,9 +70,10 @@ class SimpleNTripleWriter implements TripleReceiver {
 	}
 	
 	private void writeBNode(Node node) throws IOException {
-		Integer id = anonMap.get(node);
-		if (id == null) {
-			anonMap.put(node, id = Integer.valueOf(anonMap.size()));
+		int id = anonMap.get(node);
+		if (id < 0) {
+			id = anonMap.size();
+			anonMap.put(node, id);
 		}
 		writer.append("_:b").append(String.valueOf(id));
 	}
@@ -0,0 +1,168 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import org.topodiff.graph.Triple;
+
+/**
+ * Work budget for canonical sorting of single b-cluster.
+ * <br/>
+ * Generic algorithm may take exponential time for highly symmetric clusters, budget limits number of
+ * sorting steps (resorting passes and subgraph comparisons) and, optionally, time spent on cluster.
+ * Then budget is exceeded, cluster is handled according to {@link Fallback}.
+ * <br/>
+ * Please note, deadline makes result of sorting dependent on speed of machine, step limit does not.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortBudget {
+
+	public enum Fallback {
+		/**
+		 * Cluster is split into stars (triples of single b-node subject), each star is sorted separately.
+		 */
+		SPLIT,
+		/**
+		 * Ties are resolved by original b-node labels instead of comparing subgraphs. 
+		 * Numbering is stable for same input, but it is not canonical, such clusters are flagged by <code>nc</code> prefix of hash.
+		 */
+		STABLE,
+		/**
+		 * Sorting is aborted with {@link ExceededException}.
+		 */
+		FAIL
+	}
+	
+	private static final int CLOCK_CHECK_INTERVAL = 1024;
+	
+	private final long maxSteps;
+	private final long maxMillis;
+	private final Fallback fallback;
+
+	/**
+	 * @param maxSteps maximum number of steps per cluster, non positive - unlimited
+	 * @param maxMillis maximum time per cluster, non positive - unlimited
+	 */
+	public SortBudget(long maxSteps, long maxMillis, Fallback fallback) {
+		if (fallback == null) {
+			throw new NullPointerException("Fallback should be specified");
+		}
+		this.maxSteps = maxSteps;
+		this.maxMillis = maxMillis;
+		this.fallback = fallback;
+	}
+
+	public long getMaxSteps() {
+		return maxSteps;
+	}
+
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+
+	public Fallback getFallback() {
+		return fallback;
+	}
+
+	/**
+	 * @return tracker for sorting of one cluster
+	 */
+	public Tracker start() {
+		return new Tracker();
+	}
+	
+	@Override
+	public String toString() {
+		return "steps=" + maxSteps + ",millis=" + maxMillis + ",fallback=" + fallback;
+	}
+
+	/**
+	 * Counts steps of single cluster sorting. Not thread safe.
+	 */
+	public class Tracker {
+		
+		private final long startTime = System.currentTimeMillis();
+		private long steps;
+		
+		/**
+		 * @throws ExceededException if budget is exhausted
+		 */
+		public void step() {
+			++steps;
+			if (maxSteps > 0 && steps > maxSteps) {
+				throw new ExceededException(this);
+			}
+			if (maxMillis > 0 && steps % CLOCK_CHECK_INTERVAL == 0 && getElapsedMillis() > maxMillis) {
+				throw new ExceededException(this);
+			}
+		}
+		
+		public long getSteps() {
+			return steps;
+		}
+		
+		public long getElapsedMillis() {
+			return System.currentTimeMillis() - startTime;
+		}
+	}
+	
+	public static class ExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final long steps;
+		private final long elapsedMillis;
+		
+		ExceededException(Tracker tracker) {
+			super("Sort budget exceeded after " + tracker.getSteps() + " steps, " + tracker.getElapsedMillis() + "ms");
+			this.steps = tracker.getSteps();
+			this.elapsedMillis = tracker.getElapsedMillis();
+		}
+
+		public long getSteps() {
+			return steps;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+	}
+	
+	/**
+	 * Record of cluster which has exceeded budget.
+	 */
+	public static class Violation {
+		
+		/** number of triples in cluster */
+		public final int clusterSize;
+		/** one of cluster triples (original labels), to locate cluster in source */
+		public final Triple sample;
+		public final long steps;
+		public final long elapsedMillis;
+		public final Fallback fallback;
+
+		public Violation(int clusterSize, Triple sample, long steps, long elapsedMillis, Fallback fallback) {
+			this.clusterSize = clusterSize;
+			this.sample = sample;
+			this.steps = steps;
+			this.elapsedMillis = elapsedMillis;
+			this.fallback = fallback;
+		}
+		
+		@Override
+		public String toString() {
+			return "cluster of " + clusterSize + " triples (" + sample + ") exceeded budget after " + steps + " steps, " + elapsedMillis + "ms, fallback " + fallback;
+		}
+	}
+}
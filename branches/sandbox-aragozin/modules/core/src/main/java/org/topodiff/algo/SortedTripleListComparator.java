@@ -13,12 +13,11 @@ limitations under the License.
 */
 package org.topodiff.algo;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.topodiff.graph.Node;
 import org.topodiff.graph.Triple;
+import org.topodiff.util.ObjectIntHashMap;
 
 /**
  * Comparator for comparing 2 lists of triples. 
@@ -31,8 +30,8 @@ class SortedTripleListComparator implements Comparator<List<Triple>> {
 	public static final SortedTripleListComparator INSTANCE = new SortedTripleListComparator();
 	
 	public int compare(List<Triple> o1, List<Triple> o2) {
-		Map<Node, Integer> anonMap1 = new HashMap<Node, Integer>();
-		Map<Node, Integer> anonMap2 = new HashMap<Node, Integer>();
+		ObjectIntHashMap<Node> anonMap1 = new ObjectIntHashMap<Node>();
+		ObjectIntHashMap<Node> anonMap2 = new ObjectIntHashMap<Node>();
 		
 		MappedComparator nodeCmp = new MappedComparator(anonMap1, anonMap2);
 		TripleComparator tripleCmp = new TripleComparator(nodeCmp, nodeCmp, nodeCmp);
@@ -54,8 +53,8 @@ class SortedTripleListComparator implements Comparator<List<Triple>> {
 					throw new RuntimeException("Caught a bug! Go and fix it ;)");
 				}
 				
-				anonMap1.put(t1.subject, Integer.valueOf(anonMap1.size()));
-				anonMap2.put(t2.subject, Integer.valueOf(anonMap2.size()));
+				anonMap1.put(t1.subject, anonMap1.size());
+				anonMap2.put(t2.subject, anonMap2.size());
 				
 				if (anonMap1.size() != anonMap2.size()) {
 					throw new RuntimeException("Caught a bug! Go and fix it ;)");
@@ -67,8 +66,8 @@ class SortedTripleListComparator implements Comparator<List<Triple>> {
 					throw new RuntimeException("Caught a bug! Go and fix it ;)");
 				}
 				
-				anonMap1.put(t1.object, Integer.valueOf(anonMap1.size()));
-				anonMap2.put(t2.object, Integer.valueOf(anonMap2.size()));
+				anonMap1.put(t1.object, anonMap1.size());
+				anonMap2.put(t2.object, anonMap2.size());
 				
 				if (anonMap1.size() != anonMap2.size()) {
 					throw new RuntimeException("Caught a bug! Go and fix it ;)");
@@ -0,0 +1,203 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.MultiMapHelper;
+
+/**
+ * Maps stored canonical cluster (see {@link ClusterStore}) on triples of b-cluster.
+ * <br/>
+ * B-node bijection is searched by backtracking over canonical triples in stored order. Stored order is topological,
+ * so subject of a triple is usually bound by preceding triples and only few candidates are tried. Every binding is
+ * checked against candidate triple, so found mapping is always valid and search is complete (isomorphic cluster is
+ * always matched) unless step limit is reached. Symmetric clusters (e.g. cycles) may need backtracking,
+ * step limit protects against pathological cases, such cluster is sorted as usual.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class StoredClusterMatcher {
+
+	static final long DEFAULT_STEP_LIMIT = 1 << 20;
+
+	private final List<Triple> canonical;
+	private final Map<Node, List<Triple>> bySubject = new HashMap<Node, List<Triple>>();
+	private final Map<Node, List<Triple>> byObject = new HashMap<Node, List<Triple>>();
+	private final Map<Node, List<Triple>> byPredicate = new HashMap<Node, List<Triple>>();
+
+	private final Map<Node, Node> mapping = new HashMap<Node, Node>();
+	private final Set<Node> used = new HashSet<Node>();
+	private final long stepLimit;
+
+	private StoredClusterMatcher(List<Triple> canonical, Collection<Triple> subgraph, long stepLimit) {
+		this.canonical = canonical;
+		this.stepLimit = stepLimit;
+		for(Triple triple: subgraph) {
+			MultiMapHelper.addToList(bySubject, triple.subject, triple);
+			MultiMapHelper.addToList(byPredicate, triple.predicate, triple);
+			if (triple.object.isAnon()) {
+				MultiMapHelper.addToList(byObject, triple.object, triple);
+			}
+		}
+	}
+
+	/**
+	 * @return triples of subgraph in canonical order or <code>null</code> if subgraph is not isomorphic to stored cluster
+	 * (or step limit is exceeded)
+	 */
+	public static List<Triple> match(List<Triple> canonical, Set<Triple> subgraph) {
+		return match(canonical, subgraph, DEFAULT_STEP_LIMIT);
+	}
+
+	static List<Triple> match(List<Triple> canonical, Set<Triple> subgraph, long stepLimit) {
+		if (canonical.size() != subgraph.size()) {
+			return null;
+		}
+		StoredClusterMatcher matcher = new StoredClusterMatcher(canonical, subgraph, stepLimit);
+		if (!matcher.search()) {
+			return null;
+		}
+		// mapping is injective and every mapped triple is found in subgraph, so it is a bijection of triples
+		List<Triple> result = new ArrayList<Triple>(canonical.size());
+		for(Triple triple: canonical) {
+			result.add(new Triple(matcher.map(triple.subject), triple.predicate, matcher.map(triple.object)));
+		}
+		return result;
+	}
+
+	/**
+	 * Iterative depth first search, one level per canonical triple.
+	 */
+	private boolean search() {
+		int n = canonical.size();
+		List<List<Triple>> candidates = new ArrayList<List<Triple>>(n);
+		int[] next = new int[n];
+		// canonical b-nodes bound at each level, to be released on backtracking
+		Node[] boundSubject = new Node[n];
+		Node[] boundObject = new Node[n];
+		long steps = 0;
+
+		int level = 0;
+		if (n > 0) {
+			candidates.add(candidatesOf(canonical.get(0)));
+		}
+		while(level < n) {
+			if (level < 0) {
+				return false;
+			}
+			release(boundSubject, level);
+			release(boundObject, level);
+
+			Triple pattern = canonical.get(level);
+			List<Triple> list = candidates.get(level);
+			boolean found = false;
+			while(next[level] < list.size()) {
+				if (++steps > stepLimit) {
+					return false;
+				}
+				Triple candidate = list.get(next[level]++);
+				if (tryBind(pattern, candidate, boundSubject, boundObject, level)) {
+					found = true;
+					break;
+				}
+			}
+			if (found) {
+				++level;
+				if (level < n) {
+					if (candidates.size() > level) {
+						candidates.set(level, candidatesOf(canonical.get(level)));
+					}
+					else {
+						candidates.add(candidatesOf(canonical.get(level)));
+					}
+					next[level] = 0;
+				}
+			}
+			else {
+				--level;
+			}
+		}
+		return true;
+	}
+
+	private List<Triple> candidatesOf(Triple pattern) {
+		List<Triple> list;
+		if (!pattern.subject.isAnon() || mapping.containsKey(pattern.subject)) {
+			list = bySubject.get(map(pattern.subject));
+		}
+		else if (pattern.object.isAnon() && mapping.containsKey(pattern.object)) {
+			list = byObject.get(map(pattern.object));
+		}
+		else {
+			list = byPredicate.get(pattern.predicate);
+		}
+		return list == null ? Collections.<Triple>emptyList() : list;
+	}
+
+	private boolean tryBind(Triple pattern, Triple candidate, Node[] boundSubject, Node[] boundObject, int level) {
+		if (!pattern.predicate.equals(candidate.predicate)) {
+			return false;
+		}
+		if (!bind(pattern.subject, candidate.subject, boundSubject, level)) {
+			return false;
+		}
+		if (!bind(pattern.object, candidate.object, boundObject, level)) {
+			release(boundSubject, level);
+			return false;
+		}
+		return true;
+	}
+
+	private boolean bind(Node node, Node target, Node[] bound, int level) {
+		if (!node.isAnon()) {
+			return node.equals(target);
+		}
+		if (!target.isAnon()) {
+			return false;
+		}
+		Node mapped = mapping.get(node);
+		if (mapped != null) {
+			return mapped.equals(target);
+		}
+		if (used.contains(target)) {
+			return false;
+		}
+		mapping.put(node, target);
+		used.add(target);
+		bound[level] = node;
+		return true;
+	}
+
+	private void release(Node[] bound, int level) {
+		Node node = bound[level];
+		if (node != null) {
+			used.remove(mapping.remove(node));
+			bound[level] = null;
+		}
+	}
+
+	private Node map(Node node) {
+		return node.isAnon() ? mapping.get(node) : node;
+	}
+}
@@ -0,0 +1,149 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.IntIntHashMap;
+import org.topodiff.util.IntUnionFind;
+import org.topodiff.util.Match;
+import org.topodiff.util.ObjectIntHashMap;
+
+/**
+ * Discovers b-node clusters reading unsorted triple stream once, no graph indexes are required.
+ * <br/>
+ * B-node subjects are assigned to components using union-find, components are joined
+ * by b-node to b-node triples with followed predicate. Cluster consists of all triples with b-node
+ * subject of component. Triple between b-nodes with not followed predicate belongs to cluster
+ * if both b-nodes are in same component, otherwise it is a third kind triple.
+ * <br/>
+ * Triples with named subject are ignored.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class StreamingClusterBuilder {
+
+	private final Match<Node> propFollowFilter;
+	
+	private final ObjectIntHashMap<Node> ids = new ObjectIntHashMap<Node>();
+	private final IntUnionFind components = new IntUnionFind();
+	
+	private final List<Triple> clusterTriples = new ArrayList<Triple>();
+	private final List<Triple> unfollowedTriples = new ArrayList<Triple>();
+	
+	private List<Set<Triple>> clusters;
+	private Set<Triple> thirdKind;
+	
+	/**
+	 * @param propFollowFilter predicates joining b-nodes into cluster, <code>null</code> - all predicates
+	 */
+	public StreamingClusterBuilder(Match<Node> propFollowFilter) {
+		this.propFollowFilter = propFollowFilter;
+	}
+
+	public void add(Triple triple) {
+		if (clusters != null) {
+			throw new IllegalStateException("Clusters are already built");
+		}
+		if (!triple.subject.isAnon()) {
+			return;
+		}
+		int s = id(triple.subject);
+		if (triple.object.isAnon()) {
+			if (propFollowFilter == null || propFollowFilter.match(triple.predicate)) {
+				components.union(s, id(triple.object));
+				clusterTriples.add(triple);
+			}
+			else {
+				unfollowedTriples.add(triple);
+			}
+		}
+		else {
+			clusterTriples.add(triple);
+		}
+	}
+
+	public void addAll(Iterator<Triple> triples) {
+		while(triples.hasNext()) {
+			add(triples.next());
+		}
+	}
+	
+	/**
+	 * @return clusters in order of first appearance in stream
+	 */
+	public List<Set<Triple>> getClusters() {
+		build();
+		return clusters;
+	}
+
+	/**
+	 * @return triples between b-nodes of different clusters via not followed predicates
+	 */
+	public Set<Triple> getThirdKind() {
+		build();
+		return thirdKind;
+	}
+	
+	private void build() {
+		if (clusters != null) {
+			return;
+		}
+		clusters = new ArrayList<Set<Triple>>();
+		thirdKind = new HashSet<Triple>();
+		
+		IntIntHashMap rootToCluster = new IntIntHashMap();
+		for(Triple triple: clusterTriples) {
+			bucket(rootToCluster, triple);
+		}
+		for(Triple triple: unfollowedTriples) {
+			int s = components.find(ids.get(triple.subject));
+			int o = ids.get(triple.object);
+			if (o >= 0 && components.find(o) == s) {
+				bucket(rootToCluster, triple);
+			}
+			else {
+				thirdKind.add(triple);
+			}
+		}
+		clusterTriples.clear();
+		unfollowedTriples.clear();
+	}
+
+	private void bucket(IntIntHashMap rootToCluster, Triple triple) {
+		int root = components.find(ids.get(triple.subject));
+		int n = rootToCluster.get(root);
+		if (n < 0) {
+			n = clusters.size();
+			rootToCluster.put(root, n);
+			clusters.add(new HashSet<Triple>());
+		}
+		clusters.get(n).add(triple);
+	}
+	
+	private int id(Node node) {
+		int id = ids.get(node);
+		if (id < 0) {
+			id = components.add();
+			ids.put(node, id);
+		}
+		return id;
+	}
+}
@@ -20,10 +20,16 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.topodiff.graph.GraphView;
 import org.topodiff.graph.Node;
@@ -31,6 +37,8 @@ import org.topodiff.graph.NodeType;
 import org.topodiff.graph.Triple;
 import org.topodiff.io.TripleReceiver;
 import org.topodiff.util.Match;
+import org.topodiff.util.metrics.Metrics;
+import org.topodiff.util.metrics.NoopMetrics;
 import org.topodiff.util.text.Encodings;
 
 /**
@@ -42,23 +50,101 @@ import org.topodiff.util.text.Encodings;
  */
 public class ToposortGraphProcessor {
 
+	/**
+	 * Version of sorted output, should be incremented whenever output for same graph and settings changes
+	 * (e.g. rules of b-cluster discovery). Output of different versions is not comparable.
+	 * <ul>
+	 * <li>2 - single pass cluster discovery ({@link StreamingClusterBuilder}), triples over not followed predicate
+	 * inside of connected component belong to cluster</li>
+	 * </ul>
+	 */
+	public static final int OUTPUT_VERSION = 2;
+
 	private final TripleReceiver tripleWriter;
-	private final ToposortUtils toolkit = ToposortUtils.INSTANCE;
+	private ToposortUtils toolkit = ToposortUtils.INSTANCE;
 	private final MessageDigest hashAlgo;
 	private final Match<Node> propFollowFilter; 
+	private final ClusterStore clusterStore;
+	private final ExecutorService executor;
+	private final SortBudget budget;
+	private Metrics metrics = NoopMetrics.INSTANCE;
+	private ClusterCapture capture;
+	private long captureThresholdNanos;
 	
 	private final Map<Node, String> bnodeMap = new HashMap<Node, String>();
 	private final Map<String, List<Subgraph>> isoSets = new HashMap<String, List<Subgraph>>();
 	
 	private final Set<Triple> thirdKindStatements = new HashSet<Triple>();
+	private final List<SortBudget.Violation> budgetViolations = new ArrayList<SortBudget.Violation>();
 	
 	private int danglingNodeCounter = 0;
 	private boolean closed = false;
 	
 	public ToposortGraphProcessor(TripleReceiver tripleWriter, Match<Node> propFollowFilter, MessageDigest hashAlgo) {
+		this(tripleWriter, propFollowFilter, hashAlgo, null);
+	}
+
+	/**
+	 * @param clusterStore store of already canonicalised b-clusters, it will be consulted before sorting each b-cluster
+	 * and populated with newly sorted ones, may be <code>null</code>
+	 */
+	public ToposortGraphProcessor(TripleReceiver tripleWriter, Match<Node> propFollowFilter, MessageDigest hashAlgo, ClusterStore clusterStore) {
+		this(tripleWriter, propFollowFilter, hashAlgo, clusterStore, null);
+	}
+
+	/**
+	 * @param executor if not <code>null</code> b-clusters are canonicalised by tasks submitted to executor, 
+	 * cluster store (if any) should be thread safe in this case. Result does not depend on executor.
+	 */
+	public ToposortGraphProcessor(TripleReceiver tripleWriter, Match<Node> propFollowFilter, MessageDigest hashAlgo, ClusterStore clusterStore, ExecutorService executor) {
+		this(tripleWriter, propFollowFilter, hashAlgo, clusterStore, executor, null);
+	}
+
+	/**
+	 * @param budget work budget for each b-cluster, <code>null</code> - unlimited. 
+	 * Clusters exceeded budget are reported by {@link #getBudgetViolations()}.
+	 */
+	public ToposortGraphProcessor(TripleReceiver tripleWriter, Match<Node> propFollowFilter, MessageDigest hashAlgo, ClusterStore clusterStore, ExecutorService executor, SortBudget budget) {
 		this.tripleWriter = tripleWriter;
 		this.propFollowFilter = propFollowFilter;
 		this.hashAlgo = hashAlgo;
+		this.clusterStore = clusterStore;
+		this.executor = executor;
+		this.budget = budget;
+	}
+	
+	/**
+	 * Metrics should be thread safe if executor is used. Reported metrics
+	 * <ul>
+	 * <li>{@code toposort.clusters} - number of b-clusters (after split fallback)</li>
+	 * <li>{@code toposort.cluster.size} - histogram of b-cluster sizes</li>
+	 * <li>{@code toposort.clusters.tree} - clusters sorted by tree sorter</li>
+	 * <li>{@code toposort.clusters.stored} - clusters found in cluster store</li>
+	 * <li>{@code toposort.clusters.nonCanonical} - clusters sorted by fallback</li>
+	 * <li>{@code toposort.budget.exceeded} - budget violations</li>
+	 * <li>{@code toposort.thirdKind} - number of third kind statements</li>
+	 * </ul>
+	 * as well as metrics of {@link ToposortUtils}.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+		this.toolkit = new ToposortUtils(metrics);
+	}
+	
+	/**
+	 * Clusters which took longer than threshold to canonicalise will be passed to capture.
+	 * @param capture may be <code>null</code> to disable capturing
+	 */
+	public void setClusterCapture(ClusterCapture capture, long thresholdMillis) {
+		this.capture = capture;
+		this.captureThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+	}
+	
+	/**
+	 * @return clusters which have exceeded work budget, in order of discovery
+	 */
+	public List<SortBudget.Violation> getBudgetViolations() {
+		return Collections.unmodifiableList(budgetViolations);
 	}
 	
 	public void process(GraphView model) {
@@ -130,34 +216,26 @@ public class ToposortGraphProcessor {
 	}
 	
 	private void prepareBlanks(GraphView model) {
-		Set<Node> blanks = new HashSet<Node>();
+		// single pass over model, clusters are listed in order of first appearance
+		StreamingClusterBuilder builder = new StreamingClusterBuilder(propFollowFilter);
+		builder.addAll(model.listStatements(null, null, null));
+		thirdKindStatements.addAll(builder.getThirdKind());
+		metrics.increment("toposort.thirdKind", builder.getThirdKind().size());
 		
-		Iterator<Node> iter = model.listSubjects();
-		while(iter.hasNext()) {
-			Node res = iter.next();
-			if (res.isAnon()) {
-				blanks.add(res);
-			}
-		}
-		
-		while(!blanks.isEmpty()) {
-			Node res = blanks.iterator().next();
-			
-			Set<Node> todo = new HashSet<Node>();
-			todo.add(res);
-			Set<Node> done = new HashSet<Node>();
-			Set<Triple> subgraph = new HashSet<Triple>();
-			
-			collectSubgraph(model, todo, done, subgraph);
-			blanks.removeAll(done);
-			
-			if (subgraph.size() > 0) {
-				addSubgraph(toolkit.sort(subgraph));
+		List<Future<List<CanonicalCluster>>> pending = new ArrayList<Future<List<CanonicalCluster>>>();
+		for(Set<Triple> subgraph: builder.getClusters()) {
+			if (executor == null) {
+				addClusters(canonicalize(subgraph));
 			}
 			else {
-				// we cannot find any topological identification for this node it will be written as b-node
+				pending.add(executor.submit(new CanonicalizeTask(subgraph)));
 			}
 		}
+		
+		// clusters are added in order of discovery, so numbering does not depend on executor 
+		for(Future<List<CanonicalCluster>> future: pending) {
+			addClusters(getResult(future));
+		}
 
 		// renaming
 		List<String> hashes = new ArrayList<String>(isoSets.keySet());
@@ -216,11 +294,168 @@ public class ToposortGraphProcessor {
 	}
 	
 	
-	private void addSubgraph(List<Triple> triples) {
+	private List<CanonicalCluster> canonicalize(Set<Triple> subgraph) {
+		if (capture == null) {
+			return canonicalizeCluster(subgraph);
+		}
+		long start = System.nanoTime();
+		try {
+			return canonicalizeCluster(subgraph);
+		}
+		finally {
+			// clusters exceeded budget with FAIL fallback are captured too
+			long elapsed = System.nanoTime() - start;
+			if (elapsed >= captureThresholdNanos) {
+				capture.capture(subgraph, elapsed);
+			}
+		}
+	}
+	
+	/**
+	 * Sorts b-cluster or finds it in cluster store. Does not modify state of processor.
+	 */
+	private List<CanonicalCluster> canonicalizeCluster(Set<Triple> subgraph) {
+		String shapeKey = null;
+		if (clusterStore != null) {
+			shapeKey = getShapeKey(subgraph);
+			for(String storedHash: clusterStore.findByShape(shapeKey)) {
+				List<Triple> canonical = clusterStore.getCluster(storedHash);
+				List<Triple> triples = canonical == null ? null : StoredClusterMatcher.match(canonical, subgraph);
+				if (triples != null) {
+					return Collections.singletonList(new CanonicalCluster(triples, shapeKey, true));
+				}
+			}
+		}
+		
+		try {
+			List<Triple> triples = sortCluster(subgraph, budget == null ? null : budget.start());
+			return Collections.singletonList(new CanonicalCluster(triples, shapeKey, false));
+		}
+		catch(SortBudget.ExceededException e) {
+			if (budget.getFallback() == SortBudget.Fallback.FAIL) {
+				throw e;
+			}
+			SortBudget.Violation violation = new SortBudget.Violation(subgraph.size(), subgraph.iterator().next(), e.getSteps(), e.getElapsedMillis(), budget.getFallback());
+			List<CanonicalCluster> result;
+			if (budget.getFallback() == SortBudget.Fallback.SPLIT) {
+				result = split(subgraph);
+			}
+			else {
+				result = new ArrayList<CanonicalCluster>();
+				result.add(new CanonicalCluster(toolkit.sortStable(subgraph), null, false, false));
+			}
+			result.get(0).violation = violation;
+			return result;
+		}
+	}
+
+	/**
+	 * Splits cluster into stars (triples of same subject), stars exceeded budget are sorted non canonically.
+	 */
+	private List<CanonicalCluster> split(Set<Triple> subgraph) {
+		Map<Node, Set<Triple>> stars = new LinkedHashMap<Node, Set<Triple>>();
+		for(Triple triple: subgraph) {
+			Set<Triple> star = stars.get(triple.subject);
+			if (star == null) {
+				stars.put(triple.subject, star = new HashSet<Triple>());
+			}
+			star.add(triple);
+		}
+		
+		List<CanonicalCluster> result = new ArrayList<CanonicalCluster>();
+		for(Set<Triple> star: stars.values()) {
+			try {
+				List<Triple> triples = sortCluster(star, budget.start());
+				result.add(new CanonicalCluster(triples, clusterStore == null ? null : getShapeKey(star), false));
+			}
+			catch(SortBudget.ExceededException e) {
+				result.add(new CanonicalCluster(toolkit.sortStable(star), null, false, false));
+			}
+		}
+		return result;
+	}
+	
+	private String getShapeKey(Set<Triple> subgraph) {
+		synchronized(hashAlgo) {
+			return toolkit.getShapeKey(subgraph, hashAlgo);
+		}
+	}
+
+	/**
+	 * Tree shaped clusters (including rdf:List chains) are sorted by specialised algorithm, 
+	 * others by generic one. Both produce same result.
+	 */
+	private List<Triple> sortCluster(Set<Triple> subgraph, SortBudget.Tracker tracker) {
+		if (TreeClusterSorter.isTree(subgraph)) {
+			metrics.increment("toposort.clusters.tree", 1);
+			return TreeClusterSorter.INSTANCE.sort(subgraph, tracker);
+		}
+		else {
+			return toolkit.sort(subgraph, tracker);
+		}
+	}
+
+	private void addClusters(List<CanonicalCluster> clusters) {
+		for(CanonicalCluster cluster: clusters) {
+			addCluster(cluster);
+		}
+	}
+	
+	private void addCluster(CanonicalCluster cluster) {
+		metrics.increment("toposort.clusters", 1);
+		metrics.record("toposort.cluster.size", cluster.triples.size());
+		if (cluster.stored) {
+			metrics.increment("toposort.clusters.stored", 1);
+		}
+		if (!cluster.canonical) {
+			metrics.increment("toposort.clusters.nonCanonical", 1);
+		}
+		if (cluster.violation != null) {
+			metrics.increment("toposort.budget.exceeded", 1);
+			budgetViolations.add(cluster.violation);
+		}
+		String hash = addSubgraph(cluster.triples, cluster.canonical);
+		if (clusterStore != null && cluster.canonical && !cluster.stored && !clusterStore.containsCluster(hash)) {
+			clusterStore.putCluster(cluster.shapeKey, hash, toStoredForm(cluster.triples));
+		}
+	}
+
+	private List<CanonicalCluster> getResult(Future<List<CanonicalCluster>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private List<Triple> toStoredForm(List<Triple> triples) {
+		Map<Node, Integer> ids = toolkit.renameBlanks(triples);
+		List<Triple> result = new ArrayList<Triple>(triples.size());
+		for(Triple triple: triples) {
+			Node s = triple.subject.isAnon() ? new Node(NodeType.BLANK, "b" + ids.get(triple.subject)) : triple.subject;
+			Node o = triple.object.isAnon() ? new Node(NodeType.BLANK, "b" + ids.get(triple.object)) : triple.object;
+			result.add(new Triple(s, triple.predicate, o));
+		}
+		return result;
+	}
+
+	/**
+	 * @param canonical if <code>false</code>, hash is prefixed with <code>nc</code> to flag non canonical numbering
+	 */
+	private String addSubgraph(List<Triple> triples, boolean canonical) {
 		String hash;
 		synchronized(hashAlgo) {
 			hash = Encodings.bytesToHex(toolkit.getDigestHash(triples, hashAlgo));
 		}
+		if (!canonical) {
+			hash = "nc" + hash;
+		}
 		
 		List<Subgraph> sets = isoSets.get(hash);
 		if (sets == null) {
@@ -228,47 +463,10 @@ public class ToposortGraphProcessor {
 		}
 		
 		sets.add(new Subgraph(triples));
+		
+		return hash;
 	}
 
-	private void collectSubgraph(GraphView model, Set<Node> todo, Set<Node> done, Set<Triple> subgraph) {
-		while(!todo.isEmpty()) {
-			Iterator<Node> it = todo.iterator();
-			Node res = it.next();
-			it.remove();
-			done.add(res);
-			
-			Iterator<Triple> stIt = model.listStatements(res, null, null);
-			while(stIt.hasNext()) {
-				Triple stmt = stIt.next();
-				Node object = stmt.object;
-				if (object.isAnon() && !done.contains(object)) {
-					if (propFollowFilter == null || propFollowFilter.match(stmt.predicate)) {
-						todo.add(object);
-						subgraph.add(stmt);
-					}
-					else {
-						thirdKindStatements.add(stmt);
-					}
-				}
-				else {
-					subgraph.add(stmt);
-				}
-			}
-
-			stIt = model.listStatements(null, null, res);
-			while(stIt.hasNext()) {
-				Triple stmt = stIt.next();
-				Node subj = stmt.subject;
-				if (subj.isAnon() && !done.contains(subj)) {
-					if (propFollowFilter != null && propFollowFilter.match(stmt.predicate)) {
-						todo.add(subj);
-						subgraph.add(stmt);
-					}
-				}
-			}
-		}
-	}
-	
 	/**
 	 * If blank node does not participate as subject in model, it will not be named
 	 * during rename phase. Such nodes are named ad hoc.
@@ -325,9 +523,7 @@ public class ToposortGraphProcessor {
 
 			case NAMED:
 			case LITERAL:
-				String s1 = o1.getLexicalForm();
-				String s2 = o2.getLexicalForm();
-				return s1.compareTo(s2);
+				return LexographicNodeComparator.compareLexicalForms(o1, o2);
 				
 			default:
 				return 0;
@@ -340,6 +536,39 @@ public class ToposortGraphProcessor {
 		}
 	}
 
+	private static class CanonicalCluster {
+		
+		public final List<Triple> triples;
+		public final String shapeKey;
+		public final boolean stored;
+		public final boolean canonical;
+		public SortBudget.Violation violation;
+		
+		public CanonicalCluster(List<Triple> triples, String shapeKey, boolean stored) {
+			this(triples, shapeKey, stored, true);
+		}
+
+		public CanonicalCluster(List<Triple> triples, String shapeKey, boolean stored, boolean canonical) {
+			this.triples = triples;
+			this.shapeKey = shapeKey;
+			this.stored = stored;
+			this.canonical = canonical;
+		}
+	}
+	
+	private class CanonicalizeTask implements Callable<List<CanonicalCluster>> {
+		
+		private final Set<Triple> subgraph;
+
+		public CanonicalizeTask(Set<Triple> subgraph) {
+			this.subgraph = subgraph;
+		}
+
+		public List<CanonicalCluster> call() {
+			return canonicalize(subgraph);
+		}
+	}
+	
 	private static class Subgraph {
 		
 		public final List<Triple> triples;
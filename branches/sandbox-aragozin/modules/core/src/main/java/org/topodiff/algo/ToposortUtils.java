@@ -30,6 +30,9 @@ import java.util.Set;
 
 import org.topodiff.graph.Node;
 import org.topodiff.graph.Triple;
+import org.topodiff.util.ObjectIntHashMap;
+import org.topodiff.util.metrics.Metrics;
+import org.topodiff.util.metrics.NoopMetrics;
 import org.topodiff.util.text.Encodings;
 
 /**
@@ -42,18 +45,55 @@ import org.topodiff.util.text.Encodings;
 public class ToposortUtils {
 
 	public static final ToposortUtils INSTANCE = new ToposortUtils();
+
+	private static final int SHAPE_REFINEMENT_ROUNDS = 3;
+	
+	private static final Comparator<Triple> LABEL_ORDER = new TripleComparator(new LexographicNodeComparator());
+
+	private final Metrics metrics;
 	
+	public ToposortUtils() {
+		this(NoopMetrics.INSTANCE);
+	}
+
+	/**
+	 * @param metrics receives number of sort passes ({@code toposort.sort.passes}), 
+	 *        number of ties ({@code toposort.sort.ties}) and tie recursion depth ({@code toposort.sort.tieDepth}) 
+	 */
+	public ToposortUtils(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
 	/**
 	 * Deterministic topological sort.
 	 * @param triples remains unchanged
 	 * @return sorted triples
 	 */
 	public List<Triple> sort(Collection<Triple> triples) {
-		Map<Node, Integer> anonRemap = new HashMap<Node, Integer>();
-		return sort(triples, anonRemap);
+		ObjectIntHashMap<Node> anonRemap = new ObjectIntHashMap<Node>();
+		return sort(triples, anonRemap, null, true, 0);
+	}
+
+	/**
+	 * Deterministic topological sort with limited work budget.
+	 * @param tracker may be <code>null</code>
+	 * @throws SortBudget.ExceededException if budget is exhausted
+	 */
+	public List<Triple> sort(Collection<Triple> triples, SortBudget.Tracker tracker) {
+		ObjectIntHashMap<Node> anonRemap = new ObjectIntHashMap<Node>();
+		return sort(triples, anonRemap, tracker, true, 0);
 	}
 
-	private List<Triple> sort(Collection<Triple> triples, Map<Node, Integer> anonRemap) {
+	/**
+	 * Cheap sort without subgraph comparison, ties are resolved using original b-node labels.
+	 * Result is stable for same input, but isomorphic inputs may be sorted differently.
+	 */
+	public List<Triple> sortStable(Collection<Triple> triples) {
+		ObjectIntHashMap<Node> anonRemap = new ObjectIntHashMap<Node>();
+		return sort(triples, anonRemap, null, false, 0);
+	}
+
+	private List<Triple> sort(Collection<Triple> triples, ObjectIntHashMap<Node> anonRemap, SortBudget.Tracker tracker, boolean exhaustive, int depth) {
 		
 		List<Triple> result = new ArrayList<Triple>(triples);
 		if (triples.size() <= 1) {
@@ -64,7 +104,11 @@ public class ToposortUtils {
 		
 		while(n < result.size()) {
 		
-			Comparator<Node> nodeCmp = new MappedComparator(new HashMap<Node, Integer>(anonRemap));
+			if (tracker != null) {
+				tracker.step();
+			}
+			metrics.increment("toposort.sort.passes", 1);
+			Comparator<Node> nodeCmp = new MappedComparator(new ObjectIntHashMap<Node>(anonRemap));
 			Comparator<Triple> tripleComparator = new TripleComparator(nodeCmp, nodeCmp, nodeCmp);
 
 			// TODO buble, may be not?
@@ -104,19 +148,31 @@ public class ToposortUtils {
 						}
 					}
 					
+					metrics.increment("toposort.sort.ties", 1);
+					metrics.record("toposort.sort.tieDepth", depth);
+
 					// Need to find "min" triple, we will compare triples by remaining graphs attached to them
 					Triple winner = null;
 					List<Triple> minSubgraph = null;
 					
+					if (!exhaustive) {
+						// original labels are used instead
+						winner = Collections.min(equSet, LABEL_ORDER);
+						equSet.clear();
+					}
+					
 					for(Triple row: equSet) {
+						if (tracker != null) {
+							tracker.step();
+						}
 						Set<Triple> subtriples = new HashSet<Triple>();
 						subtriples.add(row);
 						buildClosure(subtriples, result.subList(n, result.size()));
 						
-						Map<Node, Integer> childRemap = new HashMap<Node, Integer>(anonRemap);
+						ObjectIntHashMap<Node> childRemap = new ObjectIntHashMap<Node>(anonRemap);
 						numberBlanks(row, childRemap);
 						
-						List<Triple> subgraph = sort(subtriples, childRemap);
+						List<Triple> subgraph = sort(subtriples, childRemap, tracker, true, depth + 1);
 						
 						if (minSubgraph == null || SortedTripleListComparator.INSTANCE.compare(subgraph, minSubgraph) < 0) {
 							winner = row;
@@ -142,12 +198,12 @@ public class ToposortUtils {
 		return result;
 	}
 
-	private void numberBlanks(Triple triple, Map<Node, Integer> anonRemap) {
+	private void numberBlanks(Triple triple, ObjectIntHashMap<Node> anonRemap) {
 		if (triple.subject.isAnon() && !anonRemap.containsKey(triple.subject)) {
-			anonRemap.put(triple.subject, Integer.valueOf(anonRemap.size()));
+			anonRemap.put(triple.subject, anonRemap.size());
 		}
 		if (triple.object.isAnon() && !anonRemap.containsKey(triple.object)) {
-			anonRemap.put((Node) triple.object, Integer.valueOf(anonRemap.size()));
+			anonRemap.put((Node) triple.object, anonRemap.size());
 		}
 	}
 	
@@ -184,8 +240,6 @@ public class ToposortUtils {
 	/**
 	 * Deterministic bnode numbering (renaming).
 	 * @param triples sorted list of triples
-	 * 
-	 * XXX it is not used in code now, but I will leave it as example
 	 */
 	public Map<Node, Integer> renameBlanks(List<Triple> triples) {
 		Map<Node, Integer> map = new HashMap<Node, Integer>();
@@ -221,6 +275,74 @@ public class ToposortUtils {
 		return writer.toString();
 	}
 	
+	/**
+	 * Calculates a cheap, order independent key for unsorted triple-set.
+	 * Isomorphic sets always have equal keys, but equal keys does not guarantee isomorphism
+	 * (b-nodes are distinguished by few rounds of neighborhood refinement only).
+	 *
+	 * @return hex encoded shape key
+	 */
+	public String getShapeKey(Collection<Triple> triples, MessageDigest digest) {
+		Map<Node, Integer> colors = new HashMap<Node, Integer>();
+		for(Triple triple: triples) {
+			if (triple.subject.isAnon()) {
+				colors.put(triple.subject, Integer.valueOf(0));
+			}
+			if (triple.object.isAnon()) {
+				colors.put(triple.object, Integer.valueOf(0));
+			}
+		}
+
+		for(int round = 0; round != SHAPE_REFINEMENT_ROUNDS; ++round) {
+			Map<Node, List<String>> signatures = new HashMap<Node, List<String>>();
+			for(Node node: colors.keySet()) {
+				signatures.put(node, new ArrayList<String>());
+			}
+			for(Triple triple: triples) {
+				if (triple.subject.isAnon()) {
+					signatures.get(triple.subject).add("o " + triple.predicate + " " + shapeLabel(triple.object, colors));
+				}
+				if (triple.object.isAnon()) {
+					signatures.get(triple.object).add("i " + triple.predicate + " " + shapeLabel(triple.subject, colors));
+				}
+			}
+			Map<Node, Integer> refined = new HashMap<Node, Integer>();
+			for(Map.Entry<Node, List<String>> entry: signatures.entrySet()) {
+				List<String> signature = entry.getValue();
+				Collections.sort(signature);
+				refined.put(entry.getKey(), Integer.valueOf(signature.hashCode()));
+			}
+			colors = refined;
+		}
+
+		List<String> lines = new ArrayList<String>(triples.size());
+		for(Triple triple: triples) {
+			lines.add(shapeLabel(triple.subject, colors) + " " + shapeLabel(triple.predicate, colors) + " " + shapeLabel(triple.object, colors));
+		}
+		Collections.sort(lines);
+
+		digest.reset();
+		for(String line: lines) {
+			digest.update(line.getBytes(Encodings.UTF8));
+			digest.update((byte)'\n');
+		}
+		byte[] result = digest.digest();
+		digest.reset();
+
+		return Encodings.bytesToHex(result);
+	}
+
+	private String shapeLabel(Node node, Map<Node, Integer> colors) {
+		switch(node.nodeType) {
+			case BLANK:
+				return "_:" + colors.get(node);
+			case LITERAL:
+				return "\"" + node.getLexicalForm() + "\"";
+			default:
+				return "<" + node.getLexicalForm() + ">";
+		}
+	}
+
 	public byte[] getDigestHash(List<Triple> triples, MessageDigest digest) {
 		try {
 			OutputStream nullStream = new OutputStream() {
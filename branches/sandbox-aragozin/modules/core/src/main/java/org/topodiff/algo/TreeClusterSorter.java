@@ -0,0 +1,394 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.IntUnionFind;
+import org.topodiff.util.MultiMapHelper;
+import org.topodiff.util.ObjectIntHashMap;
+
+/**
+ * Sorts tree shaped b-clusters (no b-node has more than one incoming b-node edge, no cycles), 
+ * rdf:List chains are trees too. Result is same as result of {@link ToposortUtils#sort(Collection)}
+ * (up to exchange of b-nodes interchangeable by automorphism of cluster, which is ambiguous in generic algorithm too).
+ * <br/>
+ * Generic algorithm resorts all remaining triples then b-node is numbered, here triples are kept in
+ * priority queue and only triples of numbered b-node are repositioned.
+ * Ties between triples are resolved same way as in generic algorithm, but subgraphs are compared only for
+ * tied triples which are not interchangeable by automorphism of tree (verified using AHU-style canonical labels of subtrees).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class TreeClusterSorter {
+
+	public static final TreeClusterSorter INSTANCE = new TreeClusterSorter();
+	
+	/**
+	 * @return <code>true</code> if all subjects are b-nodes and b-node edges form a tree
+	 */
+	public static boolean isTree(Collection<Triple> triples) {
+		ObjectIntHashMap<Node> ids = new ObjectIntHashMap<Node>();
+		IntUnionFind components = new IntUnionFind();
+		Set<Node> children = new HashSet<Node>();
+		for(Triple triple: triples) {
+			if (!triple.subject.isAnon()) {
+				return false;
+			}
+			int s = id(ids, components, triple.subject);
+			if (triple.object.isAnon()) {
+				if (!children.add(triple.object)) {
+					// second incoming edge
+					return false;
+				}
+				int o = id(ids, components, triple.object);
+				if (components.find(s) == components.find(o)) {
+					// cycle
+					return false;
+				}
+				components.union(s, o);
+			}
+		}
+		return ids.size() - children.size() == 1;
+	}
+
+	private static int id(ObjectIntHashMap<Node> ids, IntUnionFind components, Node node) {
+		int id = ids.get(node);
+		if (id < 0) {
+			id = components.add();
+			ids.put(node, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * @param triples tree shaped cluster (see {@link #isTree(Collection)}), remains unchanged
+	 * @return sorted triples
+	 */
+	public List<Triple> sort(Collection<Triple> triples) {
+		return sort(triples, new ObjectIntHashMap<Node>(), null);
+	}
+
+	/**
+	 * @param tracker may be <code>null</code>
+	 * @throws SortBudget.ExceededException if budget is exhausted
+	 */
+	public List<Triple> sort(Collection<Triple> triples, SortBudget.Tracker tracker) {
+		return sort(triples, new ObjectIntHashMap<Node>(), tracker);
+	}
+
+	private List<Triple> sort(Collection<Triple> triples, ObjectIntHashMap<Node> anonRemap, SortBudget.Tracker tracker) {
+		List<Triple> input = new ArrayList<Triple>(triples);
+		if (input.size() <= 1) {
+			return input;
+		}
+		
+		TripleComparator tripleCmp = new TripleComparator(new MappedComparator(anonRemap));
+		TreeSet<Row> queue = new TreeSet<Row>(new RowComparator(tripleCmp));
+		Map<Node, List<Row>> incident = new HashMap<Node, List<Row>>();
+		for(int i = 0; i != input.size(); ++i) {
+			Triple triple = input.get(i);
+			Row row = new Row(triple, i);
+			queue.add(row);
+			MultiMapHelper.addToList(incident, triple.subject, row);
+			if (triple.object.isAnon()) {
+				MultiMapHelper.addToList(incident, (Node)triple.object, row);
+			}
+		}
+		// built on first tie
+		TreeShape shape = null;
+		
+		List<Triple> result = new ArrayList<Triple>(input.size());
+		while(!queue.isEmpty()) {
+			Row head = queue.first();
+			Triple triple = head.triple;
+			boolean blank = (triple.subject.isAnon() && !anonRemap.containsKey(triple.subject))
+					|| (triple.object.isAnon() && !anonRemap.containsKey(triple.object));
+			
+			if (!blank || queue.size() == 1) {
+				// last blank row may remain unmapped, same as in generic algorithm
+				queue.pollFirst();
+				result.add(triple);
+				continue;
+			}
+			
+			if (tracker != null) {
+				tracker.step();
+			}
+			
+			// rows equal to head are kept in order of input, as they would be after stable sort
+			List<Triple> equSet = new ArrayList<Triple>();
+			equSet.add(triple);
+			for(Row row: queue.tailSet(head, false)) {
+				if (tripleCmp.compare(triple, row.triple) == 0) {
+					equSet.add(row.triple);
+				}
+				else {
+					break;
+				}
+			}
+			
+			if (equSet.size() > 1) {
+				if (shape == null) {
+					shape = new TreeShape(input);
+				}
+				triple = chooseWinner(equSet, shape.computeOrbits(anonRemap), anonRemap, queue, incident, tracker);
+			}
+			
+			numberBlank(triple.subject, anonRemap, queue, incident);
+			numberBlank(triple.object, anonRemap, queue, incident);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Same as generic algorithm, tied triples are compared by sorted remaining subgraphs attached to them
+	 * and first of minimal ones is chosen. Remaining subgraph of tree is a tree too, so it is sorted recursively
+	 * by this class. Triples interchangeable with already compared ones (same orbit) could not be smaller, so they are skipped.
+	 */
+	private Triple chooseWinner(List<Triple> equSet, Map<Node, Integer> orbits, ObjectIntHashMap<Node> anonRemap, TreeSet<Row> queue, Map<Node, List<Row>> incident, SortBudget.Tracker tracker) {
+		Set<Integer> distinct = new HashSet<Integer>();
+		for(Triple row: equSet) {
+			distinct.add(orbits.get(orbitNode(row)));
+		}
+		if (distinct.size() == 1) {
+			// all tied triples are interchangeable
+			return equSet.get(0);
+		}
+		
+		Set<Triple> scope = new HashSet<Triple>(queue.size());
+		for(Row row: queue) {
+			scope.add(row.triple);
+		}
+		
+		Triple winner = null;
+		List<Triple> minSubgraph = null;
+		Set<Integer> seen = new HashSet<Integer>();
+		
+		for(Triple row: equSet) {
+			if (!seen.add(orbits.get(orbitNode(row)))) {
+				continue;
+			}
+			if (tracker != null) {
+				tracker.step();
+			}
+			
+			ObjectIntHashMap<Node> childRemap = new ObjectIntHashMap<Node>(anonRemap);
+			numberBlank(row.subject, childRemap);
+			numberBlank(row.object, childRemap);
+			
+			List<Triple> subgraph = sort(collectClosure(row, scope, incident), childRemap, tracker);
+			
+			if (minSubgraph == null || SortedTripleListComparator.INSTANCE.compare(subgraph, minSubgraph) < 0) {
+				winner = row;
+				minSubgraph = subgraph;
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * @return triples from scope connected to given one via b-nodes (numbered or not)
+	 */
+	private Set<Triple> collectClosure(Triple triple, Set<Triple> scope, Map<Node, List<Row>> incident) {
+		Set<Triple> closure = new HashSet<Triple>();
+		closure.add(triple);
+		List<Node> todo = new ArrayList<Node>();
+		Set<Node> visited = new HashSet<Node>();
+		addBlanks(triple, todo, visited);
+		while(!todo.isEmpty()) {
+			Node node = todo.remove(todo.size() - 1);
+			for(Row row: incident.get(node)) {
+				if (scope.contains(row.triple) && closure.add(row.triple)) {
+					addBlanks(row.triple, todo, visited);
+				}
+			}
+		}
+		return closure;
+	}
+	
+	private static void addBlanks(Triple triple, List<Node> todo, Set<Node> visited) {
+		if (triple.subject.isAnon() && visited.add(triple.subject)) {
+			todo.add(triple.subject);
+		}
+		if (triple.object.isAnon() && visited.add(triple.object)) {
+			todo.add(triple.object);
+		}
+	}
+	
+	/**
+	 * For triple linking two b-nodes orbit of object identifies triple (parent edge is unique), 
+	 * for other triples - orbit of subject.
+	 */
+	private static Node orbitNode(Triple triple) {
+		return triple.object.isAnon() ? triple.object : triple.subject;
+	}
+	
+	private static void numberBlank(Node node, ObjectIntHashMap<Node> anonRemap) {
+		if (node.isAnon() && !anonRemap.containsKey(node)) {
+			anonRemap.put(node, anonRemap.size());
+		}
+	}
+	
+	private void numberBlank(Node node, ObjectIntHashMap<Node> anonRemap, TreeSet<Row> queue, Map<Node, List<Row>> incident) {
+		if (!node.isAnon() || anonRemap.containsKey(node)) {
+			return;
+		}
+		// position of row in queue depends on numbering, so it should be removed before renumbering
+		List<Row> moved = new ArrayList<Row>();
+		for(Row row: incident.get(node)) {
+			if (queue.remove(row)) {
+				moved.add(row);
+			}
+		}
+		anonRemap.put(node, anonRemap.size());
+		queue.addAll(moved);
+	}
+	
+	private static class Row {
+		
+		final Triple triple;
+		final int index;
+
+		public Row(Triple triple, int index) {
+			this.triple = triple;
+			this.index = index;
+		}
+	}
+	
+	private static class RowComparator implements Comparator<Row> {
+		
+		private final Comparator<Triple> tripleCmp;
+
+		public RowComparator(Comparator<Triple> tripleCmp) {
+			this.tripleCmp = tripleCmp;
+		}
+
+		public int compare(Row o1, Row o2) {
+			int res = tripleCmp.compare(o1.triple, o2.triple);
+			if (res != 0) {
+				return res;
+			}
+			return o1.index > o2.index ? 1 : o1.index < o2.index ? -1 : 0;
+		}
+	}
+	
+	/**
+	 * Parent/child structure of tree shaped cluster.
+	 */
+	private static class TreeShape {
+		
+		private final Map<Node, List<Triple>> outgoing = new HashMap<Node, List<Triple>>();
+		private final Map<Node, Triple> parentEdge = new HashMap<Node, Triple>();
+		private final List<Node> topDown = new ArrayList<Node>();
+		private final Map<Triple, String> edgeText = new HashMap<Triple, String>();
+		
+		public TreeShape(List<Triple> triples) {
+			for(Triple triple: triples) {
+				MultiMapHelper.addToList(outgoing, triple.subject, triple);
+				edgeText.put(triple, escape(triple.predicate) + " " + (triple.object.isAnon() ? "_" : escape(triple.object)));
+				if (triple.object.isAnon()) {
+					parentEdge.put((Node)triple.object, triple);
+				}
+			}
+			for(Node node: outgoing.keySet()) {
+				if (!parentEdge.containsKey(node)) {
+					topDown.add(node);
+				}
+			}
+			// breadth first, so each node follows its parent
+			for(int i = 0; i != topDown.size(); ++i) {
+				List<Triple> edges = outgoing.get(topDown.get(i));
+				if (edges != null) {
+					for(Triple edge: edges) {
+						if (edge.object.isAnon()) {
+							topDown.add((Node)edge.object);
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Two nodes have same orbit id if their subtrees have same canonical label
+		 * and their parents have same orbit id and are linked by same predicate.
+		 */
+		public Map<Node, Integer> computeOrbits(ObjectIntHashMap<Node> anonRemap) {
+			Map<String, Integer> dictionary = new HashMap<String, Integer>();
+			
+			// canonical labels, bottom up
+			Map<Node, Integer> labels = new HashMap<Node, Integer>();
+			for(int i = topDown.size() - 1; i >= 0; --i) {
+				Node node = topDown.get(i);
+				String signature;
+				if (anonRemap.containsKey(node)) {
+					// numbered nodes are fixed by automorphism
+					signature = "#" + anonRemap.get(node);
+				}
+				else {
+					List<String> entries = new ArrayList<String>();
+					List<Triple> edges = outgoing.get(node);
+					if (edges != null) {
+						for(Triple edge: edges) {
+							entries.add(edge.object.isAnon() ? edgeText.get(edge) + labels.get(edge.object) : edgeText.get(edge));
+						}
+					}
+					Collections.sort(entries);
+					signature = entries.toString();
+				}
+				labels.put(node, intern(dictionary, signature));
+			}
+			
+			// orbits, top down
+			Map<Node, Integer> orbits = new HashMap<Node, Integer>();
+			for(Node node: topDown) {
+				Triple edge = parentEdge.get(node);
+				String signature = edge == null 
+						? "root " + labels.get(node)
+						: orbits.get(edge.subject) + " " + edgeText.get(edge) + labels.get(node);
+				orbits.put(node, intern(dictionary, signature));
+			}
+			return orbits;
+		}
+		
+		private static Integer intern(Map<String, Integer> dictionary, String signature) {
+			Integer id = dictionary.get(signature);
+			if (id == null) {
+				id = Integer.valueOf(dictionary.size());
+				dictionary.put(signature, id);
+			}
+			return id;
+		}
+		
+		/**
+		 * Length prefixed form, so signatures are unambiguous regardless of node text.
+		 */
+		private static String escape(Node node) {
+			String text = node.getLexicalForm();
+			return node.nodeType.ordinal() + ":" + text.length() + ":" + text;
+		}
+	}
+}
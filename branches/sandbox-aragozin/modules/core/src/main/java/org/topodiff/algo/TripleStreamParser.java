@@ -33,32 +33,18 @@ class TripleStreamParser {
 	}
 	
 	private final Iterator<Triple> reader;
-	private final Object scopeOverride;
 	private Triple nextLine;
 	
 	private Mode mode = Mode.BLANKS;
 	
+	/**
+	 * Triples are passed through as is, stream of b-nodes is tracked by {@link DiffProcessor}.
+	 */
 	public TripleStreamParser(Iterator<Triple> reader) {
 		this.reader = reader;
 		this.nextLine = reader.hasNext() ? reader.next() : null;
-		scopeOverride = this;
-		if (nextLine != null) {
-			this.nextLine = reown(nextLine);
-		}
 	}
 
-	private Triple reown(Triple triple) {
-		if (scopeOverride == null) {
-			return triple;
-		}
-		else {
-			Node subject = new Node(triple.subject, scopeOverride); 
-			Node predicate = new Node(triple.predicate, scopeOverride); 
-			Node object = new Node(triple.object, scopeOverride); 
-			return new Triple(subject, predicate, object);
-		}
-	}
-	
 	public void setMode(Mode mode) {
 		this.mode = mode;
 	}
@@ -109,7 +95,7 @@ class TripleStreamParser {
 		nextLine = null;
 		
 		while(reader.hasNext()) {
-			nextLine = reown(reader.next());
+			nextLine = reader.next();
 			if (isGreater(prevSubject, nextLine.subject)) {
 				mode = null;
 			}
@@ -0,0 +1,67 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.graph.simple;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.topodiff.graph.DatasetView;
+import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Quad;
+
+/**
+ * In memory dataset, each named graph is a {@link SimpleGraphView}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SimpleDatasetView implements DatasetView {
+
+	private final Map<Node, SimpleGraphView> graphs = new LinkedHashMap<Node, SimpleGraphView>();
+	
+	public SimpleDatasetView() {
+	}
+
+	public SimpleDatasetView(Collection<Quad> quads) {
+		addAll(quads);
+	}
+
+	public void addAll(Collection<Quad> quads) {
+		addAll(quads.iterator());
+	}
+
+	public void addAll(Iterator<Quad> quads) {
+		while(quads.hasNext()) {
+			add(quads.next());
+		}
+	}
+	
+	public void add(Quad quad) {
+		SimpleGraphView graph = graphs.get(quad.graph);
+		if (graph == null) {
+			graphs.put(quad.graph, graph = new SimpleGraphView());
+		}
+		graph.add(quad.triple);
+	}
+	
+	public Iterator<Node> listGraphNames() {
+		return graphs.keySet().iterator();
+	}
+
+	public GraphView getGraph(Node graphName) {
+		return graphs.get(graphName);
+	}
+}
@@ -22,15 +22,17 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import org.topodiff.graph.GraphView;
 import org.topodiff.graph.Node;
 import org.topodiff.graph.NodeType;
+import org.topodiff.graph.SplittableGraphView;
 import org.topodiff.graph.Triple;
 import org.topodiff.algo.LexographicNodeComparator;
 import org.topodiff.util.Iterators;
+import org.topodiff.util.ListSource;
 import org.topodiff.util.Morph;
+import org.topodiff.util.SplittableSource;
 
-public class SimpleGraphView implements GraphView {
+public class SimpleGraphView implements SplittableGraphView {
 	
 	private static final Node LOWER_BOUND = new Node(NodeType.LITERAL, "LOWER") {
 		public String toString() {
@@ -133,6 +135,29 @@ public class SimpleGraphView implements GraphView {
 	
 	
 	public Iterator<Triple> listStatements(Node subj, Node pred, Node obj) {
+		if (subj != null && pred != null && obj != null) {
+			return Collections.singleton(new Triple(subj, pred, obj)).iterator();
+		}
+		else {
+			return range(subj, pred, obj).values().iterator();
+		}
+	}
+
+	/**
+	 * Sources are views of indexes, nothing is copied.
+	 * Graph should not be modified while sources are traversed.
+	 */
+	public SplittableSource<Triple> splitStatements(Node subj, Node pred, Node obj) {
+		if (subj != null && pred != null && obj != null) {
+			return new ListSource<Triple>(Collections.singletonList(new Triple(subj, pred, obj)));
+		}
+		else {
+			SortedMap<Triple, Triple> range = range(subj, pred, obj);
+			return new RangeSource(range, range.size());
+		}
+	}
+
+	private SortedMap<Triple, Triple> range(Node subj, Node pred, Node obj) {
 		char[] key = new char[3];
 		key[0] = subj == null ? '_' : 'S';
 		key[1] = pred == null ? '_' : 'P';
@@ -142,11 +167,50 @@ public class SimpleGraphView implements GraphView {
 		Triple upper = new Triple(subj == null ? UPPER_BOUND : subj, pred == null ? UPPER_BOUND : pred, obj == null ?  UPPER_BOUND : obj);
 		
 		SortedMap<Triple, Triple> index = indexMap.get(new String(key));
-		if (lower.equals(upper)) {
-			return Collections.singleton(lower).iterator();
+		return index.subMap(lower, upper);
+	}
+	
+	/**
+	 * {@link SplittableSource} over sub map view of index.
+	 * Split walks to middle key of range, chunks are narrower views of same index.
+	 */
+	private static class RangeSource implements SplittableSource<Triple> {
+		
+		private SortedMap<Triple, Triple> range;
+		private long size;
+		
+		public RangeSource(SortedMap<Triple, Triple> range, long size) {
+			this.range = range;
+			this.size = size;
 		}
-		else {
-			return index.subMap(lower, upper).values().iterator();
+
+		public long size() {
+			return size;
+		}
+
+		public SplittableSource<Triple> trySplit() {
+			long half = size / 2;
+			if (half == 0) {
+				return null;
+			}
+			Iterator<Triple> it = range.keySet().iterator();
+			for(long i = 0; i != half; ++i) {
+				it.next();
+			}
+			Triple mid = it.next();
+			RangeSource prefix = new RangeSource(range.headMap(mid), half);
+			range = range.tailMap(mid);
+			size -= half;
+			return prefix;
+		}
+
+		public Iterator<Triple> iterator() {
+			return range.values().iterator();
+		}
+		
+		@Override
+		public String toString() {
+			return "RangeSource[" + size + "]";
 		}
 	}
 
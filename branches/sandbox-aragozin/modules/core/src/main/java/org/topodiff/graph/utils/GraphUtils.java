@@ -13,11 +13,25 @@ limitations under the License.
 */
 package org.topodiff.graph.utils;
 
+import java.util.Map;
+
 import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
 
 public class GraphUtils {
 	public static boolean areIsomorthic(GraphView graph1, GraphView graph2) {
 		IsomorphismChecker checker = new IsomorphismChecker(graph1, graph2);
 		return checker.areIsoMorphic();
 	}
+
+	/**
+	 * Please note, that checker is not exhaustive, so <code>null</code> does not guarantee
+	 * what graphs are not isomorphic. Result should be verified by caller, if it matters.
+	 * 
+	 * @return b-node mapping from graph1 to graph2 or <code>null</code> if it was not found
+	 */
+	public static Map<Node, Node> findIsomorphism(GraphView graph1, GraphView graph2) {
+		IsomorphismChecker checker = new IsomorphismChecker(graph1, graph2);
+		return checker.areIsoMorphic() ? checker.getMapping() : null;
+	}
 }
@@ -28,6 +28,7 @@ class IsomorphismChecker {
 
 	private GraphView graph1;
 	private GraphView graph2;
+	private BMapping mapping;
 	
 	public IsomorphismChecker(GraphView graph1, GraphView graph2) {
 		this.graph1 = graph1;
@@ -36,9 +37,20 @@ class IsomorphismChecker {
 	
 	public boolean areIsoMorphic() {
 		BMapping bmapping = new BMapping(null);
+		mapping = bmapping;
 		
 		return match(graph1.listStatements(null, null, null), bmapping);
 	}
+
+	/**
+	 * @return b-node mapping (graph1 -> graph2) found by last {@link #areIsoMorphic()} call
+	 */
+	public Map<Node, Node> getMapping() {
+		if (mapping == null) {
+			throw new IllegalStateException("areIsoMorphic() should be called first");
+		}
+		return new HashMap<Node, Node>(mapping.nodes);
+	}
 	
 	private boolean match(Iterator<Triple> stIt, BMapping bmapping) {
 		for(Triple triple: Iterators.from(stIt)) {
@@ -0,0 +1,40 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io;
+
+import org.topodiff.graph.Node;
+
+/**
+ * Sorted triple stream with index of subjects.
+ * <br/>
+ * Sorted stream consists of sections (b-node clusters, named subjects, b-nodes with third kind triples),
+ * subjects are ordered by lexical form within section.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface IndexedTripleSource extends SeekableTripleSource {
+
+	/**
+	 * @param section section of sorted stream, see {@code MerkleSummary.SECTION_*} constants
+	 * @return ordinal of triple at or before first triple of subject in section, 
+	 * scanning from this position will encounter all triples of subject
+	 */
+	public long seekSubject(int section, Node subject);
+	
+	/**
+	 * @return section of sorted stream triple belongs to
+	 */
+	public int getSection(long triple);
+	
+}
@@ -0,0 +1,39 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io;
+import java.util.Iterator;
+
+import org.topodiff.graph.Triple;
+
+
+/**
+ * Triple stream with random access by triple ordinal number.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface SeekableTripleSource {
+
+	/**
+	 * @return number of triples in stream
+	 */
+	public long size();
+	
+	/**
+	 * @param from ordinal number of first triple (inclusive)
+	 * @param to ordinal number of last triple (exclusive)
+	 * @return iterator over triples in range
+	 */
+	public Iterator<Triple> read(long from, long to);
+	
+}
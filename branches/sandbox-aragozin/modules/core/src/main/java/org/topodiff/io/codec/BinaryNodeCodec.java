@@ -0,0 +1,70 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Compact binary encoding of nodes: type byte, length of lexical form in bytes, UTF-8 lexical form.
+ * <br/>
+ * Single node encoding used by all binary formats (Merkle summary, block files, cluster store, dictionaries).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BinaryNodeCodec {
+
+	private static final byte TYPE_LITERAL = 0;
+	private static final byte TYPE_NAMED = 1;
+	private static final byte TYPE_BLANK = 2;
+
+	public static void writeNode(DataOutput out, Node node) throws IOException {
+		byte[] text = node.getLexicalForm().getBytes(Encodings.UTF8);
+		switch(node.nodeType) {
+			case LITERAL:
+				out.writeByte(TYPE_LITERAL);
+				break;
+			case NAMED:
+				out.writeByte(TYPE_NAMED);
+				break;
+			case BLANK:
+				out.writeByte(TYPE_BLANK);
+				break;
+		}
+		out.writeInt(text.length);
+		out.write(text);
+	}
+
+	public static Node readNode(DataInput in) throws IOException {
+		byte type = in.readByte();
+		byte[] text = new byte[in.readInt()];
+		in.readFully(text);
+		String lexicalForm = new String(text, Encodings.UTF8);
+		switch(type) {
+			case TYPE_LITERAL:
+				return new Node(NodeType.LITERAL, lexicalForm);
+			case TYPE_NAMED:
+				return new Node(NodeType.NAMED, lexicalForm);
+			case TYPE_BLANK:
+				return new Node(NodeType.BLANK, lexicalForm);
+			default:
+				throw new IOException("Unknown node type " + type);
+		}
+	}
+}
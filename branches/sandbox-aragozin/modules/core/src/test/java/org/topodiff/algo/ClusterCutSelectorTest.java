@@ -0,0 +1,73 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ClusterCutSelectorTest {
+
+	@Test
+	public void cutsAreChosenByFrequency() {
+		SimpleGraphView graph = new SimpleGraphView(createChain(10));
+		
+		Assert.assertEquals("[]", select(graph, 30).toString());
+		Assert.assertEquals("[item]", select(graph, 20).toString());
+		Assert.assertEquals("[item, next]", select(graph, 5).toString());
+	}
+
+	@Test
+	public void cutClustersAreSortedCompletely() {
+		List<Triple> triples = createChain(10);
+		SimpleGraphView graph = new SimpleGraphView(triples);
+		Set<Node> cuts = new ClusterCutSelector(null, 5).selectCuts(graph, Collections.<Node>emptySet());
+		
+		ListTripleWriter writer = new ListTripleWriter();
+		new ToposortGraphProcessor(writer, ClusterCutSelector.createFilter(null, cuts), MessageDigesters.createSHA1()).process(graph);
+		Assert.assertEquals(triples.size(), writer.size());
+	}
+	
+	private Set<String> select(SimpleGraphView graph, int limit) {
+		Set<String> result = new TreeSet<String>();
+		for(Node node: new ClusterCutSelector(null, limit).selectCuts(graph, Collections.<Node>emptySet())) {
+			result.add(node.getLexicalForm());
+		}
+		return result;
+	}
+
+	private List<Triple> createChain(int length) {
+		List<String> text = new ArrayList<String>();
+		for(int i = 0; i != length; ++i) {
+			if (i > 0) {
+				text.add("_:a" + (i - 1) + " <next> _:a" + i);
+			}
+			text.add("_:a" + i + " <item> _:b" + i);
+			text.add("_:b" + i + " <value> \"" + i + "\"");
+		}
+		return TestHelper.parseTripleList(text.toArray(new String[text.size()]));
+	}
+}
@@ -0,0 +1,149 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.Filters;
+import org.topodiff.util.MultiMapHelper;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.metrics.MemoryMetrics;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ClusterStoreTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	private static final String[] SNAPSHOT1 = {
+		"_:a <arrow> _:b",
+		"_:b <arrow> _:c",
+		"_:c <arrow> _:a",
+		"_:a <no> \"123\"",
+		"_:x <arrow> _:y",
+		"_:y <arrow> \"nil\"",
+		"<abc> <x> _:a",
+		"<xyz> <x> _:x",
+	};
+
+	// same clusters, different b-node labels and one new cluster
+	private static final String[] SNAPSHOT2 = {
+		"_:1 <arrow> _:2",
+		"_:2 <arrow> _:3",
+		"_:3 <arrow> _:1",
+		"_:2 <no> \"123\"",
+		"_:7 <arrow> _:8",
+		"_:8 <arrow> \"nil\"",
+		"_:9 <arrow> \"new\"",
+		"<abc> <x> _:2",
+		"<xyz> <x> _:7",
+	};
+
+	@Test
+	public void storedClustersAreReused() {
+		MapClusterStore store = new MapClusterStore();
+
+		List<Triple> plain1 = sort(SNAPSHOT1, null);
+		List<Triple> stored1 = sort(SNAPSHOT1, store);
+		Assert.assertEquals(plain1.toString(), stored1.toString());
+		Assert.assertEquals(2, store.clusters.size());
+		Assert.assertEquals(0, store.hits);
+
+		List<Triple> plain2 = sort(SNAPSHOT2, null);
+		List<Triple> stored2 = sort(SNAPSHOT2, store);
+		Assert.assertEquals(plain2.toString(), stored2.toString());
+		Assert.assertEquals(3, store.clusters.size());
+		Assert.assertEquals(2, store.hits);
+	}
+
+	@Test
+	public void storeHitsAreCounted() {
+		MapClusterStore store = new MapClusterStore();
+		MemoryMetrics metrics = new MemoryMetrics();
+		sort(SNAPSHOT1, store, metrics);
+		Assert.assertEquals(2, metrics.getCounter("toposort.clusters"));
+		Assert.assertEquals(0, metrics.getCounter("toposort.clusters.stored"));
+		
+		metrics.reset();
+		sort(SNAPSHOT2, store, metrics);
+		Assert.assertEquals(3, metrics.getCounter("toposort.clusters"));
+		// chain and cycle are reused
+		Assert.assertEquals(2, metrics.getCounter("toposort.clusters.stored"));
+		// new cluster is a tree
+		Assert.assertEquals(1, metrics.getCounter("toposort.clusters.tree"));
+		Assert.assertEquals(3, metrics.getHistogramData("toposort.cluster.size").getCount());
+	}
+
+	private List<Triple> sort(String[] source, ClusterStore store) {
+		return sort(source, store, null);
+	}
+
+	private List<Triple> sort(String[] source, ClusterStore store, MemoryMetrics metrics) {
+		SimpleGraphView graph = new SimpleGraphView(TestHelper.parseTripleList(source));
+		MessageDigest hashAlgo = MessageDigesters.createSHA1();
+		ListTripleWriter writer = new ListTripleWriter();
+		ToposortGraphProcessor processor = new ToposortGraphProcessor(writer, Filters.inList(PROPS_TO_FOLLOW), hashAlgo, store);
+		if (metrics != null) {
+			processor.setMetrics(metrics);
+		}
+		processor.process(graph);
+		return writer;
+	}
+
+	private static class MapClusterStore implements ClusterStore {
+
+		final Map<String, List<Triple>> clusters = new HashMap<String, List<Triple>>();
+		final Map<String, List<String>> shapes = new HashMap<String, List<String>>();
+		int hits;
+
+		public Collection<String> findByShape(String shapeKey) {
+			List<String> hashes = shapes.get(shapeKey);
+			return hashes == null ? new ArrayList<String>() : hashes;
+		}
+
+		public List<Triple> getCluster(String hash) {
+			List<Triple> cluster = clusters.get(hash);
+			if (cluster != null) {
+				++hits;
+			}
+			return cluster;
+		}
+
+		public boolean containsCluster(String hash) {
+			return clusters.containsKey(hash);
+		}
+
+		public void putCluster(String shapeKey, String hash, List<Triple> canonicalTriples) {
+			clusters.put(hash, canonicalTriples);
+			MultiMapHelper.addToList(shapes, shapeKey, hash);
+		}
+	}
+}
@@ -14,16 +14,24 @@ limitations under the License.
 package org.topodiff.algo;
 
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.topodiff.algo.TestHelper.DeltaHandler;
 import org.topodiff.graph.GraphView;
 import org.topodiff.graph.Node;
 import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
 import org.topodiff.io.TripleReceiver;
 import org.topodiff.algo.ToposortGraphProcessor;
+import org.topodiff.graph.simple.SimpleGraphView;
 import org.topodiff.util.Filters;
+import org.topodiff.util.Iterators;
+import org.topodiff.util.Pair;
 import org.topodiff.util.hash.MessageDigesters;
 
 /**
@@ -205,4 +213,188 @@ public class DiffProcessorTest {
 	}
 
 	
+	@Test
+	public void test9() {
+		// several copies of same cluster in one hash bucket
+		String[] source1 = {
+				"_:a <arrow> _:b",
+				"_:b <arrow> \"nil\"",
+				"_:c <arrow> _:d",
+				"_:d <arrow> \"nil\"",
+				"_:e <arrow> _:f",
+				"_:f <arrow> \"nil\"",
+				"<abc> <x> _:a",
+				"<xyz> <x> _:c",
+		};
+		String[] source2 = {
+				"_:1 <arrow> _:2",
+				"_:2 <arrow> \"nil\"",
+				"_:3 <arrow> _:4",
+				"_:4 <arrow> \"nil\"",
+				"_:5 <arrow> _:6",
+				"_:6 <arrow> \"other\"",
+				"<abc> <x> _:3",
+				"<xyz> <x> _:1",
+		};
+		
+		TestHelper.testDiffSummary(source1, source2, ALGO, 4);
+	}
+
+	@Test
+	public void manyAnonymousValues() {
+		int n = 200;
+		String[] source1 = new String[2 * n];
+		String[] source2 = new String[2 * n];
+		for(int i = 0; i != n; ++i) {
+			source1[2 * i] = "<abc> <has> _:a" + i;
+			source1[2 * i + 1] = "_:a" + i + " <val> \"" + i + "\"";
+			// reversed labeling
+			source2[2 * i] = "<abc> <has> _:b" + (n - i);
+			source2[2 * i + 1] = "_:b" + (n - i) + " <val> \"" + (i == 7 ? "changed" : String.valueOf(i)) + "\"";
+		}
+		
+		TestHelper.testDiffSummary(source1, source2, ALGO, 4);
+	}
+
+	@Test
+	public void sameTriplesOnBothSides() {
+		String[] source = {
+				"_:a <arrow> _:b",
+				"_:b <arrow> _:c",
+				"_:c <arrow> _:a",
+				"_:x <y> _:a",
+				"<abc> <x> _:x",
+				"<abc> <x> _:b",
+		};
+		
+		// triple instances are shared between streams, b-nodes are told apart by stream only 
+		ListTripleWriter triples = TestHelper.sortModel(new SimpleGraphView(TestHelper.parseTripleList(source)), ALGO);
+		DeltaHandler handler = TestHelper.createDeltaHandler();
+		new DiffProcessor(triples.iterator(), triples.iterator(), handler).process();
+		
+		Assert.assertEquals(source.length, handler.aSize);
+		Assert.assertEquals(0, handler.dSize);
+	}
+
+	@Test
+	public void readAheadInputs() {
+		String[] source1 = {
+				"_:a <arrow> _:b",
+				"_:b <arrow> _:c",
+				"_:c <arrow> _:a",
+				"<abc> <x> _:a",
+				"<abc> <y> \"1\"",
+		};
+		String[] source2 = {
+				"_:a <arrow> _:b",
+				"_:b <arrow> _:a",
+				"_:c <arrow> _:c",
+				"<abc> <x> _:a",
+				"<abc> <y> \"2\"",
+		};
+		
+		ListTripleWriter triples1 = TestHelper.sortModel(new SimpleGraphView(TestHelper.parseTripleList(source1)), ALGO);
+		ListTripleWriter triples2 = TestHelper.sortModel(new SimpleGraphView(TestHelper.parseTripleList(source2)), ALGO);
+		
+		DeltaHandler plain = TestHelper.createDeltaHandler();
+		new DiffProcessor(triples1.iterator(), triples2.iterator(), plain).process();
+		DeltaHandler readAhead = TestHelper.createDeltaHandler();
+		new DiffProcessor(triples1.iterator(), triples2.iterator(), readAhead, true).process();
+		
+		Assert.assertEquals(plain.aSize, readAhead.aSize);
+		Assert.assertEquals(plain.dSize, readAhead.dSize);
+		Assert.assertEquals(toList(plain).toString(), toList(readAhead).toString());
+	}
+
+	@Test
+	public void identicalSummariesSkipDiff() {
+		// chains have no automorphisms, so sorted stream does not depend on input order
+		String[] source1 = {
+				"_:a <arrow> _:b",
+				"_:b <z> \"0\"",
+				"_:c <arrow> _:d",
+				"_:d <z> \"0\"",
+				"_:e <arrow> _:f",
+				"_:f <arrow> _:g",
+				"_:g <z> \"1\"",
+				"<abc> <x> _:a",
+				"<abc> <y> _:e",
+				"<def> <x> _:c",
+		};
+		// isomorphic to source1, labels and order are different
+		String[] source2 = {
+				"<def> <x> _:3",
+				"<abc> <y> _:7",
+				"<abc> <x> _:1",
+				"_:9 <z> \"1\"",
+				"_:8 <arrow> _:9",
+				"_:7 <arrow> _:8",
+				"_:4 <z> \"0\"",
+				"_:3 <arrow> _:4",
+				"_:2 <z> \"0\"",
+				"_:1 <arrow> _:2",
+		};
+		String[] source3 = {
+				"_:1 <arrow> _:2",
+				"_:2 <z> \"0\"",
+				"_:3 <arrow> _:4",
+				"_:4 <z> \"0\"",
+				"_:7 <arrow> _:8",
+				"_:8 <arrow> _:9",
+				"_:9 <z> \"2\"",
+				"<abc> <x> _:1",
+				"<abc> <y> _:7",
+				"<def> <x> _:3",
+		};
+		
+		GraphSummaryWriter writer1 = new GraphSummaryWriter(new ListTripleWriter(), "test");
+		GraphSummaryWriter writer2 = new GraphSummaryWriter(new ListTripleWriter(), "test");
+		GraphSummaryWriter writer3 = new GraphSummaryWriter(new ListTripleWriter(), "test");
+		ALGO.sort(new SimpleGraphView(TestHelper.parseTripleList(source1)), writer1);
+		ALGO.sort(new SimpleGraphView(TestHelper.parseTripleList(source2)), writer2);
+		ALGO.sort(new SimpleGraphView(TestHelper.parseTripleList(source3)), writer3);
+		writer1.done();
+		writer2.done();
+		writer3.done();
+		
+		Assert.assertEquals(10, writer1.getSummary().tripleCount);
+		Assert.assertEquals(9, writer1.getSummary().subjectCount);
+		// two isomorphic copies and one chain of three
+		Assert.assertEquals(3, writer1.getSummary().clusterCount);
+		Assert.assertTrue(writer1.getSummary().matches(writer2.getSummary()));
+		Assert.assertFalse(writer1.getSummary().matches(writer3.getSummary()));
+		
+		DeltaHandler handler = TestHelper.createDeltaHandler();
+		DiffProcessor dp = new DiffProcessor(null, writer1.getSummary(), null, writer2.getSummary(), handler, false);
+		dp.process();
+		Assert.assertTrue(dp.isIdentical());
+		Assert.assertEquals(0, handler.aSize);
+		Assert.assertEquals(0, handler.dSize);
+	}
+
+	@Test
+	public void summaryWithoutNamedSubjects() {
+		String[] source = {
+				"_:a <arrow> _:b",
+				"_:b <z> \"0\"",
+				"_:c <arrow> _:d",
+				"_:d <z> \"1\"",
+				// third kind triples, their subjects are listed again after clusters
+				"_:a <link> _:c",
+				"_:c <link> _:a",
+		};
+		GraphSummaryWriter writer = new GraphSummaryWriter(new ListTripleWriter(), "test");
+		ALGO.sort(new SimpleGraphView(TestHelper.parseTripleList(source)), writer);
+		writer.done();
+		
+		Assert.assertEquals(6, writer.getSummary().tripleCount);
+		Assert.assertEquals(6, writer.getSummary().subjectCount);
+		Assert.assertEquals(2, writer.getSummary().clusterCount);
+	}
+
+	private static List<Pair<Triple, Triple>> toList(DeltaHandler handler) {
+		List<Pair<Triple, Triple>> list = new ArrayList<Pair<Triple,Triple>>();
+		Iterators.addAll(list, handler);
+		return list;
+	}
 }
@@ -0,0 +1,73 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class LexographicNodeComparatorTest {
+
+	private static final String[] PREFIXES = {
+		"",
+		"http://",
+		"http://www.w3.org/",
+		"http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+		"http://www.w3.org/2000/01/rdf-schema#",
+		"http://www.w3.org/2000/01/rdf-schema#\uffff",
+		"http://xmlns.com/foaf/0.1/",
+		"http://xmlns.com/foaf/0.1",
+		"https://",
+		"urn:",
+		"urn",
+	};
+
+	private static final String CHARS = "\u0000 #/:abcz\uffff";
+	
+	@Test
+	public void prefixKeysPreserveStringOrder() {
+		Random rnd = new Random(1);
+		List<String> texts = new ArrayList<String>();
+		for(String prefix: PREFIXES) {
+			texts.add(prefix);
+			for(int i = 0; i != 20; ++i) {
+				StringBuilder sb = new StringBuilder(prefix);
+				int len = rnd.nextInt(6);
+				for(int j = 0; j != len; ++j) {
+					sb.append(CHARS.charAt(rnd.nextInt(CHARS.length())));
+				}
+				texts.add(sb.toString());
+			}
+		}
+		
+		for(String t1: texts) {
+			for(String t2: texts) {
+				Node n1 = new Node(NodeType.NAMED, t1);
+				Node n2 = new Node(NodeType.NAMED, t2);
+				Assert.assertEquals("'" + t1 + "' vs '" + t2 + "'", Integer.signum(t1.compareTo(t2)), Integer.signum(LexographicNodeComparator.INSTANCE.compare(n1, n2)));
+				if (t1.compareTo(t2) < 0) {
+					Assert.assertTrue(n1.getPrefixKey() <= n2.getPrefixKey());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.algo.TestHelper.DeltaHandler;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.SeekableTripleSource;
+import org.topodiff.util.Filters;
+import org.topodiff.util.Pair;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MerkleDiffProcessorTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	@Test
+	public void identicalStreams() throws IOException {
+		ListTripleWriter data1 = new ListTripleWriter();
+		ListTripleWriter data2 = new ListTripleWriter();
+		MerkleSummary summary1 = sort(generate(500, -1), data1);
+		MerkleSummary summary2 = reload(sort(generate(500, -1), data2));
+
+		DeltaHandler handler = new DeltaHandler();
+		MerkleDiffProcessor mdp = new MerkleDiffProcessor(summary1, source(data1), summary2, source(data2), handler);
+		mdp.process();
+		
+		Assert.assertEquals(0, handler.dSize);
+		Assert.assertEquals(0, mdp.getReadTripleCount());
+	}
+
+	@Test
+	public void onlyChangedRangesAreRead() {
+		ListTripleWriter data1 = new ListTripleWriter();
+		ListTripleWriter data2 = new ListTripleWriter();
+		MerkleSummary summary1 = sort(generate(2000, -1), data1);
+		MerkleSummary summary2 = sort(generate(2000, 1000), data2);
+		
+		DeltaHandler expected = new DeltaHandler();
+		new DiffProcessor(data1.iterator(), data2.iterator(), expected).process();
+		
+		DeltaHandler handler = new DeltaHandler();
+		MerkleDiffProcessor mdp = new MerkleDiffProcessor(summary1, source(data1), summary2, source(data2), handler);
+		mdp.process();
+
+		Assert.assertTrue(expected.dSize > 0);
+		Assert.assertEquals(delta(expected), delta(handler));
+		Assert.assertTrue("Too many triples read: " + mdp.getReadTripleCount(), mdp.getReadTripleCount() < (data1.size() + data2.size()) / 10);
+	}
+	
+	@Test
+	public void swappedIsomorphicCopies() {
+		// copies are numbered in order of discovery, so equal clusters swap their labels
+		List<Triple> graph1 = TestHelper.parseTripleList(new String[] {
+			"<abc> <x> _:a",
+			"<def> <x> _:b",
+			"_:a <arrow> _:a1",
+			"_:a1 <val> \"v\"",
+			"_:b <arrow> _:b1",
+			"_:b1 <val> \"v\"",
+			"<abc> <y> \"q\"",
+		});
+		List<Triple> graph2 = TestHelper.parseTripleList(new String[] {
+			"<abc> <x> _:b",
+			"<def> <x> _:a",
+			"_:a <arrow> _:a1",
+			"_:a1 <val> \"v\"",
+			"_:b <arrow> _:b1",
+			"_:b1 <val> \"v\"",
+			"<abc> <y> \"r\"",
+		});
+		ListTripleWriter data1 = new ListTripleWriter();
+		ListTripleWriter data2 = new ListTripleWriter();
+		MerkleSummary summary1 = sort(graph1, data1);
+		MerkleSummary summary2 = sort(graph2, data2);
+		Assert.assertFalse(objectOf(data1, "abc", "x").equals(objectOf(data2, "abc", "x")));
+
+		DeltaHandler expected = new DeltaHandler();
+		new DiffProcessor(data1.iterator(), data2.iterator(), expected).process();
+		
+		DeltaHandler handler = new DeltaHandler();
+		new MerkleDiffProcessor(summary1, source(data1), summary2, source(data2), handler).process();
+
+		Assert.assertEquals(2, delta(expected).size());
+		Assert.assertEquals(delta(expected), delta(handler));
+	}
+
+	@Test
+	public void noNamedSubjects() {
+		ListTripleWriter data1 = new ListTripleWriter();
+		ListTripleWriter data2 = new ListTripleWriter();
+		MerkleSummary summary1 = sort(generateBlanks(1000, -1), data1);
+		MerkleSummary summary2 = sort(generateBlanks(1000, 500), data2);
+		Assert.assertEquals(MerkleSummary.SECTION_BLANKS, summary1.getBlock(0).section);
+		Assert.assertEquals(MerkleSummary.SECTION_THIRD_KIND, summary1.getBlock(summary1.getBlockCount() - 1).section);
+		
+		DeltaHandler expected = new DeltaHandler();
+		new DiffProcessor(data1.iterator(), data2.iterator(), expected).process();
+		
+		DeltaHandler handler = new DeltaHandler();
+		MerkleDiffProcessor mdp = new MerkleDiffProcessor(summary1, source(data1), summary2, source(data2), handler);
+		mdp.process();
+		
+		Assert.assertTrue(expected.dSize > 0);
+		Assert.assertEquals(delta(expected), delta(handler));
+		Assert.assertTrue("Too many triples read: " + mdp.getReadTripleCount(), mdp.getReadTripleCount() < (data1.size() + data2.size()) / 10);
+	}
+	
+	/**
+	 * @param changed number of subject to modify, -1 for no modification 
+	 */
+	private List<Triple> generate(int size, int changed) {
+		List<Triple> triples = new ArrayList<Triple>();
+		for(int i = 0; i != size; ++i) {
+			Node s = new Node(NodeType.NAMED, "s" + i);
+			triples.add(new Triple(s, named("p"), literal(i == changed ? "changed" : "v" + i)));
+			if (i % 10 == 0) {
+				Node c = new Node(NodeType.BLANK, "c" + i);
+				Node d = new Node(NodeType.BLANK, "d" + i);
+				triples.add(new Triple(s, named("ref"), c));
+				triples.add(new Triple(c, named("arrow"), d));
+				triples.add(new Triple(d, named("val"), literal(i + 10 == changed ? "changed" : "d" + i)));
+			}
+		}
+		if (changed >= 0) {
+			triples.add(new Triple(named("added"), named("p"), literal("new")));
+		}
+		return triples;
+	}
+
+	/**
+	 * Chain of b-node clusters linked by not followed predicate (third kind triples).
+	 * @param changed number of cluster to modify, -1 for no modification 
+	 */
+	private List<Triple> generateBlanks(int size, int changed) {
+		List<Triple> triples = new ArrayList<Triple>();
+		for(int i = 0; i != size; ++i) {
+			Node c = new Node(NodeType.BLANK, "c" + i);
+			Node d = new Node(NodeType.BLANK, "d" + i);
+			triples.add(new Triple(c, named("arrow"), d));
+			triples.add(new Triple(d, named("val"), literal(i == changed ? "changed" : "d" + i)));
+			if (i > 0) {
+				triples.add(new Triple(new Node(NodeType.BLANK, "c" + (i - 1)), named("link"), c));
+			}
+		}
+		return triples;
+	}
+
+	private Node objectOf(List<Triple> triples, String subject, String predicate) {
+		for(Triple triple: triples) {
+			if (triple.subject.equals(named(subject)) && triple.predicate.equals(named(predicate))) {
+				return triple.object;
+			}
+		}
+		throw new AssertionError("No triple " + subject + " " + predicate);
+	}
+
+	private MerkleSummary sort(List<Triple> triples, ListTripleWriter data) {
+		MessageDigest hashAlgo = MessageDigesters.createSHA1();
+		MerkleSummaryWriter writer = new MerkleSummaryWriter(data);
+		new ToposortGraphProcessor(writer, Filters.inList(PROPS_TO_FOLLOW), hashAlgo).process(new SimpleGraphView(triples));
+		writer.done();
+		return writer.getSummary();
+	}
+	
+	private MerkleSummary reload(MerkleSummary summary) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		summary.write(bos);
+		return MerkleSummary.read(new ByteArrayInputStream(bos.toByteArray()));
+	}
+	
+	private Set<String> delta(DeltaHandler handler) {
+		Set<String> result = new HashSet<String>();
+		for(Pair<Triple, Triple> pair: handler) {
+			if (pair.a == null) {
+				result.add("+" + pair.b);
+			}
+			else if (pair.b == null) {
+				result.add("-" + pair.a);
+			}
+		}
+		return result;
+	}
+	
+	private static Node named(String uri) {
+		return new Node(NodeType.NAMED, uri);
+	}
+
+	private static Node literal(String text) {
+		return new Node(NodeType.LITERAL, text);
+	}
+
+	private static SeekableTripleSource source(final List<Triple> triples) {
+		return new SeekableTripleSource() {
+			public long size() {
+				return triples.size();
+			}
+			
+			public Iterator<Triple> read(long from, long to) {
+				return triples.subList((int)from, (int)to).iterator();
+			}
+		};
+	}
+}
@@ -0,0 +1,146 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.Filters;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NodeDictionaryTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	private static final String[] SOURCE = {
+		"_:a <arrow> _:b",
+		"_:b <arrow> _:c",
+		"_:c <arrow> _:a",
+		"_:a <no> \"123\"",
+		"_:x <arrow> _:y",
+		"_:y <arrow> \"nil\"",
+		"<abc> <x> _:a",
+		"<xyz> <x> _:x",
+		"<abc> <x> \"abc\"",
+		"<xyz> <y> <abc>",
+	};
+
+	@Test
+	public void idOrderIsComparatorOrder() {
+		NodeDictionaryBuilder builder = new NodeDictionaryBuilder();
+		for(Triple triple: TestHelper.parseTripleList(SOURCE)) {
+			builder.add(triple);
+		}
+		NodeDictionary dictionary = builder.build();
+		
+		for(int i = 0; i != dictionary.size(); ++i) {
+			DictionaryNode node = dictionary.getNode(i);
+			Assert.assertEquals(i, node.getId());
+			Assert.assertEquals(i, dictionary.getId(new Node(node.nodeType, node.getLexicalForm())));
+			if (i > 0) {
+				Assert.assertTrue(LexographicNodeComparator.INSTANCE.compare(dictionary.getNode(i - 1), node) < 0);
+			}
+		}
+		Assert.assertEquals(-1, dictionary.getId(new Node(NodeType.NAMED, "missing")));
+	}
+
+	@Test
+	public void internedNodesAreEqualToPlain() {
+		NodeDictionaryBuilder builder = new NodeDictionaryBuilder();
+		Node plain = new Node(NodeType.LITERAL, "123");
+		builder.add(plain);
+		NodeDictionary dictionary = builder.build();
+		
+		Node interned = dictionary.intern(plain);
+		Assert.assertTrue(interned instanceof DictionaryNode);
+		Assert.assertEquals(plain, interned);
+		Assert.assertEquals(interned, plain);
+		Assert.assertEquals(plain.hashCode(), interned.hashCode());
+		Assert.assertSame(interned, dictionary.intern(interned));
+	}
+
+	@Test
+	public void sortIsNotAffectedByInterning() {
+		List<Triple> triples = TestHelper.parseTripleList(SOURCE);
+		
+		NodeDictionaryBuilder builder = new NodeDictionaryBuilder();
+		for(Triple triple: triples) {
+			builder.add(triple);
+		}
+		NodeDictionary dictionary = builder.build();
+		List<Triple> interned = new ArrayList<Triple>();
+		for(Triple triple: triples) {
+			interned.add(dictionary.intern(triple));
+		}
+		
+		Assert.assertEquals(sort(triples).toString(), sort(interned).toString());
+	}
+
+	@Test
+	public void nodesInternedWhileCollectingAreBound() {
+		List<Triple> triples = TestHelper.parseTripleList(SOURCE);
+		
+		NodeDictionaryBuilder builder = new NodeDictionaryBuilder();
+		SimpleGraphView graph = new SimpleGraphView();
+		for(Triple triple: triples) {
+			graph.add(builder.intern(triple));
+		}
+		Node node = builder.intern(triples.get(0).subject);
+		Assert.assertSame(node, builder.intern(new Node(node.nodeType, node.getLexicalForm())));
+		Assert.assertEquals(-1, ((DictionaryNode)node).getId());
+		
+		NodeDictionary dictionary = builder.build();
+		Assert.assertSame(node, dictionary.intern(triples.get(0).subject));
+		Assert.assertSame(dictionary, ((DictionaryNode)node).getDictionary());
+		
+		// graph indexes are built before IDs have been assigned and should remain valid
+		Assert.assertEquals(sort(triples).toString(), sort(graph).toString());
+		for(Triple triple: triples) {
+			Iterator<Triple> it = graph.listStatements(triple.subject, triple.predicate, null);
+			boolean found = false;
+			while(it.hasNext()) {
+				found |= triple.equals(it.next());
+			}
+			Assert.assertTrue("Lookup failed " + triple, found);
+		}
+	}
+
+	private List<Triple> sort(List<Triple> triples) {
+		return sort(new SimpleGraphView(triples));
+	}
+
+	private List<Triple> sort(SimpleGraphView graph) {
+		MessageDigest hashAlgo = MessageDigesters.createSHA1();
+		ListTripleWriter writer = new ListTripleWriter();
+		new ToposortGraphProcessor(writer, Filters.inList(PROPS_TO_FOLLOW), hashAlgo).process(graph);
+		writer.done();
+		return writer;
+	}
+}
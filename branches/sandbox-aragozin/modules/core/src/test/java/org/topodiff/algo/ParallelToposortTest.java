@@ -0,0 +1,73 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.Filters;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ParallelToposortTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	@Test
+	public void executorDoesNotAffectResult() {
+		List<Triple> triples = new ArrayList<Triple>();
+		for(int i = 0; i != 50; ++i) {
+			// rings of different length, some of them isomorphic
+			int len = 1 + i % 4;
+			for(int j = 0; j != len; ++j) {
+				triples.add(TestHelper.triple("_:r" + i + "n" + j + " <arrow> _:r" + i + "n" + ((j + 1) % len)));
+			}
+			triples.add(TestHelper.triple("_:r" + i + "n0 <label> \"" + (i % 7) + "\""));
+			triples.add(TestHelper.triple("<root" + (i % 5) + "> <x> _:r" + i + "n0"));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Triple> plain = sort(triples, null);
+			List<Triple> parallel = sort(triples, executor);
+			Assert.assertEquals(triples.size(), parallel.size());
+			Assert.assertEquals(plain.toString(), parallel.toString());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private List<Triple> sort(List<Triple> triples, ExecutorService executor) {
+		ListTripleWriter writer = new ListTripleWriter();
+		new ToposortGraphProcessor(writer, Filters.inList(PROPS_TO_FOLLOW), MessageDigesters.createSHA1(), null, executor).process(new SimpleGraphView(triples));
+		writer.done();
+		return writer;
+	}
+}
@@ -0,0 +1,169 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.algo.TestHelper.DeltaHandler;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.IndexedTripleSource;
+import org.topodiff.util.Filters;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class PointDiffTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	private static final String[] SNAPSHOT1 = {
+		"_:a <arrow> _:b",
+		"_:b <arrow> \"x\"",
+		"_:c <arrow> _:d",
+		"_:d <arrow> \"y\"",
+		"_:c <link> _:a",
+		"<ex:a> <p> \"1\"",
+		"<ex:a> <q> _:a",
+		"<ex:b> <p> \"2\"",
+		"<ex:b> <q> _:c",
+		"<ex:c> <p> \"3\"",
+		"<other> <p> \"4\"",
+	};
+
+	private static final String[] SNAPSHOT2 = {
+		"_:a <arrow> _:b",
+		"_:b <arrow> \"x\"",
+		"_:c <arrow> _:d",
+		"_:d <arrow> \"z\"",
+		"_:c <link> _:a",
+		"<ex:a> <p> \"1\"",
+		"<ex:a> <q> _:a",
+		"<ex:b> <p> \"2\"",
+		"<ex:b> <q> _:c",
+		"<ex:c> <p> \"33\"",
+		"<other> <p> \"4\"",
+	};
+	
+	@Test
+	public void unchangedSubject() {
+		DeltaHandler handler = pointDiff(new Node(NodeType.NAMED, "ex:a"), null);
+		Assert.assertEquals(0, handler.dSize);
+		// own triples and cluster
+		Assert.assertEquals(4, handler.aSize);
+	}
+
+	@Test
+	public void changedLiteral() {
+		DeltaHandler handler = pointDiff(new Node(NodeType.NAMED, "ex:c"), null);
+		Assert.assertEquals(2, handler.dSize);
+	}
+
+	@Test
+	public void changedCluster() {
+		DeltaHandler handler = pointDiff(new Node(NodeType.NAMED, "ex:b"), null);
+		// reference to cluster and three triples of cluster are replaced
+		Assert.assertEquals(8, handler.dSize);
+	}
+
+	@Test
+	public void missingSubject() {
+		DeltaHandler handler = pointDiff(new Node(NodeType.NAMED, "ex:zzz"), null);
+		Assert.assertEquals(0, handler.aSize);
+		Assert.assertEquals(0, handler.dSize);
+	}
+
+	@Test
+	public void prefixRange() {
+		DeltaHandler all = TestHelper.createDeltaHandler();
+		new DiffProcessor(sort(SNAPSHOT1).iterator(), sort(SNAPSHOT2).iterator(), all).process();
+
+		DeltaHandler range = pointDiff(null, "ex:");
+		// "<other>" is outside of range, the rest of delta should be found
+		Assert.assertEquals(all.dSize, range.dSize);
+		Assert.assertEquals(all.aSize - 1, range.aSize);
+	}
+	
+	private DeltaHandler pointDiff(Node subject, String prefix) {
+		PointDiff diff = new PointDiff(new ListSource(sort(SNAPSHOT1)), new ListSource(sort(SNAPSHOT2)));
+		DeltaHandler handler = TestHelper.createDeltaHandler();
+		if (subject != null) {
+			diff.diffSubject(subject, handler);
+		}
+		else {
+			diff.diffPrefix(prefix, handler);
+		}
+		return handler;
+	}
+	
+	private List<Triple> sort(String[] source) {
+		ListTripleWriter writer = new ListTripleWriter();
+		new ToposortGraphProcessor(writer, Filters.inList(PROPS_TO_FOLLOW), MessageDigesters.createSHA1()).process(new SimpleGraphView(TestHelper.parseTripleList(source)));
+		writer.done();
+		return writer;
+	}
+	
+	/**
+	 * Index emulation, seeks to first triple of section not preceding subject.
+	 */
+	private static class ListSource implements IndexedTripleSource {
+		
+		private final List<Triple> triples;
+
+		public ListSource(List<Triple> triples) {
+			this.triples = triples;
+		}
+
+		public long size() {
+			return triples.size();
+		}
+
+		public Iterator<Triple> read(long from, long to) {
+			return triples.subList((int)from, (int)to).iterator();
+		}
+
+		public long seekSubject(int section, Node subject) {
+			for(int i = 0; i != triples.size(); ++i) {
+				if (getSection(i) == section && triples.get(i).subject.getLexicalForm().compareTo(subject.getLexicalForm()) >= 0) {
+					return i;
+				}
+			}
+			return triples.size();
+		}
+
+		public int getSection(long triple) {
+			int section = MerkleSummary.SECTION_BLANKS;
+			for(int i = 0; i <= triple && i < triples.size(); ++i) {
+				if (!triples.get(i).subject.isAnon()) {
+					section = MerkleSummary.SECTION_NAMED;
+				}
+				else if (section == MerkleSummary.SECTION_NAMED) {
+					section = MerkleSummary.SECTION_THIRD_KIND;
+				}
+			}
+			return section;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.hash.MessageDigesters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortBudgetTest {
+
+	@Test
+	public void largeBudgetDoesNotAffectResult() {
+		List<Triple> triples = createRing(6);
+		ListTripleWriter plain = new ListTripleWriter();
+		ListTripleWriter budgeted = new ListTripleWriter();
+		process(triples, plain, null);
+		ToposortGraphProcessor processor = process(triples, budgeted, new SortBudget(1000000, 0, SortBudget.Fallback.FAIL));
+		
+		Assert.assertEquals(plain.toString(), budgeted.toString());
+		Assert.assertTrue(processor.getBudgetViolations().isEmpty());
+	}
+	
+	@Test(expected = SortBudget.ExceededException.class)
+	public void failFast() {
+		process(createRing(8), new ListTripleWriter(), new SortBudget(20, 0, SortBudget.Fallback.FAIL));
+	}
+
+	@Test
+	public void stableFallback() {
+		List<Triple> triples = createRing(8);
+		ListTripleWriter result = new ListTripleWriter();
+		ToposortGraphProcessor processor = process(triples, result, new SortBudget(20, 0, SortBudget.Fallback.STABLE));
+		
+		Assert.assertEquals(triples.size(), result.size());
+		Assert.assertTrue(result.get(0).subject.getLexicalForm().startsWith("b_nc"));
+		Assert.assertEquals(1, processor.getBudgetViolations().size());
+		Assert.assertEquals(triples.size(), processor.getBudgetViolations().get(0).clusterSize);
+		Assert.assertEquals(SortBudget.Fallback.STABLE, processor.getBudgetViolations().get(0).fallback);
+		
+		// same input - same numbering
+		ListTripleWriter again = new ListTripleWriter();
+		process(triples, again, new SortBudget(20, 0, SortBudget.Fallback.STABLE));
+		Assert.assertEquals(result.toString(), again.toString());
+	}
+
+	@Test
+	public void splitFallback() {
+		List<Triple> triples = createRing(8);
+		ListTripleWriter result = new ListTripleWriter();
+		ToposortGraphProcessor processor = process(triples, result, new SortBudget(20, 0, SortBudget.Fallback.SPLIT));
+		
+		Assert.assertEquals(triples.size(), result.size());
+		Assert.assertEquals(1, processor.getBudgetViolations().size());
+		Assert.assertEquals(SortBudget.Fallback.SPLIT, processor.getBudgetViolations().get(0).fallback);
+	}
+	
+	@Test
+	public void slowClustersAreCaptured() {
+		final List<Collection<Triple>> captured = new ArrayList<Collection<Triple>>();
+		ToposortGraphProcessor processor = new ToposortGraphProcessor(new ListTripleWriter(), null, MessageDigesters.createSHA1(), null, null, new SortBudget(20, 0, SortBudget.Fallback.STABLE));
+		processor.setClusterCapture(new ClusterCapture() {
+			public void capture(Collection<Triple> cluster, long elapsedNanos) {
+				captured.add(new ArrayList<Triple>(cluster));
+			}
+		}, 0);
+		List<Triple> triples = createRing(8);
+		processor.process(new SimpleGraphView(triples));
+		
+		Assert.assertEquals(1, captured.size());
+		Assert.assertEquals(new HashSet<Triple>(triples), new HashSet<Triple>(captured.get(0)));
+	}
+
+	private ToposortGraphProcessor process(List<Triple> triples, ListTripleWriter writer, SortBudget budget) {
+		ToposortGraphProcessor processor = new ToposortGraphProcessor(writer, null, MessageDigesters.createSHA1(), null, null, budget);
+		processor.process(new SimpleGraphView(triples));
+		return processor;
+	}
+	
+	/**
+	 * Symmetric ring, every b-node looks the same.
+	 */
+	private List<Triple> createRing(int size) {
+		List<String> text = new ArrayList<String>();
+		for(int i = 0; i != size; ++i) {
+			text.add("_:r" + i + " <next> _:r" + ((i + 1) % size));
+			text.add("_:r" + i + " <value> \"x\"");
+		}
+		return TestHelper.parseTripleList(text.toArray(new String[text.size()]));
+	}
+}
@@ -0,0 +1,111 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.util.ParallelScan;
+import org.topodiff.util.SplittableSource;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SplittableGraphViewTest {
+
+	private static final String[] GRAPH = {
+		"<a> <p> <b>",
+		"<a> <p> <c>",
+		"<a> <q> \"x\"",
+		"<b> <p> <c>",
+		"<b> <q> _:1",
+		"_:1 <p> <a>",
+		"_:1 <q> \"y\"",
+		"<c> <p> <a>",
+	};
+	
+	@Test
+	public void fullScanMatchesListing() {
+		SimpleGraphView graph = new SimpleGraphView(TestHelper.parseTripleList(GRAPH));
+		assertSameScan(graph, null, null, null);
+	}
+
+	@Test
+	public void rangeScanMatchesListing() {
+		SimpleGraphView graph = new SimpleGraphView(TestHelper.parseTripleList(GRAPH));
+		assertSameScan(graph, new Node(NodeType.NAMED, "a"), null, null);
+		assertSameScan(graph, null, new Node(NodeType.NAMED, "p"), null);
+		assertSameScan(graph, null, null, new Node(NodeType.NAMED, "c"));
+		assertSameScan(graph, new Node(NodeType.NAMED, "z"), null, null);
+	}
+	
+	@Test
+	public void fullyBoundScanMatchesListing() {
+		SimpleGraphView graph = new SimpleGraphView(TestHelper.parseTripleList(GRAPH));
+		assertSameScan(graph, new Node(NodeType.NAMED, "a"), new Node(NodeType.NAMED, "p"), new Node(NodeType.NAMED, "b"));
+	}
+
+	@Test
+	public void largeRangeIsSplitToSingleTriples() {
+		List<Triple> triples = new ArrayList<Triple>();
+		for(int i = 0; i != 100; ++i) {
+			triples.add(TestHelper.triple("<s" + (i % 7) + "> <p" + (i % 3) + "> \"" + i + "\""));
+		}
+		SimpleGraphView graph = new SimpleGraphView(triples);
+		assertSameScan(graph, null, null, null);
+		assertSameScan(graph, new Node(NodeType.NAMED, "s3"), null, null);
+		assertSameScan(graph, null, new Node(NodeType.NAMED, "p1"), null);
+
+		SplittableSource<Triple> source = graph.splitStatements(null, new Node(NodeType.NAMED, "p2"), null);
+		Assert.assertEquals(33, source.size());
+		Assert.assertEquals(33, ParallelScan.split(source, 64, 1).size());
+	}
+	
+	@Test
+	public void sizeReflectsAdd() {
+		SimpleGraphView graph = new SimpleGraphView(TestHelper.parseTripleList(GRAPH));
+		Assert.assertEquals(GRAPH.length, graph.splitStatements(null, null, null).size());
+		graph.add(TestHelper.triple("<d> <p> <a>"));
+		Assert.assertEquals(GRAPH.length + 1, graph.splitStatements(null, null, null).size());
+	}
+	
+	private void assertSameScan(SimpleGraphView graph, Node s, Node p, Node o) {
+		List<Triple> expected = toList(graph.listStatements(s, p, o));
+		SplittableSource<Triple> source = graph.splitStatements(s, p, o);
+		Assert.assertEquals(expected.size(), source.size());
+		
+		List<Triple> joined = new ArrayList<Triple>();
+		for(SplittableSource<Triple> chunk: ParallelScan.split(source, 3, 1)) {
+			List<Triple> part = toList(chunk.iterator());
+			Assert.assertEquals(chunk.size(), part.size());
+			joined.addAll(part);
+		}
+		Assert.assertEquals(expected, joined);
+	}
+	
+	private static <T> List<T> toList(Iterator<T> it) {
+		List<T> list = new ArrayList<T>();
+		while(it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,134 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Triple;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class StoredClusterMatcherTest {
+
+	private static final String[] CYCLE = {
+		"_:b0 <arrow> _:b1",
+		"_:b1 <arrow> _:b2",
+		"_:b2 <arrow> _:b0",
+		"_:b0 <no> \"123\"",
+	};
+
+	// children are distinguished only by their own triples, first candidate is wrong
+	private static final String[] FORK = {
+		"_:b0 <p> _:b1",
+		"_:b0 <p> _:b2",
+		"_:b1 <q> \"1\"",
+		"_:b2 <q> \"2\"",
+	};
+
+	@Test
+	public void cycleWithLiteral() {
+		List<Triple> canonical = TestHelper.parseTripleList(CYCLE);
+		Set<Triple> subgraph = set(
+			"_:3 <arrow> _:1",
+			"_:1 <arrow> _:2",
+			"_:2 <no> \"123\"",
+			"_:2 <arrow> _:3"
+		);
+		List<Triple> matched = StoredClusterMatcher.match(canonical, subgraph);
+		Assert.assertEquals(TestHelper.parseTripleList(new String[] {
+			"_:2 <arrow> _:3",
+			"_:3 <arrow> _:1",
+			"_:1 <arrow> _:2",
+			"_:2 <no> \"123\"",
+		}), matched);
+	}
+
+	@Test
+	public void symmetricRing() {
+		List<String> ring = new ArrayList<String>();
+		List<String> rotated = new ArrayList<String>();
+		for(int i = 0; i != 8; ++i) {
+			ring.add("_:b" + i + " <arrow> _:b" + ((i + 1) % 8));
+			rotated.add("_:n" + ((i + 5) % 8) + " <arrow> _:n" + ((i + 6) % 8));
+		}
+		List<Triple> matched = StoredClusterMatcher.match(
+				TestHelper.parseTripleList(ring.toArray(new String[ring.size()])),
+				set(rotated.toArray(new String[rotated.size()])));
+		Assert.assertNotNull(matched);
+		Assert.assertEquals(set(rotated.toArray(new String[rotated.size()])), new HashSet<Triple>(matched));
+	}
+
+	@Test
+	public void wrongBindingIsBacktracked() {
+		Set<Triple> subgraph = set(
+			"_:x <q> \"2\"",
+			"_:r <p> _:x",
+			"_:r <p> _:y",
+			"_:y <q> \"1\""
+		);
+		List<Triple> matched = StoredClusterMatcher.match(TestHelper.parseTripleList(FORK), subgraph);
+		Assert.assertEquals(TestHelper.parseTripleList(new String[] {
+			"_:r <p> _:y",
+			"_:r <p> _:x",
+			"_:y <q> \"1\"",
+			"_:x <q> \"2\"",
+		}), matched);
+	}
+
+	@Test
+	public void differentClustersAreNotMatched() {
+		List<Triple> canonical = TestHelper.parseTripleList(CYCLE);
+		// other literal
+		Assert.assertNull(StoredClusterMatcher.match(canonical, set(
+			"_:1 <arrow> _:2",
+			"_:2 <arrow> _:3",
+			"_:3 <arrow> _:1",
+			"_:1 <no> \"124\""
+		)));
+		// same degrees, but 2-cycle and self loop instead of 3-cycle
+		Assert.assertNull(StoredClusterMatcher.match(canonical, set(
+			"_:1 <arrow> _:2",
+			"_:2 <arrow> _:1",
+			"_:3 <arrow> _:3",
+			"_:1 <no> \"123\""
+		)));
+		// other size
+		Assert.assertNull(StoredClusterMatcher.match(canonical, set(
+			"_:1 <arrow> _:1",
+			"_:1 <no> \"123\""
+		)));
+	}
+
+	@Test
+	public void stepLimitGivesUp() {
+		Set<Triple> subgraph = set(
+			"_:x <q> \"2\"",
+			"_:r <p> _:x",
+			"_:r <p> _:y",
+			"_:y <q> \"1\""
+		);
+		Assert.assertNull(StoredClusterMatcher.match(TestHelper.parseTripleList(FORK), subgraph, 2));
+		Assert.assertNotNull(StoredClusterMatcher.match(TestHelper.parseTripleList(FORK), subgraph, 100));
+	}
+
+	private static Set<Triple> set(String... triples) {
+		return new HashSet<Triple>(TestHelper.parseTripleList(triples));
+	}
+}
@@ -0,0 +1,80 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.util.Filters;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class StreamingClusterBuilderTest {
+
+	private final static Set<Node> PROPS_TO_FOLLOW = new HashSet<Node>();
+	static {
+		PROPS_TO_FOLLOW.add(new Node(NodeType.NAMED, "arrow"));
+	}
+
+	@Test
+	public void clustersAreJoinedRegardlessOfOrder() {
+		String[] source = {
+			"_:c <arrow> _:d",
+			"_:a <arrow> _:b",
+			"_:x <p> \"1\"",
+			"_:b <arrow> _:c",
+			"_:a <no> _:d",
+			"_:x <no> _:a",
+			"<abc> <x> _:a",
+			"_:d <p> \"2\"",
+		};
+		
+		StreamingClusterBuilder builder = new StreamingClusterBuilder(Filters.inList(PROPS_TO_FOLLOW));
+		builder.addAll(TestHelper.parseTripleList(source).iterator());
+		
+		List<Set<Triple>> clusters = builder.getClusters();
+		Assert.assertEquals(2, clusters.size());
+		// order of first appearance
+		Assert.assertEquals(5, clusters.get(0).size());
+		Assert.assertEquals(1, clusters.get(1).size());
+		
+		// "_:x <no> _:a" links different clusters via not followed predicate
+		Assert.assertEquals(1, builder.getThirdKind().size());
+		Assert.assertEquals("no", builder.getThirdKind().iterator().next().predicate.getLexicalForm());
+		Assert.assertEquals("x", builder.getThirdKind().iterator().next().subject.getLexicalForm());
+	}
+
+	@Test
+	public void nullFilterFollowsAllPredicates() {
+		String[] source = {
+			"_:a <p> _:b",
+			"_:x <q> _:b",
+			"_:b <r> \"1\"",
+		};
+		
+		StreamingClusterBuilder builder = new StreamingClusterBuilder(null);
+		builder.addAll(TestHelper.parseTripleList(source).iterator());
+		
+		Assert.assertEquals(1, builder.getClusters().size());
+		Assert.assertEquals(3, builder.getClusters().get(0).size());
+		Assert.assertTrue(builder.getThirdKind().isEmpty());
+	}
+}
@@ -0,0 +1,128 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.algo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class TreeClusterSorterTest {
+
+	@Test
+	public void treeDetection() {
+		Assert.assertTrue(TreeClusterSorter.isTree(TestHelper.parseTripleList(new String[]{
+				"_:a <p> _:b",
+				"_:a <p> _:c",
+				"_:c <q> \"1\"",
+		})));
+		// two incoming edges
+		Assert.assertFalse(TreeClusterSorter.isTree(TestHelper.parseTripleList(new String[]{
+				"_:a <p> _:b",
+				"_:a <q> _:b",
+		})));
+		// cycle
+		Assert.assertFalse(TreeClusterSorter.isTree(TestHelper.parseTripleList(new String[]{
+				"_:a <p> _:b",
+				"_:b <p> _:c",
+				"_:c <p> _:a",
+		})));
+	}
+	
+	@Test
+	public void listIsSortedSameAsGeneric() {
+		List<Triple> triples = new ArrayList<Triple>();
+		Node first = new Node(NodeType.NAMED, "first");
+		Node rest = new Node(NodeType.NAMED, "rest");
+		for(int i = 0; i != 50; ++i) {
+			Node cell = new Node(NodeType.BLANK, "l" + i);
+			// repeated items
+			triples.add(new Triple(cell, first, new Node(NodeType.LITERAL, String.valueOf(i % 7))));
+			triples.add(new Triple(cell, rest, i == 49 ? new Node(NodeType.NAMED, "nil") : new Node(NodeType.BLANK, "l" + (i + 1))));
+		}
+		assertSameAsGeneric(triples);
+	}
+
+	@Test
+	public void symmetricTreeIsSortedSameAsGeneric() {
+		List<Triple> triples = new ArrayList<Triple>();
+		Node root = new Node(NodeType.BLANK, "r");
+		Node p = new Node(NodeType.NAMED, "p");
+		Node q = new Node(NodeType.NAMED, "q");
+		for(int i = 0; i != 4; ++i) {
+			Node child = new Node(NodeType.BLANK, "c" + i);
+			triples.add(new Triple(root, p, child));
+			for(int j = 0; j != 2; ++j) {
+				Node leaf = new Node(NodeType.BLANK, "c" + i + "_" + j);
+				triples.add(new Triple(child, q, leaf));
+				triples.add(new Triple(leaf, q, new Node(NodeType.LITERAL, "x")));
+			}
+		}
+		Collections.shuffle(triples, new Random(4));
+		assertSameAsGeneric(triples);
+	}
+
+	@Test
+	public void randomTreesAreSortedSameAsGeneric() {
+		Random rnd = new Random(1);
+		for(int n = 0; n != 300; ++n) {
+			List<Triple> triples = createRandomTree(rnd, 2 + rnd.nextInt(8));
+			Collections.shuffle(triples, rnd);
+			assertSameAsGeneric(triples);
+		}
+	}
+
+	private void assertSameAsGeneric(List<Triple> triples) {
+		Assert.assertTrue(TreeClusterSorter.isTree(triples));
+		ToposortUtils toolkit = ToposortUtils.INSTANCE;
+		List<Triple> generic = toolkit.sort(triples);
+		List<Triple> sorted = TreeClusterSorter.INSTANCE.sort(triples);
+		Assert.assertEquals(triples.size(), sorted.size());
+		Assert.assertEquals(toolkit.getDigest(generic), toolkit.getDigest(sorted));
+	}
+	
+	/**
+	 * Small alphabet of predicates and values, so there are plenty of ties and symmetric subtrees.
+	 */
+	private List<Triple> createRandomTree(Random rnd, int size) {
+		List<Triple> triples = new ArrayList<Triple>();
+		List<Node> nodes = new ArrayList<Node>();
+		nodes.add(new Node(NodeType.BLANK, "n0"));
+		for(int i = 1; i != size; ++i) {
+			Node parent = nodes.get(rnd.nextInt(nodes.size()));
+			Node child = new Node(NodeType.BLANK, "n" + i);
+			nodes.add(child);
+			triples.add(new Triple(parent, new Node(NodeType.NAMED, "p" + rnd.nextInt(2)), child));
+		}
+		for(Node node: nodes) {
+			int attrs = rnd.nextInt(3);
+			for(int i = 0; i != attrs; ++i) {
+				Triple triple = new Triple(node, new Node(NodeType.NAMED, "a" + rnd.nextInt(2)), new Node(NodeType.LITERAL, String.valueOf(rnd.nextInt(2))));
+				if (!triples.contains(triple)) {
+					triples.add(triple);
+				}
+			}
+		}
+		return triples;
+	}
+}
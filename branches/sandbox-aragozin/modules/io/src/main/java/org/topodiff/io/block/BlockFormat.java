@@ -0,0 +1,81 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.block;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.topodiff.graph.Node;
+import org.topodiff.io.codec.BinaryNodeCodec;
+
+/**
+ * Constants and index entry of block triple file.
+ * <br/>
+ * File layout
+ * <pre>
+ * header   - magic, version
+ * blocks   - deflated triple records, each block starts with new subject
+ * index    - block count, block entries, fingerprint of sort algorithm, graph summary (since version 2)
+ * footer   - index offset, triple count, version, magic
+ * </pre>
+ * Triple record is a flag byte (new subject or same as previous triple) followed by
+ * subject (if new), predicate and object in {@link BinaryNodeCodec} encoding.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class BlockFormat {
+
+	static final int MAGIC = 0x5444424B; // TDBK
+	static final int VERSION = 2;
+	static final int VERSION_NO_SUMMARY = 1;
+	static final int HEADER_SIZE = 8;
+	static final int FOOTER_SIZE = 24;
+
+	static final byte SAME_SUBJECT = 0;
+	static final byte NEW_SUBJECT = 1;
+	
+	static class BlockEntry {
+		
+		long offset;
+		int compressedSize;
+		int rawSize;
+		long firstTriple;
+		int tripleCount;
+		int section;
+		Node firstSubject;
+		
+		void write(DataOutput out) throws IOException {
+			out.writeLong(offset);
+			out.writeInt(compressedSize);
+			out.writeInt(rawSize);
+			out.writeLong(firstTriple);
+			out.writeInt(tripleCount);
+			out.writeByte(section);
+			BinaryNodeCodec.writeNode(out, firstSubject);
+		}
+
+		static BlockEntry read(DataInput in) throws IOException {
+			BlockEntry entry = new BlockEntry();
+			entry.offset = in.readLong();
+			entry.compressedSize = in.readInt();
+			entry.rawSize = in.readInt();
+			entry.firstTriple = in.readLong();
+			entry.tripleCount = in.readInt();
+			entry.section = in.readByte();
+			entry.firstSubject = BinaryNodeCodec.readNode(in);
+			return entry;
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.block;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.topodiff.algo.GraphSummary;
+import org.topodiff.algo.MerkleSummary;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IndexedTripleSource;
+import org.topodiff.io.block.BlockFormat.BlockEntry;
+import org.topodiff.io.codec.BinaryNodeCodec;
+import org.topodiff.util.SplittableSource;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Reader of block compressed triple file written by {@link BlockTripleWriter}.
+ * <br/>
+ * Block index is loaded in memory on open. Blocks are read and decompressed on demand,
+ * {@link #readBlock(int)} could be called from multiple threads concurrently
+ * (only file access is serialized).
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BlockTripleFile implements IndexedTripleSource {
+
+	private final RandomAccessFile file;
+	private final List<BlockEntry> blocks;
+	private final String fingerprint;
+	private final GraphSummary summary;
+	private final long tripleCount;
+	
+	public BlockTripleFile(File path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		try {
+			long length = file.length();
+			if (length < BlockFormat.HEADER_SIZE + BlockFormat.FOOTER_SIZE) {
+				throw new IOException("File is truncated " + path);
+			}
+			file.seek(0);
+			if (file.readInt() != BlockFormat.MAGIC) {
+				throw new IOException("Unknown format of " + path);
+			}
+			int version = file.readInt();
+			if (version != BlockFormat.VERSION && version != BlockFormat.VERSION_NO_SUMMARY) {
+				throw new IOException("Unknown format version " + version + " of " + path);
+			}
+			file.seek(length - BlockFormat.FOOTER_SIZE);
+			long indexOffset = file.readLong();
+			tripleCount = file.readLong();
+			if (file.readInt() != version || file.readInt() != BlockFormat.MAGIC) {
+				throw new IOException("File is truncated " + path);
+			}
+			
+			byte[] index = new byte[(int)(length - BlockFormat.FOOTER_SIZE - indexOffset)];
+			file.seek(indexOffset);
+			file.readFully(index);
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(index));
+			int n = dis.readInt();
+			blocks = new ArrayList<BlockEntry>(n);
+			for(int i = 0; i != n; ++i) {
+				blocks.add(BlockEntry.read(dis));
+			}
+			byte[] fp = new byte[dis.readInt()];
+			dis.readFully(fp);
+			fingerprint = new String(fp, Encodings.UTF8);
+			summary = version == BlockFormat.VERSION_NO_SUMMARY ? null : GraphSummary.read(dis);
+		}
+		catch(IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if file starts with block file magic (file is not validated further)
+	 */
+	public static boolean isBlockFile(File path) throws IOException {
+		if (!path.isFile() || path.length() < BlockFormat.HEADER_SIZE) {
+			return false;
+		}
+		DataInputStream dis = new DataInputStream(new FileInputStream(path));
+		try {
+			return dis.readInt() == BlockFormat.MAGIC;
+		}
+		finally {
+			dis.close();
+		}
+	}
+	
+	/**
+	 * @return fingerprint of algorithm used to sort triples
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	
+	/**
+	 * @return summary of stream or <code>null</code> if file was written before summaries were introduced 
+	 */
+	public GraphSummary getSummary() {
+		return summary;
+	}
+
+	public long size() {
+		return tripleCount;
+	}
+
+	public int getBlockCount() {
+		return blocks.size();
+	}
+
+	public long getBlockFirstTriple(int block) {
+		return blocks.get(block).firstTriple;
+	}
+
+	public int getBlockTripleCount(int block) {
+		return blocks.get(block).tripleCount;
+	}
+
+	public Node getBlockFirstSubject(int block) {
+		return blocks.get(block).firstSubject;
+	}
+
+	/**
+	 * @return section of stream (see {@link MerkleSummary#SECTION_NAMED} etc) block starts in
+	 */
+	public int getBlockSection(int block) {
+		return blocks.get(block).section;
+	}
+	
+	/**
+	 * Subjects are ordered by lexical form within section of sorted stream, 
+	 * so block could be found using binary search over first subjects of blocks.
+	 * @return index of last block starting at or before given subject, or -1 if subject precedes all blocks of section
+	 */
+	public int findBlock(int section, Node subject) {
+		int lo = 0;
+		int hi = blocks.size();
+		// first block which starts after subject
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compare(blocks.get(mid), section, subject) <= 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo - 1;
+	}
+	
+	public long seekSubject(int section, Node subject) {
+		int block = findBlock(section, subject);
+		return block < 0 ? 0 : blocks.get(block).firstTriple;
+	}
+
+	public int getSection(long triple) {
+		int block = getBlockOfTriple(triple);
+		if (block < 0) {
+			// empty file
+			return MerkleSummary.SECTION_BLANKS;
+		}
+		BlockEntry entry = blocks.get(block);
+		int section = entry.section;
+		if (triple == entry.firstTriple) {
+			return section;
+		}
+		List<Triple> triples = readBlock(block);
+		for(int i = 1; i <= triple - entry.firstTriple; ++i) {
+			if (!triples.get(i).subject.isAnon()) {
+				section = MerkleSummary.SECTION_NAMED;
+			}
+			else if (section == MerkleSummary.SECTION_NAMED) {
+				section = MerkleSummary.SECTION_THIRD_KIND;
+			}
+		}
+		return section;
+	}
+	
+	/**
+	 * Reads and decompresses single block. Thread safe.
+	 */
+	public List<Triple> readBlock(int n) {
+		BlockEntry entry = blocks.get(n);
+		byte[] compressed = new byte[entry.compressedSize];
+		try {
+			synchronized(file) {
+				file.seek(entry.offset);
+				file.readFully(compressed);
+			}
+			
+			byte[] raw = new byte[entry.rawSize];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(compressed);
+				int len = 0;
+				while(len < raw.length && !inflater.finished()) {
+					int m = inflater.inflate(raw, len, raw.length - len);
+					if (m == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					len += m;
+				}
+				if (len != raw.length) {
+					throw new IOException("Block #" + n + " is corrupted");
+				}
+			}
+			finally {
+				inflater.end();
+			}
+			
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(raw));
+			List<Triple> triples = new ArrayList<Triple>(entry.tripleCount);
+			Node subject = null;
+			for(int i = 0; i != entry.tripleCount; ++i) {
+				if (dis.readByte() == BlockFormat.NEW_SUBJECT) {
+					subject = BinaryNodeCodec.readNode(dis);
+				}
+				Node predicate = BinaryNodeCodec.readNode(dis);
+				Node object = BinaryNodeCodec.readNode(dis);
+				triples.add(new Triple(subject, predicate, object));
+			}
+			return triples;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read block #" + n, e);
+		} catch (DataFormatException e) {
+			throw new RuntimeException("Block #" + n + " is corrupted", e);
+		}
+	}
+
+	/**
+	 * @return number of block containing triple
+	 */
+	public int getBlockOfTriple(long triple) {
+		int lo = 0;
+		int hi = blocks.size();
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (blocks.get(mid).firstTriple <= triple) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo - 1;
+	}
+	
+	public Iterator<Triple> read(long from, long to) {
+		if (from < 0 || to > tripleCount || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is out of [0, " + tripleCount + ")");
+		}
+		return new RangeIterator(from, to);
+	}
+	
+	/**
+	 * Splittable source over all triples of file, chunks are aligned to blocks.
+	 * Chunks could be traversed concurrently.
+	 */
+	public SplittableSource<Triple> splitTriples() {
+		return new BlockRangeSource(0, blocks.size());
+	}
+	
+	public void close() throws IOException {
+		synchronized(file) {
+			file.close();
+		}
+	}
+	
+	private static int compare(BlockEntry entry, int section, Node subject) {
+		if (entry.section != section) {
+			return entry.section < section ? -1 : 1;
+		}
+		return entry.firstSubject.getLexicalForm().compareTo(subject.getLexicalForm());
+	}
+	
+	private class BlockRangeSource implements SplittableSource<Triple> {
+		
+		private int fromBlock;
+		private final int toBlock;
+		
+		public BlockRangeSource(int fromBlock, int toBlock) {
+			this.fromBlock = fromBlock;
+			this.toBlock = toBlock;
+		}
+
+		public long size() {
+			return firstTriple(toBlock) - firstTriple(fromBlock);
+		}
+
+		public SplittableSource<Triple> trySplit() {
+			int mid = (fromBlock + toBlock) >>> 1;
+			if (mid == fromBlock) {
+				return null;
+			}
+			BlockRangeSource prefix = new BlockRangeSource(fromBlock, mid);
+			fromBlock = mid;
+			return prefix;
+		}
+
+		public Iterator<Triple> iterator() {
+			return read(firstTriple(fromBlock), firstTriple(toBlock));
+		}
+		
+		private long firstTriple(int block) {
+			return block == blocks.size() ? tripleCount : blocks.get(block).firstTriple;
+		}
+	}
+	
+	private class RangeIterator implements Iterator<Triple> {
+
+		private long position;
+		private final long to;
+		private int block;
+		private Iterator<Triple> blockIterator = Collections.<Triple>emptyList().iterator();
+		
+		public RangeIterator(long from, long to) {
+			this.position = from;
+			this.to = to;
+			if (from < to) {
+				block = getBlockOfTriple(from);
+				List<Triple> triples = readBlock(block);
+				blockIterator = triples.subList((int)(from - blocks.get(block).firstTriple), triples.size()).iterator();
+			}
+		}
+
+		public boolean hasNext() {
+			return position < to;
+		}
+
+		public Triple next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (!blockIterator.hasNext()) {
+				blockIterator = readBlock(++block).iterator();
+			}
+			++position;
+			return blockIterator.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.block;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.topodiff.algo.GraphSummary;
+import org.topodiff.algo.MerkleSummary;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.block.BlockFormat.BlockEntry;
+import org.topodiff.io.codec.BinaryNodeCodec;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Writes sorted triple stream (output of {@link org.topodiff.io.sort.GraphSortMethod}) 
+ * to block compressed file, see {@link BlockFormat}.
+ * <br/>
+ * Blocks are cut on subject boundaries once raw size reaches target block size, 
+ * so triples of one subject never span blocks.
+ *
+ * @see BlockTripleFile
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BlockTripleWriter implements SortedTripleReceiver {
+
+	public static final int DEFAULT_BLOCK_SIZE = 64 << 10;
+	
+	private String fingerprint;
+	private final int blockSize;
+	private final CountingOutputStream out;
+	private final DataOutputStream dataOut;
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+	
+	private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream blockOut = new DataOutputStream(blockBuffer);
+	private final List<BlockEntry> blocks = new ArrayList<BlockEntry>();
+	private final GraphSummary.Builder summaryBuilder = new GraphSummary.Builder();
+	private GraphSummary summary;
+	private byte[] compressBuffer = new byte[8 << 10];
+	
+	private long tripleCount;
+	private boolean namedSeen;
+	private Node lastSubject;
+	private BlockEntry block;
+	private boolean done;
+	
+	public BlockTripleWriter(File file, String fingerprint) throws IOException {
+		this(file, fingerprint, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param fingerprint fingerprint of sort algorithm, see {@link org.topodiff.io.sort.GraphSortMethod#getAlgorithmFingerPrint()}
+	 * @param blockSize target raw size of block in bytes
+	 */
+	public BlockTripleWriter(File file, String fingerprint, int blockSize) throws IOException {
+		this.fingerprint = fingerprint;
+		this.blockSize = blockSize;
+		FileOutputStream fos = new FileOutputStream(file);
+		this.out = new CountingOutputStream(new BufferedOutputStream(fos));
+		this.dataOut = new DataOutputStream(out);
+		try {
+			dataOut.writeInt(BlockFormat.MAGIC);
+			dataOut.writeInt(BlockFormat.VERSION);
+		}
+		catch(IOException e) {
+			fos.close();
+			deflater.end();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Replaces fingerprint passed to constructor, fingerprint is written on {@link #done()}. 
+	 */
+	public void setFingerprint(String fingerprint) {
+		if (done) {
+			throw new IllegalStateException("Stream is closed");
+		}
+		this.fingerprint = fingerprint;
+	}
+	
+	public void receive(Triple triple) {
+		if (done) {
+			throw new IllegalStateException("Stream is closed");
+		}
+		try {
+			boolean newSubject = lastSubject == null || !lastSubject.equals(triple.subject);
+			if (newSubject && block != null && blockBuffer.size() >= blockSize) {
+				flushBlock();
+			}
+			if (block == null) {
+				startBlock(triple.subject);
+				newSubject = true;
+			}
+			if (newSubject) {
+				if (!triple.subject.isAnon()) {
+					namedSeen = true;
+				}
+				blockOut.writeByte(BlockFormat.NEW_SUBJECT);
+				BinaryNodeCodec.writeNode(blockOut, triple.subject);
+				lastSubject = triple.subject;
+			}
+			else {
+				blockOut.writeByte(BlockFormat.SAME_SUBJECT);
+			}
+			BinaryNodeCodec.writeNode(blockOut, triple.predicate);
+			BinaryNodeCodec.writeNode(blockOut, triple.object);
+			++block.tripleCount;
+			++tripleCount;
+			summaryBuilder.add(triple);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write triple block", e);
+		}
+	}
+
+	public void done() {
+		if (done) {
+			return;
+		}
+		done = true;
+		try {
+			if (block != null) {
+				flushBlock();
+			}
+			long indexOffset = out.count;
+			dataOut.writeInt(blocks.size());
+			for(BlockEntry entry: blocks) {
+				entry.write(dataOut);
+			}
+			byte[] fp = fingerprint.getBytes(Encodings.UTF8);
+			dataOut.writeInt(fp.length);
+			dataOut.write(fp);
+			summary = summaryBuilder.build(fingerprint);
+			summary.write(dataOut);
+			
+			dataOut.writeLong(indexOffset);
+			dataOut.writeLong(tripleCount);
+			dataOut.writeInt(BlockFormat.VERSION);
+			dataOut.writeInt(BlockFormat.MAGIC);
+			dataOut.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write block index", e);
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Closes file without writing index, file is incomplete and should be deleted by caller.
+	 * Errors are not reported, it is intended for failure path. Does nothing after {@link #done()}.
+	 */
+	public void abort() {
+		if (done) {
+			return;
+		}
+		done = true;
+		try {
+			dataOut.close();
+		}
+		catch(IOException e) {
+			// ignore, file is discarded anyway
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	public long getTripleCount() {
+		return tripleCount;
+	}
+
+	public int getBlockCount() {
+		return blocks.size();
+	}
+
+	/**
+	 * @return summary of written stream, available after {@link #done()}
+	 */
+	public GraphSummary getSummary() {
+		if (summary == null) {
+			throw new IllegalStateException("Stream is not complete");
+		}
+		return summary;
+	}
+	
+	private void startBlock(Node subject) {
+		block = new BlockEntry();
+		block.firstTriple = tripleCount;
+		block.firstSubject = subject;
+		if (subject.isAnon()) {
+			block.section = namedSeen ? MerkleSummary.SECTION_THIRD_KIND : MerkleSummary.SECTION_BLANKS;
+		}
+		else {
+			block.section = MerkleSummary.SECTION_NAMED;
+		}
+	}
+	
+	private void flushBlock() throws IOException {
+		byte[] raw = blockBuffer.toByteArray();
+		blockBuffer.reset();
+		
+		block.offset = out.count;
+		block.rawSize = raw.length;
+		
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		int compressed = 0;
+		while(!deflater.finished()) {
+			if (compressed == compressBuffer.length) {
+				byte[] nb = new byte[2 * compressBuffer.length];
+				System.arraycopy(compressBuffer, 0, nb, 0, compressed);
+				compressBuffer = nb;
+			}
+			compressed += deflater.deflate(compressBuffer, compressed, compressBuffer.length - compressed);
+		}
+		dataOut.write(compressBuffer, 0, compressed);
+		block.compressedSize = compressed;
+		
+		blocks.add(block);
+		block = null;
+		lastSubject = null;
+	}
+	
+	private static class CountingOutputStream extends OutputStream {
+		
+		private final OutputStream delegate;
+		long count;
+		
+		public CountingOutputStream(OutputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			delegate.write(b);
+			++count;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			delegate.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			delegate.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+	}
+}
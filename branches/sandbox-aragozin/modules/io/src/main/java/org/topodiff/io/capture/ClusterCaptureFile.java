@@ -0,0 +1,163 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.capture;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.topodiff.algo.ClusterCapture;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.codec.BinaryNodeCodec;
+
+/**
+ * {@link ClusterCapture} writing captured b-clusters to file. Captured clusters 
+ * could be loaded using {@link #read(File)} and replayed by {@link ClusterReplay}.
+ * <br/>
+ * File is a header followed by records: triple count, elapsed nanos, triples (see {@link BinaryNodeCodec}).
+ * Records are flushed one by one, so file remains readable even if process is killed during slow sort.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ClusterCaptureFile implements ClusterCapture, Closeable {
+
+	private static final int MAGIC = 0x54444343; // TDCC
+	private static final int VERSION = 1;
+	
+	private final File file;
+	private final DataOutputStream out;
+	private int count;
+	private boolean closed;
+	
+	/**
+	 * @param append if <code>true</code> and file exists, new clusters are added to it
+	 */
+	public ClusterCaptureFile(File file, boolean append) throws IOException {
+		this.file = file;
+		boolean header = !append || !file.exists() || file.length() == 0;
+		if (!header) {
+			// validate header of existing file
+			read(file);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !header)));
+		if (header) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.flush();
+		}
+	}
+
+	public synchronized void capture(Collection<Triple> cluster, long elapsedNanos) {
+		if (closed) {
+			throw new IllegalStateException("Capture file is closed");
+		}
+		try {
+			out.writeInt(cluster.size());
+			out.writeLong(elapsedNanos);
+			for(Triple triple: cluster) {
+				BinaryNodeCodec.writeNode(out, triple.subject);
+				BinaryNodeCodec.writeNode(out, triple.predicate);
+				BinaryNodeCodec.writeNode(out, triple.object);
+			}
+			out.flush();
+			++count;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write cluster to " + file, e);
+		}
+	}
+
+	/**
+	 * @return number of clusters captured by this instance
+	 */
+	public synchronized int getCapturedCount() {
+		return count;
+	}
+	
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads all captured clusters, truncated trailing record is ignored.
+	 */
+	public static List<CapturedCluster> read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unknown format of " + file);
+			}
+			List<CapturedCluster> result = new ArrayList<CapturedCluster>();
+			while(true) {
+				int n;
+				try {
+					n = in.readInt();
+				}
+				catch(EOFException e) {
+					break;
+				}
+				try {
+					long elapsed = in.readLong();
+					List<Triple> triples = new ArrayList<Triple>(n);
+					for(int i = 0; i != n; ++i) {
+						Node s = BinaryNodeCodec.readNode(in);
+						Node p = BinaryNodeCodec.readNode(in);
+						Node o = BinaryNodeCodec.readNode(in);
+						triples.add(new Triple(s, p, o));
+					}
+					result.add(new CapturedCluster(result.size(), triples, elapsed));
+				}
+				catch(EOFException e) {
+					break;
+				}
+			}
+			return result;
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	public static class CapturedCluster {
+		
+		/** position in capture file */
+		public final int index;
+		public final List<Triple> triples;
+		public final long elapsedNanos;
+		
+		public CapturedCluster(int index, List<Triple> triples, long elapsedNanos) {
+			this.index = index;
+			this.triples = triples;
+			this.elapsedNanos = elapsedNanos;
+		}
+		
+		@Override
+		public String toString() {
+			return "#" + index + " size=" + triples.size() + " captured=" + (elapsedNanos / 1000000) + "ms";
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.topodiff.algo.ToposortUtils;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.capture.ClusterCaptureFile.CapturedCluster;
+
+/**
+ * Replays captured b-clusters through {@link ToposortUtils#sort(java.util.Collection)} in isolation.
+ * <br/>
+ * Usage: {@code ClusterReplay <capture file> [iterations] [warmup]}
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ClusterReplay {
+
+	private final ToposortUtils toolkit;
+	private final int warmup;
+	private final int iterations;
+
+	public ClusterReplay(int warmup, int iterations) {
+		this(ToposortUtils.INSTANCE, warmup, iterations);
+	}
+
+	/**
+	 * @param toolkit could be instrumented with metrics
+	 */
+	public ClusterReplay(ToposortUtils toolkit, int warmup, int iterations) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException("At least one iteration is required");
+		}
+		this.toolkit = toolkit;
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+	
+	public List<Result> replay(List<CapturedCluster> clusters) {
+		List<Result> results = new ArrayList<Result>();
+		for(CapturedCluster cluster: clusters) {
+			results.add(replay(cluster));
+		}
+		return results;
+	}
+
+	public Result replay(CapturedCluster cluster) {
+		for(int i = 0; i != warmup; ++i) {
+			toolkit.sort(cluster.triples);
+		}
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		long total = 0;
+		String digest = null;
+		boolean stable = true;
+		for(int i = 0; i != iterations; ++i) {
+			long start = System.nanoTime();
+			List<Triple> sorted = toolkit.sort(cluster.triples);
+			long elapsed = System.nanoTime() - start;
+			min = Math.min(min, elapsed);
+			max = Math.max(max, elapsed);
+			total += elapsed;
+			
+			// sort should be deterministic, order of input is fixed, so sorted lists should be same
+			String d = sorted.toString();
+			if (digest == null) {
+				digest = d;
+			}
+			else if (!digest.equals(d)) {
+				stable = false;
+			}
+		}
+		return new Result(cluster, min, total / iterations, max, stable);
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ClusterReplay <capture file> [iterations] [warmup]");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int warmup = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		
+		List<CapturedCluster> clusters = ClusterCaptureFile.read(file);
+		System.out.println(clusters.size() + " clusters loaded from " + file);
+		ClusterReplay replay = new ClusterReplay(warmup, iterations);
+		for(CapturedCluster cluster: clusters) {
+			System.out.println(replay.replay(cluster));
+		}
+	}
+
+	public static class Result {
+		
+		public final CapturedCluster cluster;
+		public final long minNanos;
+		public final long avgNanos;
+		public final long maxNanos;
+		/** <code>false</code> if iterations produced different order */
+		public final boolean stable;
+
+		public Result(CapturedCluster cluster, long minNanos, long avgNanos, long maxNanos, boolean stable) {
+			this.cluster = cluster;
+			this.minNanos = minNanos;
+			this.avgNanos = avgNanos;
+			this.maxNanos = maxNanos;
+			this.stable = stable;
+		}
+		
+		@Override
+		public String toString() {
+			return cluster + " min=" + toMillis(minNanos) + "ms avg=" + toMillis(avgNanos) + "ms max=" + toMillis(maxNanos) + "ms" + (stable ? "" : " UNSTABLE");
+		}
+
+		private static String toMillis(long nanos) {
+			return String.format("%.3f", nanos / 1000000d);
+		}
+	}
+}
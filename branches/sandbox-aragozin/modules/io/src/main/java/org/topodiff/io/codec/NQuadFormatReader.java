@@ -0,0 +1,56 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.Reader;
+import java.util.Iterator;
+
+import org.topodiff.graph.Quad;
+import org.topodiff.graph.Triple;
+
+/**
+ * Streaming N-Quads parser, lines without graph label belong to default graph ({@link Quad#DEFAULT_GRAPH}).
+ * <br/>
+ * Terms are parsed by {@link NTripleFormatReader}, same literal conventions apply.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NQuadFormatReader implements Iterator<Quad> {
+
+	private final NTripleFormatReader parser;
+
+	public NQuadFormatReader(Reader reader) {
+		this.parser = new NTripleFormatReader(reader, true);
+	}
+
+	public boolean hasNext() {
+		return parser.hasNext();
+	}
+
+	public Quad next() {
+		Triple triple = parser.next();
+		return new Quad(parser.getGraph(), triple);
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return number of lines read so far
+	 */
+	public long getLineNumber() {
+		return parser.getLineNumber();
+	}
+}
@@ -0,0 +1,36 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.Reader;
+import java.io.Writer;
+
+import org.topodiff.io.TripleIterator;
+import org.topodiff.io.TripleReceiver;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NTripleCodecFactory implements TripleCodecFactory {
+
+	public static final NTripleCodecFactory INSTANCE = new NTripleCodecFactory();
+	
+	public TripleIterator createReader(Reader reader) {
+		return new NTripleFormatReader(reader);
+	}
+
+	public TripleReceiver createWriter(Writer writer) {
+		return new NTripleFormatWriter(writer);
+	}
+}
@@ -0,0 +1,326 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.TripleIterator;
+
+/**
+ * Streaming N-Triples parser.
+ * <br/>
+ * Language tag or datatype is kept as a part of literal's lexical form 
+ * ({@code text@lang}, {@code text@} for plain literal, {@code text^^<datatype>}), 
+ * {@link NTripleFormatWriter} follows same convention.
+ * <br/>
+ * Each line is scanned in place, characters are copied only for literals and URIs with escapes.
+ * <br/>
+ * Same parser reads N-Quads, see {@link NQuadFormatReader}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NTripleFormatReader implements TripleIterator {
+
+	private BufferedReader reader;
+	private final boolean quads;
+	private Triple next;
+	private Node graph;
+	
+	private String line;
+	private int pos;
+	private long lineNumber;
+	
+	public NTripleFormatReader(Reader reader) {
+		this(reader, false);
+	}
+
+	/**
+	 * @param quads if <code>true</code>, optional graph label is accepted after object
+	 */
+	NTripleFormatReader(Reader reader, boolean quads) {
+		this.quads = quads;
+		if (reader instanceof BufferedReader) {
+			this.reader = (BufferedReader) reader;
+		}
+		else {
+			this.reader = new BufferedReader(reader, 64 << 10);
+		}
+	}
+
+	public boolean hasNext() {
+		if (next == null) {
+			next = fetchNext();
+		}
+		return next != null;
+	}
+
+	public Triple next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Triple triple = next;
+		next = null;
+		return triple;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return number of lines read so far
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return graph label of last fetched statement, <code>null</code> for default graph
+	 */
+	Node getGraph() {
+		return graph;
+	}
+	
+	private Triple fetchNext() {
+		try {
+			while(reader != null) {
+				line = reader.readLine();
+				if (line == null) {
+					reader.close();
+					reader = null;
+					return null;
+				}
+				++lineNumber;
+				pos = 0;
+				skipWhiteSpace();
+				if (pos >= line.length() || line.charAt(pos) == '#') {
+					continue;
+				}
+				try {
+					Node s = readResource();
+					skipWhiteSpace();
+					Node p = readResource();
+					skipWhiteSpace();
+					Node o = readNode();
+					skipWhiteSpace();
+					graph = null;
+					if (quads && nextChar() != '.') {
+						graph = readResource();
+						skipWhiteSpace();
+					}
+					expect('.');
+					skipWhiteSpace();
+					if (pos < line.length() && line.charAt(pos) != '#') {
+						syntaxError("unexpected input after '.'");
+					}
+					return new Triple(s, p, o);
+				}
+				catch(IllegalArgumentException e) {
+					throw new IllegalArgumentException("Failed to parse line " + lineNumber + ": " + e.getMessage() + " [" + line + "]", e);
+				}
+			}
+			return null;
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Node readResource() {
+		char ch = nextChar();
+		if (ch == '_') {
+			++pos;
+			expect(':');
+			int start = pos;
+			while(pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+				++pos;
+			}
+			// label may not end with '.', so it is statement terminator
+			if (pos > start && line.charAt(pos - 1) == '.') {
+				--pos;
+			}
+			if (pos == start) {
+				syntaxError("expected b-node label");
+			}
+			return new Node(NodeType.BLANK, line.substring(start, pos));
+		}
+		else if (ch == '<') {
+			++pos;
+			return new Node(NodeType.NAMED, readURI());
+		}
+		else {
+			syntaxError("expected resource");
+			return null;
+		}
+	}
+	
+	private Node readNode() {
+		char ch = nextChar();
+		if (ch == '"') {
+			++pos;
+			return readLiteral();
+		}
+		else {
+			return readResource();
+		}
+	}
+	
+	private Node readLiteral() {
+		String text = readQuoted();
+		if (nextChar() == '@') {
+			++pos;
+			int start = pos;
+			while(pos < line.length() && (Character.isLetterOrDigit(line.charAt(pos)) || line.charAt(pos) == '-')) {
+				++pos;
+			}
+			return new Node(NodeType.LITERAL, text + "@" + line.substring(start, pos));
+		}
+		else if (nextChar() == '^') {
+			++pos;
+			expect('^');
+			expect('<');
+			return new Node(NodeType.LITERAL, text + "^^<" + readURI() + ">");
+		}
+		else {
+			return new Node(NodeType.LITERAL, text + "@");
+		}
+	}
+
+	private String readQuoted() {
+		int start = pos;
+		// fast path, no escapes
+		while(pos < line.length()) {
+			char ch = line.charAt(pos);
+			if (ch == '"') {
+				++pos;
+				return line.substring(start, pos - 1);
+			}
+			else if (ch == '\\') {
+				break;
+			}
+			++pos;
+		}
+		StringBuilder sb = new StringBuilder(line.length() - start);
+		sb.append(line, start, pos);
+		while(true) {
+			char ch = readChar();
+			if (ch == '"') {
+				return sb.toString();
+			}
+			else if (ch == '\\') {
+				readEscape(sb, true);
+			}
+			else {
+				sb.append(ch);
+			}
+		}
+	}
+	
+	private String readURI() {
+		int start = pos;
+		int end = line.indexOf('>', pos);
+		if (end < 0) {
+			syntaxError("expected '>'");
+		}
+		if (line.indexOf('\\', pos) < 0 || line.indexOf('\\', pos) > end) {
+			pos = end + 1;
+			return line.substring(start, end);
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		while(true) {
+			char ch = readChar();
+			if (ch == '>') {
+				return sb.toString();
+			}
+			else if (ch == '\\') {
+				readEscape(sb, false);
+			}
+			else {
+				sb.append(ch);
+			}
+		}
+	}
+	
+	private void readEscape(StringBuilder sb, boolean literal) {
+		char ch = readChar();
+		switch(ch) {
+			case 'u':
+				sb.append((char)readHex(4));
+				return;
+			case 'U':
+				sb.appendCodePoint(readHex(8));
+				return;
+		}
+		if (literal) {
+			switch(ch) {
+				case 't': sb.append('\t'); return;
+				case 'b': sb.append('\b'); return;
+				case 'n': sb.append('\n'); return;
+				case 'r': sb.append('\r'); return;
+				case 'f': sb.append('\f'); return;
+				case '"': sb.append('"'); return;
+				case '\'': sb.append('\''); return;
+				case '\\': sb.append('\\'); return;
+			}
+		}
+		syntaxError("illegal escape sequence '\\" + ch + "'");
+	}
+
+	private int readHex(int len) {
+		if (pos + len > line.length()) {
+			syntaxError("bad unicode escape sequence");
+		}
+		try {
+			int cp = Integer.parseInt(line.substring(pos, pos + len), 16);
+			pos += len;
+			return cp;
+		} catch (NumberFormatException e) {
+			syntaxError("bad unicode escape sequence");
+			return 0;
+		}
+	}
+	
+	private void skipWhiteSpace() {
+		while(pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+			++pos;
+		}
+	}
+
+	private void expect(char ch) {
+		if (readChar() != ch) {
+			syntaxError("expected '" + ch + "'");
+		}
+	}
+	
+	private char readChar() {
+		if (pos >= line.length()) {
+			syntaxError("premature end of line");
+		}
+		return line.charAt(pos++);
+	}
+
+	private char nextChar() {
+		return pos < line.length() ? line.charAt(pos) : '\000';
+	}
+	
+	private void syntaxError(String message) {
+		throw new IllegalArgumentException(message);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.TripleReceiver;
+
+/**
+ * N-Triples writer, counterpart of {@link NTripleFormatReader}. B-node labels are written as is.
+ * <br/>
+ * Literal lexical form is expected to carry language tag or datatype ({@code text@lang}, {@code text^^<datatype>}),
+ * literal without either suffix is written as plain literal.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NTripleFormatWriter implements TripleReceiver {
+
+	private final Writer writer;
+	private final StringBuilder buffer = new StringBuilder(256);
+	
+	public NTripleFormatWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public void receive(Triple stmt) {
+		buffer.setLength(0);
+		appendTriple(buffer, stmt);
+		buffer.append('\n');
+		try {
+			writer.append(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Flushes and closes underlying writer.
+	 */
+	public void done() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Appends N-Triples statement (with terminating '.' but without line separator).
+	 */
+	public static void appendTriple(StringBuilder sb, Triple triple) {
+		appendNode(sb, triple.subject);
+		sb.append(' ');
+		appendNode(sb, triple.predicate);
+		sb.append(' ');
+		appendNode(sb, triple.object);
+		sb.append(" .");
+	}
+	
+	public static void appendNode(StringBuilder sb, Node node) {
+		String text = node.getLexicalForm();
+		switch(node.nodeType) {
+			case NAMED:
+				sb.append('<');
+				escape(sb, text, 0, text.length(), false);
+				sb.append('>');
+				break;
+			case BLANK:
+				sb.append("_:").append(text);
+				break;
+			case LITERAL:
+				int n;
+				if (text.endsWith(">") && (n = text.lastIndexOf("^^<")) >= 0) {
+					sb.append('"');
+					escape(sb, text, 0, n, true);
+					sb.append('"').append("^^<");
+					escape(sb, text, n + 3, text.length() - 1, false);
+					sb.append('>');
+				}
+				else if ((n = text.lastIndexOf('@')) >= 0 && isLang(text, n + 1)) {
+					sb.append('"');
+					escape(sb, text, 0, n, true);
+					sb.append('"');
+					if (n + 1 < text.length()) {
+						sb.append(text, n, text.length());
+					}
+				}
+				else {
+					sb.append('"');
+					escape(sb, text, 0, text.length(), true);
+					sb.append('"');
+				}
+				break;
+		}
+	}
+
+	private static boolean isLang(String text, int start) {
+		for(int i = start; i < text.length(); ++i) {
+			char ch = text.charAt(i);
+			if (!Character.isLetterOrDigit(ch) && ch != '-') {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static void escape(StringBuilder sb, String text, int from, int to, boolean literal) {
+		for(int i = from; i < to; ++i) {
+			char ch = text.charAt(i);
+			if (literal) {
+				switch(ch) {
+					case '\\': sb.append("\\\\"); continue;
+					case '"': sb.append("\\\""); continue;
+					case '\n': sb.append("\\n"); continue;
+					case '\r': sb.append("\\r"); continue;
+					case '\t': sb.append("\\t"); continue;
+				}
+			}
+			if (ch < 0x20 || (!literal && (ch == '>' || ch == '\\'))) {
+				sb.append(String.format("\\u%04X", (int)ch));
+			}
+			else {
+				sb.append(ch);
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.topodiff.algo.DiffProcessor;
+import org.topodiff.algo.GraphSummaryWriter;
+import org.topodiff.algo.LexographicNodeComparator;
+import org.topodiff.graph.DatasetView;
+import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.DatasetDeltaReceiver;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.sort.GraphSortMethod;
+
+/**
+ * Calculates delta between two datasets graph by graph.
+ * <br/>
+ * Each named graph is canonicalised and diffed independently by task submitted to executor.
+ * Graphs with equal canonical summaries are skipped without diffing (their retained triples are not reported). Delta is reported 
+ * on caller thread, graph by graph in order of graph names, so result does not depend on executor.
+ * Versions of graph sorted with different cut predicates (see {@link org.topodiff.io.sort.SortResult#getFingerprint()}) 
+ * could not be compared, such graph fails whole diff.
+ * Failure of any task is rethrown by {@link #process(DatasetView, DatasetView, DatasetDeltaReceiver)}, remaining tasks are cancelled.
+ * <br/>
+ * Datasets could be loaded from N-Quads using {@link org.topodiff.io.codec.NQuadFormatReader} 
+ * and {@link org.topodiff.graph.simple.SimpleDatasetView}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class DatasetDiff {
+
+	private static final GraphView EMPTY_GRAPH = new GraphView() {
+		public Iterator<Node> listSubjects() {
+			return Collections.<Node>emptyList().iterator();
+		}
+
+		public Iterator<Triple> listStatements(Node res, Node prop, Node obj) {
+			return Collections.<Triple>emptyList().iterator();
+		}
+	};
+	
+	private final GraphSortMethod sortMethod;
+	private final ExecutorService executor;
+	
+	private int graphCount;
+	private int skippedGraphCount;
+	
+	/**
+	 * @param sortMethod should be thread safe
+	 */
+	public DatasetDiff(GraphSortMethod sortMethod, ExecutorService executor) {
+		this.sortMethod = sortMethod;
+		this.executor = executor;
+	}
+	
+	public void process(DatasetView dataset1, DatasetView dataset2, DatasetDeltaReceiver handler) {
+		Set<Node> names = new TreeSet<Node>(LexographicNodeComparator.INSTANCE);
+		addAll(names, dataset1.listGraphNames());
+		addAll(names, dataset2.listGraphNames());
+		
+		List<Future<GraphDelta>> results = new ArrayList<Future<GraphDelta>>(names.size());
+		for(Node name: names) {
+			results.add(executor.submit(new GraphDiffTask(name, dataset1.getGraph(name), dataset2.getGraph(name))));
+		}
+		
+		graphCount = 0;
+		skippedGraphCount = 0;
+		try {
+			for(Future<GraphDelta> future: results) {
+				GraphDelta delta = getResult(future);
+				++graphCount;
+				if (delta.skipped) {
+					++skippedGraphCount;
+				}
+				for(int i = 0; i != delta.triplesA.size(); ++i) {
+					handler.tripleMatch(delta.graph, delta.triplesA.get(i), delta.triplesB.get(i));
+				}
+			}
+		}
+		catch(RuntimeException e) {
+			// remaining graphs are not needed
+			for(Future<GraphDelta> future: results) {
+				future.cancel(true);
+			}
+			throw e;
+		}
+		handler.done();
+	}
+
+	/**
+	 * @return number of graphs processed by last call 
+	 */
+	public int getGraphCount() {
+		return graphCount;
+	}
+
+	/**
+	 * @return number of graphs found identical by summary during last call 
+	 */
+	public int getSkippedGraphCount() {
+		return skippedGraphCount;
+	}
+
+	private static void addAll(Set<Node> names, Iterator<Node> it) {
+		while(it.hasNext()) {
+			names.add(it.next());
+		}
+	}
+	
+	private static GraphDelta getResult(Future<GraphDelta> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private class GraphDiffTask implements Callable<GraphDelta> {
+		
+		private final Node name;
+		private final GraphView graph1;
+		private final GraphView graph2;
+
+		public GraphDiffTask(Node name, GraphView graph1, GraphView graph2) {
+			this.name = name;
+			this.graph1 = graph1 == null ? EMPTY_GRAPH : graph1;
+			this.graph2 = graph2 == null ? EMPTY_GRAPH : graph2;
+		}
+
+		public GraphDelta call() {
+			String fingerprint = sortMethod.getAlgorithmFingerPrint();
+			ListReceiver sorted1 = new ListReceiver();
+			ListReceiver sorted2 = new ListReceiver();
+			GraphSummaryWriter writer1 = new GraphSummaryWriter(sorted1, fingerprint);
+			GraphSummaryWriter writer2 = new GraphSummaryWriter(sorted2, fingerprint);
+			sortMethod.sort(graph1, writer1);
+			writer1.done();
+			sortMethod.sort(graph2, writer2);
+			writer2.done();
+			
+			GraphDelta delta = new GraphDelta(name);
+			DiffProcessor processor = new DiffProcessor(sorted1.triples.iterator(), writer1.getSummary(), sorted2.triples.iterator(), writer2.getSummary(), delta, false);
+			processor.process();
+			delta.skipped = processor.isIdentical();
+			return delta;
+		}
+	}
+	
+	private static class ListReceiver implements TripleReceiver {
+		
+		final List<Triple> triples = new ArrayList<Triple>();
+		
+		public void receive(Triple stmt) {
+			triples.add(stmt);
+		}
+
+		public void done() {
+			// do nothing
+		}
+	}
+	
+	private static class GraphDelta implements ModelDeltaReceiver {
+		
+		final Node graph;
+		final List<Triple> triplesA = new ArrayList<Triple>();
+		final List<Triple> triplesB = new ArrayList<Triple>();
+		boolean skipped;
+
+		public GraphDelta(Node graph) {
+			this.graph = graph;
+		}
+
+		public void tripleMatch(Triple tripleA, Triple tripleB) {
+			triplesA.add(tripleA);
+			triplesB.add(tripleB);
+		}
+
+		public void done() {
+			// do nothing
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.dict;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.topodiff.algo.LexographicNodeComparator;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.codec.BinaryNodeCodec;
+
+/**
+ * Builds {@link FileNodeDictionary} using external merge sort.
+ * Nodes are collected in memory up to a limit, then sorted and spilled to run files,
+ * runs are merged into dictionary files by {@link #build()}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ExternalNodeDictionaryBuilder {
+
+	private static final Comparator<RunReader> RUN_COMPARATOR = new Comparator<RunReader>() {
+		public int compare(RunReader o1, RunReader o2) {
+			return LexographicNodeComparator.INSTANCE.compare(o1.head, o2.head);
+		}
+	};
+	
+	private final File dir;
+	private final int maxNodesInMemory;
+	
+	private final Set<Node> buffer = new HashSet<Node>();
+	private final List<File> runs = new ArrayList<File>();
+
+	/**
+	 * @param dir target directory for dictionary files, also used for temporary run files
+	 * @param maxNodesInMemory number of distinct nodes to collect before spilling a run
+	 */
+	public ExternalNodeDictionaryBuilder(File dir, int maxNodesInMemory) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Cannot create dictionary directory " + dir);
+		}
+		this.dir = dir;
+		this.maxNodesInMemory = maxNodesInMemory;
+	}
+	
+	public void add(Node node) throws IOException {
+		buffer.add(node);
+		if (buffer.size() >= maxNodesInMemory) {
+			spill();
+		}
+	}
+
+	public void add(Triple triple) throws IOException {
+		add(triple.subject);
+		add(triple.predicate);
+		add(triple.object);
+	}
+
+	public void addAll(Iterator<Triple> triples) throws IOException {
+		while(triples.hasNext()) {
+			add(triples.next());
+		}
+	}
+
+	/**
+	 * @return number of run files spilled so far
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+	
+	public FileNodeDictionary build() throws IOException {
+		if (!buffer.isEmpty() || runs.isEmpty()) {
+			spill();
+		}
+
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs.size(), RUN_COMPARATOR);
+		for(File run: runs) {
+			RunReader reader = new RunReader(run);
+			if (reader.head != null) {
+				queue.add(reader);
+			}
+			else {
+				reader.close();
+			}
+		}
+
+		File dataFile = new File(dir, FileNodeDictionary.DATA_FILE);
+		File indexFile = new File(dir, FileNodeDictionary.INDEX_FILE);
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
+		DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			index.writeInt(FileNodeDictionary.INDEX_MAGIC);
+			index.writeInt(FileNodeDictionary.VERSION);
+			// node count is patched after merge
+			index.writeInt(0);
+			
+			int count = 0;
+			Node last = null;
+			while(!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				Node node = reader.head;
+				if (last == null || LexographicNodeComparator.INSTANCE.compare(last, node) != 0) {
+					index.writeLong(data.size());
+					BinaryNodeCodec.writeNode(data, node);
+					last = node;
+					++count;
+				}
+				if (reader.advance()) {
+					queue.add(reader);
+				}
+				else {
+					reader.close();
+				}
+			}
+			// end of last record
+			index.writeLong(data.size());
+			
+			data.close();
+			index.close();
+			
+			RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+			try {
+				raf.seek(8);
+				raf.writeInt(count);
+			}
+			finally {
+				raf.close();
+			}
+		}
+		finally {
+			data.close();
+			index.close();
+			for(File run: runs) {
+				run.delete();
+			}
+			runs.clear();
+		}
+		
+		return new FileNodeDictionary(dir);
+	}
+	
+	private void spill() throws IOException {
+		List<Node> sorted = new ArrayList<Node>(buffer);
+		buffer.clear();
+		Collections.sort(sorted, LexographicNodeComparator.INSTANCE);
+		
+		File run = new File(dir, "run-" + runs.size() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+		try {
+			for(Node node: sorted) {
+				BinaryNodeCodec.writeNode(out, node);
+			}
+		}
+		finally {
+			out.close();
+		}
+		runs.add(run);
+	}
+	
+	private static class RunReader {
+		
+		private final DataInputStream in;
+		Node head;
+		
+		public RunReader(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			advance();
+		}
+		
+		public boolean advance() throws IOException {
+			try {
+				head = BinaryNodeCodec.readNode(in);
+			}
+			catch(EOFException e) {
+				head = null;
+			}
+			return head != null;
+		}
+		
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.dict;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.topodiff.algo.DictionaryNode;
+import org.topodiff.algo.LexographicNodeComparator;
+import org.topodiff.algo.NodeDictionary;
+import org.topodiff.graph.Node;
+import org.topodiff.io.codec.BinaryNodeCodec;
+
+/**
+ * {@link NodeDictionary} stored in directory, nodes are not kept in memory.
+ * <br/>
+ * Dictionary consists of two files
+ * <ul>
+ * <li>{@code nodes.dat} - node records in ID order</li>
+ * <li>{@code nodes.idx} - record offsets, memory mapped</li>
+ * </ul>
+ * Lookup of node ID is a binary search over node records.
+ * 
+ * @see ExternalNodeDictionaryBuilder
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class FileNodeDictionary extends NodeDictionary {
+
+	static final int INDEX_MAGIC = 0x5444444E; // TDDN
+	static final int VERSION = 1;
+	static final int INDEX_HEADER_SIZE = 12;
+	
+	static final String DATA_FILE = "nodes.dat";
+	static final String INDEX_FILE = "nodes.idx";
+	
+	private final RandomAccessFile data;
+	private final RandomAccessFile indexRaf;
+	private final MappedByteBuffer index;
+	private final int size;
+	
+	public FileNodeDictionary(File dir) throws IOException {
+		File indexFile = new File(dir, INDEX_FILE);
+		indexRaf = new RandomAccessFile(indexFile, "r");
+		index = indexRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexRaf.length());
+		if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != VERSION) {
+			indexRaf.close();
+			throw new IOException("Unknown format of " + indexFile);
+		}
+		size = index.getInt(8);
+		if (INDEX_HEADER_SIZE + 8l * (size + 1) > indexRaf.length()) {
+			indexRaf.close();
+			throw new IOException("Index file is truncated " + indexFile);
+		}
+		data = new RandomAccessFile(new File(dir, DATA_FILE), "r");
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized int getId(Node node) {
+		int lo = 0;
+		int hi = size - 1;
+		while(lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = LexographicNodeComparator.INSTANCE.compare(readNode(mid), node);
+			if (cmp == 0) {
+				return mid;
+			}
+			else if (cmp < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized DictionaryNode getNode(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No node #" + id + ", size " + size);
+		}
+		return new DictionaryNode(readNode(id), this, id);
+	}
+
+	public synchronized void close() throws IOException {
+		data.close();
+		indexRaf.close();
+	}
+	
+	private Node readNode(int id) {
+		long offset = index.getLong(INDEX_HEADER_SIZE + 8 * id);
+		long next = index.getLong(INDEX_HEADER_SIZE + 8 * (id + 1));
+		try {
+			byte[] buf = new byte[(int)(next - offset)];
+			data.seek(offset);
+			data.readFully(buf);
+			return BinaryNodeCodec.readNode(new DataInputStream(new ByteArrayInputStream(buf)));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read node #" + id, e);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.TripleReceiver;
+
+/**
+ * {@link TripleReceiver} decorator passing triples to delegate on dedicated writer thread.
+ * Triples are handed off in batches through bounded queue, so producer is blocked if writer falls behind.
+ * <br/>
+ * {@link #done()} waits until all triples are written, errors of writer thread are rethrown to producer.
+ * If producer fails, {@link #abort()} should be called to stop writer thread.
+ * Writer thread is a daemon, so thread which failed to stop in time does not prevent JVM exit.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class AsyncTripleReceiver implements SortedTripleReceiver {
+
+	private static final List<Triple> EOF = new ArrayList<Triple>();
+	private static final List<Triple> ABORT = new ArrayList<Triple>();
+	
+	public static final long DEFAULT_ABORT_TIMEOUT_MILLIS = 5000;
+	
+	private final TripleReceiver delegate;
+	private final int batchSize;
+	private final BlockingQueue<List<Triple>> queue;
+	private final Thread writer;
+	
+	private List<Triple> batch;
+	private volatile Throwable error;
+	private volatile boolean aborted;
+	private boolean done;
+	
+	public AsyncTripleReceiver(TripleReceiver delegate) {
+		this(delegate, 1024, 16);
+	}
+
+	/**
+	 * @param batchSize number of triples in single hand off
+	 * @param queueCapacity max number of batches waiting for writer
+	 */
+	public AsyncTripleReceiver(TripleReceiver delegate, int batchSize, int queueCapacity) {
+		this.delegate = delegate;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<List<Triple>>(queueCapacity);
+		this.batch = new ArrayList<Triple>(batchSize);
+		this.writer = new Thread(new Writer(), "TripleWriter");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+	
+	/**
+	 * Passed to delegate on producer thread, should be called before first triple.
+	 */
+	public void setFingerprint(String fingerprint) {
+		if (delegate instanceof SortedTripleReceiver) {
+			((SortedTripleReceiver)delegate).setFingerprint(fingerprint);
+		}
+	}
+
+	public void receive(Triple stmt) {
+		if (done) {
+			throw new IllegalStateException("Stream is closed");
+		}
+		batch.add(stmt);
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	public void done() {
+		if (done) {
+			return;
+		}
+		flush();
+		done = true;
+		put(EOF);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		}
+		checkError();
+	}
+
+	/**
+	 * Same as {@link #abort(long)} with {@link #DEFAULT_ABORT_TIMEOUT_MILLIS}.
+	 */
+	public void abort() {
+		abort(DEFAULT_ABORT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Stops writer thread without completing delegate, triples which are not written yet are discarded.
+	 * Writer thread is interrupted, so delegate blocked in interruptible call is released.
+	 * Does nothing if writer thread has already finished (e.g. after {@link #done()}).
+	 * 
+	 * @param timeoutMillis max time to wait for writer thread, if delegate does not return in time
+	 *        writer thread is abandoned and exits once delegate returns
+	 * @return <code>true</code> if writer thread has finished
+	 */
+	public boolean abort(long timeoutMillis) {
+		done = true;
+		aborted = true;
+		batch.clear();
+		// producer is the only one putting to queue, so there is room after clear
+		queue.clear();
+		queue.offer(ABORT);
+		writer.interrupt();
+		try {
+			writer.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return !writer.isAlive();
+	}
+
+	private void flush() {
+		if (!batch.isEmpty()) {
+			put(batch);
+			batch = new ArrayList<Triple>(batchSize);
+		}
+	}
+
+	private void put(List<Triple> item) {
+		try {
+			// writer may have failed, so queue should not be waited forever
+			while(!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+				checkError();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		}
+		checkError();
+	}
+
+	private void checkError() {
+		Throwable e = error;
+		if (e != null) {
+			done = true;
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException)e;
+			}
+			else if (e instanceof Error) {
+				throw (Error)e;
+			}
+			throw new RuntimeException("Writer failed", e);
+		}
+	}
+	
+	private class Writer implements Runnable {
+
+		public void run() {
+			try {
+				while(true) {
+					List<Triple> triples = queue.take();
+					if (triples == EOF) {
+						delegate.done();
+						return;
+					}
+					if (triples == ABORT) {
+						return;
+					}
+					for(Triple triple: triples) {
+						if (aborted) {
+							return;
+						}
+						delegate.receive(triple);
+					}
+				}
+			}
+			catch(Throwable e) {
+				if (!aborted) {
+					error = e;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.pipeline;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.util.Pair;
+import org.topodiff.util.flow.BufferedPublisher;
+import org.topodiff.util.flow.Flow;
+
+/**
+ * Exposes output of {@link org.topodiff.algo.DiffProcessor} as {@link Flow.Publisher} of triple pairs 
+ * (same as {@link ModelDeltaReceiver#tripleMatch(Triple, Triple)} arguments).
+ * <br/>
+ * Diff is blocked once buffer is full and subscriber has no demand. 
+ * If subscriber cancels, diff is aborted by {@link java.util.concurrent.CancellationException}.
+ * {@link org.topodiff.algo.DiffProcessor} does not call {@link #done()}, it should be called after processing,
+ * or {@link #fail(Throwable)} on failure.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class DeltaPublisher implements ModelDeltaReceiver, Flow.Publisher<Pair<Triple, Triple>> {
+
+	private final BufferedPublisher<Pair<Triple, Triple>> publisher;
+	private final boolean includeRetained;
+	
+	public DeltaPublisher() {
+		this(1024, false);
+	}
+
+	/**
+	 * @param includeRetained if <code>false</code> only added and removed triples are published
+	 */
+	public DeltaPublisher(int bufferSize, boolean includeRetained) {
+		this.publisher = new BufferedPublisher<Pair<Triple, Triple>>(bufferSize);
+		this.includeRetained = includeRetained;
+	}
+
+	public void subscribe(Flow.Subscriber<? super Pair<Triple, Triple>> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	public void tripleMatch(Triple tripleA, Triple tripleB) {
+		if (includeRetained || tripleA == null || tripleB == null) {
+			publisher.offer(Pair.make(tripleA, tripleB));
+		}
+	}
+
+	public void done() {
+		publisher.complete();
+	}
+
+	public void fail(Throwable e) {
+		publisher.fail(e);
+	}
+}
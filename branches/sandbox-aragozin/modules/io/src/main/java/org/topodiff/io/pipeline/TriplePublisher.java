@@ -0,0 +1,57 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.pipeline;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.util.flow.BufferedPublisher;
+import org.topodiff.util.flow.Flow;
+
+/**
+ * Exposes output of sorter (e.g. {@link org.topodiff.algo.ToposortGraphProcessor}) as {@link Flow.Publisher}.
+ * <br/>
+ * Sorter is blocked once buffer is full and subscriber has no demand, so memory is bounded for slow sinks.
+ * If subscriber cancels, sorter is aborted by {@link java.util.concurrent.CancellationException}.
+ * Sorter failure should be reported using {@link #fail(Throwable)}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class TriplePublisher implements TripleReceiver, Flow.Publisher<Triple> {
+
+	private final BufferedPublisher<Triple> publisher;
+	
+	public TriplePublisher() {
+		this(1024);
+	}
+
+	public TriplePublisher(int bufferSize) {
+		this.publisher = new BufferedPublisher<Triple>(bufferSize);
+	}
+
+	public void subscribe(Flow.Subscriber<? super Triple> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	public void receive(Triple stmt) {
+		publisher.offer(stmt);
+	}
+
+	public void done() {
+		publisher.complete();
+	}
+	
+	public void fail(Throwable e) {
+		publisher.fail(e);
+	}
+}
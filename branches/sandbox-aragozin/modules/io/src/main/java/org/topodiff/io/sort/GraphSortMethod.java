@@ -14,6 +14,7 @@ limitations under the License.
 package org.topodiff.io.sort;
 
 import org.topodiff.graph.GraphView;
+import org.topodiff.io.SortedTripleReceiver;
 import org.topodiff.io.TripleReceiver;
 
 /**
@@ -23,5 +24,11 @@ public interface GraphSortMethod {
 
 	public String getAlgorithmFingerPrint();
 	
-	public void sort(GraphView model, TripleReceiver tripleWriter);
+	/**
+	 * If output is {@link SortedTripleReceiver}, fingerprint of output (see {@link SortResult#getFingerprint()})
+	 * is passed to it before first triple. {@link TripleReceiver#done()} is not called.
+	 * <br/>
+	 * Implementations should be thread safe, details of sort are returned per call.
+	 */
+	public SortResult sort(GraphView model, TripleReceiver tripleWriter);
 }
@@ -0,0 +1,316 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.sort;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.TripleIterator;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.block.BlockTripleFile;
+import org.topodiff.io.block.BlockTripleWriter;
+import org.topodiff.io.codec.TripleCodecFactory;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Local cache of sorted outputs.
+ * <br/>
+ * Entry key is digest of raw input combined with class of input codec and {@link GraphSortMethod#getAlgorithmFingerPrint()}.
+ * Input is hashed while being spooled to temporary file in cache directory, 
+ * it is parsed (from spool file) only on cache miss. 
+ * Fingerprint of sorted output (see {@link SortResult#getFingerprint()}) is passed to output on cache hit as well.
+ * Entries are stored as block files (see {@link BlockTripleWriter}), least recently used entries are 
+ * evicted once total size exceeds limit (file modification time is used as access time).
+ * <br/>
+ * Instances are thread safe, but directory should not be shared between processes.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortCache {
+
+	private static final String SUFFIX = ".blk";
+	
+	private static final Comparator<File> LRU_ORDER = new Comparator<File>() {
+		public int compare(File o1, File o2) {
+			long t1 = o1.lastModified();
+			long t2 = o2.lastModified();
+			return t1 < t2 ? -1 : t1 > t2 ? 1 : o1.getName().compareTo(o2.getName());
+		}
+	};
+	
+	private final File dir;
+	private final long maxSize;
+	
+	private long hitCount;
+	private long missCount;
+	private long tmpCounter;
+
+	/**
+	 * @param maxSize max total size of cache files in bytes
+	 */
+	public SortCache(File dir, long maxSize) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Cannot create cache directory " + dir);
+		}
+		this.dir = dir;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Hashes input, then either replays cached sorted output or parses input, sorts it and caches result.
+	 * {@link TripleReceiver#done()} is called on output.
+	 * 
+	 * @return <code>true</code> if output was served from cache 
+	 */
+	public boolean sort(InputStream input, TripleCodecFactory codec, GraphSortMethod method, TripleReceiver output) throws IOException {
+		File spool = newTempFile("input");
+		try {
+			String digest = spool(input, spool);
+			String fingerprint = method.getAlgorithmFingerPrint();
+			String key = key(digest, codec, fingerprint);
+			
+			if (replay(key, fingerprint, output)) {
+				return true;
+			}
+			
+			SimpleGraphView model = new SimpleGraphView();
+			InputStreamReader reader = new InputStreamReader(new FileInputStream(spool), Encodings.UTF8);
+			try {
+				TripleIterator it = codec.createReader(reader);
+				while(it.hasNext()) {
+					model.add(it.next());
+				}
+			}
+			finally {
+				reader.close();
+			}
+			// spool is not needed while sorting
+			spool.delete();
+			
+			sortAndStore(key, fingerprint, model, method, output);
+			return false;
+		}
+		finally {
+			spool.delete();
+		}
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * @return total size of cache entries in bytes
+	 */
+	public synchronized long getSize() {
+		long size = 0;
+		for(File file: listEntries()) {
+			size += file.length();
+		}
+		return size;
+	}
+	
+	private synchronized File newTempFile(String name) {
+		return new File(dir, name + "." + (tmpCounter++) + ".tmp");
+	}
+	
+	/**
+	 * Copies input to file.
+	 * @return digest of raw input 
+	 */
+	private String spool(InputStream input, File file) throws IOException {
+		MessageDigest md = MessageDigesters.createSHA1();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			byte[] buf = new byte[8 << 10];
+			int n;
+			while((n = input.read(buf)) >= 0) {
+				md.update(buf, 0, n);
+				out.write(buf, 0, n);
+			}
+		}
+		finally {
+			out.close();
+		}
+		return Encodings.bytesToHex(md.digest());
+	}
+	
+	private void sortAndStore(String key, String fingerprint, SimpleGraphView model, GraphSortMethod method, TripleReceiver output) throws IOException {
+		synchronized(this) {
+			++missCount;
+		}
+		File tmp = newTempFile(key);
+		BlockTripleWriter cacheWriter = new BlockTripleWriter(tmp, fingerprint);
+		boolean complete = false;
+		try {
+			method.sort(model, new TeeReceiver(output, cacheWriter));
+			cacheWriter.done();
+			complete = true;
+		}
+		finally {
+			if (!complete) {
+				// partial output is not indexed, original exception is propagated
+				cacheWriter.abort();
+				tmp.delete();
+			}
+		}
+		output.done();
+		
+		synchronized(this) {
+			File entry = new File(dir, key + SUFFIX);
+			if (entry.exists() || !tmp.renameTo(entry)) {
+				tmp.delete();
+			}
+			evict();
+		}
+	}
+	
+	private boolean replay(String key, String fingerprint, TripleReceiver output) throws IOException {
+		BlockTripleFile file;
+		synchronized(this) {
+			File entry = new File(dir, key + SUFFIX);
+			if (!entry.isFile()) {
+				return false;
+			}
+			try {
+				file = new BlockTripleFile(entry);
+			}
+			catch(IOException e) {
+				// damaged entry
+				entry.delete();
+				return false;
+			}
+			if (!isOutputOf(fingerprint, file.getFingerprint())) {
+				// entry is replaced once sorted again
+				file.close();
+				entry.delete();
+				return false;
+			}
+			entry.setLastModified(System.currentTimeMillis());
+			++hitCount;
+		}
+		try {
+			setOutputFingerprint(output, file.getFingerprint());
+			Iterator<Triple> it = file.read(0, file.size());
+			while(it.hasNext()) {
+				output.receive(it.next());
+			}
+			output.done();
+		}
+		finally {
+			file.close();
+		}
+		return true;
+	}
+	
+	private void evict() {
+		List<File> entries = listEntries();
+		long size = 0;
+		for(File file: entries) {
+			size += file.length();
+		}
+		File[] lru = entries.toArray(new File[entries.size()]);
+		Arrays.sort(lru, LRU_ORDER);
+		for(int i = 0; i < lru.length && size > maxSize; ++i) {
+			long len = lru[i].length();
+			if (lru[i].delete()) {
+				size -= len;
+			}
+		}
+	}
+	
+	private List<File> listEntries() {
+		List<File> result = new ArrayList<File>();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for(File file: files) {
+				if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+					result.add(file);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Fingerprint of output starts with algorithm fingerprint, see {@link SortResult#getFingerprint()}.
+	 */
+	private static boolean isOutputOf(String algorithmFingerprint, String outputFingerprint) {
+		return outputFingerprint.equals(algorithmFingerprint) || outputFingerprint.startsWith(algorithmFingerprint + "\n");
+	}
+	
+	private static void setOutputFingerprint(TripleReceiver output, String fingerprint) {
+		if (output instanceof SortedTripleReceiver) {
+			((SortedTripleReceiver)output).setFingerprint(fingerprint);
+		}
+	}
+	
+	/**
+	 * Same input may be parsed differently by other codec, codec is identified by its class.
+	 */
+	private static String key(String inputDigest, TripleCodecFactory codec, String fingerprint) {
+		MessageDigest md = MessageDigesters.createSHA1();
+		md.update(inputDigest.getBytes(Encodings.UTF8));
+		md.update((byte)0);
+		md.update(codec.getClass().getName().getBytes(Encodings.UTF8));
+		md.update((byte)0);
+		md.update(fingerprint.getBytes(Encodings.UTF8));
+		return Encodings.bytesToHex(md.digest());
+	}
+	
+	private static class TeeReceiver implements SortedTripleReceiver {
+		
+		private final TripleReceiver first;
+		private final TripleReceiver second;
+
+		public TeeReceiver(TripleReceiver first, TripleReceiver second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		public void setFingerprint(String fingerprint) {
+			setOutputFingerprint(first, fingerprint);
+			setOutputFingerprint(second, fingerprint);
+		}
+
+		public void receive(Triple stmt) {
+			first.receive(stmt);
+			second.receive(stmt);
+		}
+
+		public void done() {
+			// called by cache explicitly, sort methods do not guarantee it
+		}
+	}
+}
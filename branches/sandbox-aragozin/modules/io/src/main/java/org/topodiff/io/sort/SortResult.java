@@ -0,0 +1,62 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.sort;
+
+import java.util.List;
+import java.util.Set;
+
+import org.topodiff.algo.SortBudget;
+import org.topodiff.graph.Node;
+
+/**
+ * Outcome of single sort call.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortResult {
+
+	private final String fingerprint;
+	private final Set<Node> cutPredicates;
+	private final List<SortBudget.Violation> budgetViolations;
+	
+	public SortResult(String fingerprint, Set<Node> cutPredicates, List<SortBudget.Violation> budgetViolations) {
+		this.fingerprint = fingerprint;
+		this.cutPredicates = cutPredicates;
+		this.budgetViolations = budgetViolations;
+	}
+
+	/**
+	 * Fingerprint of sorted output, it is {@link GraphSortMethod#getAlgorithmFingerPrint()} 
+	 * followed by choices made for particular graph, if any. 
+	 * Only streams with equal fingerprints could be compared.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Cut set used by sort. Passing it to constructor of {@link ToposortSortMethod} (with zero size limit) 
+	 * will reproduce same sorting for other graphs, e.g. for other version of same graph.
+	 */
+	public Set<Node> getCutPredicates() {
+		return cutPredicates;
+	}
+
+	/**
+	 * Clusters which have exceeded work budget.
+	 */
+	public List<SortBudget.Violation> getBudgetViolations() {
+		return budgetViolations;
+	}
+}
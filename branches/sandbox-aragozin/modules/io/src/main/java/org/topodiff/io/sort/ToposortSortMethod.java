@@ -15,19 +15,35 @@ package org.topodiff.io.sort;
 
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.topodiff.graph.GraphView;
 import org.topodiff.graph.Node;
 import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.SortedTripleReceiver;
 import org.topodiff.io.TripleReceiver;
+import org.topodiff.algo.ClusterCapture;
+import org.topodiff.algo.ClusterCutSelector;
+import org.topodiff.algo.ClusterStore;
+import org.topodiff.algo.NodeDictionary;
+import org.topodiff.algo.NodeDictionaryBuilder;
+import org.topodiff.algo.SortBudget;
 import org.topodiff.algo.ToposortGraphProcessor;
+import org.topodiff.io.pipeline.AsyncTripleReceiver;
 import org.topodiff.util.Filters;
 import org.topodiff.util.Match;
+import org.topodiff.util.ReadAheadIterator;
 import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.metrics.Metrics;
+import org.topodiff.util.metrics.NoopMetrics;
 import org.topodiff.util.text.Strings;
 
 /**
@@ -43,21 +59,172 @@ public class ToposortSortMethod implements GraphSortMethod {
 	
 	private final MessageDigest hashAlgo = MessageDigesters.createSHA1();
 	private final Match<Node> propFilter = Filters.inList(DEFAULT_PROPS_TO_FOLLOW);
+	private final ClusterStore clusterStore;
+	private final boolean internNodes;
+	private final ExecutorService executor;
+	private final Set<Node> cutPredicates;
+	private final int maxClusterSize;
+	private final SortBudget budget;
+	
+	private volatile Metrics metrics = NoopMetrics.INSTANCE;
+	private volatile ClusterCapture capture;
+	private volatile long captureThresholdMillis;
+	
+	public ToposortSortMethod() {
+		this(null);
+	}
+
+	/**
+	 * @param clusterStore store of canonical b-clusters shared between runs, may be <code>null</code>.
+	 * Store does not affect result of sorting, so it is not a part of finger print.
+	 */
+	public ToposortSortMethod(ClusterStore clusterStore) {
+		this(clusterStore, false);
+	}
+
+	/**
+	 * @param clusterStore store of canonical b-clusters shared between runs, may be <code>null</code>.
+	 * @param internNodes if <code>true</code> nodes of source are interned into {@link NodeDictionary} while it is parsed
+	 * by {@link #sort(Iterator, TripleReceiver)}, so equal nodes are shared and node comparisons during sort are integer comparisons.
+	 * Graphs passed as {@link GraphView} are sorted as is. Neither option affects result of sorting.
+	 */
+	public ToposortSortMethod(ClusterStore clusterStore, boolean internNodes) {
+		this(clusterStore, internNodes, null);
+	}
+
+	/**
+	 * @param executor pool for canonicalisation of b-clusters, may be <code>null</code>. 
+	 * Cluster store should be thread safe if executor is used. Executor is not shut down by sort method.
+	 */
+	public ToposortSortMethod(ClusterStore clusterStore, boolean internNodes, ExecutorService executor) {
+		this(clusterStore, internNodes, executor, Collections.<Node>emptySet(), 0);
+	}
+
+	/**
+	 * @param cutPredicates predicates which are never followed then b-clusters are collected (see {@link ClusterCutSelector})
+	 * @param maxClusterSize if positive, additional cut predicates are chosen for each graph to keep b-clusters under this size.
+	 * Both options are part of finger print. Cut set chosen for particular graph is recorded in fingerprint of output
+	 * and could be obtained from {@link SortResult#getCutPredicates()}.
+	 */
+	public ToposortSortMethod(ClusterStore clusterStore, boolean internNodes, ExecutorService executor, Collection<Node> cutPredicates, int maxClusterSize) {
+		this(clusterStore, internNodes, executor, cutPredicates, maxClusterSize, null);
+	}
+
+	/**
+	 * @param budget work budget for each b-cluster, <code>null</code> - unlimited. Budget is part of finger print, 
+	 * clusters exceeded budget could be obtained using {@link SortResult#getBudgetViolations()}.
+	 */
+	public ToposortSortMethod(ClusterStore clusterStore, boolean internNodes, ExecutorService executor, Collection<Node> cutPredicates, int maxClusterSize, SortBudget budget) {
+		this.clusterStore = clusterStore;
+		this.internNodes = internNodes;
+		this.executor = executor;
+		this.cutPredicates = Collections.unmodifiableSet(new HashSet<Node>(cutPredicates));
+		this.maxClusterSize = maxClusterSize;
+		this.budget = budget;
+	}
+	
+	/**
+	 * Metrics do not affect result of sorting, so they are not a part of finger print.
+	 * Sort method reports {@code toposort.graph.millis} in addition to metrics of {@link ToposortGraphProcessor#setMetrics(Metrics)}.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @param capture receives b-clusters canonicalised longer than threshold (see {@link ToposortGraphProcessor#setClusterCapture(ClusterCapture, long)}),
+	 * <code>null</code> disables capturing. Not a part of finger print.
+	 */
+	public void setClusterCapture(ClusterCapture capture, long thresholdMillis) {
+		this.capture = capture;
+		this.captureThresholdMillis = thresholdMillis;
+	}
 	
 	public String getAlgorithmFingerPrint() {
 		List<String> props = new ArrayList<String>();
 		
 		props.add("algorithm=TOPOSORT");
 		props.add("class=" + ToposortGraphProcessor.class.getName());
+		props.add("version=" + ToposortGraphProcessor.OUTPUT_VERSION);
 		props.add("bCluster.filter=" + propFilter.toString());
+		if (!cutPredicates.isEmpty()) {
+			props.add("bCluster.cut=" + sortedForms(cutPredicates));
+		}
+		if (maxClusterSize > 0) {
+			props.add("bCluster.maxSize=" + maxClusterSize);
+		}
+		if (budget != null) {
+			props.add("bCluster.budget=" + budget);
+		}
 		
 		Collections.sort(props);
 		
 		return Strings.join(props, "\n");
 	}
 
-	public void sort(GraphView model, TripleReceiver tripleWriter) {
-		ToposortGraphProcessor adapter = new ToposortGraphProcessor(tripleWriter, propFilter, hashAlgo);
+	public SortResult sort(GraphView model, TripleReceiver tripleWriter) {
+		long start = System.currentTimeMillis();
+		Set<Node> cuts = cutPredicates;
+		String fingerprint = getAlgorithmFingerPrint();
+		if (maxClusterSize > 0) {
+			cuts = Collections.unmodifiableSet(new ClusterCutSelector(propFilter, maxClusterSize).selectCuts(model, cutPredicates));
+			// choice depends on graph, streams sorted with different cuts are not comparable
+			fingerprint += "\nbCluster.cut.selected=" + sortedForms(cuts);
+		}
+		if (tripleWriter instanceof SortedTripleReceiver) {
+			((SortedTripleReceiver)tripleWriter).setFingerprint(fingerprint);
+		}
+		
+		ToposortGraphProcessor adapter = new ToposortGraphProcessor(tripleWriter, ClusterCutSelector.createFilter(propFilter, cuts), hashAlgo, clusterStore, executor, budget);
+		adapter.setMetrics(metrics);
+		adapter.setClusterCapture(capture, captureThresholdMillis);
 		adapter.process(model);
+		metrics.record("toposort.graph.millis", System.currentTimeMillis() - start);
+		return new SortResult(fingerprint, cuts, adapter.getBudgetViolations());
+	}
+
+	/**
+	 * Pipelined sort of triple stream. Source is parsed on reader thread while graph is being built, 
+	 * b-clusters are canonicalised using executor (if any) and sorted triples are written on writer thread.
+	 * <br/>
+	 * {@link TripleReceiver#done()} is called on completion.
+	 */
+	public SortResult sort(Iterator<Triple> source, TripleReceiver tripleWriter) {
+		ReadAheadIterator<Triple> reader = new ReadAheadIterator<Triple>(source);
+		SimpleGraphView model = new SimpleGraphView();
+		NodeDictionaryBuilder dictionary = internNodes ? new NodeDictionaryBuilder() : null;
+		try {
+			while(reader.hasNext()) {
+				Triple triple = reader.next();
+				model.add(dictionary == null ? triple : dictionary.intern(triple));
+			}
+		}
+		finally {
+			reader.close();
+		}
+		if (dictionary != null) {
+			// binds nodes already in graph, their order is not changed
+			dictionary.build();
+		}
+		
+		AsyncTripleReceiver writer = new AsyncTripleReceiver(tripleWriter);
+		try {
+			SortResult result = sort(model, writer);
+			writer.done();
+			return result;
+		}
+		finally {
+			// no-op on success, otherwise writer thread would wait for triples forever
+			writer.abort();
+		}
+	}
+
+	private static List<String> sortedForms(Collection<Node> nodes) {
+		List<String> forms = new ArrayList<String>();
+		for(Node node: nodes) {
+			forms.add(node.getLexicalForm());
+		}
+		Collections.sort(forms);
+		return forms;
 	}
 }
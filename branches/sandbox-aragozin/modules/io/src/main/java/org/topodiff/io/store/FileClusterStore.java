@@ -0,0 +1,442 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.topodiff.algo.ClusterStore;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.codec.BinaryNodeCodec;
+import org.topodiff.util.hash.MessageDigesters;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * {@link ClusterStore} persisted in directory.
+ * <br/>
+ * Store consists of two files
+ * <ul>
+ * <li>{@code clusters.dat} - append only log of cluster records</li>
+ * <li>{@code clusters.idx} - sorted array of (key digest, record offset) pairs, memory mapped and binary searched,
+ * header records length of log covered by index</li>
+ * </ul>
+ * Each record is indexed twice: by cluster hash and by shape key. Records are written to log immediately, 
+ * their index entries are kept in memory and merged to index file on {@link #close()}.
+ * If process has died without closing store, records past indexed length are recovered from log on next opening 
+ * (incomplete trailing record is truncated). Missing or damaged index is rebuilt from log same way.
+ * <br/>
+ * Instances are thread safe, but directory should not be shared between processes.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class FileClusterStore implements ClusterStore {
+
+	private static final int DATA_MAGIC = 0x54444353; // TDCS
+	private static final int INDEX_MAGIC = 0x54444349; // TDCI
+	private static final int VERSION = 1;
+	private static final int INDEX_VERSION = 2;
+
+	private static final int DATA_HEADER_SIZE = 8;
+	private static final int KEY_SIZE = 20;
+	private static final int ENTRY_SIZE = KEY_SIZE + 8;
+	private static final int INDEX_HEADER_SIZE = 20;
+
+	private static final Comparator<IndexEntry> ENTRY_COMPARATOR = new Comparator<IndexEntry>() {
+		public int compare(IndexEntry o1, IndexEntry o2) {
+			return compareKeys(o1.key, o2.key);
+		}
+	};
+
+	private final File indexFile;
+	private final RandomAccessFile data;
+	private final MessageDigest keyDigest = MessageDigesters.createSHA1();
+
+	private RandomAccessFile indexRaf;
+	private MappedByteBuffer index;
+	private int indexSize;
+	private long indexedLength;
+	private int recoveredCount;
+
+	private final List<IndexEntry> pending = new ArrayList<IndexEntry>();
+	private boolean pendingSorted = true;
+	private boolean closed = false;
+
+	public FileClusterStore(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Cannot create store directory " + dir);
+		}
+
+		File dataFile = new File(dir, "clusters.dat");
+		indexFile = new File(dir, "clusters.idx");
+
+		data = new RandomAccessFile(dataFile, "rw");
+		if (data.length() == 0) {
+			data.writeInt(DATA_MAGIC);
+			data.writeInt(VERSION);
+		}
+		else {
+			data.seek(0);
+			if (data.readInt() != DATA_MAGIC || data.readInt() != VERSION) {
+				data.close();
+				throw new IOException("Unknown format of " + dataFile);
+			}
+		}
+
+		try {
+			openIndex();
+			recover();
+		}
+		catch(IOException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps index file, index which is not consistent with log is ignored (it will be rebuilt).
+	 */
+	private void openIndex() throws IOException {
+		indexSize = 0;
+		indexedLength = DATA_HEADER_SIZE;
+		if (!indexFile.exists()) {
+			return;
+		}
+		indexRaf = new RandomAccessFile(indexFile, "r");
+		long length = indexRaf.length();
+		if (length >= INDEX_HEADER_SIZE) {
+			index = indexRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			int size = index.getInt(8);
+			long covered = index.getLong(12);
+			if (index.getInt(0) == INDEX_MAGIC && index.getInt(4) == INDEX_VERSION 
+					&& size >= 0 && INDEX_HEADER_SIZE + (long)size * ENTRY_SIZE <= length
+					&& covered >= DATA_HEADER_SIZE && covered <= data.length()) {
+				indexSize = size;
+				indexedLength = covered;
+				return;
+			}
+		}
+		index = null;
+		indexRaf.close();
+		indexRaf = null;
+	}
+
+	/**
+	 * Reads records appended after index was written, incomplete trailing record is truncated.
+	 */
+	private void recover() throws IOException {
+		long offset = indexedLength;
+		long length = data.length();
+		while(offset < length) {
+			if (offset + 4 > length) {
+				break;
+			}
+			data.seek(offset);
+			int size = data.readInt();
+			if (size < 0 || offset + 4 + size > length) {
+				break;
+			}
+			Record record = readRecordHeader(offset);
+			pending.add(new IndexEntry(key("h:" + record.hash), offset));
+			pending.add(new IndexEntry(key("s:" + record.shapeKey), offset));
+			pendingSorted = false;
+			++recoveredCount;
+			offset += 4 + size;
+		}
+		if (offset < length) {
+			data.setLength(offset);
+		}
+	}
+
+	/**
+	 * @return number of records recovered from log on opening
+	 */
+	public int getRecoveredCount() {
+		return recoveredCount;
+	}
+
+	public synchronized Collection<String> findByShape(String shapeKey) {
+		ensureOpen();
+		List<String> result = new ArrayList<String>();
+		for(Long offset: lookup(key("s:" + shapeKey))) {
+			Record record = readRecordHeader(offset.longValue());
+			if (shapeKey.equals(record.shapeKey)) {
+				result.add(record.hash);
+			}
+		}
+		return result;
+	}
+
+	public synchronized List<Triple> getCluster(String hash) {
+		ensureOpen();
+		for(Long offset: lookup(key("h:" + hash))) {
+			Record record = readRecord(offset.longValue());
+			if (hash.equals(record.hash)) {
+				return record.triples;
+			}
+		}
+		return null;
+	}
+
+	public synchronized boolean containsCluster(String hash) {
+		ensureOpen();
+		for(Long offset: lookup(key("h:" + hash))) {
+			if (hash.equals(readRecordHeader(offset.longValue()).hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized void putCluster(String shapeKey, String hash, List<Triple> canonicalTriples) {
+		ensureOpen();
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bos);
+			dos.writeUTF(shapeKey);
+			dos.writeUTF(hash);
+			dos.writeInt(canonicalTriples.size());
+			for(Triple triple: canonicalTriples) {
+				BinaryNodeCodec.writeNode(dos, triple.subject);
+				BinaryNodeCodec.writeNode(dos, triple.predicate);
+				BinaryNodeCodec.writeNode(dos, triple.object);
+			}
+			dos.close();
+
+			long offset = data.length();
+			data.seek(offset);
+			data.writeInt(bos.size());
+			data.write(bos.toByteArray());
+
+			pending.add(new IndexEntry(key("h:" + hash), offset));
+			pending.add(new IndexEntry(key("s:" + shapeKey), offset));
+			pendingSorted = false;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write cluster " + hash, e);
+		}
+	}
+
+	/**
+	 * Merges in-memory index entries into index file and releases resources.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		List<IndexEntry> entries = new ArrayList<IndexEntry>(indexSize + pending.size());
+		for(int i = 0; i != indexSize; ++i) {
+			entries.add(new IndexEntry(readKey(i), readOffset(i)));
+		}
+		entries.addAll(pending);
+		Collections.sort(entries, ENTRY_COMPARATOR);
+
+		long covered = data.length();
+		if (indexRaf != null) {
+			index = null;
+			indexRaf.close();
+		}
+		data.close();
+
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeInt(entries.size());
+			out.writeLong(covered);
+			for(IndexEntry entry: entries) {
+				out.write(entry.key);
+				out.writeLong(entry.offset);
+			}
+		}
+		finally {
+			out.close();
+		}
+
+		if (indexFile.exists() && !indexFile.delete()) {
+			throw new IOException("Cannot replace " + indexFile);
+		}
+		if (!tmpFile.renameTo(indexFile)) {
+			throw new IOException("Cannot rename " + tmpFile + " to " + indexFile);
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			if (indexRaf != null) {
+				indexRaf.close();
+			}
+			data.close();
+		}
+		catch(IOException e) {
+			// ignore
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("Store is closed");
+		}
+	}
+
+	private List<Long> lookup(byte[] key) {
+		List<Long> result = new ArrayList<Long>();
+
+		// binary search for first matching entry in mapped index
+		int lo = 0;
+		int hi = indexSize;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compareKey(mid, key) < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		for(int i = lo; i < indexSize && compareKey(i, key) == 0; ++i) {
+			result.add(Long.valueOf(readOffset(i)));
+		}
+
+		if (!pendingSorted) {
+			Collections.sort(pending, ENTRY_COMPARATOR);
+			pendingSorted = true;
+		}
+		int n = Collections.binarySearch(pending, new IndexEntry(key, -1), ENTRY_COMPARATOR);
+		if (n >= 0) {
+			while(n > 0 && compareKeys(pending.get(n - 1).key, key) == 0) {
+				--n;
+			}
+			for(; n < pending.size() && compareKeys(pending.get(n).key, key) == 0; ++n) {
+				result.add(Long.valueOf(pending.get(n).offset));
+			}
+		}
+
+		return result;
+	}
+
+	private byte[] readKey(int n) {
+		byte[] key = new byte[KEY_SIZE];
+		for(int i = 0; i != KEY_SIZE; ++i) {
+			key[i] = index.get(INDEX_HEADER_SIZE + n * ENTRY_SIZE + i);
+		}
+		return key;
+	}
+
+	/**
+	 * Compares key of n-th index entry in place.
+	 */
+	private int compareKey(int n, byte[] key) {
+		int base = INDEX_HEADER_SIZE + n * ENTRY_SIZE;
+		for(int i = 0; i != KEY_SIZE; ++i) {
+			int b1 = index.get(base + i) & 0xFF;
+			int b2 = key[i] & 0xFF;
+			if (b1 != b2) {
+				return b1 - b2;
+			}
+		}
+		return 0;
+	}
+
+	private long readOffset(int n) {
+		return index.getLong(INDEX_HEADER_SIZE + n * ENTRY_SIZE + KEY_SIZE);
+	}
+
+	/**
+	 * Reads shape key and hash of record, triples are not read.
+	 */
+	private Record readRecordHeader(long offset) {
+		try {
+			data.seek(offset + 4);
+			Record record = new Record();
+			record.shapeKey = data.readUTF();
+			record.hash = data.readUTF();
+			return record;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read cluster record at " + offset, e);
+		}
+	}
+
+	private Record readRecord(long offset) {
+		try {
+			data.seek(offset);
+			byte[] buf = new byte[data.readInt()];
+			data.readFully(buf);
+
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(buf));
+			Record record = new Record();
+			record.shapeKey = dis.readUTF();
+			record.hash = dis.readUTF();
+			int n = dis.readInt();
+			record.triples = new ArrayList<Triple>(n);
+			for(int i = 0; i != n; ++i) {
+				Node s = BinaryNodeCodec.readNode(dis);
+				Node p = BinaryNodeCodec.readNode(dis);
+				Node o = BinaryNodeCodec.readNode(dis);
+				record.triples.add(new Triple(s, p, o));
+			}
+			return record;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read cluster record at " + offset, e);
+		}
+	}
+
+	private byte[] key(String text) {
+		keyDigest.reset();
+		return keyDigest.digest(text.getBytes(Encodings.UTF8));
+	}
+
+	private static int compareKeys(byte[] k1, byte[] k2) {
+		for(int i = 0; i != KEY_SIZE; ++i) {
+			int b1 = k1[i] & 0xFF;
+			int b2 = k2[i] & 0xFF;
+			if (b1 != b2) {
+				return b1 - b2;
+			}
+		}
+		return 0;
+	}
+
+	private static class IndexEntry {
+		final byte[] key;
+		final long offset;
+
+		public IndexEntry(byte[] key, long offset) {
+			this.key = key;
+			this.offset = offset;
+		}
+	}
+
+	private static class Record {
+		String shapeKey;
+		String hash;
+		List<Triple> triples;
+	}
+}
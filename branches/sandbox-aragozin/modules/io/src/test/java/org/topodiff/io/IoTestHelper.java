@@ -0,0 +1,68 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.codec.NTripleFormatReader;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class IoTestHelper {
+
+	public static Triple triple(String text) {
+		return parseTripleList(text).get(0);
+	}
+
+	public static List<Triple> parseTripleList(String... text) {
+		StringBuilder sb = new StringBuilder();
+		for(String line: text) {
+			sb.append(line).append(" .\n");
+		}
+		return toList(new NTripleFormatReader(new StringReader(sb.toString())));
+	}
+	
+	public static <T> List<T> toList(Iterator<T> it) {
+		List<T> list = new ArrayList<T>();
+		while(it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+
+	public static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Cannot create " + dir);
+		}
+		return dir;
+	}
+	
+	public static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for(File f: files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,194 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.block;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.algo.DiffProcessor;
+import org.topodiff.algo.PointDiff;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.io.sort.ToposortSortMethod;
+
+/**
+ * {@link PointDiff} over block files with isomorphic b-clusters spread over several small blocks.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BlockPointDiffTest {
+
+	private static final String FIRST = "<http://www.w3.org/TR/rdf-schema/#first>";
+	private static final String REST = "<http://www.w3.org/TR/rdf-schema/#rest>";
+
+	private File dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = IoTestHelper.createTempDir("point-diff");
+	}
+
+	@After
+	public void deleteDir() {
+		IoTestHelper.delete(dir);
+	}
+
+	@Test
+	public void unchangedSubjectWithIsomorphicCopies() throws IOException {
+		List<String> v1 = snapshot(6, -1, null);
+		List<String> v2 = snapshot(6, -1, null);
+		Delta delta = pointDiff(v1, v2, "http://x/s3");
+		Assert.assertEquals(0, delta.removed.size());
+		Assert.assertEquals(0, delta.added.size());
+		Assert.assertEquals(5, delta.matched);
+	}
+
+	@Test
+	public void copyCountDiffers() throws IOException {
+		// subject 5 loses its list, number of isomorphic copies differs between versions
+		List<String> v1 = snapshot(6, -1, null);
+		List<String> v2 = snapshot(6, 5, null);
+		for(int i = 0; i != 5; ++i) {
+			Delta delta = pointDiff(v1, v2, "http://x/s" + i);
+			Assert.assertEquals("s" + i, 0, delta.removed.size());
+			Assert.assertEquals("s" + i, 0, delta.added.size());
+		}
+
+		Delta delta = pointDiff(v1, v2, "http://x/s5");
+		Assert.assertEquals(4, delta.removed.size());
+		Assert.assertEquals(0, delta.added.size());
+		Assert.assertEquals(1, delta.matched);
+	}
+
+	@Test
+	public void changedCopy() throws IOException {
+		// list of subject 2 is not isomorphic to others in second version
+		List<String> v1 = snapshot(6, -1, null);
+		List<String> v2 = snapshot(6, -1, 2);
+		Delta delta = pointDiff(v1, v2, "http://x/s2");
+		// whole cluster and reference to it are replaced
+		Assert.assertEquals(4, delta.removed.size());
+		Assert.assertEquals(4, delta.added.size());
+
+		for(int i = 0; i != 6; ++i) {
+			if (i != 2) {
+				delta = pointDiff(v1, v2, "http://x/s" + i);
+				Assert.assertEquals("s" + i, 0, delta.removed.size());
+				Assert.assertEquals("s" + i, 0, delta.added.size());
+			}
+		}
+	}
+
+	@Test
+	public void prefixMatchesFullDiff() throws IOException {
+		List<String> v1 = snapshot(6, -1, null);
+		List<String> v2 = snapshot(6, 5, 2);
+
+		File f1 = sort(v1, "v1.tdb");
+		File f2 = sort(v2, "v2.tdb");
+		BlockTripleFile b1 = new BlockTripleFile(f1);
+		BlockTripleFile b2 = new BlockTripleFile(f2);
+		try {
+			Assert.assertTrue(b1.getBlockCount() > 5);
+
+			Delta full = new Delta();
+			new DiffProcessor(b1.read(0, b1.size()), b2.read(0, b2.size()), full).process();
+
+			Delta range = new Delta();
+			new PointDiff(b1, b2).diffPrefix("http://x/s", range);
+
+			Assert.assertEquals(full.removed, range.removed);
+			Assert.assertEquals(full.added, range.added);
+			Assert.assertEquals(full.matched, range.matched);
+		}
+		finally {
+			b1.close();
+			b2.close();
+		}
+	}
+
+	/**
+	 * Each subject refers a two element list, lists are isomorphic unless value is altered.
+	 * @param dropList subject without list
+	 * @param alterList subject with altered list
+	 */
+	private static List<String> snapshot(int subjects, int dropList, Integer alterList) {
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i != subjects; ++i) {
+			String s = "<http://x/s" + i + ">";
+			lines.add(s + " <http://x/p> \"" + i + "\"");
+			if (i != dropList) {
+				lines.add(s + " <http://x/list> _:a" + i);
+				lines.add("_:a" + i + " " + FIRST + " \"" + (alterList != null && alterList == i ? "altered" : "head") + "\"");
+				lines.add("_:a" + i + " " + REST + " _:b" + i);
+				lines.add("_:b" + i + " " + FIRST + " \"tail\"");
+			}
+		}
+		return lines;
+	}
+
+	private Delta pointDiff(List<String> v1, List<String> v2, String subject) throws IOException {
+		BlockTripleFile b1 = new BlockTripleFile(sort(v1, "v1.tdb"));
+		BlockTripleFile b2 = new BlockTripleFile(sort(v2, "v2.tdb"));
+		try {
+			Delta delta = new Delta();
+			new PointDiff(b1, b2).diffSubject(new Node(NodeType.NAMED, subject), delta);
+			return delta;
+		}
+		finally {
+			b1.close();
+			b2.close();
+		}
+	}
+
+	private File sort(List<String> lines, String name) throws IOException {
+		File file = new File(dir, name);
+		ToposortSortMethod sorter = new ToposortSortMethod();
+		// small blocks, so clusters and subjects are spread over many blocks
+		BlockTripleWriter writer = new BlockTripleWriter(file, sorter.getAlgorithmFingerPrint(), 48);
+		sorter.sort(IoTestHelper.parseTripleList(lines.toArray(new String[lines.size()])).iterator(), writer);
+		return file;
+	}
+
+	private static class Delta implements ModelDeltaReceiver {
+
+		final List<Triple> removed = new ArrayList<Triple>();
+		final List<Triple> added = new ArrayList<Triple>();
+		int matched;
+
+		public void tripleMatch(Triple tripleA, Triple tripleB) {
+			if (tripleA != null && tripleB != null) {
+				++matched;
+			}
+			else if (tripleA != null) {
+				removed.add(tripleA);
+			}
+			else {
+				added.add(tripleB);
+			}
+		}
+
+		public void done() {
+		}
+	}
+}
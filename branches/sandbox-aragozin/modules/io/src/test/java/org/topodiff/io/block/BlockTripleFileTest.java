@@ -0,0 +1,332 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.block;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.algo.MerkleSummary;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BlockTripleFileTest {
+
+	private static final String FINGERPRINT = "test-sort";
+
+	private File dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = IoTestHelper.createTempDir("block-file");
+	}
+
+	@After
+	public void deleteDir() {
+		IoTestHelper.delete(dir);
+	}
+
+	@Test
+	public void multiBlockRoundTrip() throws IOException {
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 64));
+		try {
+			Assert.assertTrue("Expected several blocks, got " + bf.getBlockCount(), bf.getBlockCount() > 5);
+			Assert.assertEquals(triples.size(), bf.size());
+			Assert.assertEquals(FINGERPRINT, bf.getFingerprint());
+			Assert.assertEquals(triples, IoTestHelper.toList(bf.read(0, bf.size())));
+
+			// arbitrary ranges, crossing block boundaries
+			for(int from = 0; from < triples.size(); from += 3) {
+				for(int to = from; to <= triples.size(); to += 5) {
+					Assert.assertEquals(triples.subList(from, to), IoTestHelper.toList(bf.read(from, to)));
+				}
+			}
+
+			List<Triple> blockwise = new ArrayList<Triple>();
+			for(int i = 0; i != bf.getBlockCount(); ++i) {
+				List<Triple> block = bf.readBlock(i);
+				Assert.assertEquals(bf.getBlockTripleCount(i), block.size());
+				Assert.assertEquals(blockwise.size(), bf.getBlockFirstTriple(i));
+				Assert.assertEquals(block.get(0).subject, bf.getBlockFirstSubject(i));
+				blockwise.addAll(block);
+			}
+			Assert.assertEquals(triples, blockwise);
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void subjectsAreNotSplitAcrossBlocks() throws IOException {
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 64));
+		try {
+			for(int i = 1; i < bf.getBlockCount(); ++i) {
+				int first = (int)bf.getBlockFirstTriple(i);
+				Assert.assertFalse("Subject spans block #" + i, triples.get(first - 1).subject.equals(triples.get(first).subject));
+			}
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void blockOfTriple() throws IOException {
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 64));
+		try {
+			int block = 0;
+			for(int i = 0; i != triples.size(); ++i) {
+				if (block + 1 < bf.getBlockCount() && bf.getBlockFirstTriple(block + 1) == i) {
+					++block;
+				}
+				Assert.assertEquals("Triple #" + i, block, bf.getBlockOfTriple(i));
+			}
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void findBlockBySubject() throws IOException {
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 64));
+		try {
+			for(int i = 0; i != triples.size(); ++i) {
+				Node subject = triples.get(i).subject;
+				if (subject.isAnon()) {
+					continue;
+				}
+				int block = bf.findBlock(MerkleSummary.SECTION_NAMED, subject);
+				Assert.assertEquals(subject.toString(), bf.getBlockOfTriple(i), block);
+				Assert.assertEquals(bf.getBlockFirstTriple(block), bf.seekSubject(MerkleSummary.SECTION_NAMED, subject));
+				Assert.assertTrue(subject.toString(), bf.readBlock(block).contains(triples.get(i)));
+			}
+
+			// subject preceding named section resolves to last block of blanks
+			Node before = IoTestHelper.triple("<http://x/a> <http://x/p> \"v\"").subject;
+			int block = bf.findBlock(MerkleSummary.SECTION_NAMED, before);
+			Assert.assertEquals(MerkleSummary.SECTION_BLANKS, bf.getBlockSection(block));
+			Assert.assertEquals(MerkleSummary.SECTION_NAMED, bf.getBlockSection(block + 1));
+
+			Node after = IoTestHelper.triple("<http://x/z> <http://x/p> \"v\"").subject;
+			Assert.assertEquals(lastBlockOf(bf, MerkleSummary.SECTION_NAMED), bf.findBlock(MerkleSummary.SECTION_NAMED, after));
+
+			Node first = IoTestHelper.triple("_:a <http://x/p> \"v\"").subject;
+			Assert.assertEquals(-1, bf.findBlock(MerkleSummary.SECTION_BLANKS, first));
+			Assert.assertEquals(0, bf.seekSubject(MerkleSummary.SECTION_BLANKS, first));
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void sectionsOfMultiBlockFile() throws IOException {
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 64));
+		try {
+			assertSections(triples, bf);
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void sectionsWithinSingleBlock() throws IOException {
+		// single block starts in blanks and crosses into named and third kind sections
+		List<Triple> triples = sampleStream();
+		BlockTripleFile bf = new BlockTripleFile(write(triples, 1 << 20));
+		try {
+			Assert.assertEquals(1, bf.getBlockCount());
+			Assert.assertEquals(MerkleSummary.SECTION_BLANKS, bf.getBlockSection(0));
+			assertSections(triples, bf);
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void emptyFile() throws IOException {
+		BlockTripleFile bf = new BlockTripleFile(write(new ArrayList<Triple>(), 64));
+		try {
+			Assert.assertEquals(0, bf.size());
+			Assert.assertEquals(0, bf.getBlockCount());
+			Assert.assertFalse(bf.read(0, 0).hasNext());
+			Assert.assertEquals(MerkleSummary.SECTION_BLANKS, bf.getSection(0));
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException {
+		File file = write(sampleStream(), 64);
+		Assert.assertTrue(BlockTripleFile.isBlockFile(file));
+
+		truncate(file, file.length() - 5);
+		Assert.assertTrue(BlockTripleFile.isBlockFile(file));
+		assertRejected(file);
+
+		truncate(file, BlockFormat.HEADER_SIZE + 4);
+		assertRejected(file);
+	}
+
+	@Test
+	public void unknownFormatIsRejected() throws IOException {
+		File file = write(sampleStream(), 64);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.writeInt(0xCAFEBABE);
+		}
+		finally {
+			raf.close();
+		}
+		Assert.assertFalse(BlockTripleFile.isBlockFile(file));
+		assertRejected(file);
+	}
+
+	@Test
+	public void corruptedBlockIsDetected() throws IOException {
+		File file = write(sampleStream(), 64);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// damage deflate stream of first block, right after zlib header
+			raf.seek(BlockFormat.HEADER_SIZE + 2);
+			raf.write(new byte[] {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF});
+		}
+		finally {
+			raf.close();
+		}
+
+		BlockTripleFile bf = new BlockTripleFile(file);
+		try {
+			bf.readBlock(1);
+			try {
+				bf.readBlock(0);
+				Assert.fail("Corruption is not detected");
+			}
+			catch(RuntimeException e) {
+				// expected
+			}
+		}
+		finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void writerFailsOnMissingDirectory() {
+		try {
+			new BlockTripleWriter(new File(new File(dir, "missing"), "data.tdb"), FINGERPRINT, 64);
+			Assert.fail("Exception expected");
+		}
+		catch(IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Sorted stream: blank subjects, named subjects and blank subjects referred from named ones.
+	 */
+	private static List<Triple> sampleStream() {
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i != 10; ++i) {
+			lines.add("_:b" + i + " <http://x/p> \"blank " + i + "\"");
+			lines.add("_:b" + i + " <http://x/q> _:b" + ((i + 1) % 10));
+		}
+		for(int i = 0; i != 30; ++i) {
+			String s = "<http://x/s" + (i < 10 ? "0" : "") + i + ">";
+			for(int j = 0; j <= i % 4; ++j) {
+				lines.add(s + " <http://x/p" + j + "> \"value " + i + "." + j + "\"");
+			}
+		}
+		for(int i = 0; i != 5; ++i) {
+			lines.add("_:t" + i + " <http://x/p> \"third " + i + "\"");
+		}
+		return IoTestHelper.parseTripleList(lines.toArray(new String[lines.size()]));
+	}
+
+	private static void assertSections(List<Triple> triples, BlockTripleFile bf) {
+		int section = MerkleSummary.SECTION_BLANKS;
+		for(int i = 0; i != triples.size(); ++i) {
+			if (!triples.get(i).subject.isAnon()) {
+				section = MerkleSummary.SECTION_NAMED;
+			}
+			else if (section == MerkleSummary.SECTION_NAMED) {
+				section = MerkleSummary.SECTION_THIRD_KIND;
+			}
+			Assert.assertEquals("Triple #" + i, section, bf.getSection(i));
+		}
+		Assert.assertEquals(MerkleSummary.SECTION_THIRD_KIND, section);
+	}
+
+	private static int lastBlockOf(BlockTripleFile bf, int section) {
+		int n = -1;
+		for(int i = 0; i != bf.getBlockCount(); ++i) {
+			if (bf.getBlockSection(i) == section) {
+				n = i;
+			}
+		}
+		return n;
+	}
+
+	private File write(List<Triple> triples, int blockSize) throws IOException {
+		File file = new File(dir, "data.tdb");
+		BlockTripleWriter writer = new BlockTripleWriter(file, FINGERPRINT, blockSize);
+		for(Triple t: triples) {
+			writer.receive(t);
+		}
+		writer.done();
+		Assert.assertEquals(triples.size(), writer.getTripleCount());
+		return file;
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	private static void assertRejected(File file) {
+		try {
+			new BlockTripleFile(file).close();
+			Assert.fail("File should be rejected");
+		}
+		catch(IOException e) {
+			// expected
+		}
+	}
+}
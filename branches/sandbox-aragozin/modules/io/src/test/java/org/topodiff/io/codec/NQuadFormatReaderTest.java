@@ -0,0 +1,70 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Quad;
+import org.topodiff.io.IoTestHelper;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NQuadFormatReaderTest {
+
+	@Test
+	public void graphLabels() {
+		List<Quad> quads = parse(
+				"<http://x/s> <http://x/p> \"a\" <http://x/g1> .\n" +
+				"<http://x/s> <http://x/p> _:o _:g2 .\n" +
+				"# comment\n" +
+				"<http://x/s> <http://x/p> \"b\"@en .\n" +
+				"_:s <http://x/p> \"1\"^^<http://x/int> <http://x/g1>.\n");
+
+		Assert.assertEquals(4, quads.size());
+		Assert.assertEquals(new Node(NodeType.NAMED, "http://x/g1"), quads.get(0).graph);
+		Assert.assertEquals(IoTestHelper.triple("<http://x/s> <http://x/p> \"a\""), quads.get(0).triple);
+		Assert.assertEquals(new Node(NodeType.BLANK, "g2"), quads.get(1).graph);
+		Assert.assertEquals(new Node(NodeType.BLANK, "o"), quads.get(1).triple.object);
+		Assert.assertTrue(quads.get(2).isDefaultGraph());
+		Assert.assertEquals(new Node(NodeType.LITERAL, "b@en"), quads.get(2).triple.object);
+		Assert.assertEquals(new Node(NodeType.NAMED, "http://x/g1"), quads.get(3).graph);
+		Assert.assertEquals(new Node(NodeType.LITERAL, "1^^<http://x/int>"), quads.get(3).triple.object);
+	}
+
+	@Test
+	public void blankGraphLabelAtEndOfLine() {
+		List<Quad> quads = parse("<http://x/s> <http://x/p> <http://x/o> _:g.\n");
+		Assert.assertEquals(new Node(NodeType.BLANK, "g"), quads.get(0).graph);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void literalGraphLabelIsRejected() {
+		parse("<http://x/s> <http://x/p> <http://x/o> \"g\" .\n");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void triplesParserRejectsGraphLabel() {
+		IoTestHelper.toList(new NTripleFormatReader(new StringReader("<http://x/s> <http://x/p> <http://x/o> <http://x/g> .\n")));
+	}
+
+	private static List<Quad> parse(String text) {
+		return IoTestHelper.toList(new NQuadFormatReader(new StringReader(text)));
+	}
+}
@@ -0,0 +1,145 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NTripleFormatReaderTest {
+
+	@Test
+	public void literalEscapes() {
+		Assert.assertEquals(literal("a\"b\\c@"), object("\"a\\\"b\\\\c\" ."));
+		Assert.assertEquals(literal("tab\tcr\rnl\nbs\bff\f'@"), object("\"tab\\tcr\\rnl\\nbs\\bff\\f\\'\" ."));
+		Assert.assertEquals(literal("\u00e9\u4e2d@"), object("\"\\u00E9\\u4e2d\" ."));
+		Assert.assertEquals(literal(new String(Character.toChars(0x1F600)) + "@"), object("\"\\U0001F600\" ."));
+		// escape after unescaped prefix
+		Assert.assertEquals(literal("abc\ndef@"), object("\"abc\\ndef\" ."));
+	}
+
+	@Test
+	public void uriEscapes() {
+		Assert.assertEquals(new Node(NodeType.NAMED, "http://x/A\u00e9"), object("<http://x/\\u0041\\U000000E9> ."));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void literalEscapeIsNotAllowedInUri() {
+		object("<http://x/\\n> .");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void illegalEscape() {
+		object("\"\\x\" .");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedUnicodeEscape() {
+		object("\"\\u00\" .");
+	}
+
+	@Test
+	public void languageTags() {
+		Assert.assertEquals(literal("chat@en"), object("\"chat\"@en ."));
+		Assert.assertEquals(literal("chat@en-US"), object("\"chat\"@en-US ."));
+		Assert.assertEquals(literal("chat@en-US"), object("\"chat\"@en-US."));
+		// plain literal
+		Assert.assertEquals(literal("chat@"), object("\"chat\" ."));
+		Assert.assertEquals(literal("a@b@"), object("\"a@b\" ."));
+	}
+
+	@Test
+	public void datatypes() {
+		Assert.assertEquals(literal("1^^<http://www.w3.org/2001/XMLSchema#int>"), object("\"1\"^^<http://www.w3.org/2001/XMLSchema#int> ."));
+		Assert.assertEquals(literal("a\"^^<http://x/t>"), object("\"a\\\"\"^^<http://x/t>."));
+		Assert.assertEquals(literal("1^^<http://x/\u00e9>"), object("\"1\"^^<http://x/\\u00E9> ."));
+	}
+
+	@Test
+	public void blankNodeAtEndOfLine() {
+		Assert.assertEquals(new Node(NodeType.BLANK, "x"), object("_:x."));
+		Assert.assertEquals(new Node(NodeType.BLANK, "x"), object("_:x. "));
+		Assert.assertEquals(new Node(NodeType.BLANK, "x"), object("_:x.\t# comment"));
+		Assert.assertEquals(new Node(NodeType.BLANK, "x.y"), object("_:x.y ."));
+		Assert.assertEquals(new Node(NodeType.BLANK, "x"), object("_:x ."));
+	}
+
+	@Test
+	public void commentsAndEmptyLines() {
+		List<Triple> triples = parse(
+				"# header\n" +
+				"\n" +
+				"   \n" +
+				"<http://x/s> <http://x/p> <http://x/o> . # trailing comment\n" +
+				"\t_:s\t<http://x/p>\t\"1\"\t.\n");
+		Assert.assertEquals(2, triples.size());
+		Assert.assertEquals(new Node(NodeType.BLANK, "s"), triples.get(1).subject);
+	}
+
+	@Test
+	public void lineNumberIsReported() {
+		NTripleFormatReader reader = new NTripleFormatReader(new StringReader(
+				"<http://x/s> <http://x/p> <http://x/o> .\n" +
+				"<http://x/s> <http://x/p> \"open .\n"));
+		reader.next();
+		try {
+			reader.next();
+			Assert.fail("Syntax error expected");
+		}
+		catch(IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to parse line 2:"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingTerminator() {
+		parse("<http://x/s> <http://x/p> <http://x/o>\n");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void literalSubjectIsRejected() {
+		parse("\"s\" <http://x/p> <http://x/o> .\n");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyBlankNodeLabelIsRejected() {
+		parse("_: <http://x/p> <http://x/o> .\n");
+	}
+
+	private static Node literal(String lexicalForm) {
+		return new Node(NodeType.LITERAL, lexicalForm);
+	}
+
+	/**
+	 * Parses single statement with given tail (object and terminator).
+	 */
+	private static Node object(String tail) {
+		List<Triple> triples = parse("<http://x/s> <http://x/p> " + tail + "\n");
+		Assert.assertEquals(1, triples.size());
+		return triples.get(0).object;
+	}
+
+	private static List<Triple> parse(String text) {
+		return IoTestHelper.toList(new NTripleFormatReader(new StringReader(text)));
+	}
+}
@@ -0,0 +1,98 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.codec;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class NTripleFormatWriterTest {
+
+	private static final Node S = new Node(NodeType.NAMED, "http://x/s");
+	private static final Node P = new Node(NodeType.NAMED, "http://x/p");
+
+	@Test
+	public void literalEscapes() {
+		Assert.assertEquals("\"a\\\"b\\\\c\"", write(literal("a\"b\\c@")));
+		Assert.assertEquals("\"l1\\nl2\\r\\t\"", write(literal("l1\nl2\r\t@")));
+		Assert.assertEquals("\"\\u0001\u00e9\"", write(literal("\u0001\u00e9@")));
+	}
+
+	@Test
+	public void uriEscapes() {
+		Assert.assertEquals("<http://x/a\\u003Eb\\u005C\u00e9>", write(new Node(NodeType.NAMED, "http://x/a>b\\\u00e9")));
+	}
+
+	@Test
+	public void languageTags() {
+		Assert.assertEquals("\"chat\"@en-US", write(literal("chat@en-US")));
+		Assert.assertEquals("\"chat\"", write(literal("chat@")));
+		Assert.assertEquals("\"a@b\"", write(literal("a@b@")));
+		// no suffix, written as plain literal
+		Assert.assertEquals("\"a b\"", write(literal("a b")));
+	}
+
+	@Test
+	public void datatypes() {
+		Assert.assertEquals("\"1\"^^<http://x/int>", write(literal("1^^<http://x/int>")));
+		Assert.assertEquals("\"\\\"\"^^<http://x/\\u003E>", write(literal("\"^^<http://x/>>")));
+	}
+
+	@Test
+	public void blankNodes() {
+		Assert.assertEquals("_:b1", write(new Node(NodeType.BLANK, "b1")));
+	}
+
+	@Test
+	public void roundTrip() {
+		List<Triple> triples = Arrays.asList(
+				new Triple(S, P, literal("a\"b\\c\n\t\u0001@")),
+				new Triple(S, P, literal("chat@en-US")),
+				new Triple(S, P, literal("x@y@")),
+				new Triple(S, P, literal("1^^<http://www.w3.org/2001/XMLSchema#int>")),
+				new Triple(S, P, literal("\u4e2d" + new String(Character.toChars(0x1F600)) + "@")),
+				new Triple(new Node(NodeType.BLANK, "x"), P, new Node(NodeType.BLANK, "y")),
+				new Triple(S, new Node(NodeType.NAMED, "http://x/a>b\\"), new Node(NodeType.NAMED, "http://x/o")));
+
+		StringWriter text = new StringWriter();
+		NTripleFormatWriter writer = new NTripleFormatWriter(text);
+		for(Triple triple: triples) {
+			writer.receive(triple);
+		}
+		writer.done();
+
+		Assert.assertEquals(triples, IoTestHelper.toList(new NTripleFormatReader(new StringReader(text.toString()))));
+	}
+
+	private static Node literal(String lexicalForm) {
+		return new Node(NodeType.LITERAL, lexicalForm);
+	}
+
+	private static String write(Node node) {
+		StringBuilder sb = new StringBuilder();
+		NTripleFormatWriter.appendNode(sb, node);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,231 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.dataset;
+
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleDatasetView;
+import org.topodiff.io.DatasetDeltaReceiver;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.codec.NQuadFormatReader;
+import org.topodiff.io.sort.GraphSortMethod;
+import org.topodiff.io.sort.SortResult;
+import org.topodiff.io.sort.ToposortSortMethod;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class DatasetDiffTest {
+
+	private static final Node G2 = new Node(NodeType.NAMED, "http://x/g2");
+
+	private static final String DATASET1 =
+			"<http://x/s> <http://x/p> \"1\" <http://x/g3> .\n" +
+			"<http://x/s> <http://x/q> _:a <http://x/g1> .\n" +
+			"_:a <http://www.w3.org/TR/rdf-schema/#first> \"a\" <http://x/g1> .\n" +
+			"<http://x/s> <http://x/p> \"1\" <http://x/g2> .\n" +
+			"<http://x/s> <http://x/p> \"2\" <http://x/g2> .\n";
+
+	// g1 is isomorphic, g2 is changed, g3 is missing
+	private static final String DATASET2 =
+			"_:b <http://www.w3.org/TR/rdf-schema/#first> \"a\" <http://x/g1> .\n" +
+			"<http://x/s> <http://x/q> _:b <http://x/g1> .\n" +
+			"<http://x/s> <http://x/p> \"1\" <http://x/g2> .\n" +
+			"<http://x/s> <http://x/p> \"3\" <http://x/g2> .\n";
+
+	private ExecutorService executor;
+
+	@Before
+	public void startExecutor() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void graphByGraphDelta() {
+		DatasetDiff diff = new DatasetDiff(new ToposortSortMethod(), executor);
+		Delta delta = new Delta();
+		diff.process(load(DATASET1), load(DATASET2), delta);
+
+		Assert.assertTrue(delta.done);
+		Assert.assertEquals(3, diff.getGraphCount());
+		Assert.assertEquals(1, diff.getSkippedGraphCount());
+		Assert.assertEquals(
+				"[http://x/g2] = [http://x/s http://x/p 1@]\n" +
+				"[http://x/g2] - [http://x/s http://x/p 2@]\n" +
+				"[http://x/g2] + [http://x/s http://x/p 3@]\n" +
+				"[http://x/g3] - [http://x/s http://x/p 1@]\n",
+				delta.toString());
+	}
+
+	@Test
+	public void graphMissingOnOneSide() {
+		DatasetDiff diff = new DatasetDiff(new ToposortSortMethod(), executor);
+		Delta removed = new Delta();
+		diff.process(load(DATASET1), load(""), removed);
+		Assert.assertEquals(3, diff.getGraphCount());
+		Assert.assertEquals(0, diff.getSkippedGraphCount());
+		Assert.assertEquals(5, removed.removed);
+		Assert.assertEquals(0, removed.added);
+
+		Delta added = new Delta();
+		diff.process(load(""), load(DATASET1), added);
+		Assert.assertEquals(0, added.removed);
+		Assert.assertEquals(5, added.added);
+	}
+
+	@Test
+	public void identicalGraphsAreSkipped() {
+		DatasetDiff diff = new DatasetDiff(new ToposortSortMethod(), executor);
+		Delta delta = new Delta();
+		diff.process(load(DATASET1), load(DATASET1), delta);
+		Assert.assertEquals(3, diff.getGraphCount());
+		Assert.assertEquals(3, diff.getSkippedGraphCount());
+		Assert.assertEquals("", delta.toString());
+	}
+
+	@Test
+	public void outputOrderDoesNotDependOnExecutor() {
+		// graph names are listed in different order by datasets, tasks complete in random order
+		String reversed = "";
+		for(String line: DATASET2.split("\n")) {
+			reversed = line + "\n" + reversed;
+		}
+		String expected = null;
+		for(int i = 0; i != 20; ++i) {
+			Delta delta = new Delta();
+			new DatasetDiff(new JitterSortMethod(), executor).process(load(DATASET1), load(i % 2 == 0 ? DATASET2 : reversed), delta);
+			if (expected == null) {
+				expected = delta.toString();
+			}
+			Assert.assertEquals(expected, delta.toString());
+		}
+		Assert.assertTrue(expected.startsWith("[http://x/g2]"));
+	}
+
+	@Test
+	public void taskFailureIsPropagated() {
+		DatasetDiff diff = new DatasetDiff(new FailingSortMethod(G2), executor);
+		Delta delta = new Delta();
+		try {
+			diff.process(load(DATASET1), load(DATASET2), delta);
+			Assert.fail("Exception expected");
+		}
+		catch(IllegalStateException e) {
+			Assert.assertEquals("Cannot sort " + G2, e.getMessage());
+		}
+		Assert.assertFalse(delta.done);
+		// g1 is identical, nothing is reported after failed g2
+		Assert.assertEquals("", delta.toString());
+	}
+
+	private static SimpleDatasetView load(String nquads) {
+		SimpleDatasetView dataset = new SimpleDatasetView();
+		dataset.addAll(new NQuadFormatReader(new StringReader(nquads)));
+		return dataset;
+	}
+
+	private static class Delta implements DatasetDeltaReceiver {
+
+		final StringBuilder text = new StringBuilder();
+		int removed;
+		int added;
+		boolean done;
+
+		public void tripleMatch(Node graph, Triple tripleA, Triple tripleB) {
+			text.append("[").append(graph.getLexicalForm()).append("] ");
+			if (tripleA != null && tripleB != null) {
+				text.append("= ").append(tripleA);
+			}
+			else if (tripleA != null) {
+				++removed;
+				text.append("- ").append(tripleA);
+			}
+			else {
+				++added;
+				text.append("+ ").append(tripleB);
+			}
+			text.append("\n");
+		}
+
+		public void done() {
+			done = true;
+		}
+
+		@Override
+		public String toString() {
+			return text.toString();
+		}
+	}
+
+	/**
+	 * Delays tasks randomly, so they complete out of order.
+	 */
+	private static class JitterSortMethod implements GraphSortMethod {
+
+		private final ToposortSortMethod delegate = new ToposortSortMethod();
+
+		public String getAlgorithmFingerPrint() {
+			return delegate.getAlgorithmFingerPrint();
+		}
+
+		public SortResult sort(GraphView model, TripleReceiver tripleWriter) {
+			try {
+				Thread.sleep((long)(5 * Math.random()));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return delegate.sort(model, tripleWriter);
+		}
+	}
+
+	/**
+	 * Fails on graph containing literal "2", which is in g2 of first dataset only.
+	 */
+	private static class FailingSortMethod implements GraphSortMethod {
+
+		private final ToposortSortMethod delegate = new ToposortSortMethod();
+		private final Node graph;
+
+		public FailingSortMethod(Node graph) {
+			this.graph = graph;
+		}
+
+		public String getAlgorithmFingerPrint() {
+			return delegate.getAlgorithmFingerPrint();
+		}
+
+		public SortResult sort(GraphView model, TripleReceiver tripleWriter) {
+			if (model.listStatements(null, null, new Node(NodeType.LITERAL, "2@")).hasNext()) {
+				throw new IllegalStateException("Cannot sort " + graph);
+			}
+			return delegate.sort(model, tripleWriter);
+		}
+	}
+}
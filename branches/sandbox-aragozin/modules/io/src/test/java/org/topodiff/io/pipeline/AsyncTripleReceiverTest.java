@@ -0,0 +1,229 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.algo.SortBudget;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.sort.ToposortSortMethod;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class AsyncTripleReceiverTest {
+
+	@Test
+	public void triplesAreWrittenInOrder() {
+		List<Triple> triples = createTriples(5000);
+		RecordingReceiver target = new RecordingReceiver(-1);
+		AsyncTripleReceiver receiver = new AsyncTripleReceiver(target, 7, 2);
+		for(Triple triple: triples) {
+			receiver.receive(triple);
+		}
+		receiver.done();
+		
+		Assert.assertEquals(triples, target.triples);
+		Assert.assertTrue(target.done);
+		Assert.assertFalse(target.thread.isAlive());
+	}
+
+	@Test
+	public void writerErrorIsRethrown() {
+		RecordingReceiver target = new RecordingReceiver(10);
+		AsyncTripleReceiver receiver = new AsyncTripleReceiver(target, 4, 2);
+		try {
+			for(Triple triple: createTriples(1000)) {
+				receiver.receive(triple);
+			}
+			receiver.done();
+			Assert.fail("Exception expected");
+		}
+		catch(IllegalStateException e) {
+			Assert.assertEquals("receiver failed", e.getMessage());
+		}
+		Assert.assertFalse(target.done);
+	}
+	
+	@Test
+	public void abortStopsWriter() throws InterruptedException {
+		RecordingReceiver target = new RecordingReceiver(-1);
+		AsyncTripleReceiver receiver = new AsyncTripleReceiver(target, 4, 2);
+		for(Triple triple: createTriples(10)) {
+			receiver.receive(triple);
+		}
+		// wait for first batches to reach writer thread
+		while(target.thread == null) {
+			Thread.sleep(1);
+		}
+		receiver.abort();
+		
+		Assert.assertFalse(target.thread.isAlive());
+		Assert.assertFalse(target.done);
+		Assert.assertTrue(target.triples.size() <= 8);
+		
+		// abort after abort or done is no-op
+		receiver.abort();
+	}
+
+	@Test
+	public void abortInterruptsBlockedWriter() throws InterruptedException {
+		final CountDownLatch entered = new CountDownLatch(1);
+		BlockingReceiver target = new BlockingReceiver(entered) {
+			@Override
+			protected void block() throws InterruptedException {
+				new CountDownLatch(1).await();
+			}
+		};
+		AsyncTripleReceiver receiver = new AsyncTripleReceiver(target, 1, 2);
+		receiver.receive(createTriples(1).get(0));
+		entered.await();
+
+		receiver.abort();
+		Assert.assertFalse(target.thread.isAlive());
+	}
+
+	@Test
+	public void abortWaitIsBounded() throws InterruptedException {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		BlockingReceiver target = new BlockingReceiver(entered) {
+			@Override
+			protected void block() {
+				// ignores interruption
+				while(true) {
+					try {
+						release.await();
+						return;
+					}
+					catch(InterruptedException e) {
+						// continue
+					}
+				}
+			}
+		};
+		AsyncTripleReceiver receiver = new AsyncTripleReceiver(target, 1, 2);
+		for(Triple triple: createTriples(3)) {
+			receiver.receive(triple);
+		}
+		entered.await();
+
+		Assert.assertFalse(receiver.abort(50));
+		Assert.assertTrue(target.thread.isAlive());
+		release.countDown();
+		target.thread.join();
+		// rest of triples is discarded
+		Assert.assertEquals(1, target.count);
+	}
+
+	@Test
+	public void failedSortDoesNotLeakWriter() {
+		int writers = countWriterThreads();
+		List<String> ring = new ArrayList<String>();
+		for(int i = 0; i != 8; ++i) {
+			ring.add("_:r" + i + " <http://www.w3.org/TR/rdf-schema/#rest> _:r" + ((i + 1) % 8));
+			ring.add("_:r" + i + " <value> \"x\"");
+		}
+		SortBudget budget = new SortBudget(20, 0, SortBudget.Fallback.FAIL);
+		ToposortSortMethod method = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 0, budget);
+		RecordingReceiver target = new RecordingReceiver(-1);
+		try {
+			method.sort(IoTestHelper.parseTripleList(ring.toArray(new String[ring.size()])).iterator(), target);
+			Assert.fail("Exception expected");
+		}
+		catch(SortBudget.ExceededException e) {
+			// expected
+		}
+		Assert.assertFalse(target.done);
+		Assert.assertEquals(writers, countWriterThreads());
+	}
+	
+	private static int countWriterThreads() {
+		int n = 0;
+		for(Thread thread: Thread.getAllStackTraces().keySet()) {
+			if ("TripleWriter".equals(thread.getName()) && thread.isAlive()) {
+				++n;
+			}
+		}
+		return n;
+	}
+	
+	private static List<Triple> createTriples(int n) {
+		String[] text = new String[n];
+		for(int i = 0; i != n; ++i) {
+			text[i] = "<s" + i + "> <p> \"" + i + "\"";
+		}
+		return IoTestHelper.parseTripleList(text);
+	}
+	
+	private static abstract class BlockingReceiver implements TripleReceiver {
+
+		final CountDownLatch entered;
+		volatile Thread thread;
+		volatile int count;
+
+		public BlockingReceiver(CountDownLatch entered) {
+			this.entered = entered;
+		}
+
+		protected abstract void block() throws InterruptedException;
+
+		public void receive(Triple triple) {
+			thread = Thread.currentThread();
+			++count;
+			entered.countDown();
+			try {
+				block();
+			}
+			catch(InterruptedException e) {
+				throw new RuntimeException("Interrupted", e);
+			}
+		}
+
+		public void done() {
+		}
+	}
+
+	private static class RecordingReceiver implements TripleReceiver {
+		
+		final List<Triple> triples = Collections.synchronizedList(new ArrayList<Triple>());
+		final int failAt;
+		volatile Thread thread;
+		volatile boolean done;
+		
+		public RecordingReceiver(int failAt) {
+			this.failAt = failAt;
+		}
+
+		public void receive(Triple triple) {
+			thread = Thread.currentThread();
+			if (triples.size() == failAt) {
+				throw new IllegalStateException("receiver failed");
+			}
+			triples.add(triple);
+		}
+
+		public void done() {
+			done = true;
+		}
+	}
+}
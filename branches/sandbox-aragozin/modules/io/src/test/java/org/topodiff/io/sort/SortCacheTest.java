@@ -0,0 +1,290 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.graph.GraphView;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+import org.topodiff.io.TripleIterator;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.codec.NTripleCodecFactory;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortCacheTest {
+
+	private static final String INPUT_A =
+			"<http://x/a> <http://x/p> _:1 .\n" +
+			"_:1 <http://www.w3.org/TR/rdf-schema/#first> \"a\" .\n" +
+			"<http://x/a> <http://x/q> \"1\" .\n";
+
+	private static final String INPUT_B =
+			"<http://x/b> <http://x/p> _:1 .\n" +
+			"_:1 <http://www.w3.org/TR/rdf-schema/#first> \"b\" .\n" +
+			"<http://x/b> <http://x/q> \"2\" .\n";
+
+	private static final String INPUT_C =
+			"<http://x/c> <http://x/p> _:1 .\n" +
+			"_:1 <http://www.w3.org/TR/rdf-schema/#first> \"c\" .\n" +
+			"<http://x/c> <http://x/q> \"3\" .\n";
+
+	private File dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = IoTestHelper.createTempDir("sort-cache");
+	}
+
+	@After
+	public void deleteDir() {
+		IoTestHelper.delete(dir);
+	}
+
+	@Test
+	public void missThenHit() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod method = new ToposortSortMethod();
+
+		ListReceiver first = new ListReceiver();
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, first));
+		Assert.assertTrue(first.done);
+		Assert.assertEquals(3, first.triples.size());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, entries().size());
+
+		ListReceiver second = new ListReceiver();
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, second));
+		Assert.assertTrue(second.done);
+		Assert.assertEquals(first.triples, second.triples);
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		// only cache entries are left in directory
+		Assert.assertEquals(1, dir.listFiles().length);
+	}
+
+	@Test
+	public void hitDoesNotParseInput() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod method = new ToposortSortMethod();
+		FailingCodecFactory failing = new FailingCodecFactory();
+		failing.fail = false;
+		cache.sort(input(INPUT_A), failing, method, new ListReceiver());
+
+		failing.fail = true;
+		Assert.assertTrue(cache.sort(input(INPUT_A), failing, method, new ListReceiver()));
+		try {
+			cache.sort(input(INPUT_B), failing, method, new ListReceiver());
+			Assert.fail("Input should be parsed on miss");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+		Assert.assertEquals(1, entries().size());
+		Assert.assertEquals(1, dir.listFiles().length);
+	}
+
+	@Test
+	public void differentInputsAreDifferentEntries() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod method = new ToposortSortMethod();
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+		Assert.assertFalse(cache.sort(input(INPUT_B), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+		Assert.assertEquals(2, entries().size());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void fingerprintMismatch() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod plain = new ToposortSortMethod();
+		GraphSortMethod cut = new ToposortSortMethod(null, false, null, Collections.singleton(new Node(NodeType.NAMED, "http://x/p")), 0);
+		Assert.assertFalse(plain.getAlgorithmFingerPrint().equals(cut.getAlgorithmFingerPrint()));
+
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, plain, new ListReceiver()));
+		File plainEntry = entries().get(0);
+		// other sort method is other entry
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, cut, new ListReceiver()));
+		Assert.assertEquals(2, entries().size());
+
+		// entry written by other method under key of plain method is not used
+		File cutEntry = entries().get(0).equals(plainEntry) ? entries().get(1) : entries().get(0);
+		Assert.assertTrue(plainEntry.delete());
+		Assert.assertTrue(cutEntry.renameTo(plainEntry));
+		ListReceiver out = new ListReceiver();
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, plain, out));
+		Assert.assertEquals(3, out.triples.size());
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, plain, new ListReceiver()));
+	}
+
+	@Test
+	public void codecIsPartOfKey() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod method = new ToposortSortMethod();
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+		FailingCodecFactory other = new FailingCodecFactory();
+		other.fail = false;
+		Assert.assertFalse(cache.sort(input(INPUT_A), other, method, new ListReceiver()));
+		Assert.assertEquals(2, entries().size());
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+	}
+
+	@Test
+	public void failedSortLeavesNoFiles() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		final GraphSortMethod method = new ToposortSortMethod();
+		GraphSortMethod failing = new GraphSortMethod() {
+			public String getAlgorithmFingerPrint() {
+				return method.getAlgorithmFingerPrint();
+			}
+
+			public SortResult sort(GraphView model, final TripleReceiver tripleWriter) {
+				return method.sort(model, new TripleReceiver() {
+					public void receive(Triple triple) {
+						tripleWriter.receive(triple);
+						throw new IllegalStateException("Sort failed");
+					}
+
+					public void done() {
+						tripleWriter.done();
+					}
+				});
+			}
+		};
+		try {
+			cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, failing, new ListReceiver());
+			Assert.fail("Exception expected");
+		}
+		catch(IllegalStateException e) {
+			Assert.assertEquals("Sort failed", e.getMessage());
+		}
+		Assert.assertEquals(0, dir.listFiles().length);
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+	}
+
+	@Test
+	public void damagedEntryIsReplaced() throws IOException {
+		SortCache cache = new SortCache(dir, Long.MAX_VALUE);
+		GraphSortMethod method = new ToposortSortMethod();
+		ListReceiver first = new ListReceiver();
+		cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, first);
+
+		File entry = entries().get(0);
+		RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+		try {
+			raf.setLength(raf.length() - 3);
+		}
+		finally {
+			raf.close();
+		}
+
+		ListReceiver second = new ListReceiver();
+		Assert.assertFalse(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, second));
+		Assert.assertEquals(first.triples, second.triples);
+		Assert.assertEquals(2, cache.getMissCount());
+
+		ListReceiver third = new ListReceiver();
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, third));
+		Assert.assertEquals(first.triples, third.triples);
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() throws IOException {
+		GraphSortMethod method = new ToposortSortMethod();
+		new SortCache(dir, Long.MAX_VALUE).sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver());
+		long entrySize = entries().get(0).length();
+
+		// room for two entries
+		SortCache cache = new SortCache(dir, 5 * entrySize / 2);
+		File entryA = entries().get(0);
+		cache.sort(input(INPUT_B), NTripleCodecFactory.INSTANCE, method, new ListReceiver());
+		Assert.assertEquals(2, entries().size());
+		File entryB = entries().get(0).equals(entryA) ? entries().get(1) : entries().get(0);
+
+		long now = System.currentTimeMillis();
+		entryA.setLastModified(now - 20000);
+		entryB.setLastModified(now - 10000);
+		// hit makes A most recently used
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+
+		Assert.assertFalse(cache.sort(input(INPUT_C), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+		Assert.assertEquals(2, entries().size());
+		Assert.assertTrue(entryA.exists());
+		Assert.assertFalse(entryB.exists());
+		Assert.assertTrue(cache.getSize() <= 5 * entrySize / 2);
+
+		Assert.assertTrue(cache.sort(input(INPUT_A), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+		Assert.assertTrue(cache.sort(input(INPUT_C), NTripleCodecFactory.INSTANCE, method, new ListReceiver()));
+	}
+
+	private List<File> entries() {
+		List<File> result = new ArrayList<File>();
+		for(File file: dir.listFiles()) {
+			if (file.getName().endsWith(".blk")) {
+				result.add(file);
+			}
+		}
+		return result;
+	}
+
+	private static InputStream input(String text) {
+		return new ByteArrayInputStream(text.getBytes(Encodings.UTF8));
+	}
+
+	private static class ListReceiver implements TripleReceiver {
+
+		final List<Triple> triples = new ArrayList<Triple>();
+		boolean done;
+
+		public void receive(Triple triple) {
+			triples.add(triple);
+		}
+
+		public void done() {
+			done = true;
+		}
+	}
+
+	private static class FailingCodecFactory extends NTripleCodecFactory {
+
+		boolean fail = true;
+
+		@Override
+		public TripleIterator createReader(Reader reader) {
+			if (fail) {
+				throw new UnsupportedOperationException("Input should not be parsed");
+			}
+			return super.createReader(reader);
+		}
+	}
+}
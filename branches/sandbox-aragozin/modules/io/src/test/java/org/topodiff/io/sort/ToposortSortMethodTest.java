@@ -0,0 +1,187 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.sort;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.algo.DiffProcessor;
+import org.topodiff.algo.GraphSummaryWriter;
+import org.topodiff.algo.ToposortGraphProcessor;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.IoTestHelper;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.block.BlockTripleFile;
+import org.topodiff.io.block.BlockTripleWriter;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ToposortSortMethodTest {
+
+	private static final String FIRST = "<http://www.w3.org/TR/rdf-schema/#first>";
+	private static final String REST = "<http://www.w3.org/TR/rdf-schema/#rest>";
+
+	private File dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = IoTestHelper.createTempDir("toposort");
+	}
+
+	@After
+	public void deleteDir() {
+		IoTestHelper.delete(dir);
+	}
+
+	@Test
+	public void selectedCutsAreRecordedInOutput() throws IOException {
+		ToposortSortMethod method = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 5);
+		File file = new File(dir, "list.tdb");
+		BlockTripleWriter writer = new BlockTripleWriter(file, method.getAlgorithmFingerPrint());
+		SortResult result = method.sort(createList(10).iterator(), writer);
+
+		Assert.assertFalse(result.getCutPredicates().isEmpty());
+		Assert.assertTrue(result.getFingerprint().startsWith(method.getAlgorithmFingerPrint() + "\n"));
+		Assert.assertTrue(result.getFingerprint().contains("bCluster.cut.selected="));
+
+		BlockTripleFile block = new BlockTripleFile(file);
+		try {
+			Assert.assertEquals(result.getFingerprint(), block.getFingerprint());
+			Assert.assertEquals(result.getFingerprint(), block.getSummary().fingerprint);
+		}
+		finally {
+			block.close();
+		}
+	}
+
+	@Test
+	public void fixedCutsReproduceSorting() {
+		ToposortSortMethod adaptive = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 5);
+		ListReceiver sorted1 = new ListReceiver();
+		SortResult result = adaptive.sort(new SimpleGraphView(createList(10)), sorted1);
+
+		ToposortSortMethod fixed = new ToposortSortMethod(null, false, null, result.getCutPredicates(), 0);
+		ListReceiver sorted2 = new ListReceiver();
+		SortResult result2 = fixed.sort(new SimpleGraphView(createList(10)), sorted2);
+
+		Assert.assertEquals(sorted1.triples, sorted2.triples);
+		Assert.assertEquals(result.getCutPredicates(), result2.getCutPredicates());
+		Assert.assertEquals(fixed.getAlgorithmFingerPrint(), result2.getFingerprint());
+	}
+
+	@Test
+	public void outputVersionIsPartOfFingerprint() {
+		ToposortSortMethod method = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 0);
+		List<String> props = Arrays.asList(method.getAlgorithmFingerPrint().split("\n"));
+		Assert.assertTrue(props.contains("version=" + ToposortGraphProcessor.OUTPUT_VERSION));
+	}
+
+	@Test
+	public void resultsArePerCall() throws Exception {
+		final ToposortSortMethod method = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 5);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<SortResult>> results = new ArrayList<Future<SortResult>>();
+			for(int i = 0; i != 20; ++i) {
+				final int length = i % 2 == 0 ? 10 : 1;
+				results.add(executor.submit(new Callable<SortResult>() {
+					public SortResult call() {
+						return method.sort(new SimpleGraphView(createList(length)), new ListReceiver());
+					}
+				}));
+			}
+			SortResult big = results.get(0).get();
+			SortResult small = results.get(1).get();
+			Assert.assertFalse(big.getCutPredicates().isEmpty());
+			Assert.assertTrue(small.getCutPredicates().isEmpty());
+			for(int i = 0; i != results.size(); ++i) {
+				Assert.assertEquals((i % 2 == 0 ? big : small).getFingerprint(), results.get(i).get().getFingerprint());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void streamsWithDifferentCutsAreNotCompared() {
+		ToposortSortMethod method = new ToposortSortMethod(null, false, null, Collections.<Node>emptySet(), 5);
+		GraphSummaryWriter writer1 = new GraphSummaryWriter(new ListReceiver(), method.getAlgorithmFingerPrint());
+		GraphSummaryWriter writer2 = new GraphSummaryWriter(new ListReceiver(), method.getAlgorithmFingerPrint());
+		method.sort(new SimpleGraphView(createList(10)), writer1);
+		writer1.done();
+		method.sort(new SimpleGraphView(createList(1)), writer2);
+		writer2.done();
+
+		Assert.assertFalse(writer1.getSummary().isComparable(writer2.getSummary()));
+		try {
+			new DiffProcessor(null, writer1.getSummary(), null, writer2.getSummary(), new NullDelta(), false);
+			Assert.fail("Streams with different cut sets should not be compared");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * List of items, each item is a b-node with value.
+	 */
+	private static List<Triple> createList(int length) {
+		List<String> lines = new ArrayList<String>();
+		lines.add("<http://x/head> <http://x/list> _:l0");
+		for(int i = 0; i != length; ++i) {
+			lines.add("_:l" + i + " " + FIRST + " _:i" + i);
+			lines.add("_:i" + i + " " + FIRST + " \"" + i + "\"");
+			lines.add("_:l" + i + " " + REST + " " + (i + 1 == length ? "<http://x/nil>" : "_:l" + (i + 1)));
+		}
+		return IoTestHelper.parseTripleList(lines.toArray(new String[lines.size()]));
+	}
+
+	private static class ListReceiver implements TripleReceiver {
+
+		final List<Triple> triples = new ArrayList<Triple>();
+
+		public void receive(Triple triple) {
+			triples.add(triple);
+		}
+
+		public void done() {
+		}
+	}
+
+	private static class NullDelta implements ModelDeltaReceiver {
+
+		public void tripleMatch(Triple tripleA, Triple tripleB) {
+		}
+
+		public void done() {
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.io.store;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.IoTestHelper;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class FileClusterStoreTest {
+
+	private static final List<Triple> CYCLE = IoTestHelper.parseTripleList(
+		"_:a <arrow> _:b",
+		"_:b <arrow> _:a",
+		"_:a <no> \"123\""
+	);
+
+	private static final List<Triple> CHAIN = IoTestHelper.parseTripleList(
+		"_:x <arrow> _:y",
+		"_:y <arrow> \"nil\""
+	);
+	
+	private File dir;
+	
+	@Before
+	public void createDir() throws IOException {
+		dir = IoTestHelper.createTempDir("cluster-store");
+	}
+
+	@After
+	public void deleteDir() {
+		IoTestHelper.delete(dir);
+	}
+	
+	@Test
+	public void clustersAreFoundByHashAndShape() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.putCluster("shape1", "hash1", CYCLE);
+		store.putCluster("shape1", "hash2", CHAIN);
+		store.putCluster("shape2", "hash3", CHAIN);
+		
+		Assert.assertEquals(CYCLE, store.getCluster("hash1"));
+		Assert.assertEquals(CHAIN, store.getCluster("hash2"));
+		Assert.assertNull(store.getCluster("hash4"));
+		Assert.assertTrue(store.containsCluster("hash3"));
+		Assert.assertFalse(store.containsCluster("shape1"));
+		
+		Assert.assertEquals(list("hash1", "hash2"), sorted(store.findByShape("shape1")));
+		Assert.assertEquals(list("hash3"), sorted(store.findByShape("shape2")));
+		Assert.assertTrue(store.findByShape("shape3").isEmpty());
+		store.close();
+	}
+
+	@Test
+	public void indexIsPersistedAndMerged() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.putCluster("shape1", "hash1", CYCLE);
+		store.close();
+		
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(CYCLE, store.getCluster("hash1"));
+		store.putCluster("shape1", "hash2", CHAIN);
+		// lookup should combine mapped index and pending entries
+		Assert.assertEquals(list("hash1", "hash2"), sorted(store.findByShape("shape1")));
+		store.close();
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(list("hash1", "hash2"), sorted(store.findByShape("shape1")));
+		Assert.assertEquals(CHAIN, store.getCluster("hash2"));
+		store.close();
+	}
+	
+	@Test
+	public void unclosedStoreIsRecoveredFromLog() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.putCluster("shape1", "hash1", CYCLE);
+		store.close();
+
+		// process dies before close, index is not merged
+		FileClusterStore crashed = new FileClusterStore(dir);
+		crashed.putCluster("shape1", "hash2", CHAIN);
+		crashed.putCluster("shape2", "hash3", CHAIN);
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(2, store.getRecoveredCount());
+		Assert.assertEquals(list("hash1", "hash2"), sorted(store.findByShape("shape1")));
+		Assert.assertEquals(CHAIN, store.getCluster("hash3"));
+		store.close();
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(0, store.getRecoveredCount());
+		Assert.assertTrue(store.containsCluster("hash3"));
+		store.close();
+	}
+
+	@Test
+	public void incompleteRecordIsTruncated() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.putCluster("shape1", "hash1", CYCLE);
+		store.close();
+
+		// partially written record
+		File dataFile = new File(dir, "clusters.dat");
+		long length = dataFile.length();
+		FileOutputStream fos = new FileOutputStream(dataFile, true);
+		fos.write(new byte[] {0, 0, 1, 0, 1, 2, 3});
+		fos.close();
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(0, store.getRecoveredCount());
+		Assert.assertEquals(length, dataFile.length());
+		store.putCluster("shape2", "hash2", CHAIN);
+		store.close();
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(CYCLE, store.getCluster("hash1"));
+		Assert.assertEquals(CHAIN, store.getCluster("hash2"));
+		store.close();
+	}
+
+	@Test
+	public void damagedIndexIsRebuilt() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.putCluster("shape1", "hash1", CYCLE);
+		store.putCluster("shape1", "hash2", CHAIN);
+		store.close();
+
+		FileOutputStream fos = new FileOutputStream(new File(dir, "clusters.idx"));
+		fos.write("not an index".getBytes("UTF-8"));
+		fos.close();
+
+		store = new FileClusterStore(dir);
+		Assert.assertEquals(2, store.getRecoveredCount());
+		Assert.assertEquals(list("hash1", "hash2"), sorted(store.findByShape("shape1")));
+		store.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedStoreIsRejected() throws IOException {
+		FileClusterStore store = new FileClusterStore(dir);
+		store.close();
+		store.getCluster("hash1");
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownFormatIsRejected() throws IOException {
+		FileOutputStream fos = new FileOutputStream(new File(dir, "clusters.dat"));
+		fos.write("not a cluster store".getBytes("UTF-8"));
+		fos.close();
+		new FileClusterStore(dir);
+	}
+	
+	private static List<String> list(String... items) {
+		List<String> list = new ArrayList<String>();
+		for(String item: items) {
+			list.add(item);
+		}
+		return list;
+	}
+
+	private static List<String> sorted(Iterable<String> items) {
+		List<String> list = new ArrayList<String>();
+		for(String item: items) {
+			list.add(item);
+		}
+		Collections.sort(list);
+		return list;
+	}
+}
@@ -0,0 +1,73 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.topodiff.graph.Triple;
+import org.topodiff.io.codec.NTripleFormatReader;
+
+/**
+ * Loads delta written by {@link DeltaWriter}.
+ * <br/>
+ * Whole delta is kept in memory (removed triples are looked up while base graph is streamed), 
+ * so delta should fit into heap, {@code --memory} budget does not apply.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class DeltaReader {
+
+	public final Set<Triple> removed = new HashSet<Triple>();
+	public final List<Triple> added = new ArrayList<Triple>();
+	
+	public DeltaReader(Reader reader) throws IOException {
+		BufferedReader br = new BufferedReader(reader);
+		try {
+			String line = br.readLine();
+			if (line == null || !line.startsWith(DeltaWriter.HEADER)) {
+				throw new IOException("Not a delta file");
+			}
+			int n = 1;
+			while((line = br.readLine()) != null) {
+				++n;
+				if (line.length() == 0 || line.charAt(0) == '#') {
+					continue;
+				}
+				if (line.length() < 3 || line.charAt(1) != ' ' || (line.charAt(0) != '-' && line.charAt(0) != '+')) {
+					throw new IOException("Malformed delta line " + n + ": " + line);
+				}
+				NTripleFormatReader tr = new NTripleFormatReader(new StringReader(line.substring(2)));
+				if (!tr.hasNext()) {
+					throw new IOException("Malformed delta line " + n + ": " + line);
+				}
+				if (line.charAt(0) == '-') {
+					removed.add(tr.next());
+				}
+				else {
+					added.add(tr.next());
+				}
+			}
+		}
+		finally {
+			br.close();
+		}
+	}
+}
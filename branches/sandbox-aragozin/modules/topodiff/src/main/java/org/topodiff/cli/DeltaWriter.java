@@ -0,0 +1,122 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.ModelDeltaReceiver;
+import org.topodiff.io.codec.NTripleFormatWriter;
+
+/**
+ * Writes delta in line oriented format, {@code - } prefixes removed triple and {@code + } added one, 
+ * triples are in N-Triples syntax.
+ * <br/>
+ * Added triples are written using b-node labels of first model, b-nodes of second model without 
+ * counterpart are prefixed with {@link #NEW_BNODE_PREFIX}. Thus delta could be applied to sorted first model
+ * (see {@link DeltaReader}). Added triples are buffered until end of diff, because b-node 
+ * correspondence is known only then. Buffer is in memory and is not covered by {@code --memory} budget.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class DeltaWriter implements ModelDeltaReceiver {
+
+	public static final String HEADER = "# topodiff delta";
+	public static final String NEW_BNODE_PREFIX = "new_";
+	
+	private final Writer writer;
+	private final StringBuilder buffer = new StringBuilder(256);
+	private final Map<Node, Node> anonMap = new HashMap<Node, Node>();
+	private final List<Triple> added = new ArrayList<Triple>();
+	
+	private long removedCount;
+	private long retainedCount;
+	
+	public DeltaWriter(Writer writer) throws IOException {
+		this.writer = writer;
+		writer.write(HEADER);
+		writer.write('\n');
+	}
+
+	public void tripleMatch(Triple tripleA, Triple tripleB) {
+		if (tripleA != null && tripleB != null) {
+			++retainedCount;
+			map(tripleB.subject, tripleA.subject);
+			map(tripleB.object, tripleA.object);
+		}
+		else if (tripleA != null) {
+			++removedCount;
+			write('-', tripleA);
+		}
+		else if (tripleB != null) {
+			added.add(tripleB);
+		}
+	}
+
+	public void done() {
+		for(Triple triple: added) {
+			write('+', new Triple(translate(triple.subject), triple.predicate, translate(triple.object)));
+		}
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public long getAddedCount() {
+		return added.size();
+	}
+
+	public long getRemovedCount() {
+		return removedCount;
+	}
+	
+	public long getRetainedCount() {
+		return retainedCount;
+	}
+
+	private void map(Node nodeB, Node nodeA) {
+		if (nodeB.isAnon()) {
+			anonMap.put(nodeB, nodeA);
+		}
+	}
+	
+	private Node translate(Node node) {
+		if (!node.isAnon()) {
+			return node;
+		}
+		Node mapped = anonMap.get(node);
+		return mapped != null ? mapped : new Node(NodeType.BLANK, NEW_BNODE_PREFIX + node.getLexicalForm());
+	}
+	
+	private void write(char op, Triple triple) {
+		buffer.setLength(0);
+		buffer.append(op).append(' ');
+		NTripleFormatWriter.appendTriple(buffer, triple);
+		buffer.append('\n');
+		try {
+			writer.append(buffer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Iterator;
+
+import org.topodiff.graph.Triple;
+
+/**
+ * Throughput and heap statistics of single command run.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class RunStats {
+
+	private final long startNanos;
+	private long inputBytes;
+	private long inputTriples;
+	private long outputTriples;
+
+	public RunStats() {
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+			}
+		}
+		startNanos = System.nanoTime();
+	}
+	
+	public void addInputBytes(long bytes) {
+		inputBytes += bytes;
+	}
+	
+	public void addOutputTriples(long triples) {
+		outputTriples += triples;
+	}
+
+	/**
+	 * @return iterator counting consumed triples as input
+	 */
+	public Iterator<Triple> count(final Iterator<Triple> source) {
+		return new Iterator<Triple>() {
+			public boolean hasNext() {
+				return source.hasNext();
+			}
+
+			public Triple next() {
+				Triple triple = source.next();
+				++inputTriples;
+				return triple;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Peak heap is a sum of peaks of heap pools, so it is an upper bound of actual peak.
+	 */
+	public long getPeakHeap() {
+		long peak = 0;
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+	
+	public void print(PrintStream out) {
+		double seconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+		out.println(String.format("Read %d triples (%.1f MB), written %d triples in %.2f s", inputTriples, inputBytes / 1048576d, outputTriples, seconds));
+		out.println(String.format("Throughput %.0f triples/s, %.2f MB/s", inputTriples / seconds, inputBytes / 1048576d / seconds));
+		out.println(String.format("Peak heap %.1f MB (max heap %.1f MB)", getPeakHeap() / 1048576d, Runtime.getRuntime().maxMemory() / 1048576d));
+	}
+}
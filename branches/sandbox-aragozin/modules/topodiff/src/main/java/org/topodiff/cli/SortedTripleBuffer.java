@@ -0,0 +1,130 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.topodiff.algo.GraphSummary;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.Triple;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.block.BlockTripleFile;
+import org.topodiff.io.block.BlockTripleWriter;
+
+/**
+ * Keeps sorted triple stream in memory until estimated size exceeds budget, 
+ * then spills it to temporary block file.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class SortedTripleBuffer implements SortedTripleReceiver {
+
+	// rough per object overhead of Triple and Node
+	private static final int TRIPLE_OVERHEAD = 32;
+	private static final int NODE_OVERHEAD = 64;
+	
+	private final long memoryBudget;
+	private String fingerprint;
+	private final GraphSummary.Builder summaryBuilder = new GraphSummary.Builder();
+	
+	private List<Triple> triples = new ArrayList<Triple>();
+	private long estimatedSize;
+	private File spillFile;
+	private BlockTripleWriter spill;
+	private BlockTripleFile spilled;
+	
+	public SortedTripleBuffer(long memoryBudget, String fingerprint) {
+		this.memoryBudget = memoryBudget;
+		this.fingerprint = fingerprint;
+	}
+
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+		if (spill != null) {
+			spill.setFingerprint(fingerprint);
+		}
+	}
+
+	public void receive(Triple triple) {
+		summaryBuilder.add(triple);
+		if (spill != null) {
+			spill.receive(triple);
+		}
+		else {
+			triples.add(triple);
+			estimatedSize += TRIPLE_OVERHEAD + estimate(triple.subject) + estimate(triple.predicate) + estimate(triple.object);
+			if (estimatedSize > memoryBudget) {
+				startSpill();
+			}
+		}
+	}
+
+	public void done() {
+		if (spill != null) {
+			spill.done();
+		}
+	}
+	
+	public boolean isSpilled() {
+		return spillFile != null;
+	}
+	
+	public GraphSummary getSummary() {
+		return summaryBuilder.build(fingerprint);
+	}
+
+	public Iterator<Triple> iterator() throws IOException {
+		if (spill == null) {
+			return triples.iterator();
+		}
+		if (spilled == null) {
+			spilled = new BlockTripleFile(spillFile);
+		}
+		return spilled.read(0, spilled.size());
+	}
+
+	/**
+	 * Removes spill file, if any.
+	 */
+	public void close() throws IOException {
+		if (spilled != null) {
+			spilled.close();
+		}
+		if (spillFile != null) {
+			spillFile.delete();
+		}
+	}
+	
+	private void startSpill() {
+		try {
+			spillFile = File.createTempFile("topodiff-", ".tdb");
+			spillFile.deleteOnExit();
+			spill = new BlockTripleWriter(spillFile, fingerprint);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to create spill file", e);
+		}
+		for(Triple triple: triples) {
+			spill.receive(triple);
+		}
+		triples = null;
+	}
+	
+	private static long estimate(Node node) {
+		return NODE_OVERHEAD + 2 * node.getLexicalForm().length();
+	}
+}
@@ -0,0 +1,491 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.topodiff.algo.DiffProcessor;
+import org.topodiff.algo.GraphSummary;
+import org.topodiff.algo.GraphSummaryWriter;
+import org.topodiff.graph.Triple;
+import org.topodiff.graph.simple.SimpleGraphView;
+import org.topodiff.io.SortedTripleReceiver;
+import org.topodiff.io.TripleReceiver;
+import org.topodiff.io.block.BlockTripleFile;
+import org.topodiff.io.block.BlockTripleWriter;
+import org.topodiff.io.codec.NTripleFormatReader;
+import org.topodiff.io.codec.NTripleFormatWriter;
+import org.topodiff.io.sort.ToposortSortMethod;
+import org.topodiff.io.store.FileClusterStore;
+import org.topodiff.util.metrics.MemoryMetrics;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * Command line tool.
+ * <br/>
+ * Files named {@code *.nt} or {@code *.nt.gz} are N-Triples, others are block files (see {@link BlockTripleWriter}).
+ * Block files are recognised by content, so block file sorted by same algorithm is used as is, without sorting.
+ * Statistics are printed to stderr.
+ * <br/>
+ * {@code --memory} limits only sorted inputs (see {@link SortedTripleBuffer}). {@link DeltaWriter} buffers added triples 
+ * and {@link DeltaReader} loads whole delta, so heap needed by {@code diff} and {@code apply} grows with size of delta. 
+ * {@code apply} with block file output also collects whole result graph in memory to sort it.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class TopoDiffCli {
+
+	static final String USAGE = 
+		  "Usage: topodiff <command> [options] <files>\n"
+		+ "Commands:\n"
+		+ "  sort <input> <output>          sort graph, output is N-Triples or block file\n"
+		+ "  diff <input1> <input2> [delta] calculate delta (stdout if delta file is omitted), exit code 1 if graphs differ\n"
+		+ "  apply <input> <delta> <output> apply delta to graph\n"
+		+ "  fingerprint [input]            print fingerprint of sort algorithm and summary of graph\n"
+		+ "Options:\n"
+		+ "  --threads <n>    threads used to canonicalise b-clusters and read inputs (default 1)\n"
+		+ "  --memory <mb>    sorted intermediate graphs above this size are spilled to temporary files (default 256),\n"
+		+ "                   added triples of diff, whole delta of apply and result of apply to block file are kept\n"
+		+ "                   in memory regardless of this option\n"
+		+ "  --store <dir>    directory of persistent b-cluster store\n"
+		+ "  --metrics        print algorithm metrics (also exposed via JMX during run)\n";
+
+	private static final String[] VALUE_OPTIONS = {"threads", "memory", "store"};
+	private static final String[] FLAG_OPTIONS = {"metrics"};
+	
+	private final PrintStream out;
+	private final PrintStream err;
+	
+	private ToposortSortMethod method;
+	private RunStats stats;
+	private int threads;
+	private long memoryBudget;
+	private MemoryMetrics metrics;
+	private final List<BlockTripleFile> openFiles = new ArrayList<BlockTripleFile>();
+	private final List<SortedTripleBuffer> buffers = new ArrayList<SortedTripleBuffer>();
+	
+	public TopoDiffCli(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+	}
+
+	public static void main(String[] args) {
+		int code;
+		try {
+			code = new TopoDiffCli(System.out, System.err).run(args);
+		}
+		catch(UsageException e) {
+			System.err.println(e.getMessage());
+			System.err.print(USAGE);
+			code = 2;
+		}
+		catch(Exception e) {
+			System.err.println("Failed: " + e);
+			e.printStackTrace();
+			code = 2;
+		}
+		System.exit(code);
+	}
+	
+	/**
+	 * @return exit code
+	 */
+	public int run(String[] args) throws IOException {
+		List<String> params = new ArrayList<String>();
+		Map<String, String> options = new HashMap<String, String>();
+		parseArgs(args, params, options);
+		if (params.isEmpty()) {
+			throw new UsageException("Command is missing");
+		}
+		String command = params.remove(0);
+		
+		threads = (int)longOption(options, "threads", 1);
+		memoryBudget = longOption(options, "memory", 256) << 20;
+		if (memoryBudget > Runtime.getRuntime().maxMemory()) {
+			err.println("Warning: memory budget exceeds max heap size");
+		}
+		
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		FileClusterStore store = options.containsKey("store") ? new FileClusterStore(new File(options.get("store"))) : null;
+		try {
+			method = new ToposortSortMethod(store, false, executor);
+			if (options.containsKey("metrics")) {
+				metrics = new MemoryMetrics();
+				metrics.registerMBean("topodiff-cli");
+				method.setMetrics(metrics);
+			}
+			stats = new RunStats();
+
+			int code;
+			if ("sort".equals(command)) {
+				code = sort(params);
+			}
+			else if ("diff".equals(command)) {
+				code = diff(params);
+			}
+			else if ("apply".equals(command)) {
+				code = apply(params);
+			}
+			else if ("fingerprint".equals(command)) {
+				code = fingerprint(params);
+			}
+			else {
+				throw new UsageException("Unknown command '" + command + "'");
+			}
+			
+			stats.print(err);
+			if (metrics != null) {
+				err.print(metrics.getSummary());
+			}
+			return code;
+		}
+		finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+			if (store != null) {
+				store.close();
+			}
+			for(BlockTripleFile file: openFiles) {
+				file.close();
+			}
+			for(SortedTripleBuffer buffer: buffers) {
+				buffer.close();
+			}
+		}
+	}
+
+	private int sort(List<String> params) throws IOException {
+		expectParams(params, 2, 2);
+		Iterator<Triple> source = openInput(new File(params.get(0)));
+		TripleReceiver writer = openOutput(new File(params.get(1)));
+		method.sort(source, writer);
+		return 0;
+	}
+
+	private int diff(List<String> params) throws IOException {
+		expectParams(params, 2, 3);
+		SortedInput input1 = openSorted(new File(params.get(0)));
+		SortedInput input2 = openSorted(new File(params.get(1)));
+		
+		Writer writer = params.size() > 2 ? openTextWriter(new File(params.get(2))) : new OutputStreamWriter(new NonClosingStream(out), Encodings.UTF8);
+		DeltaWriter delta = new DeltaWriter(writer);
+		DiffProcessor processor = new DiffProcessor(input1.triples, input1.summary, input2.triples, input2.summary, delta, threads > 1);
+		if (metrics != null) {
+			processor.setMetrics(metrics);
+		}
+		processor.process();
+		delta.done();
+		
+		stats.addOutputTriples(delta.getAddedCount() + delta.getRemovedCount());
+		err.println("Removed " + delta.getRemovedCount() + ", added " + delta.getAddedCount() + ", retained " + delta.getRetainedCount()
+				+ (processor.isIdentical() ? " (identical by summary)" : ""));
+		return delta.getAddedCount() + delta.getRemovedCount() > 0 ? 1 : 0;
+	}
+
+	private int apply(List<String> params) throws IOException {
+		expectParams(params, 3, 3);
+		SortedInput base = openSorted(new File(params.get(0)));
+		File deltaFile = new File(params.get(1));
+		stats.addInputBytes(deltaFile.length());
+		DeltaReader delta = new DeltaReader(new InputStreamReader(openStream(deltaFile), Encodings.UTF8));
+		
+		File output = new File(params.get(2));
+		// block file should be sorted, so result is collected and sorted again
+		SimpleGraphView graph = isText(output) ? null : new SimpleGraphView();
+		TripleReceiver writer = isText(output) ? openOutput(output) : null;
+		
+		int removed = 0;
+		while(base.triples.hasNext()) {
+			Triple triple = base.triples.next();
+			if (delta.removed.contains(triple)) {
+				++removed;
+			}
+			else if (graph != null) {
+				graph.add(triple);
+			}
+			else {
+				writer.receive(triple);
+			}
+		}
+		if (removed != delta.removed.size()) {
+			throw new IOException((delta.removed.size() - removed) + " removed triples are missing in " + params.get(0) + ", delta does not match graph");
+		}
+		for(Triple triple: delta.added) {
+			if (graph != null) {
+				graph.add(triple);
+			}
+			else {
+				writer.receive(triple);
+			}
+		}
+		
+		if (graph != null) {
+			writer = openOutput(output);
+			method.sort(graph, writer);
+		}
+		writer.done();
+		return 0;
+	}
+
+	private int fingerprint(List<String> params) throws IOException {
+		expectParams(params, 0, 1);
+		String fingerprint = method.getAlgorithmFingerPrint();
+		out.println(fingerprint);
+		if (params.size() == 1) {
+			File file = new File(params.get(0));
+			GraphSummary summary;
+			if (BlockTripleFile.isBlockFile(file) && fingerprint.equals(openBlock(file).getFingerprint())) {
+				summary = openBlock(file).getSummary();
+			}
+			else {
+				GraphSummaryWriter writer = new GraphSummaryWriter(new NullReceiver(), fingerprint);
+				method.sort(openInput(file), writer);
+				summary = writer.getSummary();
+			}
+			out.println();
+			out.println(summary);
+		}
+		return 0;
+	}
+
+	/**
+	 * Opens input in sorted form, block file sorted by same algorithm is used as is.
+	 */
+	private SortedInput openSorted(File file) throws IOException {
+		if (BlockTripleFile.isBlockFile(file)) {
+			BlockTripleFile block = openBlock(file);
+			if (method.getAlgorithmFingerPrint().equals(block.getFingerprint())) {
+				stats.addInputBytes(file.length());
+				return new SortedInput(stats.count(block.read(0, block.size())), block.getSummary());
+			}
+		}
+		SortedTripleBuffer buffer = new SortedTripleBuffer(memoryBudget, method.getAlgorithmFingerPrint());
+		buffers.add(buffer);
+		method.sort(openInput(file), buffer);
+		if (buffer.isSpilled()) {
+			err.println("Sorted " + file + " is spilled to disk");
+		}
+		return new SortedInput(buffer.iterator(), buffer.getSummary());
+	}
+
+	private Iterator<Triple> openInput(File file) throws IOException {
+		stats.addInputBytes(file.length());
+		if (BlockTripleFile.isBlockFile(file)) {
+			BlockTripleFile block = openBlock(file);
+			return stats.count(block.read(0, block.size()));
+		}
+		else {
+			return stats.count(new NTripleFormatReader(new InputStreamReader(openStream(file), Encodings.UTF8)));
+		}
+	}
+
+	private BlockTripleFile openBlock(File file) throws IOException {
+		BlockTripleFile block = new BlockTripleFile(file);
+		openFiles.add(block);
+		return block;
+	}
+	
+	private InputStream openStream(File file) throws IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(file), 64 << 10);
+		return file.getName().endsWith(".gz") ? new GZIPInputStream(is, 64 << 10) : is;
+	}
+	
+	private TripleReceiver openOutput(File file) throws IOException {
+		TripleReceiver writer;
+		if (isText(file)) {
+			writer = new NTripleFormatWriter(openTextWriter(file));
+		}
+		else {
+			writer = new BlockTripleWriter(file, method.getAlgorithmFingerPrint());
+		}
+		return new CountingReceiver(writer);
+	}
+
+	private Writer openTextWriter(File file) throws IOException {
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 64 << 10);
+		if (file.getName().endsWith(".gz")) {
+			os = new GZIPOutputStream(os, 64 << 10);
+		}
+		return new OutputStreamWriter(os, Encodings.UTF8);
+	}
+	
+	private static boolean isText(File file) {
+		String name = file.getName();
+		return name.endsWith(".nt") || name.endsWith(".nt.gz");
+	}
+	
+	private static void parseArgs(String[] args, List<String> params, Map<String, String> options) {
+		for(int i = 0; i < args.length; ++i) {
+			String arg = args[i];
+			if (arg.startsWith("--")) {
+				String name = arg.substring(2);
+				if (contains(VALUE_OPTIONS, name)) {
+					if (i + 1 >= args.length) {
+						throw new UsageException("Option " + arg + " requires value");
+					}
+					options.put(name, args[++i]);
+				}
+				else if (contains(FLAG_OPTIONS, name)) {
+					options.put(name, "true");
+				}
+				else {
+					throw new UsageException("Unknown option " + arg);
+				}
+			}
+			else {
+				params.add(arg);
+			}
+		}
+	}
+
+	private static boolean contains(String[] names, String name) {
+		for(String n: names) {
+			if (n.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static long longOption(Map<String, String> options, String name, long defaultValue) {
+		String value = options.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			long n = Long.parseLong(value);
+			if (n <= 0) {
+				throw new UsageException("Option --" + name + " should be positive");
+			}
+			return n;
+		}
+		catch(NumberFormatException e) {
+			throw new UsageException("Option --" + name + " should be a number");
+		}
+	}
+
+	private static void expectParams(List<String> params, int min, int max) {
+		if (params.size() < min || params.size() > max) {
+			throw new UsageException("Wrong number of arguments");
+		}
+	}
+	
+	static class UsageException extends IllegalArgumentException {
+
+		private static final long serialVersionUID = 1L;
+
+		public UsageException(String message) {
+			super(message);
+		}
+	}
+	
+	private static class SortedInput {
+		
+		final Iterator<Triple> triples;
+		final GraphSummary summary;
+		
+		public SortedInput(Iterator<Triple> triples, GraphSummary summary) {
+			this.triples = triples;
+			this.summary = summary;
+		}
+	}
+
+	private class CountingReceiver implements SortedTripleReceiver {
+
+		private final TripleReceiver delegate;
+		
+		public CountingReceiver(TripleReceiver delegate) {
+			this.delegate = delegate;
+		}
+
+		public void setFingerprint(String fingerprint) {
+			if (delegate instanceof SortedTripleReceiver) {
+				((SortedTripleReceiver)delegate).setFingerprint(fingerprint);
+			}
+		}
+
+		public void receive(Triple stmt) {
+			stats.addOutputTriples(1);
+			delegate.receive(stmt);
+		}
+
+		public void done() {
+			delegate.done();
+		}
+	}
+	
+	private static class NullReceiver implements TripleReceiver {
+
+		public void receive(Triple stmt) {
+			// do nothing
+		}
+
+		public void done() {
+			// do nothing
+		}
+	}
+	
+	/**
+	 * Keeps stdout open after delta is written.
+	 */
+	private static class NonClosingStream extends OutputStream {
+		
+		private final OutputStream delegate;
+
+		public NonClosingStream(OutputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			delegate.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			delegate.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			delegate.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.flush();
+		}
+	}
+}
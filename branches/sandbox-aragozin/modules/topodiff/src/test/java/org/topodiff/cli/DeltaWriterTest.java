@@ -0,0 +1,105 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.topodiff.graph.Node;
+import org.topodiff.graph.NodeType;
+import org.topodiff.graph.Triple;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class DeltaWriterTest {
+
+	private static final Node S = new Node(NodeType.NAMED, "http://x/s");
+	private static final Node P = new Node(NodeType.NAMED, "http://x/p");
+
+	@Test
+	public void addedTriplesUseLabelsOfFirstModel() throws IOException {
+		StringWriter text = new StringWriter();
+		DeltaWriter writer = new DeltaWriter(text);
+		writer.tripleMatch(new Triple(S, P, blank("a1")), new Triple(S, P, blank("b1")));
+		writer.tripleMatch(new Triple(blank("a1"), P, literal("old@")), null);
+		writer.tripleMatch(null, new Triple(blank("b1"), P, literal("new@")));
+		writer.tripleMatch(null, new Triple(blank("b1"), P, blank("b2")));
+		writer.done();
+
+		Assert.assertEquals(
+				DeltaWriter.HEADER + "\n" +
+				"- _:a1 <http://x/p> \"old\" .\n" +
+				"+ _:a1 <http://x/p> \"new\" .\n" +
+				"+ _:a1 <http://x/p> _:" + DeltaWriter.NEW_BNODE_PREFIX + "b2 .\n",
+				text.toString());
+		Assert.assertEquals(2, writer.getAddedCount());
+		Assert.assertEquals(1, writer.getRemovedCount());
+		Assert.assertEquals(1, writer.getRetainedCount());
+	}
+
+	@Test
+	public void writeReadRoundTrip() throws IOException {
+		Triple removed1 = new Triple(S, P, literal("line1\nline2 \"quoted\" \\@"));
+		Triple removed2 = new Triple(S, P, literal("chat@en-US"));
+		Triple added1 = new Triple(S, P, literal("1^^<http://www.w3.org/2001/XMLSchema#int>"));
+		Triple added2 = new Triple(S, new Node(NodeType.NAMED, "http://x/a>b"), literal("\u00e9\u4e2d@"));
+
+		StringWriter text = new StringWriter();
+		DeltaWriter writer = new DeltaWriter(text);
+		writer.tripleMatch(removed1, null);
+		writer.tripleMatch(null, added1);
+		writer.tripleMatch(new Triple(S, P, S), new Triple(S, P, S));
+		writer.tripleMatch(removed2, null);
+		writer.tripleMatch(null, added2);
+		writer.done();
+
+		DeltaReader reader = new DeltaReader(new StringReader(text.toString()));
+		Assert.assertEquals(new HashSet<Triple>(Arrays.asList(removed1, removed2)), reader.removed);
+		Assert.assertEquals(Arrays.asList(added1, added2), reader.added);
+	}
+
+	@Test
+	public void emptyDelta() throws IOException {
+		StringWriter text = new StringWriter();
+		new DeltaWriter(text).done();
+		DeltaReader reader = new DeltaReader(new StringReader(text.toString()));
+		Assert.assertEquals(Collections.emptySet(), reader.removed);
+		Assert.assertEquals(Collections.emptyList(), reader.added);
+	}
+
+	@Test(expected = IOException.class)
+	public void headerIsRequired() throws IOException {
+		new DeltaReader(new StringReader("- <http://x/s> <http://x/p> <http://x/o> .\n"));
+	}
+
+	@Test(expected = IOException.class)
+	public void malformedLineIsRejected() throws IOException {
+		new DeltaReader(new StringReader(DeltaWriter.HEADER + "\n* <http://x/s> <http://x/p> <http://x/o> .\n"));
+	}
+
+	private static Node blank(String label) {
+		return new Node(NodeType.BLANK, label);
+	}
+
+	private static Node literal(String lexicalForm) {
+		return new Node(NodeType.LITERAL, lexicalForm);
+	}
+}
@@ -0,0 +1,191 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.topodiff.io.block.BlockTripleFile;
+import org.topodiff.util.text.Encodings;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class TopoDiffCliTest {
+
+	private static final String FIRST = "<http://www.w3.org/TR/rdf-schema/#first>";
+	private static final String REST = "<http://www.w3.org/TR/rdf-schema/#rest>";
+
+	private static final String GRAPH1 =
+			"<http://x/a> <http://x/name> \"Alpha\"@en .\n" +
+			"<http://x/a> <http://x/list> _:l1 .\n" +
+			"_:l1 " + FIRST + " \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .\n" +
+			"_:l1 " + REST + " _:l2 .\n" +
+			"_:l2 " + FIRST + " \"two\\nlines \\\"quoted\\\"\" .\n" +
+			"_:l2 " + REST + " <http://x/nil> .\n" +
+			"<http://x/b> <http://x/addr> _:addr .\n" +
+			"_:addr <http://x/city> \"Paris\" .\n" +
+			"<http://x/b> <http://x/note> \"a@b\" .\n";
+
+	// name and second list element changed, address extended, new subject with b-node
+	private static final String GRAPH2 =
+			"_:n <http://x/city> \"K\\u00F6ln\" .\n" +
+			"<http://x/c> <http://x/addr> _:n .\n" +
+			"<http://x/a> <http://x/name> \"Alpha\"@fr .\n" +
+			"<http://x/a> <http://x/list> _:x1 .\n" +
+			"_:x1 " + FIRST + " \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .\n" +
+			"_:x1 " + REST + " _:x2 .\n" +
+			"_:x2 " + FIRST + " \"2\" .\n" +
+			"_:x2 " + REST + " <http://x/nil> .\n" +
+			"<http://x/b> <http://x/addr> _:addr .\n" +
+			"_:addr <http://x/city> \"Paris\" .\n" +
+			"_:addr <http://x/zip> \"75001\" .\n" +
+			"<http://x/b> <http://x/note> \"a@b\" .\n";
+
+	private File dir;
+	private ByteArrayOutputStream out;
+	private ByteArrayOutputStream err;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = File.createTempFile("topodiff-cli", "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Cannot create " + dir);
+		}
+	}
+
+	@After
+	public void deleteDir() {
+		delete(dir);
+	}
+
+	@Test
+	public void identicalGraphs() throws IOException {
+		File graph = write("graph.nt", GRAPH1);
+		Assert.assertEquals(0, run("diff", path(graph), path(graph)));
+		Assert.assertEquals(DeltaWriter.HEADER + "\n", out.toString("UTF-8"));
+		Assert.assertTrue(err.toString("UTF-8").contains("Removed 0, added 0, retained 0 (identical by summary)"));
+	}
+
+	@Test
+	public void diffApplyRoundTrip() throws IOException {
+		File graph1 = write("graph1.nt", GRAPH1);
+		File graph2 = write("graph2.nt", GRAPH2);
+		File delta = new File(dir, "delta.txt");
+		File applied = new File(dir, "applied.nt");
+
+		Assert.assertEquals(1, run("diff", path(graph1), path(graph2), path(delta)));
+		Assert.assertTrue(read(delta).startsWith(DeltaWriter.HEADER + "\n"));
+		Assert.assertTrue(read(delta).contains("+ _:" + DeltaWriter.NEW_BNODE_PREFIX));
+
+		Assert.assertEquals(0, run("apply", path(graph1), path(delta), path(applied)));
+		Assert.assertEquals(0, run("diff", path(applied), path(graph2)));
+		Assert.assertEquals(DeltaWriter.HEADER + "\n", out.toString("UTF-8"));
+	}
+
+	@Test
+	public void applyToBlockFile() throws IOException {
+		File graph1 = write("graph1.nt", GRAPH1);
+		File graph2 = write("graph2.nt", GRAPH2);
+		File sorted1 = new File(dir, "graph1.tdb");
+		File delta = new File(dir, "delta.txt");
+		File applied = new File(dir, "applied.tdb");
+
+		Assert.assertEquals(0, run("sort", path(graph1), path(sorted1)));
+		Assert.assertTrue(BlockTripleFile.isBlockFile(sorted1));
+		Assert.assertEquals(1, run("diff", path(sorted1), path(graph2), path(delta)));
+		Assert.assertEquals(0, run("--threads", "2", "apply", path(sorted1), path(delta), path(applied)));
+		Assert.assertTrue(BlockTripleFile.isBlockFile(applied));
+		Assert.assertEquals(0, run("diff", path(applied), path(graph2)));
+	}
+
+	@Test
+	public void deltaOfOtherGraphIsRejected() throws IOException {
+		File graph1 = write("graph1.nt", GRAPH1);
+		File graph2 = write("graph2.nt", GRAPH2);
+		File delta = new File(dir, "delta.txt");
+		Assert.assertEquals(1, run("diff", path(graph1), path(graph2), path(delta)));
+		try {
+			run("apply", path(graph2), path(delta), path(new File(dir, "applied.nt")));
+			Assert.fail("Delta should not match graph");
+		}
+		catch(IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("delta does not match graph"));
+		}
+	}
+
+	@Test(expected = TopoDiffCli.UsageException.class)
+	public void unknownCommand() throws IOException {
+		run("merge");
+	}
+
+	private int run(String... args) throws IOException {
+		out = new ByteArrayOutputStream();
+		err = new ByteArrayOutputStream();
+		return new TopoDiffCli(new PrintStream(out, true), new PrintStream(err, true)).run(args);
+	}
+
+	private File write(String name, String text) throws IOException {
+		File file = new File(dir, name);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), Encodings.UTF8);
+		try {
+			writer.write(text);
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private static String read(File file) throws IOException {
+		InputStreamReader reader = new InputStreamReader(new FileInputStream(file), Encodings.UTF8);
+		try {
+			StringBuilder sb = new StringBuilder();
+			char[] buf = new char[4096];
+			int n;
+			while((n = reader.read(buf)) >= 0) {
+				sb.append(buf, 0, n);
+			}
+			return sb.toString();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static String path(File file) {
+		return file.getPath();
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for(File f: files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -13,9 +13,11 @@ limitations under the License.
 */
 package org.topodiff.util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -54,6 +56,52 @@ public class Filters {
 		return orFilter;
 	}
 	
+	public static <A> Match<A> and(Match<A> first, Match<A> second) {
+		List<Match<A>> filters = new ArrayList<Match<A>>(2);
+		filters.add(first);
+		filters.add(second);
+		return and(filters);
+	}
+
+	public static <A> Match<A> and(Collection<Match<A>> filters) {
+		if (filters.isEmpty()) {
+			throw new IllegalArgumentException("AND with zero arguments is undefined");
+		}
+		final List<Match<A>> list = new ArrayList<Match<A>>(filters);
+		
+		Match<A> andFilter = new Match<A>() {
+
+			public boolean match(A object) {
+				for(Match<A> filter: list) {
+					if (!filter.match(object)) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public String toString() {
+				return "AND" + list.toString();
+			}
+		};
+		
+		return andFilter;
+	}
+
+	public static <A> Match<A> not(final Match<A> filter) {
+		return new Match<A>() {
+			public boolean match(A object) {
+				return !filter.match(object);
+			}
+
+			@Override
+			public String toString() {
+				return "NOT[" + filter + "]";
+			}
+		};
+	}
+	
 	public static <A> Match<A> inList(Collection<A> values) {
 		final Set<A> set = new HashSet<A>(values);
 		return new Match<A>() {
@@ -0,0 +1,143 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from <code>int</code> to <code>int</code>, without boxing.
+ * Map does not support removal of keys.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class IntIntHashMap {
+
+	private final int missingValue;
+	
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int mask;
+	private int size;
+
+	/**
+	 * Creates map returning <code>-1</code> for missing keys.
+	 */
+	public IntIntHashMap() {
+		this(0, -1);
+	}
+
+	/**
+	 * @param expectedSize number of keys map could hold without rehashing
+	 * @param missingValue value returned by {@link #get(int)} for missing keys
+	 */
+	public IntIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(PrimitiveHash.capacityFor(expectedSize));
+	}
+	
+	public IntIntHashMap(IntIntHashMap that) {
+		this.missingValue = that.missingValue;
+		this.keys = that.keys.clone();
+		this.values = that.values.clone();
+		this.used = that.used.clone();
+		this.mask = that.mask;
+		this.size = that.size;
+	}
+
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean containsKey(int key) {
+		return used[slot(key)];
+	}
+	
+	/**
+	 * @return value or missing value (see constructor) if key is not in map
+	 */
+	public int get(int key) {
+		int n = slot(key);
+		return used[n] ? values[n] : missingValue;
+	}
+
+	/**
+	 * @return previous value or missing value (see constructor)
+	 */
+	public int put(int key, int value) {
+		int n = slot(key);
+		if (used[n]) {
+			int prev = values[n];
+			values[n] = value;
+			return prev;
+		}
+		keys[n] = key;
+		values[n] = value;
+		used[n] = true;
+		if (++size > (mask + 1) / 2) {
+			rehash();
+		}
+		return missingValue;
+	}
+	
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	public int[] keys() {
+		int[] result = new int[size];
+		int n = 0;
+		for(int i = 0; i != used.length; ++i) {
+			if (used[i]) {
+				result[n++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	private int slot(int key) {
+		int n = PrimitiveHash.mix(key) & mask;
+		while(used[n] && keys[n] != key) {
+			n = (n + 1) & mask;
+		}
+		return n;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(used.length * 2);
+		for(int i = 0; i != oldUsed.length; ++i) {
+			if (oldUsed[i]) {
+				int n = slot(oldKeys[i]);
+				keys[n] = oldKeys[i];
+				values[n] = oldValues[i];
+				used[n] = true;
+			}
+		}
+	}
+	
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+}
@@ -0,0 +1,99 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint set forest over dense <code>int</code> elements (union by size, path halving).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class IntUnionFind {
+
+	private int[] parent;
+	private int[] setSize;
+	private int size;
+	
+	public IntUnionFind() {
+		this(16);
+	}
+
+	public IntUnionFind(int capacity) {
+		parent = new int[Math.max(capacity, 1)];
+		setSize = new int[parent.length];
+	}
+
+	/**
+	 * @return number of elements
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Adds new element as singleton set.
+	 * @return new element
+	 */
+	public int add() {
+		if (size == parent.length) {
+			parent = Arrays.copyOf(parent, parent.length * 2);
+			setSize = Arrays.copyOf(setSize, setSize.length * 2);
+		}
+		parent[size] = size;
+		setSize[size] = 1;
+		return size++;
+	}
+	
+	/**
+	 * @return representative of element's set
+	 */
+	public int find(int n) {
+		if (n >= size) {
+			throw new IndexOutOfBoundsException("Index: " + n + ", size: " + size);
+		}
+		while(parent[n] != n) {
+			parent[n] = parent[parent[n]];
+			n = parent[n];
+		}
+		return n;
+	}
+	
+	/**
+	 * Merges sets of two elements.
+	 * @return representative of merged set
+	 */
+	public int union(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+		if (ra == rb) {
+			return ra;
+		}
+		if (setSize[ra] < setSize[rb]) {
+			int t = ra;
+			ra = rb;
+			rb = t;
+		}
+		parent[rb] = ra;
+		setSize[ra] += setSize[rb];
+		return ra;
+	}
+	
+	/**
+	 * @return size of element's set
+	 */
+	public int getSetSize(int n) {
+		return setSize[find(n)];
+	}
+}
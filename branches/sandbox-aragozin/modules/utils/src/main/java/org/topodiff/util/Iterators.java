@@ -424,6 +424,18 @@ public class Iterators {
 		};
  	}
 	
+	/**
+	 * Allocation free variant of {@link #sortedDelta(Iterable, Iterable, Comparator)}.
+	 * Important! algorithm assumes sorted lists on input.
+	 * 
+	 * @return cursor positioned before first group
+	 */
+	public static <T> SortedDeltaCursor<T> sortedDeltaCursor(List<? extends T> t1, List<? extends T> t2, Comparator<? super T> order) {
+		SortedDeltaCursor<T> cursor = new SortedDeltaCursor<T>(order);
+		cursor.reset(t1, t2);
+		return cursor;
+	}
+	
 	private static class SortedDeltaIterator<T> extends AbstractPrefetchIterator<Pair<List<T>, List<T>>> {
 		private final LookAheadIterator<List<T>> it1;
 		private final LookAheadIterator<List<T>> it2;
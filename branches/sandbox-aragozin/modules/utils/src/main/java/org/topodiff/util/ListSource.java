@@ -0,0 +1,70 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link SplittableSource} over range of random access list.
+ * List should not be modified while source is in use.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ListSource<T> implements SplittableSource<T> {
+
+	private final List<T> list;
+	private int from;
+	private final int to;
+	
+	public ListSource(List<T> list) {
+		this(list, 0, list.size());
+	}
+
+	public ListSource(List<T> list, int from, int to) {
+		if (!(list instanceof RandomAccess)) {
+			throw new IllegalArgumentException("Random access list is required");
+		}
+		if (from < 0 || to > list.size() || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is out of [0, " + list.size() + ")");
+		}
+		this.list = list;
+		this.from = from;
+		this.to = to;
+	}
+	
+	public long size() {
+		return to - from;
+	}
+
+	public SplittableSource<T> trySplit() {
+		int mid = (from + to) >>> 1;
+		if (mid == from) {
+			return null;
+		}
+		ListSource<T> prefix = new ListSource<T>(list, from, mid);
+		from = mid;
+		return prefix;
+	}
+
+	public Iterator<T> iterator() {
+		return list.subList(from, to).iterator();
+	}
+	
+	@Override
+	public String toString() {
+		return "ListSource[" + from + ", " + to + ")";
+	}
+}
@@ -0,0 +1,130 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from objects to <code>int</code>, replacement for <code>Map&lt;K, Integer&gt;</code>
+ * without boxing and entry objects. Keys are compared using {@link Object#equals(Object)}, <code>null</code> keys are not allowed.
+ * Map does not support removal of keys.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ObjectIntHashMap<K> {
+
+	private final int missingValue;
+	
+	private Object[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	/**
+	 * Creates map returning <code>-1</code> for missing keys.
+	 */
+	public ObjectIntHashMap() {
+		this(0, -1);
+	}
+
+	/**
+	 * @param expectedSize number of keys map could hold without rehashing
+	 * @param missingValue value returned by {@link #get(Object)} for missing keys
+	 */
+	public ObjectIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(PrimitiveHash.capacityFor(expectedSize));
+	}
+
+	public ObjectIntHashMap(ObjectIntHashMap<K> that) {
+		this.missingValue = that.missingValue;
+		this.keys = that.keys.clone();
+		this.values = that.values.clone();
+		this.mask = that.mask;
+		this.size = that.size;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean containsKey(K key) {
+		return keys[slot(key)] != null;
+	}
+	
+	/**
+	 * @return value or missing value (see constructor) if key is not in map
+	 */
+	public int get(K key) {
+		int n = slot(key);
+		return keys[n] != null ? values[n] : missingValue;
+	}
+
+	/**
+	 * @return previous value or missing value (see constructor)
+	 */
+	public int put(K key, int value) {
+		if (key == null) {
+			throw new NullPointerException("null key is not allowed");
+		}
+		int n = slot(key);
+		if (keys[n] != null) {
+			int prev = values[n];
+			values[n] = value;
+			return prev;
+		}
+		keys[n] = key;
+		values[n] = value;
+		if (++size > (mask + 1) / 2) {
+			rehash();
+		}
+		return missingValue;
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, null);
+		size = 0;
+	}
+
+	private int slot(Object key) {
+		int n = PrimitiveHash.mix(key.hashCode()) & mask;
+		while(keys[n] != null && !keys[n].equals(key)) {
+			n = (n + 1) & mask;
+		}
+		return n;
+	}
+	
+	private void rehash() {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length * 2);
+		for(int i = 0; i != oldKeys.length; ++i) {
+			if (oldKeys[i] != null) {
+				int n = slot(oldKeys[i]);
+				keys[n] = oldKeys[i];
+				values[n] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+}
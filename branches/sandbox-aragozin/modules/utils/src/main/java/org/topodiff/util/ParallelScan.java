@@ -0,0 +1,134 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for parallel bulk processing of {@link SplittableSource}.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ParallelScan {
+
+	/**
+	 * Splits source into up to <code>parts</code> chunks. Largest chunk is split first,
+	 * chunks smaller than <code>minSize</code> are not split.
+	 * @return chunks in source order, original source is always last chunk
+	 */
+	public static <T> List<SplittableSource<T>> split(SplittableSource<T> source, int parts, long minSize) {
+		if (parts < 1) {
+			throw new IllegalArgumentException("Number of parts should be positive");
+		}
+		List<SplittableSource<T>> chunks = new ArrayList<SplittableSource<T>>(parts);
+		List<SplittableSource<T>> exhausted = new ArrayList<SplittableSource<T>>();
+		chunks.add(source);
+		while(chunks.size() < parts) {
+			int largest = -1;
+			for(int i = 0; i != chunks.size(); ++i) {
+				SplittableSource<T> chunk = chunks.get(i);
+				if (chunk.size() >= 2 * minSize && chunk.size() > 1 && !contains(exhausted, chunk)) {
+					if (largest < 0 || chunk.size() > chunks.get(largest).size()) {
+						largest = i;
+					}
+				}
+			}
+			if (largest < 0) {
+				break;
+			}
+			SplittableSource<T> prefix = chunks.get(largest).trySplit();
+			if (prefix == null) {
+				exhausted.add(chunks.get(largest));
+			}
+			else {
+				chunks.add(largest, prefix);
+			}
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Splits source into chunks and applies task to each chunk using executor.
+	 * Exceptions thrown by task are propagated to caller.
+	 * @return results of task in source order
+	 */
+	public static <T, R> List<R> map(ExecutorService executor, SplittableSource<T> source, int parts, final Morph<Iterator<T>, R> task) {
+		List<SplittableSource<T>> chunks = split(source, parts, 1);
+		List<Future<R>> futures = new ArrayList<Future<R>>(chunks.size());
+		try {
+			for(final SplittableSource<T> chunk: chunks) {
+				futures.add(executor.submit(new Callable<R>() {
+					public R call() {
+						return task.morph(chunk.iterator());
+					}
+				}));
+			}
+			List<R> results = new ArrayList<R>(futures.size());
+			for(Future<R> future: futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			for(Future<R> future: futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Number of elements satisfying filter, counted in parallel.
+	 */
+	public static <T> long count(ExecutorService executor, SplittableSource<T> source, int parts, final Match<T> filter) {
+		List<Long> counts = map(executor, source, parts, new Morph<Iterator<T>, Long>() {
+			public Long morph(Iterator<T> it) {
+				long n = 0;
+				while(it.hasNext()) {
+					if (filter.match(it.next())) {
+						++n;
+					}
+				}
+				return Long.valueOf(n);
+			}
+		});
+		long total = 0;
+		for(Long n: counts) {
+			total += n.longValue();
+		}
+		return total;
+	}
+	
+	private static boolean contains(List<?> list, Object item) {
+		for(Object o: list) {
+			if (o == item) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
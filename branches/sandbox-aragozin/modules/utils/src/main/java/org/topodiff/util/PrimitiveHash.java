@@ -0,0 +1,48 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+/**
+ * Hash spreading for open addressing collections.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+class PrimitiveHash {
+
+	private static final int MIN_CAPACITY = 8;
+
+	/**
+	 * murmur3 finalizer, masking by table size uses low bits only, so they should depend on all bits of key
+	 */
+	public static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Tables are kept at most half full.
+	 * @return power of 2 table size for given number of entries
+	 */
+	public static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while(capacity / 2 < expectedSize) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+}
@@ -0,0 +1,205 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator consuming source iterator on background thread.
+ * <br/>
+ * Elements are passed from reader thread to consumer through ring of fixed size batches,
+ * batch arrays are reused so hand off does not allocate. Reader thread is blocked when
+ * all batches are full, consumer is blocked when all are empty.
+ * <br/>
+ * Exceptions thrown by source are rethrown to consumer after elements read before failure.
+ * Consumer should {@link #close()} iterator if source is not read till the end.
+ *
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ReadAheadIterator<T> implements Iterator<T> {
+
+	private final Iterator<? extends T> source;
+	
+	private final Object[][] ring;
+	private final int[] fill;
+	
+	// guarded by this
+	private long published;
+	private long consumed;
+	private boolean eof;
+	private boolean closed;
+	private Throwable error;
+
+	// consumer side
+	private Object[] batch;
+	private int batchSize;
+	private int pos;
+	
+	private final Thread reader;
+	
+	public ReadAheadIterator(Iterator<? extends T> source) {
+		this(source, 1024, 8);
+	}
+
+	/**
+	 * @param batchSize number of elements in single hand off
+	 * @param batchCount number of batches in ring
+	 */
+	public ReadAheadIterator(Iterator<? extends T> source, int batchSize, int batchCount) {
+		if (batchSize < 1 || batchCount < 2) {
+			throw new IllegalArgumentException("Batch size should be positive and ring should have at least 2 batches");
+		}
+		this.source = source;
+		this.ring = new Object[batchCount][batchSize];
+		this.fill = new int[batchCount];
+		this.reader = new Thread(new Reader(), "ReadAhead");
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+	
+	public boolean hasNext() {
+		while(batch == null || pos >= batchSize) {
+			if (batch != null) {
+				release();
+			}
+			if (!acquire()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T result = (T) batch[pos];
+		batch[pos++] = null;
+		return result;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * Stops reader thread. Source iterator is not notified.
+	 */
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	private synchronized boolean acquire() {
+		while(consumed == published) {
+			if (eof) {
+				if (error != null) {
+					Throwable e = error;
+					// report only once
+					error = null;
+					rethrow(e);
+				}
+				return false;
+			}
+			if (closed) {
+				throw new IllegalStateException("Iterator is closed");
+			}
+			await();
+		}
+		int slot = (int)(consumed % ring.length);
+		batch = ring[slot];
+		batchSize = fill[slot];
+		pos = 0;
+		return true;
+	}
+	
+	private synchronized void release() {
+		batch = null;
+		++consumed;
+		notifyAll();
+	}
+	
+	private void await() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted", e);
+		}
+	}
+	
+	private static void rethrow(Throwable e) {
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException)e;
+		}
+		else if (e instanceof Error) {
+			throw (Error)e;
+		}
+		else {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private class Reader implements Runnable {
+
+		public void run() {
+			Throwable failure = null;
+			try {
+				while(true) {
+					Object[] slot;
+					synchronized(ReadAheadIterator.this) {
+						while(!closed && published - consumed == ring.length) {
+							ReadAheadIterator.this.wait();
+						}
+						if (closed) {
+							return;
+						}
+						slot = ring[(int)(published % ring.length)];
+					}
+					// slot is owned by reader until published
+					int n = 0;
+					try {
+						while(n < slot.length && source.hasNext()) {
+							Object next = source.next();
+							slot[n++] = next;
+						}
+					}
+					catch(Throwable e) {
+						failure = e;
+					}
+					synchronized(ReadAheadIterator.this) {
+						if (n > 0) {
+							fill[(int)(published % ring.length)] = n;
+							++published;
+						}
+						if (n < slot.length) {
+							break;
+						}
+						ReadAheadIterator.this.notifyAll();
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				failure = e;
+			}
+			synchronized(ReadAheadIterator.this) {
+				eof = true;
+				error = failure;
+				ReadAheadIterator.this.notifyAll();
+			}
+		}
+	}
+}
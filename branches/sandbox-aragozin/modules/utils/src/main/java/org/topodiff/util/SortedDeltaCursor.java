@@ -0,0 +1,139 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Allocation free alternative to {@link Iterators#sortedDelta(Iterable, Iterable, Comparator)}.
+ * Cursor walks over two sorted lists and exposes each group of equal elements as index range
+ * [from, to) in caller's lists. Empty range means what group is missing in one of lists.
+ * <br/>
+ * Important! algorithm assumes sorted lists with fast random access on input.
+ * Cursor could be reused via {@link #reset(List, List)}.
+ * 
+ * <pre>
+ * cursor.reset(list1, list2);
+ * while(cursor.next()) {
+ *     for(int i = cursor.from1(); i != cursor.to1(); ++i) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class SortedDeltaCursor<T> {
+
+	private final Comparator<? super T> order1;
+	private final Comparator<? super T> order2;
+	private final Comparator<? super T> crossOrder;
+	
+	private List<? extends T> list1;
+	private List<? extends T> list2;
+	
+	private int from1;
+	private int to1;
+	private int from2;
+	private int to2;
+
+	public SortedDeltaCursor(Comparator<? super T> order) {
+		this(order, order, order);
+	}
+
+	/**
+	 * Separate comparators are useful then order depends on list element belongs to.
+	 * 
+	 * @param order1 order of first list
+	 * @param order2 order of second list
+	 * @param crossOrder compares element of first list (as first argument) with element of second list
+	 */
+	public SortedDeltaCursor(Comparator<? super T> order1, Comparator<? super T> order2, Comparator<? super T> crossOrder) {
+		if (order1 == null || order2 == null || crossOrder == null) {
+			throw new IllegalArgumentException("Should provide valid comparator");
+		}
+		this.order1 = order1;
+		this.order2 = order2;
+		this.crossOrder = crossOrder;
+	}
+	
+	public void reset(List<? extends T> list1, List<? extends T> list2) {
+		this.list1 = list1;
+		this.list2 = list2;
+		from1 = to1 = 0;
+		from2 = to2 = 0;
+	}
+
+	/**
+	 * Moves cursor to next group.
+	 * @return <code>false</code> if both lists are exhausted
+	 */
+	public boolean next() {
+		from1 = to1;
+		from2 = to2;
+		
+		boolean has1 = from1 < list1.size();
+		boolean has2 = from2 < list2.size();
+		if (!has1 && !has2) {
+			return false;
+		}
+		
+		int res = !has1 ? 1 : !has2 ? -1 : crossOrder.compare(list1.get(from1), list2.get(from2));
+		if (res <= 0) {
+			to1 = groupEnd(list1, from1, order1);
+		}
+		if (res >= 0) {
+			to2 = groupEnd(list2, from2, order2);
+		}
+		return true;
+	}
+	
+	private static <T> int groupEnd(List<? extends T> list, int from, Comparator<? super T> order) {
+		T head = list.get(from);
+		int n = from + 1;
+		while(n < list.size() && order.compare(head, list.get(n)) == 0) {
+			++n;
+		}
+		return n;
+	}
+
+	/** @return start of current group in first list (inclusive) */
+	public int from1() {
+		return from1;
+	}
+
+	/** @return end of current group in first list (exclusive) */
+	public int to1() {
+		return to1;
+	}
+
+	/** @return start of current group in second list (inclusive) */
+	public int from2() {
+		return from2;
+	}
+
+	/** @return end of current group in second list (exclusive) */
+	public int to2() {
+		return to2;
+	}
+	
+	public int size1() {
+		return to1 - from1;
+	}
+
+	public int size2() {
+		return to2 - from2;
+	}
+}
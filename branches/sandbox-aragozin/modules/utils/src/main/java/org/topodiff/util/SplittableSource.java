@@ -0,0 +1,45 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.Iterator;
+
+/**
+ * Finite, exactly sized sequence of elements which could be divided into
+ * independent chunks for parallel processing.
+ * <br/>
+ * Contract is similar to <code>java.util.Spliterator</code> with SIZED, SUBSIZED and ORDERED
+ * characteristics. Source should be split before traversal, behavior of {@link #trySplit()} after
+ * {@link #iterator()} has been called is undefined.
+ *
+ * @param <T> element type
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public interface SplittableSource<T> {
+
+	/**
+	 * @return exact number of elements covered by this source
+	 */
+	public long size();
+	
+	/**
+	 * Cuts leading part of this source, after split this source covers remaining elements.
+	 * @return source covering prefix of elements or <code>null</code> if source could not be split further
+	 */
+	public SplittableSource<T> trySplit();
+	
+	public Iterator<T> iterator();
+	
+}
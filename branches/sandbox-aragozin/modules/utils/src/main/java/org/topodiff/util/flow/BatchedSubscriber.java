@@ -0,0 +1,61 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.flow;
+
+/**
+ * Subscriber processing items synchronously and signalling demand in batches,
+ * instead of requesting items one by one. Demand is replenished once half of batch is consumed,
+ * so publisher is not stalled waiting for next request.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public abstract class BatchedSubscriber<T> implements Flow.Subscriber<T> {
+
+	private final int batchSize;
+	private final int replenishThreshold;
+	private Flow.Subscription subscription;
+	private int consumed;
+	
+	public BatchedSubscriber(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size should be positive");
+		}
+		this.batchSize = batchSize;
+		this.replenishThreshold = Math.max(1, batchSize / 2);
+	}
+	
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(batchSize);
+	}
+
+	public void onNext(T item) {
+		process(item);
+		if (++consumed >= replenishThreshold) {
+			int n = consumed;
+			consumed = 0;
+			subscription.request(n);
+		}
+	}
+
+	/**
+	 * Stops stream, no further items will be processed.
+	 */
+	protected void cancel() {
+		subscription.cancel();
+	}
+	
+	protected abstract void process(T item);
+	
+}
@@ -0,0 +1,226 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.flow;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Bridge from push style producer to {@link Flow.Publisher} with single subscriber.
+ * <br/>
+ * Items are delivered while subscriber has outstanding demand, otherwise they are buffered.
+ * Once buffer is full {@link #offer(Object)} blocks producer until subscriber requests more,
+ * so memory is bounded regardless of subscriber speed.
+ * <br/>
+ * Signals are delivered either on producer thread or on thread calling {@link Flow.Subscription#request(long)}, 
+ * but never concurrently.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BufferedPublisher<T> implements Flow.Publisher<T> {
+
+	private final int capacity;
+	private final Queue<T> buffer = new LinkedList<T>();
+	
+	private Flow.Subscriber<? super T> subscriber;
+	private long demand;
+	private boolean draining;
+	private boolean completed;
+	private Throwable error;
+	private boolean terminated;
+	private boolean cancelled;
+	
+	/**
+	 * @param capacity max number of items buffered while subscriber has no demand
+	 */
+	public BufferedPublisher(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity should be positive");
+		}
+		this.capacity = capacity;
+	}
+
+	public void subscribe(Flow.Subscriber<? super T> s) {
+		synchronized(this) {
+			if (subscriber == null) {
+				subscriber = s;
+				s = null;
+			}
+		}
+		if (s != null) {
+			s.onSubscribe(new NoopSubscription());
+			s.onError(new IllegalStateException("Publisher supports only one subscriber"));
+		}
+		else {
+			subscriber.onSubscribe(new BufferSubscription());
+			drain();
+		}
+	}
+
+	/**
+	 * Publishes item, blocks while buffer is full.
+	 * @throws CancellationException if subscriber has cancelled subscription
+	 */
+	public void offer(T item) {
+		if (item == null) {
+			throw new NullPointerException("Null items are not allowed");
+		}
+		synchronized(this) {
+			if (completed || error != null) {
+				throw new IllegalStateException("Stream is closed");
+			}
+			while(buffer.size() >= capacity && !cancelled) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted", e);
+				}
+			}
+			if (cancelled) {
+				throw new CancellationException("Subscription is cancelled");
+			}
+			buffer.add(item);
+		}
+		drain();
+	}
+
+	/**
+	 * Subscriber will be completed once buffered items are delivered.
+	 */
+	public void complete() {
+		synchronized(this) {
+			completed = true;
+		}
+		drain();
+	}
+
+	/**
+	 * Signals error to subscriber immediately, buffered items are discarded.
+	 */
+	public void fail(Throwable e) {
+		synchronized(this) {
+			if (error == null) {
+				error = e;
+			}
+		}
+		drain();
+	}
+
+	public synchronized int getBufferedCount() {
+		return buffer.size();
+	}
+	
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+	
+	private void drain() {
+		synchronized(this) {
+			if (draining || subscriber == null) {
+				return;
+			}
+			draining = true;
+		}
+		boolean ok = false;
+		try {
+			while(true) {
+				T item = null;
+				Throwable signalError = null;
+				synchronized(this) {
+					if (cancelled || terminated) {
+						buffer.clear();
+						notifyAll();
+						draining = false;
+						ok = true;
+						return;
+					}
+					if (error != null) {
+						terminated = true;
+						signalError = error;
+						buffer.clear();
+						notifyAll();
+					}
+					else if (!buffer.isEmpty() && demand > 0) {
+						item = buffer.poll();
+						--demand;
+						notifyAll();
+					}
+					else if (buffer.isEmpty() && completed) {
+						terminated = true;
+					}
+					else {
+						draining = false;
+						ok = true;
+						return;
+					}
+				}
+				if (signalError != null) {
+					subscriber.onError(signalError);
+				}
+				else if (item != null) {
+					subscriber.onNext(item);
+				}
+				else {
+					subscriber.onComplete();
+				}
+			}
+		}
+		finally {
+			if (!ok) {
+				// subscriber has failed, treat as cancellation
+				synchronized(this) {
+					cancelled = true;
+					draining = false;
+					buffer.clear();
+					notifyAll();
+				}
+			}
+		}
+	}
+	
+	private class BufferSubscription implements Flow.Subscription {
+
+		public void request(long n) {
+			if (n <= 0) {
+				fail(new IllegalArgumentException("Non positive request " + n));
+				return;
+			}
+			synchronized(BufferedPublisher.this) {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			drain();
+		}
+
+		public void cancel() {
+			synchronized(BufferedPublisher.this) {
+				cancelled = true;
+				buffer.clear();
+				BufferedPublisher.this.notifyAll();
+			}
+		}
+	}
+
+	private static class NoopSubscription implements Flow.Subscription {
+
+		public void request(long n) {
+			// do nothing
+		}
+
+		public void cancel() {
+			// do nothing
+		}
+	}
+}
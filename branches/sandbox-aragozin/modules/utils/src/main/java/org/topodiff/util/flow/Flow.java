@@ -0,0 +1,54 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.flow;
+
+/**
+ * Reactive streams interfaces, same contract as {@code java.util.concurrent.Flow} 
+ * (which is not available on supported Java versions).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+	
+	public static interface Publisher<T> {
+		
+		public void subscribe(Subscriber<? super T> subscriber);
+		
+	}
+
+	public static interface Subscriber<T> {
+		
+		public void onSubscribe(Subscription subscription);
+
+		public void onNext(T item);
+		
+		public void onError(Throwable error);
+		
+		public void onComplete();
+	}
+	
+	public static interface Subscription {
+
+		/**
+		 * Adds n items to demand, n should be positive.
+		 */
+		public void request(long n);
+		
+		public void cancel();
+		
+	}
+}
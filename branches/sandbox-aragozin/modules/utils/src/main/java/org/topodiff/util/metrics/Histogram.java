@@ -0,0 +1,117 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative values with power of two buckets.
+ * Percentiles are approximated by upper bound of bucket.
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class Histogram {
+
+	private static final int BUCKETS = 64;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+	
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		while(true) {
+			long m = min.get();
+			if (value >= m || min.compareAndSet(m, value)) {
+				break;
+			}
+		}
+		while(true) {
+			long m = max.get();
+			if (value <= m || max.compareAndSet(m, value)) {
+				break;
+			}
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * @return minimal value or 0 if histogram is empty
+	 */
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	/**
+	 * @return maximal value or 0 if histogram is empty
+	 */
+	public long getMax() {
+		return count.get() == 0 ? 0 : max.get();
+	}
+
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : ((double)sum.get()) / n;
+	}
+	
+	/**
+	 * @param fraction 0.0 - 1.0
+	 * @return upper bound of bucket containing percentile (capped by max value)
+	 */
+	public long getPercentile(double fraction) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(fraction * n);
+		long seen = 0;
+		for(int i = 0; i != BUCKETS; ++i) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+	
+	private static int bucket(long value) {
+		// bucket 0 - value 0, bucket n - values [2^(n-1), 2^n - 1]
+		return value == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1l << bucket) - 1;
+	}
+	
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " min=" + getMin() + " mean=" + String.format("%.1f", getMean()) 
+				+ " p50=" + getPercentile(0.5) + " p90=" + getPercentile(0.9) + " p99=" + getPercentile(0.99) + " max=" + getMax();
+	}
+}
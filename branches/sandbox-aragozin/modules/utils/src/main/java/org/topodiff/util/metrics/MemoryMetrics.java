@@ -0,0 +1,143 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * In-memory {@link Metrics} registry, could be exposed via JMX (see {@link #registerMBean(String)}).
+ * 
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MemoryMetrics implements Metrics, MemoryMetricsMBean {
+
+	public static final String MBEAN_DOMAIN = "org.topodiff";
+	
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	
+	public void increment(String name, long delta) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new AtomicLong());
+			counter = counters.get(name);
+		}
+		counter.addAndGet(delta);
+	}
+
+	public void record(String name, long value) {
+		getOrCreateHistogram(name).record(value);
+	}
+	
+	private Histogram getOrCreateHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histograms.putIfAbsent(name, new Histogram());
+			histogram = histograms.get(name);
+		}
+		return histogram;
+	}
+
+	public String[] getCounterNames() {
+		return new TreeMap<String, AtomicLong>(counters).keySet().toArray(new String[0]);
+	}
+
+	public String[] getHistogramNames() {
+		return new TreeMap<String, Histogram>(histograms).keySet().toArray(new String[0]);
+	}
+
+	/**
+	 * @return counter value or 0 if counter is not known
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter == null ? 0 : counter.get();
+	}
+
+	/**
+	 * @return histogram or <code>null</code> if histogram is not known
+	 */
+	public Histogram getHistogramData(String name) {
+		return histograms.get(name);
+	}
+	
+	public String getHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		return histogram == null ? null : histogram.toString();
+	}
+
+	public String getSummary() {
+		StringWriter sw = new StringWriter();
+		dump(sw);
+		return sw.toString();
+	}
+
+	/**
+	 * Writes all metrics, one per line, sorted by name.
+	 */
+	public void dump(Writer writer) {
+		PrintWriter pw = new PrintWriter(writer);
+		for(Map.Entry<String, AtomicLong> entry: new TreeMap<String, AtomicLong>(counters).entrySet()) {
+			pw.println(entry.getKey() + ": " + entry.getValue().get());
+		}
+		for(Map.Entry<String, Histogram> entry: new TreeMap<String, Histogram>(histograms).entrySet()) {
+			pw.println(entry.getKey() + ": " + entry.getValue());
+		}
+		pw.flush();
+	}
+
+	public void reset() {
+		counters.clear();
+		histograms.clear();
+	}
+	
+	/**
+	 * Registers this registry in platform MBean server as {@code org.topodiff:type=Metrics,name=<name>}.
+	 * @return name of MBean
+	 */
+	public ObjectName registerMBean(String name) {
+		try {
+			ObjectName on = new ObjectName(MBEAN_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(this, on);
+			return on;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to register MBean " + name, e);
+		}
+	}
+
+	public void unregisterMBean(ObjectName name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to unregister MBean " + name, e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
@@ -44,6 +44,12 @@ public class DeltaIteratorTest {
 		}
 	};
 
+	private static final Comparator<String> STRING_ORDER = new Comparator<String>() {
+		public int compare(String o1, String o2) {
+			return o1.compareTo(o2);
+		}
+	};
+
 	@Test
 	public void deltaTest0() {
 		String[] stream1 = {}; 
@@ -138,6 +144,27 @@ public class DeltaIteratorTest {
 		}
 		
 		Assert.assertEquals(print(delta), buf.toString());
+		Assert.assertEquals(print(delta), cursorDelta(stream1, stream2));
+	}
+
+	private String cursorDelta(String[] stream1, String[] stream2) {
+		List<String> list1 = Arrays.asList(stream1);
+		List<String> list2 = Arrays.asList(stream2);
+		SortedDeltaCursor<String> cursor = Iterators.sortedDeltaCursor(list1, list2, STRING_ORDER);
+
+		StringBuffer buf = new StringBuffer();
+		// second pass checks what cursor is reusable
+		for(int i = 0; i != 2; ++i) {
+			buf.setLength(0);
+			cursor.reset(list1, list2);
+			while(cursor.next()) {
+				buf.append(Arrays.toString(list1.subList(cursor.from1(), cursor.to1()).toArray()));
+				buf.append(" -- ");
+				buf.append(Arrays.toString(list2.subList(cursor.from2(), cursor.to2()).toArray()));
+				buf.append('\n');
+			}
+		}
+		return buf.toString();
 	}
 
 	private String print(String[][][] delta) {
@@ -0,0 +1,127 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ParallelScanTest {
+
+	@Test
+	public void splitIsExactlySized() {
+		List<Integer> list = range(101);
+		ListSource<Integer> source = new ListSource<Integer>(list);
+		SplittableSource<Integer> prefix = source.trySplit();
+		Assert.assertEquals(50, prefix.size());
+		Assert.assertEquals(51, source.size());
+		Assert.assertEquals(list.subList(0, 50), toList(prefix.iterator()));
+		Assert.assertEquals(list.subList(50, 101), toList(source.iterator()));
+	}
+
+	@Test
+	public void singleElementIsNotSplit() {
+		ListSource<Integer> source = new ListSource<Integer>(range(1));
+		Assert.assertNull(source.trySplit());
+		Assert.assertEquals(1, source.size());
+	}
+	
+	@Test
+	public void chunksCoverSourceInOrder() {
+		List<Integer> list = range(1000);
+		List<SplittableSource<Integer>> chunks = ParallelScan.split(new ListSource<Integer>(list), 7, 1);
+		Assert.assertEquals(7, chunks.size());
+		List<Integer> joined = new ArrayList<Integer>();
+		for(SplittableSource<Integer> chunk: chunks) {
+			List<Integer> items = toList(chunk.iterator());
+			Assert.assertEquals(chunk.size(), items.size());
+			joined.addAll(items);
+		}
+		Assert.assertEquals(list, joined);
+	}
+
+	@Test
+	public void smallChunksAreNotSplit() {
+		List<SplittableSource<Integer>> chunks = ParallelScan.split(new ListSource<Integer>(range(10)), 16, 4);
+		Assert.assertEquals(2, chunks.size());
+		chunks = ParallelScan.split(new ListSource<Integer>(range(3)), 16, 1);
+		Assert.assertEquals(3, chunks.size());
+	}
+	
+	@Test
+	public void parallelMapKeepsOrder() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Integer> list = range(10000);
+			List<Integer> firsts = ParallelScan.map(executor, new ListSource<Integer>(list), 8, new Morph<Iterator<Integer>, Integer>() {
+				public Integer morph(Iterator<Integer> it) {
+					return it.next();
+				}
+			});
+			Assert.assertEquals(8, firsts.size());
+			for(int i = 1; i < firsts.size(); ++i) {
+				Assert.assertTrue(firsts.get(i - 1) < firsts.get(i));
+			}
+			
+			long even = ParallelScan.count(executor, new ListSource<Integer>(list), 8, new Match<Integer>() {
+				public boolean match(Integer n) {
+					return n % 2 == 0;
+				}
+			});
+			Assert.assertEquals(5000, even);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void taskFailureIsPropagated() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ParallelScan.map(executor, new ListSource<Integer>(range(100)), 4, new Morph<Iterator<Integer>, Integer>() {
+				public Integer morph(Iterator<Integer> it) {
+					throw new IllegalStateException("failed");
+				}
+			});
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static List<Integer> range(int n) {
+		List<Integer> list = new ArrayList<Integer>(n);
+		for(int i = 0; i != n; ++i) {
+			list.add(i);
+		}
+		return list;
+	}
+	
+	private static <T> List<T> toList(Iterator<T> it) {
+		List<T> list = new ArrayList<T>();
+		while(it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
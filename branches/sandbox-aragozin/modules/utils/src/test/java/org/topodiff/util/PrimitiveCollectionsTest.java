@@ -0,0 +1,89 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class PrimitiveCollectionsTest {
+
+	@Test
+	public void intIntMap() {
+		Random rnd = new Random(1);
+		IntIntHashMap map = new IntIntHashMap();
+		Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		for(int i = 0; i != 10000; ++i) {
+			// negative and zero keys are legal too
+			int key = rnd.nextInt(2000) - 1000;
+			int value = rnd.nextInt();
+			Integer prev = ref.put(key, value);
+			Assert.assertEquals(prev == null ? -1 : prev.intValue(), map.put(key, value));
+		}
+		Assert.assertEquals(ref.size(), map.size());
+		for(int key = -1100; key != 1100; ++key) {
+			Integer value = ref.get(key);
+			Assert.assertEquals(value != null, map.containsKey(key));
+			Assert.assertEquals(value == null ? -1 : value.intValue(), map.get(key));
+		}
+		
+		IntIntHashMap copy = new IntIntHashMap(map);
+		copy.put(5000, 1);
+		Assert.assertFalse(map.containsKey(5000));
+		Assert.assertEquals(ref.size(), map.keys().length);
+	}
+
+	@Test
+	public void objectIntMap() {
+		ObjectIntHashMap<String> map = new ObjectIntHashMap<String>();
+		for(int i = 0; i != 1000; ++i) {
+			map.put("key" + i, i);
+		}
+		Assert.assertEquals(1000, map.size());
+		for(int i = 0; i != 1000; ++i) {
+			Assert.assertEquals(i, map.get("key" + i));
+		}
+		Assert.assertEquals(-1, map.get("nokey"));
+		Assert.assertEquals(7, map.put("key7", 70));
+		Assert.assertEquals(70, map.get("key7"));
+		Assert.assertEquals(1000, map.size());
+	}
+
+	@Test
+	public void unionFind() {
+		IntUnionFind uf = new IntUnionFind(1);
+		for(int i = 0; i != 100; ++i) {
+			Assert.assertEquals(i, uf.add());
+		}
+		// join even and odd elements into two chains
+		for(int i = 2; i < 100; ++i) {
+			uf.union(i - 2, i);
+		}
+		Assert.assertEquals(uf.find(0), uf.find(98));
+		Assert.assertEquals(uf.find(1), uf.find(99));
+		Assert.assertTrue(uf.find(0) != uf.find(1));
+		Assert.assertEquals(50, uf.getSetSize(42));
+		
+		uf.union(98, 99);
+		Assert.assertEquals(uf.find(0), uf.find(1));
+		Assert.assertEquals(100, uf.getSetSize(0));
+		Assert.assertEquals(100, uf.size());
+	}
+}
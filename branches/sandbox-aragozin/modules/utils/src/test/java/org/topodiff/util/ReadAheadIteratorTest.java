@@ -0,0 +1,83 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class ReadAheadIteratorTest {
+
+	@Test
+	public void emptySource() {
+		ReadAheadIterator<Integer> it = new ReadAheadIterator<Integer>(new ArrayList<Integer>().iterator(), 4, 2);
+		Assert.assertFalse(it.hasNext());
+		Assert.assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void orderIsPreserved() {
+		// sizes around batch boundaries
+		for(int size: new int[]{1, 3, 4, 5, 8, 9, 1000}) {
+			List<Integer> source = new ArrayList<Integer>();
+			for(int i = 0; i != size; ++i) {
+				source.add(Integer.valueOf(i));
+			}
+			List<Integer> result = new ArrayList<Integer>();
+			Iterators.addAll(result, new ReadAheadIterator<Integer>(source.iterator(), 4, 3));
+			Assert.assertEquals(source, result);
+		}
+	}
+
+	@Test
+	public void errorIsPassedToConsumer() {
+		Iterator<Integer> source = new Iterator<Integer>() {
+			int n = 0;
+			
+			public boolean hasNext() {
+				return true;
+			}
+
+			public Integer next() {
+				if (n == 10) {
+					throw new IllegalStateException("broken source");
+				}
+				return Integer.valueOf(n++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		
+		ReadAheadIterator<Integer> it = new ReadAheadIterator<Integer>(source, 4, 2);
+		for(int i = 0; i != 10; ++i) {
+			Assert.assertEquals(i, it.next().intValue());
+		}
+		try {
+			it.hasNext();
+			Assert.fail("Exception expected");
+		}
+		catch(IllegalStateException e) {
+			Assert.assertEquals("broken source", e.getMessage());
+		}
+	}
+}
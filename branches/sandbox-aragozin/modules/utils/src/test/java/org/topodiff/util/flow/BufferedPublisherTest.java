@@ -0,0 +1,196 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.flow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class BufferedPublisherTest {
+
+	@Test
+	public void demandIsRespected() {
+		BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(10);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(3);
+		for(int i = 0; i != 5; ++i) {
+			publisher.offer(i);
+		}
+		publisher.complete();
+		Assert.assertEquals("[0, 1, 2]", subscriber.items.toString());
+		Assert.assertEquals(2, publisher.getBufferedCount());
+		Assert.assertFalse(subscriber.completed);
+		
+		subscriber.subscription.request(10);
+		Assert.assertEquals("[0, 1, 2, 3, 4]", subscriber.items.toString());
+		Assert.assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void producerIsBlockedByFullBuffer() throws InterruptedException {
+		final BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(4);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		
+		final CountDownLatch finished = new CountDownLatch(1);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for(int i = 0; i != 100; ++i) {
+					publisher.offer(i);
+				}
+				publisher.complete();
+				finished.countDown();
+			}
+		};
+		producer.start();
+		
+		Assert.assertFalse(finished.await(200, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(4, publisher.getBufferedCount());
+		Assert.assertTrue(subscriber.items.isEmpty());
+		
+		subscriber.subscription.request(Long.MAX_VALUE);
+		Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+		producer.join();
+		
+		Assert.assertEquals(100, subscriber.items.size());
+		for(int i = 0; i != 100; ++i) {
+			Assert.assertEquals(i, subscriber.items.get(i).intValue());
+		}
+		Assert.assertTrue(subscriber.completed);
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancellationAbortsProducer() {
+		BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(4);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(1);
+		publisher.offer(1);
+		subscriber.subscription.cancel();
+		publisher.offer(2);
+	}
+
+	@Test
+	public void secondSubscriberIsRejected() {
+		BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(4);
+		publisher.subscribe(new RecordingSubscriber());
+		RecordingSubscriber second = new RecordingSubscriber();
+		publisher.subscribe(second);
+		Assert.assertTrue(second.error instanceof IllegalStateException);
+	}
+
+	@Test
+	public void errorIsSignalled() {
+		BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(4);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		publisher.offer(1);
+		publisher.fail(new RuntimeException("boom"));
+		Assert.assertTrue(subscriber.items.isEmpty());
+		Assert.assertEquals("boom", subscriber.error.getMessage());
+	}
+	
+	@Test
+	public void batchedSubscriber() throws InterruptedException {
+		final BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(16);
+		final List<Integer> items = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Long> requests = Collections.synchronizedList(new ArrayList<Long>());
+		final CountDownLatch completed = new CountDownLatch(1);
+		
+		final BatchedSubscriber<Integer> subscriber = new BatchedSubscriber<Integer>(64) {
+			
+			@Override
+			public void onSubscribe(final Flow.Subscription subscription) {
+				super.onSubscribe(new Flow.Subscription() {
+					public void request(long n) {
+						requests.add(n);
+						subscription.request(n);
+					}
+					
+					public void cancel() {
+						subscription.cancel();
+					}
+				});
+			}
+
+			@Override
+			protected void process(Integer item) {
+				items.add(item);
+			}
+
+			public void onError(Throwable error) {
+			}
+
+			public void onComplete() {
+				completed.countDown();
+			}
+		};
+		
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for(int i = 0; i != 1000; ++i) {
+					publisher.offer(i);
+				}
+				publisher.complete();
+			}
+		};
+		producer.start();
+		publisher.subscribe(subscriber);
+		
+		Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1000, items.size());
+		for(int i = 0; i != 1000; ++i) {
+			Assert.assertEquals(i, items.get(i).intValue());
+		}
+		// initial batch, then half batch replenishments
+		Assert.assertEquals(Long.valueOf(64), requests.get(0));
+		Assert.assertEquals(1 + 1000 / 32, requests.size());
+	}
+	
+	private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+		
+		final List<Integer> items = new ArrayList<Integer>();
+		Flow.Subscription subscription;
+		boolean completed;
+		Throwable error;
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		public void onNext(Integer item) {
+			items.add(item);
+		}
+
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.topodiff.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Alexey Ragozin (alexey.ragozin@gmail.com)
+ */
+public class MemoryMetricsTest {
+
+	@Test
+	public void counters() {
+		MemoryMetrics metrics = new MemoryMetrics();
+		metrics.increment("b", 1);
+		metrics.increment("a", 2);
+		metrics.increment("b", 3);
+		Assert.assertEquals(2, metrics.getCounter("a"));
+		Assert.assertEquals(4, metrics.getCounter("b"));
+		Assert.assertEquals(0, metrics.getCounter("c"));
+		Assert.assertEquals("[a, b]", toList(metrics.getCounterNames()).toString());
+		
+		metrics.reset();
+		Assert.assertEquals(0, metrics.getCounterNames().length);
+	}
+
+	@Test
+	public void histogram() {
+		Histogram histogram = new Histogram();
+		Assert.assertEquals(0, histogram.getPercentile(0.5));
+		for(int i = 1; i <= 100; ++i) {
+			histogram.record(i);
+		}
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(5050, histogram.getSum());
+		Assert.assertEquals(1, histogram.getMin());
+		Assert.assertEquals(100, histogram.getMax());
+		// percentiles are rounded up to power of two bucket bounds
+		Assert.assertEquals(63, histogram.getPercentile(0.5));
+		Assert.assertEquals(100, histogram.getPercentile(0.99));
+		Assert.assertEquals(1, histogram.getPercentile(0.01));
+	}
+
+	@Test
+	public void summary() {
+		MemoryMetrics metrics = new MemoryMetrics();
+		metrics.increment("x.count", 5);
+		metrics.record("x.size", 0);
+		metrics.record("x.size", 7);
+		String summary = metrics.getSummary();
+		Assert.assertTrue(summary, summary.startsWith("x.count: 5"));
+		Assert.assertTrue(summary, summary.contains("x.size: count=2 min=0"));
+		Assert.assertTrue(summary, summary.contains("max=7"));
+	}
+	
+	@Test
+	public void mbean() throws Exception {
+		MemoryMetrics metrics = new MemoryMetrics();
+		metrics.increment("x", 42);
+		ObjectName name = metrics.registerMBean("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			String[] names = (String[]) server.getAttribute(name, "CounterNames");
+			Assert.assertEquals("[x]", toList(names).toString());
+			Object value = server.invoke(name, "getCounter", new Object[]{"x"}, new String[]{String.class.getName()});
+			Assert.assertEquals(Long.valueOf(42), value);
+		}
+		finally {
+			metrics.unregisterMBean(name);
+		}
+	}
+
+	private static List<String> toList(String[] names) {
+		List<String> list = new ArrayList<String>();
+		for(String name: names) {
+			list.add(name);
+		}
+		return list;
+	}
+}